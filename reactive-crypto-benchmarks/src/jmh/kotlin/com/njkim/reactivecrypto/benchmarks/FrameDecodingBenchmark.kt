@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.benchmarks
+
+import com.njkim.reactivecrypto.binance.BinanceWebsocketClient
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.njkim.reactivecrypto.core.json.JsonMessageDecoder
+import com.njkim.reactivecrypto.core.json.JsonMessageRouter
+import com.njkim.reactivecrypto.core.json.JsonMessageTypeResolver
+import com.njkim.reactivecrypto.huobiglobal.HuobiGlobalWebsocketClient
+import com.njkim.reactivecrypto.kraken.KrakenJsonObjectMapper
+import com.njkim.reactivecrypto.okex.Deflat64Decoder
+import com.njkim.reactivecrypto.okex.OkexWebsocketClient
+import io.netty.buffer.ByteBuf
+import io.netty.buffer.PooledByteBufAllocator
+import io.netty.channel.embedded.EmbeddedChannel
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import java.util.concurrent.TimeUnit
+import java.util.zip.Deflater
+
+/**
+ * Decoding of a sample frame of each exchange into [TickData] and [OrderBook] through the router of its websocket client,
+ * as done on the event loop for every received frame.
+ * Frames are read from pooled direct buffers like the websocket inbound, run with the gc profiler to see `gc.alloc.rate.norm`.
+ * okex frames are deflated like on the wire and inflated by [Deflat64Decoder] before routing.
+ * kraken resolves channelIDs per socket session, so its sample frames are routed straight to the decoders
+ * of [KrakenJsonObjectMapper] without the type resolution.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class FrameDecodingBenchmark {
+    @Param("binance", "okex", "huobi", "kraken")
+    lateinit var exchange: String
+
+    private lateinit var tradeRouter: JsonMessageRouter<List<TickData>>
+    private lateinit var depthRouter: JsonMessageRouter<List<OrderBook>>
+
+    private lateinit var tradeFrame: ByteBuf
+    private lateinit var depthFrame: ByteBuf
+
+    // pipeline of the deflated frames, null when the frames are plain JSON
+    private var inflater: EmbeddedChannel? = null
+
+    @Setup
+    fun setUp() {
+        var deflated = false
+        when (exchange) {
+            "binance" -> BinanceWebsocketClient().let { tradeRouter = it.tradeRouter; depthRouter = it.depthRouter }
+            "okex" -> OkexWebsocketClient().let { tradeRouter = it.tradeRouter; depthRouter = it.depthRouter; deflated = true }
+            "huobi" -> HuobiGlobalWebsocketClient().let { tradeRouter = it.tradeRouter; depthRouter = it.depthRouter }
+            "kraken" -> KrakenJsonObjectMapper().let {
+                tradeRouter = decoderRouter(it.objectMapper(), it.tickDataDecoder()!!)
+                depthRouter = decoderRouter(it.objectMapper(), it.orderBookDecoder()!!)
+            }
+            else -> throw IllegalArgumentException("unknown exchange : $exchange")
+        }
+        tradeFrame = frame("$exchange-trade.json", deflated)
+        depthFrame = frame("$exchange-depth.json", deflated)
+        inflater = if (deflated) EmbeddedChannel(Deflat64Decoder()) else null
+
+        // a frame dropped by the router would only measure the type resolution
+        check(!decodeTrade().isNullOrEmpty()) { "$exchange trade frame is not decoded" }
+        check(!decodeDepth().isNullOrEmpty()) { "$exchange depth frame is not decoded" }
+    }
+
+    @TearDown
+    fun tearDown() {
+        inflater?.finishAndReleaseAll()
+        tradeFrame.release()
+        depthFrame.release()
+    }
+
+    @Benchmark
+    fun decodeTrade(): List<TickData>? {
+        return decode(tradeRouter, tradeFrame)
+    }
+
+    @Benchmark
+    fun decodeDepth(): List<OrderBook>? {
+        return decode(depthRouter, depthFrame)
+    }
+
+    private fun <T> decode(router: JsonMessageRouter<T>, frame: ByteBuf): T? {
+        val channel = inflater ?: return router.route(frame)
+        // the decoder releases the frame it read, the sample is kept for the next operation
+        channel.writeInbound(frame.retainedDuplicate())
+        val inflated = channel.readInbound<ByteBuf>()
+        try {
+            return router.route(inflated)
+        } finally {
+            inflated.release()
+        }
+    }
+
+    private fun <T> decoderRouter(objectMapper: ObjectMapper, decoder: JsonMessageDecoder<T>): JsonMessageRouter<T> {
+        val typeResolver = object : JsonMessageTypeResolver {
+            override fun resolve(parser: JsonParser): String? = SAMPLE_TYPE
+        }
+        return JsonMessageRouter(objectMapper, typeResolver, mapOf(SAMPLE_TYPE to decoder))
+    }
+
+    private fun frame(name: String, deflated: Boolean): ByteBuf {
+        val bytes = javaClass.getResourceAsStream("/frames/$name")?.use { it.readBytes() }
+            ?: throw IllegalArgumentException("sample frame $name not found")
+        val frameBytes = if (deflated) deflate(bytes) else bytes
+        return PooledByteBufAllocator.DEFAULT.directBuffer(frameBytes.size).writeBytes(frameBytes)
+    }
+
+    /**
+     * raw deflate like the okex frames, which is a subset of deflate64
+     */
+    private fun deflate(bytes: ByteArray): ByteArray {
+        val deflater = Deflater(Deflater.DEFAULT_COMPRESSION, true)
+        try {
+            deflater.setInput(bytes)
+            deflater.finish()
+            val buffer = ByteArray(bytes.size + 64)
+            val length = deflater.deflate(buffer)
+            check(deflater.finished()) { "deflated frame exceeds ${buffer.size} bytes" }
+            return buffer.copyOf(length)
+        } finally {
+            deflater.end()
+        }
+    }
+
+    companion object {
+        private const val SAMPLE_TYPE = "sample"
+    }
+}
@@ -22,11 +22,14 @@ import com.njkim.reactivecrypto.bhex.model.BhexMessageFrame
 import com.njkim.reactivecrypto.bhex.model.BhexOrderBook
 import com.njkim.reactivecrypto.bhex.model.BhexTickData
 import com.njkim.reactivecrypto.bhex.model.BhexTicker
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
 import com.njkim.reactivecrypto.core.netty.HeartBeatHandler
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
+import com.njkim.reactivecrypto.core.websocket.decode
+import com.njkim.reactivecrypto.core.websocket.metered
 import mu.KotlinLogging
 import reactor.core.publisher.Flux
-import reactor.netty.http.client.HttpClient
 import java.util.concurrent.TimeUnit
 
 class BhexRawWebsocketClient(
@@ -59,7 +62,8 @@ class BhexRawWebsocketClient(
                 "\"event\": \"sub\"" +
                 "}"
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.BHEX, uri, "depth")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BHEX)
             .wiretap(log.isDebugEnabled)
             .doOnConnected { connection ->
                 connection.addHandler(
@@ -77,10 +81,10 @@ class BhexRawWebsocketClient(
             .handle { inbound, outbound ->
                 outbound.sendString(Flux.just(subscribeMessage))
                     .then()
-                    .thenMany(inbound.aggregateFrames().receive().asString())
+                    .thenMany(inbound.aggregateFrames().receive().metered(meter).asString())
             }
             .filter { it.contains("\"topic\":\"$topic\"") }
-            .map { objectMapper.readValue<BhexMessageFrame<List<BhexOrderBook>>>(it) }
+            .decode(meter) { objectMapper.readValue<BhexMessageFrame<List<BhexOrderBook>>>(it) }
     }
 
     /**
@@ -96,7 +100,8 @@ class BhexRawWebsocketClient(
                 "\"event\": \"sub\"" +
                 "}"
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.BHEX, uri, "realtimes")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BHEX)
             .wiretap(log.isDebugEnabled)
             .doOnConnected { connection ->
                 connection.addHandler(
@@ -114,10 +119,10 @@ class BhexRawWebsocketClient(
             .handle { inbound, outbound ->
                 outbound.sendString(Flux.just(subscribeMessage))
                     .then()
-                    .thenMany(inbound.aggregateFrames().receive().asString())
+                    .thenMany(inbound.aggregateFrames().receive().metered(meter).asString())
             }
             .filter { it.contains("\"topic\":\"$topic\"") }
-            .map { objectMapper.readValue<BhexMessageFrame<List<BhexTicker>>>(it) }
+            .decode(meter) { objectMapper.readValue<BhexMessageFrame<List<BhexTicker>>>(it) }
     }
 
     /**
@@ -137,7 +142,8 @@ class BhexRawWebsocketClient(
                 "\"event\": \"sub\"" +
                 "}"
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.BHEX, uri, "trade")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BHEX)
             .wiretap(log.isDebugEnabled)
             .doOnConnected { connection ->
                 connection.addHandler(
@@ -155,9 +161,9 @@ class BhexRawWebsocketClient(
             .handle { inbound, outbound ->
                 outbound.sendString(Flux.just(subscribeMessage))
                     .then()
-                    .thenMany(inbound.aggregateFrames().receive().asString())
+                    .thenMany(inbound.aggregateFrames().receive().metered(meter).asString())
             }
             .filter { it.contains("\"topic\":\"$topic\"") }
-            .map { objectMapper.readValue<BhexMessageFrame<List<BhexTickData>>>(it) }
+            .decode(meter) { objectMapper.readValue<BhexMessageFrame<List<BhexTickData>>>(it) }
     }
 }
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.binance
+
+import com.njkim.reactivecrypto.binance.model.BinanceDepthUpdate
+import com.njkim.reactivecrypto.binance.model.BinanceOrderBook
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUpdate
+import com.njkim.reactivecrypto.core.orderbook.IncrementalOrderBook
+import mu.KotlinLogging
+import reactor.core.publisher.Mono
+import java.time.ZonedDateTime
+import java.util.ArrayDeque
+import java.util.Queue
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Local full depth books maintained from diff depth events, bootstrapped from a REST snapshot.
+ *
+ * How to manage a local order book correctly (binance)
+ * 1. buffer the events of the stream
+ * 2. get a depth snapshot
+ * 3. drop any event where u is <= lastUpdateId in the snapshot
+ * 4. the first processed event should have U <= lastUpdateId+1 AND u >= lastUpdateId+1
+ * 5. while listening, each new event's U should be equal to the previous event's u+1
+ *
+ * An event out of sequence is a gap, the book of the pair is dropped and resynchronized from a new snapshot,
+ * which is also how the events missed during a reconnect are detected.
+ * Nothing is emitted for a pair while it is synchronizing, then the whole book is emitted once as a snapshot
+ * [OrderBookUpdate] followed by the levels changed by each event, so no event copies the book.
+ * At most [maxPendingUpdates] events are buffered while waiting for the snapshot, a snapshot slower than that
+ * is treated as a gap and a new one is requested.
+ * The snapshot response is applied with the next event of the pair, so every book is updated on the thread
+ * delivering the events. Instances are not thread-safe, use one instance per subscriber,
+ * only [remove] may be called from any thread.
+ *
+ * @param snapshotProvider REST depth snapshot of a pair
+ * @param onGap called for every resynchronization of a pair
+ */
+class BinanceDepthSynchronizer(
+    private val snapshotProvider: (CurrencyPair) -> Mono<BinanceOrderBook>,
+    private val onGap: (CurrencyPair) -> Unit = {},
+    private val maxPendingUpdates: Int = 1000
+) {
+    private val log = KotlinLogging.logger {}
+
+    private val books: MutableMap<CurrencyPair, SynchronizedBook> = HashMap()
+
+    private val removedPairs: Queue<CurrencyPair> = ConcurrentLinkedQueue()
+
+    /**
+     * @return the update applied by [depthUpdate], null while the pair is synchronizing or the event is stale
+     */
+    fun onUpdate(depthUpdate: BinanceDepthUpdate): OrderBookUpdate? {
+        // books removed before the event are not reused by a pair added again
+        dropRemovedBooks()
+        val orderBookUpdate = books.computeIfAbsent(depthUpdate.currencyPair) { SynchronizedBook(it) }
+            .onUpdate(depthUpdate)
+        // an event of a pair removed while it was delivered does not keep its book
+        dropRemovedBooks()
+        return orderBookUpdate
+    }
+
+    /**
+     * drop the books of [currencyPairs] with the next event, a pair added again is synchronized from a new snapshot
+     */
+    fun remove(currencyPairs: Collection<CurrencyPair>) {
+        removedPairs.addAll(currencyPairs)
+    }
+
+    private fun dropRemovedBooks() {
+        while (true) {
+            books.remove(removedPairs.poll() ?: return)
+        }
+    }
+
+    private inner class SynchronizedBook(private val currencyPair: CurrencyPair) {
+        private val incrementalOrderBook = IncrementalOrderBook()
+        private val pendingUpdates: ArrayDeque<BinanceDepthUpdate> = ArrayDeque()
+
+        // -1 while synchronizing
+        private var lastUpdateId: Long = -1
+
+        private val snapshotRequested = AtomicBoolean()
+
+        @Volatile
+        private var snapshot: BinanceOrderBook? = null
+
+        fun onUpdate(depthUpdate: BinanceDepthUpdate): OrderBookUpdate? {
+            if (lastUpdateId >= 0) {
+                return apply(depthUpdate)?.let { OrderBookUpdate(it, false) }
+            }
+
+            if (pendingUpdates.size >= maxPendingUpdates) {
+                log.warn { "no depth snapshot of $currencyPair after $maxPendingUpdates events, request a new one" }
+                onGap(currencyPair)
+                // the pending request may never complete, a late response is out of sequence and resynchronized again
+                snapshotRequested.set(false)
+                resynchronize(depthUpdate)
+                return null
+            }
+
+            pendingUpdates.add(depthUpdate)
+            val currentSnapshot = snapshot
+            if (currentSnapshot == null) {
+                requestSnapshot()
+                return null
+            }
+            snapshot = null
+            return applySnapshot(currentSnapshot)
+        }
+
+        private fun requestSnapshot() {
+            if (!snapshotRequested.compareAndSet(false, true)) {
+                return
+            }
+
+            snapshotProvider(currencyPair)
+                .subscribe(
+                    { snapshot = it },
+                    {
+                        log.warn(it) { "depth snapshot of $currencyPair failed, retry with the next event" }
+                        snapshotRequested.set(false)
+                    }
+                )
+        }
+
+        private fun applySnapshot(snapshot: BinanceOrderBook): OrderBookUpdate? {
+            snapshotRequested.set(false)
+            lastUpdateId = snapshot.lastUpdateId
+            incrementalOrderBook.snapshot(
+                OrderBook(
+                    "${snapshot.lastUpdateId}",
+                    currencyPair,
+                    ZonedDateTime.now(),
+                    ExchangeVendor.BINANCE,
+                    snapshot.getBids(),
+                    snapshot.getAsks()
+                )
+            )
+
+            while (pendingUpdates.isNotEmpty() && lastUpdateId >= 0) {
+                apply(pendingUpdates.poll())
+            }
+            if (lastUpdateId < 0) {
+                return null
+            }
+            // the book is copied once per synchronization, tagged with the last applied event
+            return OrderBookUpdate(incrementalOrderBook.toOrderBook()!!, true)
+        }
+
+        /**
+         * @return the changed levels, null when the event is stale or out of sequence
+         */
+        private fun apply(depthUpdate: BinanceDepthUpdate): OrderBook? {
+            if (depthUpdate.finalUpdateId <= lastUpdateId) {
+                // already contained in the snapshot
+                return null
+            }
+            if (depthUpdate.firstUpdateId > lastUpdateId + 1) {
+                log.warn { "depth gap of $currencyPair, expected ${lastUpdateId + 1} but ${depthUpdate.firstUpdateId}" }
+                onGap(currencyPair)
+                resynchronize(depthUpdate)
+                return null
+            }
+
+            lastUpdateId = depthUpdate.finalUpdateId
+            return incrementalOrderBook.update(
+                OrderBook(
+                    "${depthUpdate.finalUpdateId}",
+                    currencyPair,
+                    depthUpdate.eventTime,
+                    ExchangeVendor.BINANCE,
+                    depthUpdate.bids,
+                    depthUpdate.asks,
+                    receivedNanos = depthUpdate.receivedNanos
+                )
+            )
+        }
+
+        private fun resynchronize(depthUpdate: BinanceDepthUpdate) {
+            lastUpdateId = -1
+            incrementalOrderBook.clear()
+            pendingUpdates.clear()
+            pendingUpdates.add(depthUpdate)
+            requestSnapshot()
+        }
+    }
+}
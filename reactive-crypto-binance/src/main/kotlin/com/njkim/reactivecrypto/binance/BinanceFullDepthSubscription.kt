@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.binance
+
+import com.njkim.reactivecrypto.binance.model.BinanceDepthUpdate
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUpdate
+import com.njkim.reactivecrypto.core.websocket.WebsocketSubscription
+import reactor.core.publisher.Flux
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * Full depth books of the diff depth events of [depthUpdates].
+ * The events are decoded once per socket and shared, but every subscriber keeps its own books,
+ * so a subscriber joining a running stream starts from its own snapshot.
+ */
+internal class BinanceFullDepthSubscription(
+    private val depthUpdates: WebsocketSubscription<BinanceDepthUpdate>,
+    private val depthSynchronizerFactory: () -> BinanceDepthSynchronizer
+) : WebsocketSubscription<OrderBookUpdate> {
+    private val depthSynchronizers: MutableList<BinanceDepthSynchronizer> = CopyOnWriteArrayList()
+
+    override val flux: Flux<OrderBookUpdate> = Flux.defer {
+        val depthSynchronizer = depthSynchronizerFactory()
+        depthSynchronizers.add(depthSynchronizer)
+        depthUpdates.flux
+            .handle<OrderBookUpdate> { depthUpdate, sink -> depthSynchronizer.onUpdate(depthUpdate)?.let { sink.next(it) } }
+            .doFinally { depthSynchronizers.remove(depthSynchronizer) }
+    }
+
+    override fun add(currencyPairs: List<CurrencyPair>) {
+        depthUpdates.add(currencyPairs)
+    }
+
+    override fun remove(currencyPairs: List<CurrencyPair>) {
+        // the events of the pairs are filtered out first, so no later event brings their books back
+        depthUpdates.remove(currencyPairs)
+        depthSynchronizers.forEach { it.remove(currencyPairs) }
+    }
+
+    override fun currencyPairs(): Set<CurrencyPair> {
+        return depthUpdates.currencyPairs()
+    }
+}
@@ -24,16 +24,36 @@ import com.fasterxml.jackson.databind.JsonSerializer
 import com.fasterxml.jackson.databind.SerializerProvider
 import com.fasterxml.jackson.databind.module.SimpleModule
 import com.njkim.reactivecrypto.binance.BinanceCommonUtil.parseCurrencyPair
+import com.njkim.reactivecrypto.binance.model.BinanceDepthUpdate
 import com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.Currency
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.number.ScaledDecimal
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.ScaledTickData
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
 import com.njkim.reactivecrypto.core.common.util.toEpochMilli
+import com.njkim.reactivecrypto.core.json.JsonMessageDecoder
+import com.njkim.reactivecrypto.core.json.bigDecimalValue
+import com.njkim.reactivecrypto.core.json.forEachField
+import com.njkim.reactivecrypto.core.json.orderBookUnitsValue
+import com.njkim.reactivecrypto.core.json.scaledDecimalValue
 import mu.KotlinLogging
+import org.apache.commons.lang3.StringUtils
 import java.math.BigDecimal
 import java.time.Instant
 import java.time.ZoneId
 import java.time.ZonedDateTime
 
+/**
+ * builds a trade of the decimal type [D] from the fields of a trade message
+ */
+private typealias TradeFactory<D, T> =
+    (uniqueId: String, eventTime: ZonedDateTime, price: D, quantity: D, currencyPair: CurrencyPair, side: TradeSideType) -> T
+
 class BinanceJsonObjectMapper : ExchangeJsonObjectMapper {
     private val log = KotlinLogging.logger {}
 
@@ -103,4 +123,170 @@ class BinanceJsonObjectMapper : ExchangeJsonObjectMapper {
         simpleModule.addSerializer(BigDecimal::class.java, bigDecimalSerializer)
         simpleModule.addSerializer(ZonedDateTime::class.java, zonedDateTimeSerializer)
     }
+
+    /**
+     * combined stream trade message
+     * {"stream":"btcusdt@trade","data":{"e":"trade","E":123456789,"s":"BTCUSDT","t":12345,"p":"0.001","q":"100","m":true,...}}
+     */
+    override fun tickDataDecoder(): JsonMessageDecoder<List<TickData>>? {
+        return object : JsonMessageDecoder<List<TickData>> {
+            override fun decode(parser: JsonParser): List<TickData> {
+                return decodeTrades(parser, { it.bigDecimalValue() }) { uniqueId, eventTime, price, quantity, currencyPair, side ->
+                    TickData(uniqueId, eventTime, price, quantity, currencyPair, ExchangeVendor.BINANCE, side)
+                }
+            }
+        }
+    }
+
+    /**
+     * [tickDataDecoder] reading the price and quantity as [ScaledDecimal] straight from the token characters.
+     * Binance pads the values of a symbol to a fixed number of fraction digits, so they share one scale per symbol.
+     */
+    fun scaledTickDataDecoder(): JsonMessageDecoder<List<ScaledTickData>> {
+        return object : JsonMessageDecoder<List<ScaledTickData>> {
+            override fun decode(parser: JsonParser): List<ScaledTickData> {
+                return decodeTrades(parser, { it.scaledDecimalValue() }) { uniqueId, eventTime, price, quantity, currencyPair, side ->
+                    ScaledTickData(uniqueId, eventTime, price, quantity, currencyPair, ExchangeVendor.BINANCE, side)
+                }
+            }
+        }
+    }
+
+    /**
+     * walk the fields of a combined stream trade message, [decimalValue] reads the price and the quantity
+     */
+    private fun <D : Any, T : Any> decodeTrades(
+        parser: JsonParser,
+        decimalValue: (JsonParser) -> D,
+        trade: TradeFactory<D, T>
+    ): List<T> {
+        var tickData: T? = null
+        parser.forEachField { fieldName ->
+            if (fieldName == "data") {
+                tickData = decodeTrade(parser, decimalValue, trade)
+            } else {
+                parser.skipChildren()
+            }
+        }
+        return listOfNotNull(tickData)
+    }
+
+    private fun <D : Any, T : Any> decodeTrade(
+        parser: JsonParser,
+        decimalValue: (JsonParser) -> D,
+        trade: TradeFactory<D, T>
+    ): T {
+        var eventTime: ZonedDateTime? = null
+        var currencyPair: CurrencyPair? = null
+        var tradeId = 0L
+        var price: D? = null
+        var quantity: D? = null
+        var isMarketMaker = false
+
+        parser.forEachField { fieldName ->
+            when (fieldName) {
+                "E" -> eventTime = ZonedDateTime.ofInstant(Instant.ofEpochMilli(parser.longValue), ZoneId.systemDefault())
+                "s" -> currencyPair = parseCurrencyPair(parser.text)
+                "t" -> tradeId = parser.longValue
+                "p" -> price = decimalValue(parser)
+                "q" -> quantity = decimalValue(parser)
+                "m" -> isMarketMaker = parser.booleanValue
+                else -> parser.skipChildren()
+            }
+        }
+
+        return trade(
+            "$tradeId${currencyPair!!}${eventTime!!.toEpochMilli()}",
+            eventTime!!,
+            price!!,
+            quantity!!,
+            currencyPair!!,
+            if (isMarketMaker) TradeSideType.SELL else TradeSideType.BUY
+        )
+    }
+
+    /**
+     * combined stream partial book depth message
+     * {"stream":"btcusdt@depth20","data":{"lastUpdateId":160,"bids":[["0.0024","10"]],"asks":[["0.0026","100"]]}}
+     */
+    override fun orderBookDecoder(): JsonMessageDecoder<List<OrderBook>>? {
+        return object : JsonMessageDecoder<List<OrderBook>> {
+            override fun decode(parser: JsonParser): List<OrderBook> {
+                var currencyPair: CurrencyPair? = null
+                var lastUpdateId = 0L
+                var bids: List<OrderBookUnit> = emptyList()
+                var asks: List<OrderBookUnit> = emptyList()
+
+                parser.forEachField { fieldName ->
+                    when (fieldName) {
+                        "stream" -> currencyPair = parseCurrencyPair(StringUtils.substringBefore(parser.text, "@"))
+                        "data" -> parser.forEachField { dataFieldName ->
+                            when (dataFieldName) {
+                                "lastUpdateId" -> lastUpdateId = parser.longValue
+                                "bids" -> bids = parser.orderBookUnitsValue(TradeSideType.BUY)
+                                "asks" -> asks = parser.orderBookUnitsValue(TradeSideType.SELL)
+                                else -> parser.skipChildren()
+                            }
+                        }
+                        else -> parser.skipChildren()
+                    }
+                }
+
+                return listOf(
+                    OrderBook(
+                        "$lastUpdateId",
+                        currencyPair!!,
+                        ZonedDateTime.now(),
+                        ExchangeVendor.BINANCE,
+                        bids,
+                        asks,
+                        hasExchangeTime = false
+                    )
+                )
+            }
+        }
+    }
+
+    /**
+     * combined stream diff depth message
+     * {"stream":"bnbbtc@depth@100ms","data":{"e":"depthUpdate","E":123456789,"s":"BNBBTC","U":157,"u":160,"b":[["0.0024","10"]],"a":[["0.0026","100"]]}}
+     */
+    fun depthUpdateDecoder(): JsonMessageDecoder<BinanceDepthUpdate> {
+        return object : JsonMessageDecoder<BinanceDepthUpdate> {
+            override fun decode(parser: JsonParser): BinanceDepthUpdate {
+                var depthUpdate: BinanceDepthUpdate? = null
+                parser.forEachField { fieldName ->
+                    if (fieldName == "data") {
+                        depthUpdate = decodeDepthUpdate(parser)
+                    } else {
+                        parser.skipChildren()
+                    }
+                }
+                return depthUpdate!!
+            }
+
+            private fun decodeDepthUpdate(parser: JsonParser): BinanceDepthUpdate {
+                var eventTime: ZonedDateTime? = null
+                var currencyPair: CurrencyPair? = null
+                var firstUpdateId = 0L
+                var finalUpdateId = 0L
+                var bids: List<OrderBookUnit> = emptyList()
+                var asks: List<OrderBookUnit> = emptyList()
+
+                parser.forEachField { fieldName ->
+                    when (fieldName) {
+                        "E" -> eventTime = ZonedDateTime.ofInstant(Instant.ofEpochMilli(parser.longValue), ZoneId.systemDefault())
+                        "s" -> currencyPair = parseCurrencyPair(parser.text)
+                        "U" -> firstUpdateId = parser.longValue
+                        "u" -> finalUpdateId = parser.longValue
+                        "b" -> bids = parser.orderBookUnitsValue(TradeSideType.BUY)
+                        "a" -> asks = parser.orderBookUnitsValue(TradeSideType.SELL)
+                        else -> parser.skipChildren()
+                    }
+                }
+
+                return BinanceDepthUpdate(currencyPair!!, eventTime!!, firstUpdateId, finalUpdateId, bids, asks)
+            }
+        }
+    }
 }
@@ -21,7 +21,6 @@ import com.fasterxml.jackson.module.kotlin.readValue
 import com.njkim.reactivecrypto.binance.model.BinanceOrderBook
 import com.njkim.reactivecrypto.binance.model.BinanceResponseWrapper
 import com.njkim.reactivecrypto.binance.model.BinanceTickData
-import com.njkim.reactivecrypto.core.websocket.AbstractExchangeWebsocketClient
 import com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper
 import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
@@ -30,9 +29,12 @@ import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.core.common.model.order.TradeSideType.BUY
 import com.njkim.reactivecrypto.core.common.model.order.TradeSideType.SELL
 import com.njkim.reactivecrypto.core.common.util.toEpochMilli
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
+import com.njkim.reactivecrypto.core.websocket.AbstractExchangeWebsocketClient
+import com.njkim.reactivecrypto.core.websocket.decode
+import com.njkim.reactivecrypto.core.websocket.metered
 import mu.KotlinLogging
 import reactor.core.publisher.Flux
-import reactor.netty.http.client.HttpClient
 import java.time.ZonedDateTime
 import java.util.stream.Collectors
 
@@ -53,12 +55,13 @@ class BinancePrivateWebsocketClient : AbstractExchangeWebsocketClient() {
             .map { it.toLowerCase() + "@trade" }
             .collect(Collectors.joining("/"))
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.BINANCE, "$baseUri/stream", "trade")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BINANCE)
             .wiretap(log.isDebugEnabled)
             .websocket()
             .uri("$baseUri/stream?streams=$streams")
-            .handle { inbound, _ -> inbound.receive().asString() }
-            .map { objectMapper.readValue<BinanceResponseWrapper<BinanceTickData>>(it) }
+            .handle { inbound, _ -> inbound.receive().metered(meter).asString() }
+            .decode(meter) { objectMapper.readValue<BinanceResponseWrapper<BinanceTickData>>(it) }
             .map { it.data }
             .map { binanceTradeRawData ->
                 TickData(
@@ -79,12 +82,13 @@ class BinancePrivateWebsocketClient : AbstractExchangeWebsocketClient() {
             .map { it.toLowerCase() + "@depth20" }
             .collect(Collectors.joining("/"))
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.BINANCE, "$baseUri/stream", "depth20")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BINANCE)
             .wiretap(log.isDebugEnabled)
             .websocket()
             .uri("$baseUri/stream?streams=$streams")
-            .handle { inbound, _ -> inbound.receive().asString() }
-            .map { objectMapper.readValue<BinanceResponseWrapper<BinanceOrderBook>>(it) }
+            .handle { inbound, _ -> inbound.receive().metered(meter).asString() }
+            .decode(meter) { objectMapper.readValue<BinanceResponseWrapper<BinanceOrderBook>>(it) }
             .map {
                 OrderBook(
                     "${it.data.lastUpdateId}",
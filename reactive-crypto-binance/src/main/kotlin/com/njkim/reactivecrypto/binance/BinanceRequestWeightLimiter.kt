@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.binance
+
+import reactor.core.publisher.Mono
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+
+/**
+ * Spreads REST requests over time so their weight stays under the request weight limit of binance,
+ * which is counted per IP address, so one instance is shared by every client of the process.
+ * Requests are delayed, never rejected: up to [burstWeight] is sent at once and the rest at [weightPerMinute].
+ */
+class BinanceRequestWeightLimiter(
+    weightPerMinute: Int = 600,
+    private val burstWeight: Int = 100
+) {
+    private val nanosPerWeight: Long
+
+    // System.nanoTime() when the weight of the requests sent so far is refilled, guarded by this
+    private var refilledAt: Long = Long.MIN_VALUE
+
+    init {
+        require(weightPerMinute > 0) { "weightPerMinute must be positive : $weightPerMinute" }
+        require(burstWeight >= 0) { "burstWeight must not be negative : $burstWeight" }
+        nanosPerWeight = TimeUnit.MINUTES.toNanos(1) / weightPerMinute
+    }
+
+    /**
+     * @return [request] subscribed once its weight fits the limit
+     */
+    fun <T> limit(weight: Int, request: () -> Mono<T>): Mono<T> {
+        return Mono.defer {
+            val delayNanos = reserve(weight, System.nanoTime())
+            if (delayNanos <= 0) {
+                request()
+            } else {
+                Mono.delay(Duration.ofNanos(delayNanos)).then(Mono.defer(request))
+            }
+        }
+    }
+
+    /**
+     * @return nanoseconds to wait before sending a request of [weight]
+     */
+    @Synchronized
+    internal fun reserve(weight: Int, now: Long): Long {
+        refilledAt = maxOf(refilledAt, now) + weight * nanosPerWeight
+        return refilledAt - now - burstWeight * nanosPerWeight
+    }
+
+    companion object {
+        /**
+         * weight of a `/api/v3/depth` request of [limit] levels
+         */
+        fun depthWeight(limit: Int): Int {
+            return when {
+                limit <= 100 -> 1
+                limit <= 500 -> 5
+                limit <= 1000 -> 10
+                else -> 50
+            }
+        }
+    }
+}
@@ -17,83 +17,193 @@
 package com.njkim.reactivecrypto.binance
 
 import com.fasterxml.jackson.databind.ObjectMapper
-import com.fasterxml.jackson.module.kotlin.readValue
-import com.njkim.reactivecrypto.binance.model.BinanceOrderBook
-import com.njkim.reactivecrypto.binance.model.BinanceResponseWrapper
-import com.njkim.reactivecrypto.binance.model.BinanceTickData
-import com.njkim.reactivecrypto.core.websocket.AbstractExchangeWebsocketClient
+import com.njkim.reactivecrypto.binance.http.raw.BinanceRawHttpClient
+import com.njkim.reactivecrypto.binance.model.BinanceDepthUpdate
 import com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper
 import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.number.ScaledDecimal
 import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUpdate
+import com.njkim.reactivecrypto.core.common.model.order.ScaledTickData
 import com.njkim.reactivecrypto.core.common.model.order.TickData
-import com.njkim.reactivecrypto.core.common.model.order.TradeSideType.BUY
-import com.njkim.reactivecrypto.core.common.model.order.TradeSideType.SELL
-import com.njkim.reactivecrypto.core.common.util.toEpochMilli
+import com.njkim.reactivecrypto.core.json.JsonMessageDecoder
+import com.njkim.reactivecrypto.core.json.JsonMessageRouter
+import com.njkim.reactivecrypto.core.json.JsonMessageTypeResolver
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
+import com.njkim.reactivecrypto.core.websocket.AbstractExchangeWebsocketClient
+import com.njkim.reactivecrypto.core.websocket.SharedWebsocketConnection
+import com.njkim.reactivecrypto.core.websocket.SharedWebsocketSubscription
+import com.njkim.reactivecrypto.core.websocket.WebsocketSubscription
+import com.njkim.reactivecrypto.core.websocket.WebsocketSubscriptionProtocol
 import mu.KotlinLogging
 import reactor.core.publisher.Flux
-import reactor.netty.http.client.HttpClient
-import java.time.ZonedDateTime
-import java.util.stream.Collectors
+import java.util.concurrent.atomic.AtomicLong
 
-class BinanceWebsocketClient : AbstractExchangeWebsocketClient() {
+/**
+ * @param leg clients of different legs stream over separate sockets of the same endpoint,
+ * see [com.njkim.reactivecrypto.core.stream.arbitrateTickData]
+ */
+class BinanceWebsocketClient(
+    private val baseUri: String = "wss://stream.binance.com:9443",
+    private val leg: Int = 0
+) : AbstractExchangeWebsocketClient() {
     private val log = KotlinLogging.logger {}
 
-    private val baseUri = "wss://stream.binance.com:9443"
-
     private val objectMapper: ObjectMapper = createJsonObjectMapper().objectMapper()
 
+    private val tickDataDecoder: JsonMessageDecoder<List<TickData>> = createJsonObjectMapper().tickDataDecoder()!!
+
+    private val orderBookDecoder: JsonMessageDecoder<List<OrderBook>> = createJsonObjectMapper().orderBookDecoder()!!
+
+    /**
+     * btcusdt@depth20 -> depth20, subscription replies `{"result":null,"id":1}` have no stream
+     */
+    private val messageTypeResolver = JsonMessageTypeResolver.field("stream") { _, stream ->
+        stream.substringAfter('@')
+    }
+
+    val tradeRouter = JsonMessageRouter(objectMapper, messageTypeResolver, mapOf("trade" to tickDataDecoder))
+
+    val depthRouter = JsonMessageRouter(objectMapper, messageTypeResolver, mapOf("depth20" to orderBookDecoder))
+
+    val scaledTradeRouter = JsonMessageRouter(
+        objectMapper,
+        messageTypeResolver,
+        mapOf("trade" to BinanceJsonObjectMapper().scaledTickDataDecoder())
+    )
+
+    val diffDepthRouter = JsonMessageRouter(
+        objectMapper,
+        messageTypeResolver,
+        mapOf(DIFF_DEPTH_CHANNEL to BinanceJsonObjectMapper().depthUpdateDecoder())
+    )
+
+    private val binanceRawMarketOperator = BinanceRawHttpClient().publicApi().market()
+
+    private val requestId = AtomicLong()
+
+    /**
+     * every stream is subscribed with the SUBSCRIBE method and unsubscribed with the UNSUBSCRIBE method
+     * on a single combined stream connection
+     */
+    private val connection: SharedWebsocketConnection = ReactiveCryptoPlugins.websocketConnectionManager
+        .connection(ExchangeVendor.BINANCE, "$baseUri/stream", leg) {
+            SharedWebsocketConnection(
+                ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BINANCE).wiretap(log.isDebugEnabled),
+                "$baseUri/stream",
+                object : WebsocketSubscriptionProtocol {
+                    override fun subscribeMessages(topics: List<String>): List<String> {
+                        val params = topics.joinToString(",", "[", "]") { "\"$it\"" }
+                        return listOf("{\"method\": \"SUBSCRIBE\", \"params\": $params, \"id\": ${requestId.incrementAndGet()}}")
+                    }
+
+                    override fun unsubscribeMessages(topics: List<String>): List<String> {
+                        val params = topics.joinToString(",", "[", "]") { "\"$it\"" }
+                        return listOf("{\"method\": \"UNSUBSCRIBE\", \"params\": $params, \"id\": ${requestId.incrementAndGet()}}")
+                    }
+                },
+                maxTopicsPerSocket = ReactiveCryptoPlugins.websocketConnectionManager.maxTopicsPerSocket(ExchangeVendor.BINANCE)
+            )
+        }
+
     override fun createJsonObjectMapper(): ExchangeJsonObjectMapper {
         return BinanceJsonObjectMapper()
     }
 
     override fun createTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<TickData> {
-        val streams = subscribeTargets.stream()
-            .map { "${it.baseCurrency}${it.quoteCurrency}" }
-            .map { it.toLowerCase() + "@trade" }
-            .collect(Collectors.joining("/"))
-
-        return HttpClient.create()
-            .wiretap(log.isDebugEnabled)
-            .websocket()
-            .uri("$baseUri/stream?streams=$streams")
-            .handle { inbound, _ -> inbound.receive().asString() }
-            .map { objectMapper.readValue<BinanceResponseWrapper<BinanceTickData>>(it) }
-            .map { it.data }
-            .map { binanceTradeRawData ->
-                TickData(
-                    binanceTradeRawData.tradeId.toString() + binanceTradeRawData.currencyPair + binanceTradeRawData.eventTime.toEpochMilli(),
-                    binanceTradeRawData.eventTime,
-                    binanceTradeRawData.price,
-                    binanceTradeRawData.quantity,
-                    binanceTradeRawData.currencyPair,
-                    ExchangeVendor.BINANCE,
-                    if (binanceTradeRawData.isMarketMaker) SELL else BUY
-                )
-            }
+        return createTradeSubscription(subscribeTargets).flux
+    }
+
+    /**
+     * trades whose price and quantity are decoded as [ScaledDecimal] without an intermediate [java.math.BigDecimal].
+     * shares the socket and the `@trade` topics with [createTradeWebsocket].
+     */
+    fun createScaledTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<ScaledTickData> {
+        return SharedWebsocketSubscription<ScaledTickData>(
+            connection,
+            "trade/scaled",
+            { "${it.baseCurrency}${it.quoteCurrency}".toLowerCase() + "@trade" },
+            { it.currencyPair },
+            { { frame -> scaledTradeRouter.route(frame) } },
+            subscribeTargets
+        ).flux
     }
 
     override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
-        val streams = subscribeTargets.stream()
-            .map { "${it.baseCurrency}${it.quoteCurrency}" }
-            .map { it.toLowerCase() + "@depth20" }
-            .collect(Collectors.joining("/"))
-
-        return HttpClient.create()
-            .wiretap(log.isDebugEnabled)
-            .websocket()
-            .uri("$baseUri/stream?streams=$streams")
-            .handle { inbound, _ -> inbound.receive().asString() }
-            .map { objectMapper.readValue<BinanceResponseWrapper<BinanceOrderBook>>(it) }
-            .map {
-                OrderBook(
-                    "${it.data.lastUpdateId}",
-                    it.getCurrencyPair(),
-                    ZonedDateTime.now(),
-                    ExchangeVendor.BINANCE,
-                    it.data.getBids(),
-                    it.data.getAsks()
-                )
-            }
+        return createDepthSubscription(subscribeTargets).flux
+    }
+
+    override fun createTradeSubscription(subscribeTargets: List<CurrencyPair>): WebsocketSubscription<TickData> {
+        return SharedWebsocketSubscription<TickData>(
+            connection,
+            "trade",
+            { "${it.baseCurrency}${it.quoteCurrency}".toLowerCase() + "@trade" },
+            { it.currencyPair },
+            { { frame -> tradeRouter.route(frame) } },
+            subscribeTargets
+        )
+    }
+
+    override fun createDepthSubscription(subscribeTargets: List<CurrencyPair>): WebsocketSubscription<OrderBook> {
+        return SharedWebsocketSubscription<OrderBook>(
+            connection,
+            "depth20",
+            { "${it.baseCurrency}${it.quoteCurrency}".toLowerCase() + "@depth20" },
+            { it.currencyPair },
+            { { frame -> depthRouter.route(frame) } },
+            subscribeTargets
+        )
+    }
+
+    /**
+     * full depth books kept from the `@depth@100ms` diff stream and bootstrapped from the `/api/v3/depth` snapshot.
+     * the whole book of a pair is emitted once synchronized, then only the levels changed by each diff event,
+     * apply them to an [com.njkim.reactivecrypto.core.orderbook.IncrementalOrderBook] to keep the book.
+     * a pair is resynchronized from a new snapshot when a gap is detected in the update ids.
+     * the snapshot requests of every client share [snapshotWeightLimiter].
+     *
+     * @param snapshotLimit depth of the REST snapshot, levels deeper than the snapshot appear only once updated
+     */
+    fun createFullDepthUpdates(subscribeTargets: List<CurrencyPair>, snapshotLimit: Int = 1000): Flux<OrderBookUpdate> {
+        return createFullDepthSubscription(subscribeTargets, snapshotLimit).flux
+    }
+
+    fun createFullDepthSubscription(
+        subscribeTargets: List<CurrencyPair>,
+        snapshotLimit: Int = 1000
+    ): WebsocketSubscription<OrderBookUpdate> {
+        val depthUpdates = SharedWebsocketSubscription<BinanceDepthUpdate>(
+            connection,
+            DIFF_DEPTH_CHANNEL,
+            { "${it.baseCurrency}${it.quoteCurrency}".toLowerCase() + "@" + DIFF_DEPTH_CHANNEL },
+            { it.currencyPair },
+            { { frame -> diffDepthRouter.route(frame)?.let { listOf(it) } } },
+            subscribeTargets
+        )
+        val snapshotWeight = BinanceRequestWeightLimiter.depthWeight(snapshotLimit)
+        return BinanceFullDepthSubscription(depthUpdates) {
+            BinanceDepthSynchronizer(
+                { snapshotWeightLimiter.limit(snapshotWeight) { binanceRawMarketOperator.depth(it, snapshotLimit) } },
+                { connection.metrics.stream(DIFF_DEPTH_CHANNEL).recordGap() }
+            )
+        }
+    }
+
+    /**
+     * @return number of gaps detected in the diff depth stream of the connection,
+     * which is shared by the clients of the same endpoint and leg
+     */
+    fun depthGapCount(): Long {
+        return connection.metrics.snapshot().streams[DIFF_DEPTH_CHANNEL]?.gaps ?: 0
+    }
+
+    companion object {
+        private const val DIFF_DEPTH_CHANNEL = "depth@100ms"
+
+        /**
+         * limits the `/api/v3/depth` snapshots of the full depth books, the weight left is for the other requests
+         */
+        val snapshotWeightLimiter = BinanceRequestWeightLimiter()
     }
 }
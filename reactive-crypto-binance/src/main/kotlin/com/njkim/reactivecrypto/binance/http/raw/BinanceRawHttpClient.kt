@@ -17,13 +17,9 @@
 package com.njkim.reactivecrypto.binance.http.raw
 
 import com.njkim.reactivecrypto.binance.BinanceJsonObjectMapper
-import org.springframework.http.client.reactive.ReactorClientHttpConnector
-import org.springframework.http.codec.json.Jackson2JsonDecoder
-import org.springframework.http.codec.json.Jackson2JsonEncoder
-import org.springframework.util.MimeTypeUtils
-import org.springframework.web.reactive.function.client.ExchangeStrategies
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.http.exchangeWebClientBuilder
 import org.springframework.web.reactive.function.client.WebClient
-import reactor.netty.http.client.HttpClient
 
 /**
  * @see [official document](https://github.com/binance-exchange/binance-official-api-docs/blob/master/rest-api.md)
@@ -31,37 +27,15 @@ import reactor.netty.http.client.HttpClient
 class BinanceRawHttpClient(
     private val baseUrl: String = "https://api.binance.com"
 ) {
+    // connections are pooled by the shared http client, each account adds its own filter to a clone
+    private val webClientBuilder: WebClient.Builder =
+        exchangeWebClientBuilder(ExchangeVendor.BINANCE, BinanceJsonObjectMapper().objectMapper(), baseUrl)
+
     fun private(apiKey: String, secretKey: String): BinanceRawPrivateHttpClient {
-        return BinanceRawPrivateHttpClient(apiKey, secretKey, createDefaultWebClientBuilder())
+        return BinanceRawPrivateHttpClient(apiKey, secretKey, webClientBuilder.clone())
     }
 
-    private fun createDefaultWebClientBuilder(): WebClient.Builder {
-        val strategies = ExchangeStrategies.builder()
-            .codecs { clientCodecConfigurer ->
-                clientCodecConfigurer.defaultCodecs()
-                    .jackson2JsonEncoder(
-                        Jackson2JsonEncoder(
-                            BinanceJsonObjectMapper().objectMapper(),
-                            MimeTypeUtils.APPLICATION_JSON
-                        )
-                    )
-                clientCodecConfigurer.defaultCodecs()
-                    .jackson2JsonDecoder(
-                        Jackson2JsonDecoder(
-                            BinanceJsonObjectMapper().objectMapper(),
-                            MimeTypeUtils.APPLICATION_JSON
-                        )
-                    )
-            }
-            .build()
-
-        return WebClient.builder()
-            .clientConnector(
-                ReactorClientHttpConnector(
-                    HttpClient.create().wiretap(true)
-                )
-            )
-            .exchangeStrategies(strategies)
-            .baseUrl(baseUrl)
+    fun publicApi(): BinanceRawPublicHttpClient {
+        return BinanceRawPublicHttpClient(webClientBuilder.clone())
     }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.binance.http.raw
+
+import com.fasterxml.jackson.module.kotlin.convertValue
+import com.njkim.reactivecrypto.binance.BinanceJsonObjectMapper
+import com.njkim.reactivecrypto.binance.model.BinanceOrderBook
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.util.toMultiValueMap
+import org.springframework.web.reactive.function.client.WebClient
+import org.springframework.web.reactive.function.client.bodyToMono
+import reactor.core.publisher.Mono
+
+class BinanceRawMarketOperator internal constructor(private val webClient: WebClient) {
+    /**
+     * Order book snapshot.
+     *
+     * Weight: 1 for limit up to 100, 5 up to 500, 10 for 1000, 50 for 5000
+     *
+     * @param limit Valid limits:[5, 10, 20, 50, 100, 500, 1000, 5000]
+     */
+    fun depth(symbol: CurrencyPair, limit: Int = 1000): Mono<BinanceOrderBook> {
+        val request = mapOf(
+            "symbol" to symbol,
+            "limit" to limit
+        )
+
+        val convertedRequest = BinanceJsonObjectMapper.instance.convertValue<Map<String, Any>>(request)
+            .toMultiValueMap()
+
+        return webClient.get()
+            .uri {
+                it.path("/api/v3/depth")
+                    .queryParams(convertedRequest)
+                    .build()
+            }
+            .retrieve()
+            .bodyToMono()
+    }
+}
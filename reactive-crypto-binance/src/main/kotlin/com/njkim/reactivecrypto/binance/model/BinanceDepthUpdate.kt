@@ -0,0 +1,37 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.binance.model
+
+import com.njkim.reactivecrypto.core.common.model.ReceiveTimestamped
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.metrics.ReceiveClock
+import java.time.ZonedDateTime
+
+/**
+ * diff depth event, the levels changed between [firstUpdateId] and [finalUpdateId].
+ * a level whose quantity is zero is removed.
+ */
+data class BinanceDepthUpdate(
+    val currencyPair: CurrencyPair,
+    override val eventTime: ZonedDateTime,
+    val firstUpdateId: Long,
+    val finalUpdateId: Long,
+    val bids: List<OrderBookUnit>,
+    val asks: List<OrderBookUnit>,
+    override val receivedNanos: Long = ReceiveClock.decodingNanos()
+) : ReceiveTimestamped
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.binance
+
+import com.njkim.reactivecrypto.binance.model.BinanceDepthUpdate
+import com.njkim.reactivecrypto.binance.model.BinanceOrderBook
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import reactor.core.publisher.Mono
+import java.time.ZonedDateTime
+import java.util.concurrent.atomic.AtomicInteger
+
+class BinanceDepthSynchronizerTest {
+    private val currencyPair = CurrencyPair.parse("BTC", "USDT")
+
+    @Test
+    fun `apply buffered events after the snapshot`() {
+        // given
+        val snapshotRequests = AtomicInteger()
+        val depthSynchronizer = BinanceDepthSynchronizer({
+            snapshotRequests.incrementAndGet()
+            Mono.just(BinanceOrderBook(102, listOf(listOf("100", "1")), listOf(listOf("101", "1"))))
+        })
+
+        // when
+        val beforeSnapshot = depthSynchronizer.onUpdate(depthUpdate(100, 102, bid("99", "1")))
+        val synchronized = depthSynchronizer.onUpdate(depthUpdate(103, 104, bid("100", "0")))
+        val next = depthSynchronizer.onUpdate(depthUpdate(105, 105, bid("98", "3")))
+
+        // then
+        assertThat(beforeSnapshot).isNull()
+        assertThat(snapshotRequests.get()).isEqualTo(1)
+        // the first event is contained in the snapshot and dropped
+        assertThat(synchronized!!.snapshot).isTrue()
+        assertThat(synchronized.orderBook.bids.map { it.price.toPlainString() }).isEmpty()
+        assertThat(synchronized.orderBook.asks.map { it.price.toPlainString() }).containsExactly("101")
+        assertThat(synchronized.orderBook.uniqueId).isEqualTo("104")
+        // only the changed level after the snapshot
+        assertThat(next!!.snapshot).isFalse()
+        assertThat(next.orderBook.bids.map { it.price.toPlainString() }).containsExactly("98")
+        assertThat(next.orderBook.asks).isEmpty()
+    }
+
+    @Test
+    fun `resynchronize from a new snapshot after a gap`() {
+        // given
+        val gaps = AtomicInteger()
+        val snapshots = listOf(
+            BinanceOrderBook(10, listOf(listOf("100", "1")), emptyList()),
+            BinanceOrderBook(20, listOf(listOf("90", "1")), emptyList())
+        ).iterator()
+        val depthSynchronizer = BinanceDepthSynchronizer({ Mono.just(snapshots.next()) }, { gaps.incrementAndGet() })
+        depthSynchronizer.onUpdate(depthUpdate(10, 11))
+
+        // when
+        val synchronized = depthSynchronizer.onUpdate(depthUpdate(12, 12))
+        val gap = depthSynchronizer.onUpdate(depthUpdate(15, 16))
+        val resynchronized = depthSynchronizer.onUpdate(depthUpdate(17, 21, bid("91", "2")))
+
+        // then
+        assertThat(synchronized).isNotNull
+        assertThat(gap).isNull()
+        assertThat(gaps.get()).isEqualTo(1)
+        assertThat(resynchronized!!.snapshot).isTrue()
+        assertThat(resynchronized.orderBook.bids.map { it.price.toPlainString() }).containsExactly("91", "90")
+    }
+
+    @Test
+    fun `request a new snapshot when too many events are pending`() {
+        // given
+        val gaps = AtomicInteger()
+        val snapshots = listOf(
+            Mono.never(),
+            Mono.just(BinanceOrderBook(4, listOf(listOf("100", "1")), emptyList()))
+        ).iterator()
+        val depthSynchronizer = BinanceDepthSynchronizer({ snapshots.next() }, { gaps.incrementAndGet() }, maxPendingUpdates = 3)
+        (1L..3L).forEach { depthSynchronizer.onUpdate(depthUpdate(it, it)) }
+
+        // when
+        val overflow = depthSynchronizer.onUpdate(depthUpdate(4, 4))
+        val synchronized = depthSynchronizer.onUpdate(depthUpdate(5, 5, bid("99", "1")))
+
+        // then
+        assertThat(overflow).isNull()
+        assertThat(gaps.get()).isEqualTo(1)
+        assertThat(snapshots.hasNext()).isFalse()
+        assertThat(synchronized!!.orderBook.uniqueId).isEqualTo("5")
+        assertThat(synchronized.orderBook.bids.map { it.price.toPlainString() }).containsExactly("100", "99")
+    }
+
+    @Test
+    fun `synchronize a removed pair again from a new snapshot`() {
+        // given
+        val gaps = AtomicInteger()
+        val snapshots = listOf(
+            BinanceOrderBook(10, listOf(listOf("100", "1")), emptyList()),
+            BinanceOrderBook(30, listOf(listOf("90", "1")), emptyList())
+        ).iterator()
+        val depthSynchronizer = BinanceDepthSynchronizer({ Mono.just(snapshots.next()) }, { gaps.incrementAndGet() })
+        depthSynchronizer.onUpdate(depthUpdate(10, 11))
+        depthSynchronizer.onUpdate(depthUpdate(12, 12))
+
+        // when
+        depthSynchronizer.remove(listOf(currencyPair))
+        val beforeSnapshot = depthSynchronizer.onUpdate(depthUpdate(30, 31))
+        val synchronized = depthSynchronizer.onUpdate(depthUpdate(32, 32, bid("91", "2")))
+
+        // then
+        assertThat(beforeSnapshot).isNull()
+        assertThat(gaps.get()).isEqualTo(0)
+        assertThat(synchronized!!.snapshot).isTrue()
+        assertThat(synchronized.orderBook.bids.map { it.price.toPlainString() }).containsExactly("91", "90")
+    }
+
+    private fun depthUpdate(firstUpdateId: Long, finalUpdateId: Long, vararg bids: OrderBookUnit): BinanceDepthUpdate {
+        return BinanceDepthUpdate(currencyPair, ZonedDateTime.now(), firstUpdateId, finalUpdateId, bids.toList(), emptyList())
+    }
+
+    private fun bid(price: String, quantity: String) =
+        OrderBookUnit(price.toBigDecimal(), quantity.toBigDecimal(), TradeSideType.BUY)
+}
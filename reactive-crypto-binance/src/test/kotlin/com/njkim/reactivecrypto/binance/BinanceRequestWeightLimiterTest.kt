@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.binance
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+class BinanceRequestWeightLimiterTest {
+    private val nanosPerWeight = TimeUnit.SECONDS.toNanos(1)
+
+    @Test
+    fun `delay requests over the burst weight`() {
+        // given
+        val limiter = BinanceRequestWeightLimiter(weightPerMinute = 60, burstWeight = 20)
+
+        // when
+        val burst = (1..2).map { limiter.reserve(10, 0) }
+        val delayed = limiter.reserve(10, 0)
+        val next = limiter.reserve(10, 0)
+
+        // then
+        assertThat(burst).allMatch { it <= 0 }
+        assertThat(delayed).isEqualTo(10 * nanosPerWeight)
+        assertThat(next).isEqualTo(20 * nanosPerWeight)
+    }
+
+    @Test
+    fun `refill the weight over time`() {
+        // given
+        val limiter = BinanceRequestWeightLimiter(weightPerMinute = 60, burstWeight = 10)
+        limiter.reserve(10, 0)
+
+        // when
+        val refilled = limiter.reserve(10, 10 * nanosPerWeight)
+
+        // then
+        assertThat(refilled).isLessThanOrEqualTo(0)
+    }
+}
@@ -30,11 +30,13 @@ import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
 import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
 import com.njkim.reactivecrypto.core.common.util.toEpochMilli
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
 import com.njkim.reactivecrypto.core.websocket.AbstractExchangeWebsocketClient
+import com.njkim.reactivecrypto.core.websocket.decode
+import com.njkim.reactivecrypto.core.websocket.metered
 import mu.KotlinLogging
 import reactor.core.publisher.Flux
 import reactor.kotlin.core.publisher.toFlux
-import reactor.netty.http.client.HttpClient
 import java.time.ZonedDateTime
 
 /**
@@ -63,8 +65,9 @@ class BithumbWebsocketClient : AbstractExchangeWebsocketClient() {
             .map { "{\"currency\":\"$it\",\"tickDuration\":\"24H\",\"service\":\"transaction\"}" }
             .toFlux()
 
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.BITHUMB, baseUri, "transaction")
         return subscribeRequests.flatMap { subscribeRequest ->
-            HttpClient.create()
+            ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BITHUMB)
                 .headers { it.add("Origin", "https://www.bithumb.com") }
                 .wiretap(log.isDebugEnabled)
                 .websocket()
@@ -72,9 +75,9 @@ class BithumbWebsocketClient : AbstractExchangeWebsocketClient() {
                 .handle { inbound, outbound ->
                     outbound.sendString(Flux.just(subscribeRequest))
                         .then()
-                        .thenMany(inbound.receive().asString())
+                        .thenMany(inbound.receive().metered(meter).asString())
                 }
-                .map { objectMapper.readValue<BithumbResponseWrapper<List<BithumbTickData>>>(it) }
+                .decode(meter) { objectMapper.readValue<BithumbResponseWrapper<List<BithumbTickData>>>(it) }
                 .flatMapIterable {
                     it.data.map { bithumbTickData ->
                         TickData(
@@ -103,8 +106,9 @@ class BithumbWebsocketClient : AbstractExchangeWebsocketClient() {
             .map { "{\"currency\":\"$it\",\"tickDuration\":\"24H\",\"service\":\"orderbook\"}" }
             .toFlux()
 
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.BITHUMB, baseUri, "orderbook")
         return subscribeRequests.flatMap { subscribeRequest ->
-            HttpClient.create()
+            ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BITHUMB)
                 .headers { it.add("Origin", "https://www.bithumb.com") }
                 .wiretap(log.isDebugEnabled)
                 .websocket()
@@ -112,9 +116,9 @@ class BithumbWebsocketClient : AbstractExchangeWebsocketClient() {
                 .handle { inbound, outbound ->
                     outbound.sendString(Flux.just(subscribeRequest))
                         .then()
-                        .thenMany(inbound.receive().asString())
+                        .thenMany(inbound.receive().metered(meter).asString())
                 }
-                .map { objectMapper.readValue<BithumbResponseWrapper<BithumbOrderBook>>(it) }
+                .decode(meter) { objectMapper.readValue<BithumbResponseWrapper<BithumbOrderBook>>(it) }
                 .map {
                     OrderBook(
                         "${it.header.currency}${ZonedDateTime.now().toEpochMilli()}",
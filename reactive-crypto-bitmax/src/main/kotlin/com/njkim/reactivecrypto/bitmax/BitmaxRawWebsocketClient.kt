@@ -20,10 +20,13 @@ import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.module.kotlin.readValue
 import com.njkim.reactivecrypto.bitmax.model.BitmaxOrderBookWrapper
 import com.njkim.reactivecrypto.bitmax.model.BitmaxTickDataWrapper
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
+import com.njkim.reactivecrypto.core.websocket.decode
+import com.njkim.reactivecrypto.core.websocket.metered
 import mu.KotlinLogging
 import reactor.core.publisher.Flux
-import reactor.netty.http.client.HttpClient
 
 class BitmaxRawWebsocketClient {
     private val log = KotlinLogging.logger {}
@@ -43,16 +46,17 @@ class BitmaxRawWebsocketClient {
         val subscribeMessage: String =
             "{\"messageType\":\"subscribe\",\"marketDepthLevel\":0,\"recentTradeMaxCount\": $recentTradeMaxCount,\"skipSummary\":true,\"skipBars\":true}"
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.BITMAX, "$baseUri/api/public", "trade")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BITMAX)
             .websocket()
             .uri(targetUri)
             .handle { inbound, outbound ->
                 outbound.sendString(Flux.just(subscribeMessage))
                     .then()
-                    .thenMany(inbound.receive().asString())
+                    .thenMany(inbound.receive().metered(meter).asString())
             }
             .filter { it.contains("\"m\":\"marketTrades\"") }
-            .map { objectMapper.readValue<BitmaxTickDataWrapper>(it) }
+            .decode(meter) { objectMapper.readValue<BitmaxTickDataWrapper>(it) }
     }
 
     /**
@@ -64,15 +68,16 @@ class BitmaxRawWebsocketClient {
         val subscribeMessage: String =
             "{\"messageType\":\"subscribe\",\"marketDepthLevel\":$marketDepthLevel,\"recentTradeMaxCount\": 0,\"skipSummary\":true,\"skipBars\":true}"
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.BITMAX, "$baseUri/api/public", "depth")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BITMAX)
             .websocket()
             .uri(targetUri)
             .handle { inbound, outbound ->
                 outbound.sendString(Flux.just(subscribeMessage))
                     .then()
-                    .thenMany(inbound.receive().asString())
+                    .thenMany(inbound.receive().metered(meter).asString())
             }
             .filter { it.contains("\"m\":\"depth\"") }
-            .map { objectMapper.readValue<BitmaxOrderBookWrapper>(it) }
+            .decode(meter) { objectMapper.readValue<BitmaxOrderBookWrapper>(it) }
     }
 }
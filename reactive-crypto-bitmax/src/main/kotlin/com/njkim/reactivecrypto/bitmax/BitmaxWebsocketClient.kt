@@ -22,14 +22,15 @@ import com.njkim.reactivecrypto.core.common.model.order.OrderBook
 import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
 import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import com.njkim.reactivecrypto.core.orderbook.IncrementalOrderBook
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
 import com.njkim.reactivecrypto.core.websocket.ExchangePublicWebsocketClient
+import com.njkim.reactivecrypto.core.websocket.ReconnectPolicy
 import mu.KotlinLogging
 import reactor.core.publisher.Flux
-import reactor.core.scheduler.Schedulers
-import java.math.BigDecimal
 import java.time.ZonedDateTime
 import java.util.concurrent.ConcurrentHashMap
-import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.atomic.AtomicLong
 
@@ -44,7 +45,8 @@ class BitmaxWebsocketClient : ExchangePublicWebsocketClient {
     override fun createTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<TickData> {
         val targetWebsockets = subscribeTargets.map {
             bitmaxRawWebsocketClient.createTradeDataFlux(it, 1)
-                .publishOn(Schedulers.fromExecutor(Executors.newSingleThreadExecutor()))
+                .retryWhen(ReconnectPolicy.DEFAULT.retry())
+                .publishOn(ReactiveCryptoPlugins.partitionedScheduler.scheduler(ExchangeVendor.BITMAX, it))
         }
 
         return Flux.merge(targetWebsockets)
@@ -65,17 +67,23 @@ class BitmaxWebsocketClient : ExchangePublicWebsocketClient {
     }
 
     override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
-        val currentOrderBookMap: MutableMap<CurrencyPair, OrderBook> = ConcurrentHashMap()
-
-        val targetWebsockets = subscribeTargets.map {
-            bitmaxRawWebsocketClient.createOrderBookFlux(it, 20)
-                .publishOn(Schedulers.fromExecutor(Executors.newSingleThreadExecutor()))
+        val currentOrderBookMap: MutableMap<CurrencyPair, IncrementalOrderBook> = ConcurrentHashMap()
+
+        val targetWebsockets = subscribeTargets.map { currencyPair ->
+            Flux.defer {
+                // the first depth message of each socket holds every level up to the requested depth
+                val snapshotReceived = AtomicBoolean()
+                bitmaxRawWebsocketClient.createOrderBookFlux(currencyPair, 20)
+                    .map { !snapshotReceived.getAndSet(true) to it }
+            }
+                .retryWhen(ReconnectPolicy.DEFAULT.retry())
+                .publishOn(ReactiveCryptoPlugins.partitionedScheduler.scheduler(ExchangeVendor.BITMAX, currencyPair))
         }
 
         return Flux.merge(targetWebsockets)
-            .map { bitmaxOrderBookDataWrapper ->
+            .map { (snapshot, bitmaxOrderBookDataWrapper) ->
                 val now = ZonedDateTime.now()
-                OrderBook(
+                snapshot to OrderBook(
                     "${bitmaxOrderBookDataWrapper.seqnum}",
                     bitmaxOrderBookDataWrapper.s,
                     now,
@@ -98,57 +106,15 @@ class BitmaxWebsocketClient : ExchangePublicWebsocketClient {
                     }
                 )
             }
-            .map { orderBook ->
-                if (!currentOrderBookMap.containsKey(orderBook.currencyPair)) {
-                    currentOrderBookMap[orderBook.currencyPair] = orderBook
-                    return@map orderBook
-                }
-
-                val prevOrderBook = currentOrderBookMap[orderBook.currencyPair]!!
-
-                val askMap: MutableMap<BigDecimal, OrderBookUnit> = prevOrderBook.asks
-                    .map { Pair(it.price.stripTrailingZeros(), it) }
-                    .toMap()
-                    .toMutableMap()
-
-                orderBook.asks.forEach { updatedAsk ->
-                    askMap.compute(updatedAsk.price.stripTrailingZeros()) { _, oldValue ->
-                        when {
-                            updatedAsk.quantity <= BigDecimal.ZERO -> null
-                            oldValue == null -> updatedAsk
-                            else -> oldValue.copy(
-                                quantity = updatedAsk.quantity,
-                                orderNumbers = updatedAsk.orderNumbers
-                            )
-                        }
-                    }
+            .map { (snapshot, orderBook) ->
+                val incrementalOrderBook = currentOrderBookMap
+                    .computeIfAbsent(orderBook.currencyPair) { IncrementalOrderBook() }
+                if (snapshot) {
+                    incrementalOrderBook.snapshot(orderBook)
+                } else {
+                    incrementalOrderBook.update(orderBook)
+                    incrementalOrderBook.toOrderBook()!!
                 }
-
-                val bidMap: MutableMap<BigDecimal, OrderBookUnit> = prevOrderBook.bids
-                    .map { Pair(it.price.stripTrailingZeros(), it) }
-                    .toMap()
-                    .toMutableMap()
-
-                orderBook.bids.forEach { updatedBid ->
-                    bidMap.compute(updatedBid.price.stripTrailingZeros()) { _, oldValue ->
-                        when {
-                            updatedBid.quantity <= BigDecimal.ZERO -> null
-                            oldValue == null -> updatedBid
-                            else -> oldValue.copy(
-                                quantity = updatedBid.quantity,
-                                orderNumbers = updatedBid.orderNumbers
-                            )
-                        }
-                    }
-                }
-
-                val currentOrderBook = prevOrderBook.copy(
-                    eventTime = orderBook.eventTime,
-                    asks = askMap.values.sortedBy { orderBookUnit -> orderBookUnit.price },
-                    bids = bidMap.values.sortedByDescending { orderBookUnit -> orderBookUnit.price }
-                )
-                currentOrderBookMap[currentOrderBook.currencyPair] = currentOrderBook
-                currentOrderBook
             }
             .doFinally { currentOrderBookMap.clear() } // cleanup memory limit orderBook when disconnected
     }
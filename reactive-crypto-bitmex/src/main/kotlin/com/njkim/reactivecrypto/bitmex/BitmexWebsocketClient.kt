@@ -17,7 +17,6 @@
 package com.njkim.reactivecrypto.bitmex
 
 import com.fasterxml.jackson.databind.ObjectMapper
-import com.fasterxml.jackson.module.kotlin.readValue
 import com.njkim.reactivecrypto.bitmex.model.BitmexMessageFrame
 import com.njkim.reactivecrypto.bitmex.model.BitmexOrderBook
 import com.njkim.reactivecrypto.bitmex.model.BitmexTickData
@@ -27,87 +26,120 @@ import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
 import com.njkim.reactivecrypto.core.common.model.order.OrderBook
 import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.core.common.util.toEpochMilli
+import com.njkim.reactivecrypto.core.json.JsonMessageRouter
+import com.njkim.reactivecrypto.core.json.JsonMessageTypeResolver
+import com.njkim.reactivecrypto.core.json.messageDecoder
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
 import com.njkim.reactivecrypto.core.websocket.AbstractExchangeWebsocketClient
+import com.njkim.reactivecrypto.core.websocket.SharedWebsocketConnection
+import com.njkim.reactivecrypto.core.websocket.SharedWebsocketSubscription
+import com.njkim.reactivecrypto.core.websocket.WebsocketSubscription
+import com.njkim.reactivecrypto.core.websocket.WebsocketSubscriptionProtocol
 import mu.KotlinLogging
 import reactor.core.publisher.Flux
-import reactor.netty.http.client.HttpClient
 import java.time.Duration
 
-class BitmexWebsocketClient : AbstractExchangeWebsocketClient() {
+/**
+ * @param leg clients of different legs stream over separate sockets of the same endpoint,
+ * see [com.njkim.reactivecrypto.core.stream.arbitrateTickData]
+ */
+class BitmexWebsocketClient(
+    private val leg: Int = 0
+) : AbstractExchangeWebsocketClient() {
     private val log = KotlinLogging.logger {}
 
     private val baseUri = "wss://www.bitmex.com/realtime"
 
     private val objectMapper: ObjectMapper = createJsonObjectMapper().objectMapper()
 
+    private val messageTypeResolver = JsonMessageTypeResolver.field("table")
+
+    val tradeRouter = JsonMessageRouter(
+        objectMapper,
+        messageTypeResolver,
+        mapOf("trade" to objectMapper.messageDecoder<BitmexMessageFrame<List<BitmexTickData>>>())
+    )
+
+    val depthRouter = JsonMessageRouter(
+        objectMapper,
+        messageTypeResolver,
+        mapOf("orderBook10" to objectMapper.messageDecoder<BitmexMessageFrame<List<BitmexOrderBook>>>())
+    )
+
+    private val connection: SharedWebsocketConnection = ReactiveCryptoPlugins.websocketConnectionManager
+        .connection(ExchangeVendor.BITMEX, baseUri, leg) {
+            SharedWebsocketConnection(
+                ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BITMEX)
+                    .wiretap(log.isDebugEnabled)
+                    .doOnConnected { connection ->
+                        connection.addHandler(
+                            "heartBeat",
+                            BitmexHeartbetsHandler(Duration.ofMillis(5000))
+                        )
+                    },
+                baseUri,
+                object : WebsocketSubscriptionProtocol {
+                    override fun subscribeMessages(topics: List<String>): List<String> {
+                        val args = topics.joinToString(",", "[", "]") { "\"$it\"" }
+                        return listOf("{\"op\": \"subscribe\", \"args\": $args}")
+                    }
+
+                    override fun unsubscribeMessages(topics: List<String>): List<String> {
+                        val args = topics.joinToString(",", "[", "]") { "\"$it\"" }
+                        return listOf("{\"op\": \"unsubscribe\", \"args\": $args}")
+                    }
+                },
+                maxTopicsPerSocket = ReactiveCryptoPlugins.websocketConnectionManager.maxTopicsPerSocket(ExchangeVendor.BITMEX)
+            )
+        }
+
     override fun createJsonObjectMapper(): ExchangeJsonObjectMapper {
         return BitmexJsonObjectMapper()
     }
 
     override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
-        val args = subscribeTargets.map { "\"orderBook10:${it.baseCurrency}${it.quoteCurrency}\"" }
-            .joinToString(",", "[", "]")
-
-        val subscribeMessage = "{\"op\": \"subscribe\", \"args\": $args}"
-
-        return HttpClient.create()
-            .wiretap(log.isDebugEnabled)
-            .doOnConnected { connection ->
-                connection.addHandler(
-                    "heartBeat",
-                    BitmexHeartbetsHandler(Duration.ofMillis(5000))
-                )
-            }
-            .websocket()
-            .uri(baseUri)
-            .handle { inbound, outbound ->
-                outbound.sendString(Flux.just(subscribeMessage))
-                    .then()
-                    .thenMany(inbound.receive().asString())
-            }
-            .filter { it.contains("\"table\":\"orderBook10\"") }
-            .map { objectMapper.readValue<BitmexMessageFrame<List<BitmexOrderBook>>>(it) }
-            .flatMapIterable { messageFrame ->
-                messageFrame.data.map { bitmexOrderBook ->
-                    OrderBook(
-                        "${bitmexOrderBook.symbol}${bitmexOrderBook.timestamp.toEpochMilli()}",
-                        bitmexOrderBook.symbol,
-                        bitmexOrderBook.timestamp,
-                        ExchangeVendor.BITMEX,
-                        bitmexOrderBook.getBids(),
-                        bitmexOrderBook.getAsks()
-                    )
-                }
-            }
+        return createDepthSubscription(subscribeTargets).flux
             .doOnError { log.error(it.message, it) }
     }
 
     override fun createTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<TickData> {
-        val args = subscribeTargets.map { "\"trade:${it.baseCurrency}${it.quoteCurrency}\"" }
-            .joinToString(",", "[", "]")
+        return createTradeSubscription(subscribeTargets).flux
+            .doOnError { log.error(it.message, it) }
+    }
 
-        val subscribeMessage = "{\"op\": \"subscribe\", \"args\": $args}"
+    override fun createDepthSubscription(subscribeTargets: List<CurrencyPair>): WebsocketSubscription<OrderBook> {
+        return SharedWebsocketSubscription<OrderBook>(
+            connection,
+            "orderBook10",
+            { "orderBook10:${it.baseCurrency}${it.quoteCurrency}" },
+            { it.currencyPair },
+            {
+                { frame ->
+                    depthRouter.route(frame)?.data?.map { bitmexOrderBook ->
+                        OrderBook(
+                            "${bitmexOrderBook.symbol}${bitmexOrderBook.timestamp.toEpochMilli()}",
+                            bitmexOrderBook.symbol,
+                            bitmexOrderBook.timestamp,
+                            ExchangeVendor.BITMEX,
+                            bitmexOrderBook.getBids(),
+                            bitmexOrderBook.getAsks()
+                        )
+                    }
+                }
+            },
+            subscribeTargets
+        )
+    }
 
-        return HttpClient.create()
-            .wiretap(log.isDebugEnabled)
-            .doOnConnected { connection ->
-                connection.addHandler(
-                    "heartBeat",
-                    BitmexHeartbetsHandler(Duration.ofMillis(5000))
-                )
-            }
-            .websocket()
-            .uri(baseUri)
-            .handle { inbound, outbound ->
-                outbound.sendString(Flux.just(subscribeMessage))
-                    .then()
-                    .thenMany(inbound.receive().asString())
-            }
-            .filter { it.contains("\"table\":\"trade\"") }
-            .map { objectMapper.readValue<BitmexMessageFrame<List<BitmexTickData>>>(it) }
-            .flatMapIterable {
-                it.data
-                    .map { bitmexTickData ->
+    override fun createTradeSubscription(subscribeTargets: List<CurrencyPair>): WebsocketSubscription<TickData> {
+        return SharedWebsocketSubscription<TickData>(
+            connection,
+            "trade",
+            { "trade:${it.baseCurrency}${it.quoteCurrency}" },
+            { it.currencyPair },
+            {
+                { frame ->
+                    tradeRouter.route(frame)?.data?.map { bitmexTickData ->
                         TickData(
                             bitmexTickData.trdMatchID,
                             bitmexTickData.timestamp,
@@ -118,7 +150,9 @@ class BitmexWebsocketClient : AbstractExchangeWebsocketClient() {
                             bitmexTickData.side
                         )
                     }
-            }
-            .doOnError { log.error(it.message, it) }
+                }
+            },
+            subscribeTargets
+        )
     }
 }
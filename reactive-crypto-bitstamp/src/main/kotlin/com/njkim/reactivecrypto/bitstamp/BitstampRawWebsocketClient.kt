@@ -16,12 +16,17 @@
 
 package com.njkim.reactivecrypto.bitstamp
 
-import com.fasterxml.jackson.module.kotlin.readValue
 import com.njkim.reactivecrypto.bitstamp.model.*
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.json.JsonMessageRouter
+import com.njkim.reactivecrypto.core.json.JsonMessageTypeResolver
+import com.njkim.reactivecrypto.core.json.messageDecoder
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
+import com.njkim.reactivecrypto.core.websocket.decode
+import com.njkim.reactivecrypto.core.websocket.metered
 import reactor.core.publisher.Flux
 import reactor.kotlin.core.publisher.toFlux
-import reactor.netty.http.client.HttpClient
 
 /**
  * Bitstamp Websocket API v2
@@ -30,54 +35,74 @@ import reactor.netty.http.client.HttpClient
 class BitstampRawWebsocketClient {
     private val baseUrl: String = "wss://ws.bitstamp.net"
 
+    /**
+     * subscription replies are `bts:subscription_succeeded` events and get no route
+     */
+    private val messageTypeResolver = JsonMessageTypeResolver.field("event")
+
+    val tradeRouter = JsonMessageRouter(
+        BitstampJsonObjectMapper.instance,
+        messageTypeResolver,
+        mapOf("trade" to BitstampJsonObjectMapper.instance.messageDecoder<BitstampMessageFrame<BitstampTradeEvent>>())
+    )
+
+    val orderBookRouter = JsonMessageRouter(
+        BitstampJsonObjectMapper.instance,
+        messageTypeResolver,
+        mapOf("data" to BitstampJsonObjectMapper.instance.messageDecoder<BitstampMessageFrame<BitstampOrderBook>>())
+    )
+
+    val detailOrderBookRouter = JsonMessageRouter(
+        BitstampJsonObjectMapper.instance,
+        messageTypeResolver,
+        mapOf("data" to BitstampJsonObjectMapper.instance.messageDecoder<BitstampMessageFrame<BitstampDetailOrderBook>>())
+    )
+
     fun liveTicker(currencyPairs: List<CurrencyPair>): Flux<BitstampMessageFrame<BitstampTradeEvent>> {
         val subscribeMessages = currencyPairs.map { createSubscribeMessage(it, BitstampEventType.TRADE) }
             .toFlux()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.BITSTAMP, baseUrl, "trade")
 
-        return HttpClient.create()
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BITSTAMP)
             .websocket()
             .uri(baseUrl)
             .handle { inbound, outbound ->
                 outbound.sendString(subscribeMessages)
                     .then()
-                    .thenMany(inbound.receive().asString())
+                    .thenMany(inbound.receive().metered(meter).decode(meter) { tradeRouter.route(it) })
             }
-            .filter { !it.contains("bts:subscription_succeeded") }
-            .map { BitstampJsonObjectMapper.instance.readValue<BitstampMessageFrame<BitstampTradeEvent>>(it) }
     }
 
     fun liveOrderBook(currencyPairs: List<CurrencyPair>): Flux<BitstampMessageFrame<BitstampOrderBook>> {
         val subscribeMessages = currencyPairs
             .map { createSubscribeMessage(it, BitstampEventType.ORDER_BOOK) }
             .toFlux()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.BITSTAMP, baseUrl, "order_book")
 
-        return HttpClient.create()
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BITSTAMP)
             .websocket()
             .uri(baseUrl)
             .handle { inbound, outbound ->
                 outbound.sendString(subscribeMessages)
                     .then()
-                    .thenMany(inbound.aggregateFrames().receive().asString())
+                    .thenMany(inbound.aggregateFrames().receive().metered(meter).decode(meter) { orderBookRouter.route(it) })
             }
-            .filter { !it.contains("bts:subscription_succeeded") }
-            .map { BitstampJsonObjectMapper.instance.readValue<BitstampMessageFrame<BitstampOrderBook>>(it) }
     }
 
     fun liveDetailOrderBook(currencyPairs: List<CurrencyPair>): Flux<BitstampMessageFrame<BitstampDetailOrderBook>> {
         val subscribeMessages = currencyPairs
             .map { createSubscribeMessage(it, BitstampEventType.DETAIL_ORDER_BOOK) }
             .toFlux()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.BITSTAMP, baseUrl, "detail_order_book")
 
-        return HttpClient.create()
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BITSTAMP)
             .websocket()
             .uri(baseUrl)
             .handle { inbound, outbound ->
                 outbound.sendString(subscribeMessages)
                     .then()
-                    .thenMany(inbound.aggregateFrames().receive().asString())
+                    .thenMany(inbound.aggregateFrames().receive().metered(meter).decode(meter) { detailOrderBookRouter.route(it) })
             }
-            .filter { !it.contains("bts:subscription_succeeded") }
-            .map { BitstampJsonObjectMapper.instance.readValue<BitstampMessageFrame<BitstampDetailOrderBook>>(it) }
     }
 
     private fun createSubscribeMessage(currencyPair: CurrencyPair, event: BitstampEventType): String {
@@ -21,12 +21,15 @@ import com.fasterxml.jackson.module.kotlin.readValue
 import com.njkim.reactivecrypto.bitz.model.BitzMessageFrame
 import com.njkim.reactivecrypto.bitz.model.BitzOrderBook
 import com.njkim.reactivecrypto.bitz.model.BitzTradeData
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
 import com.njkim.reactivecrypto.core.netty.HeartBeatHandler
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
+import com.njkim.reactivecrypto.core.websocket.decode
+import com.njkim.reactivecrypto.core.websocket.metered
 import mu.KotlinLogging
 import reactor.core.publisher.Flux
 import reactor.kotlin.core.publisher.toFlux
-import reactor.netty.http.client.HttpClient
 import java.time.Instant
 import java.util.concurrent.TimeUnit
 
@@ -69,7 +72,8 @@ class BitzRawWebsocketClient(
             .toFlux()
             .map { "{\"action\":\"Topic.sub\",\"data\":{\"symbol\":\"$it\",\"type\":\"depth\",\"_CDID\":\"$cdid\"},\"msg_id\":${Instant.now().toEpochMilli()}}" }
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.BITZ, uri, "depth")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BITZ)
             .wiretap(log.isDebugEnabled)
             .doOnConnected { connection ->
                 connection.addHandler(
@@ -87,10 +91,10 @@ class BitzRawWebsocketClient(
             .handle { inbound, outbound ->
                 outbound.sendString(subscribeMessage)
                     .then()
-                    .thenMany(inbound.aggregateFrames().receive().asString())
+                    .thenMany(inbound.aggregateFrames().receive().metered(meter).asString())
             }
             .filter { it != "pong" }
-            .map { objectMapper.readValue<BitzMessageFrame<BitzOrderBook>>(it) }
+            .decode(meter) { objectMapper.readValue<BitzMessageFrame<BitzOrderBook>>(it) }
             .map { bitzMessageFrame ->
                 val bitzOrderBook = bitzMessageFrame.data
                 bitzMessageFrame.copy(
@@ -107,7 +111,8 @@ class BitzRawWebsocketClient(
             .toFlux()
             .map { "{\"action\":\"Topic.sub\",\"data\":{\"symbol\":\"$it\",\"type\":\"order\",\"_CDID\":\"$cdid\"},\"msg_id\":${Instant.now().toEpochMilli()}}" }
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.BITZ, uri, "order")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.BITZ)
             .wiretap(log.isDebugEnabled)
             .doOnConnected { connection ->
                 connection.addHandler(
@@ -125,9 +130,9 @@ class BitzRawWebsocketClient(
             .handle { inbound, outbound ->
                 outbound.sendString(subscribeMessage)
                     .then()
-                    .thenMany(inbound.aggregateFrames().receive().asString())
+                    .thenMany(inbound.aggregateFrames().receive().metered(meter).asString())
             }
             .filter { it != "pong" }
-            .map { objectMapper.readValue<BitzMessageFrame<List<BitzTradeData>>>(it) }
+            .decode(meter) { objectMapper.readValue<BitzMessageFrame<List<BitzTradeData>>>(it) }
     }
 }
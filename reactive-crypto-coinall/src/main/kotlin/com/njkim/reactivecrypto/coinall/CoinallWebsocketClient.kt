@@ -17,23 +17,9 @@
 package com.njkim.reactivecrypto.coinall
 
 import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
-import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
-import com.njkim.reactivecrypto.core.common.model.order.OrderBook
-import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.okex.OkexWebsocketClient
-import reactor.core.publisher.Flux
 
 /**
  * docs: https://www.coinall.com/docs/en/#ws_swap-README
  */
-class CoinallWebsocketClient : OkexWebsocketClient("wss://okexcomreal.bafang.com:8443/ws/v3?brokerId=68") {
-    override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
-        return super.createDepthSnapshot(subscribeTargets)
-            .map { it.copy(exchangeVendor = ExchangeVendor.COINALL) }
-    }
-
-    override fun createTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<TickData> {
-        return super.createTradeWebsocket(subscribeTargets)
-            .map { it.copy(exchangeVendor = ExchangeVendor.COINALL) }
-    }
-}
+class CoinallWebsocketClient : OkexWebsocketClient("wss://okexcomreal.bafang.com:8443/ws/v3?brokerId=68", ExchangeVendor.COINALL)
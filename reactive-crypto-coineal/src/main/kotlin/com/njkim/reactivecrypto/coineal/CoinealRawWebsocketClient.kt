@@ -21,23 +21,20 @@ import com.fasterxml.jackson.module.kotlin.readValue
 import com.njkim.reactivecrypto.coineal.model.CoinealMessageFrame
 import com.njkim.reactivecrypto.coineal.model.CoinealOrderBook
 import com.njkim.reactivecrypto.coineal.model.CoinealTickDataWrapper
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
 import com.njkim.reactivecrypto.core.common.util.toEpochMilli
 import com.njkim.reactivecrypto.core.netty.HeartBeatHandler
-import io.netty.buffer.ByteBuf
-import io.netty.buffer.ByteBufInputStream
-import io.netty.channel.ChannelHandlerContext
-import io.netty.handler.codec.ByteToMessageDecoder
+import com.njkim.reactivecrypto.core.netty.PingPongHandler
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
+import com.njkim.reactivecrypto.core.websocket.WebsocketStreamMeter
+import com.njkim.reactivecrypto.core.websocket.decode
+import com.njkim.reactivecrypto.core.websocket.metered
 import io.netty.handler.codec.compression.JdkZlibDecoder
 import io.netty.handler.codec.compression.ZlibWrapper
-import io.netty.handler.codec.http.websocketx.TextWebSocketFrame
 import mu.KotlinLogging
-import org.apache.commons.codec.Charsets
-import org.apache.commons.lang3.StringUtils
-import org.springframework.util.StreamUtils
 import reactor.core.publisher.Flux
 import reactor.kotlin.core.publisher.toFlux
-import reactor.netty.http.client.HttpClient
 import java.time.ZonedDateTime
 import java.util.concurrent.TimeUnit
 
@@ -56,12 +53,13 @@ class CoinealRawWebsocketClient(
             .map { "{\"event\":\"sub\",\"params\":{\"channel\":\"market_${it}_trade_ticker\",\"cb_id\":\"$it\"}}" }
             .toFlux()
 
-        return createSubscribeRequest(subscribeStrings)
-            .map { objectMapper.readValue<CoinealMessageFrame<CoinealTickDataWrapper>>(it) }
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.COINEAL, baseUri, "trade_ticker")
+        return createSubscribeRequest(subscribeStrings, meter)
+            .decode(meter) { objectMapper.readValue<CoinealMessageFrame<CoinealTickDataWrapper>>(it) }
     }
 
-    private fun createSubscribeRequest(subscribeStrings: Flux<String>): Flux<String> {
-        return HttpClient.create()
+    private fun createSubscribeRequest(subscribeStrings: Flux<String>, meter: WebsocketStreamMeter): Flux<String> {
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.COINEAL)
             .doOnConnected { connection ->
                 connection.addHandler(JdkZlibDecoder(ZlibWrapper.GZIP, true))
                 connection.addHandler(PingPongHandler())
@@ -80,7 +78,7 @@ class CoinealRawWebsocketClient(
             .handle { inbound, outbound ->
                 outbound.sendString(subscribeStrings)
                     .then()
-                    .thenMany(inbound.receive().asString())
+                    .thenMany(inbound.receive().metered(meter).asString())
             }
             .filter { !it.contains("\"event_rep\":\"subed\"") }
     }
@@ -94,26 +92,8 @@ class CoinealRawWebsocketClient(
             .map { "{\"event\":\"sub\",\"params\":{\"channel\":\"market_${it}_depth_$type\",\"cb_id\":\"${it}\"}}" }
             .toFlux()
 
-        return createSubscribeRequest(subscribeStrings)
-            .map { objectMapper.readValue<CoinealMessageFrame<CoinealOrderBook>>(it) }
-    }
-
-    /**
-     * server sent ping {"ping" : $epochMilli }
-     * client response pong {"pong" : $epochMilli }
-     */
-    private inner class PingPongHandler : ByteToMessageDecoder() {
-        override fun decode(ctx: ChannelHandlerContext, msg: ByteBuf, out: MutableList<Any>) {
-            ByteBufInputStream(msg).use {
-                val response = StreamUtils.copyToString(it, Charsets.UTF_8)
-                if (StringUtils.contains(response, "ping")) {
-                    val replace = response.replace("ping", "pong")
-                    ctx.channel().writeAndFlush(TextWebSocketFrame(replace))
-                } else {
-                    val uncompressed = msg.alloc().buffer().writeBytes(response.toByteArray())
-                    out.add(uncompressed)
-                }
-            }
-        }
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.COINEAL, baseUri, "depth")
+        return createSubscribeRequest(subscribeStrings, meter)
+            .decode(meter) { objectMapper.readValue<CoinealMessageFrame<CoinealOrderBook>>(it) }
     }
 }
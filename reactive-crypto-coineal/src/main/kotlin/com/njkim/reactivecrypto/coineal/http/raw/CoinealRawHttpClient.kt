@@ -17,14 +17,10 @@
 package com.njkim.reactivecrypto.coineal.http.raw
 
 import com.njkim.reactivecrypto.coineal.CoinealJsonObjectMapper
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.http.PublicHttpClient
-import org.springframework.http.client.reactive.ReactorClientHttpConnector
-import org.springframework.http.codec.json.Jackson2JsonDecoder
-import org.springframework.http.codec.json.Jackson2JsonEncoder
-import org.springframework.util.MimeTypeUtils
-import org.springframework.web.reactive.function.client.ExchangeStrategies
+import com.njkim.reactivecrypto.core.http.exchangeWebClientBuilder
 import org.springframework.web.reactive.function.client.WebClient
-import reactor.netty.http.client.HttpClient
 
 class CoinealRawHttpClient {
     private val webClient = createWebClient()
@@ -41,33 +37,11 @@ class CoinealRawHttpClient {
     }
 
     private fun createWebClient(): WebClient {
-        val strategies = ExchangeStrategies.builder()
-            .codecs { clientCodecConfigurer ->
-                clientCodecConfigurer.defaultCodecs()
-                    .jackson2JsonEncoder(
-                        Jackson2JsonEncoder(
-                            CoinealJsonObjectMapper().objectMapper(),
-                            MimeTypeUtils.APPLICATION_JSON
-                        )
-                    )
-                clientCodecConfigurer.defaultCodecs()
-                    .jackson2JsonDecoder(
-                        Jackson2JsonDecoder(
-                            CoinealJsonObjectMapper().objectMapper(),
-                            MimeTypeUtils.APPLICATION_JSON
-                        )
-                    )
-            }
-            .build()
-
-        return WebClient.builder()
-            .clientConnector(
-                ReactorClientHttpConnector(
-                    HttpClient.create().wiretap(true)
-                )
-            )
-            .exchangeStrategies(strategies)
-            .baseUrl("https://exchange-open-api.coineal.com/")
+        return exchangeWebClientBuilder(
+            ExchangeVendor.COINEAL,
+            CoinealJsonObjectMapper().objectMapper(),
+            "https://exchange-open-api.coineal.com/"
+        )
             .build()
     }
 }
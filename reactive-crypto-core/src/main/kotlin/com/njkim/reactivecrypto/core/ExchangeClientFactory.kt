@@ -18,6 +18,7 @@ package com.njkim.reactivecrypto.core
 
 import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.http.ExchangeHttpClient
+import com.njkim.reactivecrypto.core.netty.ReactiveCryptoNetworkConfig
 import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
 import com.njkim.reactivecrypto.core.websocket.ExchangePrivateWebsocketClient
 import com.njkim.reactivecrypto.core.websocket.ExchangePublicWebsocketClient
@@ -26,17 +27,38 @@ import kotlin.reflect.full.primaryConstructor
 
 object ExchangeClientFactory {
     init {
+        // factories registered before the first use of this object are kept
+        val customClientFactory = ReactiveCryptoPlugins.customClientFactory
         ExchangeVendor.values()
             .forEach { exchangeVendor ->
-                ReactiveCryptoPlugins.customClientFactory
-                    .addHttpCustomFactory(exchangeVendor, defaultHttpFactory(exchangeVendor))
-                ReactiveCryptoPlugins.customClientFactory
-                    .addPublicWsCustomFactory(exchangeVendor, defaultPublicWsFactory(exchangeVendor))
-                ReactiveCryptoPlugins.customClientFactory
-                    .addPrivateWsCustomFactory(exchangeVendor, defaultPrivateWsFactory(exchangeVendor))
+                if (customClientFactory.getCustomHttpFactory(exchangeVendor) == null) {
+                    customClientFactory.addHttpCustomFactory(exchangeVendor, defaultHttpFactory(exchangeVendor))
+                }
+                if (customClientFactory.getCustomPublicWsFactory(exchangeVendor) == null) {
+                    customClientFactory.addPublicWsCustomFactory(exchangeVendor, defaultPublicWsFactory(exchangeVendor))
+                }
+                if (customClientFactory.getCustomPrivateWsFactory(exchangeVendor) == null) {
+                    customClientFactory.addPrivateWsCustomFactory(exchangeVendor, defaultPrivateWsFactory(exchangeVendor))
+                }
             }
     }
 
+    /**
+     * event loops, connection pool and transport of the clients created afterwards.
+     * shared websocket connections are cached and would keep the resources of the previous configuration,
+     * so the network can not be configured once one of them exists.
+     * the previous configuration is owned by the caller, who disposes it when its REST clients are no longer used
+     *
+     * @throws IllegalStateException when a shared websocket connection was already created
+     */
+    @JvmStatic
+    fun configureNetwork(networkConfig: ReactiveCryptoNetworkConfig) {
+        check(ReactiveCryptoPlugins.websocketConnectionManager.isEmpty()) {
+            "network must be configured before the first websocket connection is created"
+        }
+        ReactiveCryptoPlugins.networkConfig = networkConfig
+    }
+
     @JvmStatic
     fun publicWebsocket(exchangeVendor: ExchangeVendor): ExchangePublicWebsocketClient {
         return ReactiveCryptoPlugins.customClientFactory.getCustomPublicWsFactory(exchangeVendor)
@@ -25,8 +25,12 @@ import com.fasterxml.jackson.databind.module.SimpleModule
 import com.fasterxml.jackson.module.kotlin.registerKotlinModule
 import com.njkim.reactivecrypto.core.common.model.currency.Currency
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.number.ScaledDecimal
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
 import com.njkim.reactivecrypto.core.common.model.order.OrderStatusType
+import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import com.njkim.reactivecrypto.core.json.JsonMessageDecoder
 import java.math.BigDecimal
 import java.time.ZonedDateTime
 
@@ -56,6 +60,20 @@ interface ExchangeJsonObjectMapper {
         return null
     }
 
+    /**
+     * read the token characters directly without allocating an intermediate String or [BigDecimal]
+     */
+    fun scaledDecimalDeserializer(): JsonDeserializer<ScaledDecimal>? {
+        return object : JsonDeserializer<ScaledDecimal>() {
+            override fun deserialize(p: JsonParser, ctxt: DeserializationContext): ScaledDecimal? {
+                if (p.textLength == 0) {
+                    return null
+                }
+                return ScaledDecimal.parse(p.textCharacters, p.textOffset, p.textLength, null)
+            }
+        }
+    }
+
     fun tradeSideTypeDeserializer(): JsonDeserializer<TradeSideType>? {
         return null
     }
@@ -67,6 +85,22 @@ interface ExchangeJsonObjectMapper {
     fun customConfiguration(simpleModule: SimpleModule) {
     }
 
+    /**
+     * token level decoder building [TickData] directly from a trade message.
+     * null when the exchange binds its own message model with [ObjectMapper.readValue]
+     */
+    fun tickDataDecoder(): JsonMessageDecoder<List<TickData>>? {
+        return null
+    }
+
+    /**
+     * token level decoder building [OrderBook] directly from a depth message.
+     * null when the exchange binds its own message model with [ObjectMapper.readValue]
+     */
+    fun orderBookDecoder(): JsonMessageDecoder<List<OrderBook>>? {
+        return null
+    }
+
     fun objectMapper(): ObjectMapper {
         val simpleModule = SimpleModule()
 
@@ -86,6 +120,10 @@ interface ExchangeJsonObjectMapper {
             simpleModule.addDeserializer(BigDecimal::class.java, it)
         }
 
+        scaledDecimalDeserializer()?.let {
+            simpleModule.addDeserializer(ScaledDecimal::class.java, it)
+        }
+
         tradeSideTypeDeserializer()?.let {
             simpleModule.addDeserializer(TradeSideType::class.java, it)
         }
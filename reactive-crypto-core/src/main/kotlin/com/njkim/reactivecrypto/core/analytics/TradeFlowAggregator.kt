@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.analytics
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.analytics.TradeFlowStatistics
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import java.math.BigDecimal
+import java.math.MathContext
+import java.time.Duration
+
+/**
+ * Rolling VWAP and buy/sell volume of several time windows per (exchangeVendor, currencyPair).
+ *
+ * The trades of a pair are appended once to a ring buffer shared by every window,
+ * each window keeps its own start index and running sums, so a trade costs O(1) to add and to evict
+ * regardless of the number of trades in the window.
+ * Windows are driven by [TickData.eventTime], a trade older than the latest one of its pair is accounted at the latest time.
+ * Instances are not thread-safe, use one instance inside a serialized pipeline.
+ *
+ * @param windows e.g. 10s, 1m, 5m
+ */
+class TradeFlowAggregator(
+    windows: List<Duration>,
+    private val mathContext: MathContext = MathContext.DECIMAL64
+) {
+    private val windows: List<Duration> = windows.distinct().sorted()
+    private val windowMillis: LongArray = this.windows.map { it.toMillis() }.toLongArray()
+
+    private val tradeFlows: MutableMap<Pair<ExchangeVendor, CurrencyPair>, TradeFlow> = HashMap()
+
+    init {
+        require(windows.isNotEmpty()) { "windows must not be empty" }
+        require(windowMillis.all { it > 0 }) { "windows must be at least 1ms : $windows" }
+    }
+
+    /**
+     * @return statistics of every window including [tickData], in ascending order of window length
+     */
+    fun update(tickData: TickData): List<TradeFlowStatistics> {
+        val tradeFlow = tradeFlows.getOrPut(tickData.exchangeVendor to tickData.currencyPair) { TradeFlow() }
+        tradeFlow.add(tickData)
+
+        return windows.indices.map { index ->
+            val volume = tradeFlow.volume[index]
+            TradeFlowStatistics(
+                tickData.currencyPair,
+                tickData.exchangeVendor,
+                windows[index],
+                tickData.eventTime,
+                if (volume.signum() == 0) null else tradeFlow.quoteVolume[index].divide(volume, mathContext),
+                volume,
+                tradeFlow.buyVolume[index],
+                volume - tradeFlow.buyVolume[index],
+                tradeFlow.tradeCount[index]
+            )
+        }
+    }
+
+    private inner class TradeFlow {
+        // ring buffer indexed by (sequence and mask), sequences in [head, tail) are retained
+        private var times = LongArray(INITIAL_CAPACITY)
+        private var prices = arrayOfNulls<BigDecimal>(INITIAL_CAPACITY)
+        private var quantities = arrayOfNulls<BigDecimal>(INITIAL_CAPACITY)
+        private var buys = BooleanArray(INITIAL_CAPACITY)
+        private var head = 0L
+        private var tail = 0L
+        private var latestMillis = Long.MIN_VALUE
+
+        private val windowStarts = LongArray(windows.size)
+        val volume = Array<BigDecimal>(windows.size) { BigDecimal.ZERO }
+        val quoteVolume = Array<BigDecimal>(windows.size) { BigDecimal.ZERO }
+        val buyVolume = Array<BigDecimal>(windows.size) { BigDecimal.ZERO }
+        val tradeCount = IntArray(windows.size)
+
+        fun add(tickData: TickData) {
+            latestMillis = maxOf(latestMillis, tickData.eventTime.toInstant().toEpochMilli())
+            if (tail - head == times.size.toLong()) {
+                grow()
+            }
+
+            val slot = slot(tail++)
+            val buy = tickData.tradeSideType == TradeSideType.BUY
+            times[slot] = latestMillis
+            prices[slot] = tickData.price
+            quantities[slot] = tickData.quantity
+            buys[slot] = buy
+
+            val quote = tickData.price * tickData.quantity
+            for (index in windows.indices) {
+                volume[index] += tickData.quantity
+                quoteVolume[index] += quote
+                if (buy) buyVolume[index] += tickData.quantity
+                tradeCount[index]++
+                evict(index)
+            }
+
+            // the longest window is the last one, older slots are released for the garbage collector
+            while (head < windowStarts[windows.size - 1]) {
+                val released = slot(head++)
+                prices[released] = null
+                quantities[released] = null
+            }
+        }
+
+        private fun evict(index: Int) {
+            val expiredMillis = latestMillis - windowMillis[index]
+            while (windowStarts[index] < tail && times[slot(windowStarts[index])] <= expiredMillis) {
+                val evicted = slot(windowStarts[index]++)
+                val quantity = quantities[evicted]!!
+                volume[index] -= quantity
+                quoteVolume[index] -= prices[evicted]!! * quantity
+                if (buys[evicted]) buyVolume[index] -= quantity
+                tradeCount[index]--
+            }
+        }
+
+        private fun grow() {
+            val capacity = times.size * 2
+            val grownTimes = LongArray(capacity)
+            val grownPrices = arrayOfNulls<BigDecimal>(capacity)
+            val grownQuantities = arrayOfNulls<BigDecimal>(capacity)
+            val grownBuys = BooleanArray(capacity)
+            for (sequence in head until tail) {
+                val from = slot(sequence)
+                val to = (sequence and (capacity - 1).toLong()).toInt()
+                grownTimes[to] = times[from]
+                grownPrices[to] = prices[from]
+                grownQuantities[to] = quantities[from]
+                grownBuys[to] = buys[from]
+            }
+            times = grownTimes
+            prices = grownPrices
+            quantities = grownQuantities
+            buys = grownBuys
+        }
+
+        private fun slot(sequence: Long): Int = (sequence and (times.size - 1).toLong()).toInt()
+    }
+
+    companion object {
+        // must be a power of two
+        private const val INITIAL_CAPACITY = 64
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.arbitration
+
+import com.njkim.reactivecrypto.core.metrics.LatencyHistogram
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Outcome of the arbitration of redundant feeds (legs).
+ *
+ * - wins: messages of which the leg delivered the first copy
+ * - duplicates: later copies dropped
+ * - unsequenced: messages without a key to arbitrate on, passed through
+ * - advantage: how much earlier a winning leg delivered its copy than the copy of another leg
+ */
+class FeedArbitrationMetrics(val legCount: Int) {
+    private val wins = Array(legCount) { LongAdder() }
+    private val advantages = Array(legCount) { LatencyHistogram() }
+    private val duplicates = LongAdder()
+    private val unsequenced = LongAdder()
+
+    init {
+        require(legCount > 0) { "legCount must be positive : $legCount" }
+    }
+
+    internal fun recordWin(leg: Int) {
+        wins[leg].increment()
+    }
+
+    internal fun recordDuplicate(winningLeg: Int, advantageNanos: Long) {
+        duplicates.increment()
+        advantages[winningLeg].record(advantageNanos)
+    }
+
+    internal fun recordDuplicate() {
+        duplicates.increment()
+    }
+
+    internal fun recordUnsequenced() {
+        unsequenced.increment()
+    }
+
+    fun snapshot(): Snapshot {
+        return Snapshot(
+            wins.map { it.sum() },
+            duplicates.sum(),
+            unsequenced.sum(),
+            advantages.map { it.snapshot() }
+        )
+    }
+
+    data class Snapshot(
+        val wins: List<Long>,
+        val duplicates: Long,
+        val unsequenced: Long,
+        val advantages: List<LatencyHistogram.Snapshot>
+    ) {
+        /**
+         * @return share of the messages first delivered by [leg], 0 before any message
+         */
+        fun winRate(leg: Int): Double {
+            val total = wins.sum()
+            return if (total == 0L) 0.0 else wins[leg].toDouble() / total
+        }
+    }
+}
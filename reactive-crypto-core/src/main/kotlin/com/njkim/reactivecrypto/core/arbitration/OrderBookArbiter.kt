@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.arbitration
+
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import java.time.Duration
+
+/**
+ * First arrival wins de-duplication of the order books of redundant feeds, keyed on the book sequence per currency pair
+ * (Binance lastUpdateId, Bitmax seqnum, Poloniex sequence number, carried in [OrderBook.uniqueId]).
+ *
+ * A book is emitted when its sequence is above every sequence emitted for its currency pair,
+ * or equal to it and delivered by the same leg (several books decoded from one frame).
+ * A leg falling behind or resynchronizing after a reconnect is ignored until it delivers a new sequence first.
+ * When no book of a currency pair was emitted for [staleAfter] the next book is emitted whatever its sequence,
+ * so a sequence reset of the exchange doesn't stall the feed.
+ *
+ * The last [history] emitted sequences of each currency pair are kept in ring buffers to measure the advantage.
+ * Books without a sequence are passed through.
+ *
+ * Not thread safe, calls must be serialized.
+ */
+class OrderBookArbiter(
+    private val legCount: Int,
+    private val history: Int = 64,
+    staleAfter: Duration = Duration.ofSeconds(5),
+    private val sequenceOf: (OrderBook) -> Long = ::numericSequence,
+    val metrics: FeedArbitrationMetrics = FeedArbitrationMetrics(legCount)
+) {
+    private val staleAfterNanos = staleAfter.toNanos()
+    private val sequences: MutableMap<CurrencyPair, SequenceHistory> = HashMap()
+
+    init {
+        require(history > 0) { "history must be positive : $history" }
+        require(metrics.legCount == legCount) { "metrics of ${metrics.legCount} legs for $legCount legs" }
+    }
+
+    /**
+     * @param leg index of the feed that delivered [orderBook]
+     * @return true when [orderBook] is the first copy and must be emitted
+     */
+    fun accept(leg: Int, orderBook: OrderBook): Boolean {
+        val sequence = sequenceOf(orderBook)
+        if (sequence < 0) {
+            metrics.recordUnsequenced()
+            return true
+        }
+
+        val arrivalNanos = if (orderBook.receivedNanos != 0L) orderBook.receivedNanos else System.nanoTime()
+        val history = sequences.getOrPut(orderBook.currencyPair) { SequenceHistory(history) }
+
+        if (history.isEmpty() || sequence > history.lastSequence() || arrivalNanos - history.lastArrivalNanos() > staleAfterNanos) {
+            history.add(sequence, leg, arrivalNanos)
+            metrics.recordWin(leg)
+            return true
+        }
+        if (sequence == history.lastSequence() && leg == history.lastLeg()) {
+            return true
+        }
+
+        val slot = history.indexOf(sequence)
+        if (slot >= 0 && history.leg(slot) != leg) {
+            metrics.recordDuplicate(history.leg(slot), arrivalNanos - history.arrivalNanos(slot))
+        } else {
+            metrics.recordDuplicate()
+        }
+        return false
+    }
+
+    private class SequenceHistory(capacity: Int) {
+        private val sequences = LongArray(capacity)
+        private val legs = IntArray(capacity)
+        private val arrivals = LongArray(capacity)
+        private var last = -1
+        private var size = 0
+
+        fun isEmpty(): Boolean = size == 0
+
+        fun lastSequence(): Long = sequences[last]
+
+        fun lastLeg(): Int = legs[last]
+
+        fun lastArrivalNanos(): Long = arrivals[last]
+
+        fun leg(slot: Int): Int = legs[slot]
+
+        fun arrivalNanos(slot: Int): Long = arrivals[slot]
+
+        fun add(sequence: Long, leg: Int, arrivalNanos: Long) {
+            last = (last + 1) % sequences.size
+            sequences[last] = sequence
+            legs[last] = leg
+            arrivals[last] = arrivalNanos
+            size = minOf(size + 1, sequences.size)
+        }
+
+        /**
+         * @return slot of [sequence] searched from the newest, -1 if it is older than the history
+         */
+        fun indexOf(sequence: Long): Int {
+            var slot = last
+            repeat(size) {
+                if (sequences[slot] == sequence) {
+                    return slot
+                }
+                if (sequences[slot] < sequence) {
+                    return -1
+                }
+                slot = if (slot == 0) sequences.size - 1 else slot - 1
+            }
+            return -1
+        }
+    }
+
+    companion object {
+        /**
+         * @return [OrderBook.uniqueId] parsed as a non negative number without allocation, -1 if it is not a number
+         */
+        @JvmStatic
+        fun numericSequence(orderBook: OrderBook): Long {
+            val uniqueId = orderBook.uniqueId
+            if (uniqueId.isEmpty() || uniqueId.length > 18) {
+                return -1
+            }
+            var sequence = 0L
+            for (char in uniqueId) {
+                if (char !in '0'..'9') {
+                    return -1
+                }
+                sequence = sequence * 10 + (char - '0')
+            }
+            return sequence
+        }
+    }
+}
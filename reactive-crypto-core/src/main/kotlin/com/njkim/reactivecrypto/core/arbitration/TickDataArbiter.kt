@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.arbitration
+
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import java.util.Arrays
+
+/**
+ * First arrival wins de-duplication of the trades of redundant feeds, keyed on [TickData.uniqueId] per currency pair.
+ *
+ * The ids of the last [capacity] to 2 * [capacity] trades of each currency pair are remembered
+ * in two generations of open addressing tables, the older generation is recycled when the newer one is full.
+ * No allocation happens once the tables of a currency pair are created.
+ *
+ * Not thread safe, calls must be serialized.
+ */
+class TickDataArbiter(
+    private val legCount: Int,
+    private val capacity: Int = 4096,
+    val metrics: FeedArbitrationMetrics = FeedArbitrationMetrics(legCount)
+) {
+    private val recentTrades: MutableMap<CurrencyPair, RecentTrades> = HashMap()
+
+    init {
+        require(legCount <= Byte.MAX_VALUE) { "legCount must be at most ${Byte.MAX_VALUE} : $legCount" }
+        require(capacity > 0) { "capacity must be positive : $capacity" }
+        require(metrics.legCount == legCount) { "metrics of ${metrics.legCount} legs for $legCount legs" }
+    }
+
+    /**
+     * @param leg index of the feed that delivered [tickData]
+     * @return true when [tickData] is the first copy and must be emitted
+     */
+    fun accept(leg: Int, tickData: TickData): Boolean {
+        val arrivalNanos = if (tickData.receivedNanos != 0L) tickData.receivedNanos else System.nanoTime()
+        val trades = recentTrades.getOrPut(tickData.currencyPair) { RecentTrades(capacity) }
+
+        val winner = trades.find(tickData.uniqueId)
+        if (winner != null) {
+            val winningLeg = winner.foundLeg()
+            if (winningLeg != leg) {
+                metrics.recordDuplicate(winningLeg, arrivalNanos - winner.foundArrivalNanos())
+            } else {
+                metrics.recordDuplicate()
+            }
+            return false
+        }
+
+        trades.add(tickData.uniqueId, leg, arrivalNanos)
+        metrics.recordWin(leg)
+        return true
+    }
+
+    private class RecentTrades(private val capacity: Int) {
+        private var current = Generation(capacity)
+        private var previous = Generation(capacity)
+
+        fun find(id: String): Generation? {
+            return when {
+                current.find(id) -> current
+                previous.find(id) -> previous
+                else -> null
+            }
+        }
+
+        fun add(id: String, leg: Int, arrivalNanos: Long) {
+            if (current.size == capacity) {
+                val recycled = previous
+                previous = current
+                current = recycled.also { it.clear() }
+            }
+            current.add(id, leg, arrivalNanos)
+        }
+    }
+
+    private class Generation(capacity: Int) {
+        // load factor at most 0.5
+        private val mask = Integer.highestOneBit(capacity * 4 - 1) - 1
+        private val ids = arrayOfNulls<String>(mask + 1)
+        private val legs = ByteArray(mask + 1)
+        private val arrivals = LongArray(mask + 1)
+        var size = 0
+            private set
+
+        // slot of the last successful find
+        private var found = -1
+
+        fun foundLeg(): Int = legs[found].toInt()
+
+        fun foundArrivalNanos(): Long = arrivals[found]
+
+        fun find(id: String): Boolean {
+            var slot = id.hashCode() and mask
+            while (true) {
+                val candidate = ids[slot] ?: return false
+                if (candidate == id) {
+                    found = slot
+                    return true
+                }
+                slot = (slot + 1) and mask
+            }
+        }
+
+        fun add(id: String, leg: Int, arrivalNanos: Long) {
+            var slot = id.hashCode() and mask
+            while (ids[slot] != null) {
+                slot = (slot + 1) and mask
+            }
+            ids[slot] = id
+            legs[slot] = leg.toByte()
+            arrivals[slot] = arrivalNanos
+            size++
+        }
+
+        fun clear() {
+            Arrays.fill(ids, null)
+            size = 0
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.candle
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.candle.Candle
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import java.math.BigDecimal
+import java.time.Duration
+import java.time.Instant
+import java.time.ZoneId
+import java.time.ZonedDateTime
+import java.util.TreeMap
+
+/**
+ * Builds candles of several intervals at once from the trades of several (exchangeVendor, currencyPair).
+ *
+ * Candles are aligned to the epoch and driven by [TickData.eventTime], not by the wall clock.
+ * A candle is closed once a trade of the same pair is later than its end by more than [gracePeriod],
+ * trades older than a closed candle are dropped and counted in [lateTickCount].
+ * Instances are not thread-safe, use one instance inside a serialized pipeline.
+ *
+ * @param intervals e.g. 1s, 1m, 5m, 1h
+ * @param gracePeriod how long a candle accepts late trades after its end
+ */
+class CandleAggregator(
+    intervals: List<Duration>,
+    private val gracePeriod: Duration = Duration.ZERO
+) {
+    private val intervals: List<Duration> = intervals.distinct().sorted()
+    private val intervalMillis: LongArray = this.intervals.map { it.toMillis() }.toLongArray()
+
+    private val series: MutableMap<Pair<ExchangeVendor, CurrencyPair>, CandleSeries> = HashMap()
+
+    private var lateTickCount: Long = 0
+
+    init {
+        require(intervals.isNotEmpty()) { "intervals must not be empty" }
+        require(intervalMillis.all { it > 0 }) { "intervals must be at least 1ms : $intervals" }
+        require(!gracePeriod.isNegative) { "gracePeriod must not be negative : $gracePeriod" }
+    }
+
+    /**
+     * apply [tickData] to the candle of every interval
+     *
+     * @return candles closed by the progress of time followed by the candles updated by [tickData]
+     */
+    fun update(tickData: TickData): List<Candle> {
+        val candleSeries = series.getOrPut(tickData.exchangeVendor to tickData.currencyPair) {
+            CandleSeries(tickData.currencyPair, tickData.exchangeVendor)
+        }
+        val eventMillis = tickData.eventTime.toInstant().toEpochMilli()
+        candleSeries.zoneId = tickData.eventTime.zone
+        candleSeries.maxEventMillis = maxOf(candleSeries.maxEventMillis, eventMillis)
+
+        val candles = ArrayList<Candle>()
+        var late = false
+        for (index in intervals.indices) {
+            val openMillis = eventMillis - Math.floorMod(eventMillis, intervalMillis[index])
+            if (openMillis + intervalMillis[index] <= candleSeries.closedBefore()) {
+                late = true
+                continue
+            }
+
+            val builder = candleSeries.buckets[index].getOrPut(openMillis) { CandleBuilder(openMillis) }
+            builder.add(tickData.price, tickData.quantity)
+            candles.add(candleSeries.toCandle(index, builder, false))
+        }
+        if (late) {
+            lateTickCount++
+        }
+
+        val closedCandles = candleSeries.closeUntil(candleSeries.closedBefore())
+        return if (closedCandles.isEmpty()) candles else closedCandles + candles
+    }
+
+    /**
+     * close every open candle which ends before [time] even though no later trade arrived,
+     * e.g. on a timer for illiquid pairs
+     */
+    fun closeUntil(time: ZonedDateTime): List<Candle> {
+        val closedBefore = time.toInstant().toEpochMilli() - gracePeriod.toMillis()
+        return series.values.flatMap { candleSeries ->
+            candleSeries.maxEventMillis = maxOf(candleSeries.maxEventMillis, time.toInstant().toEpochMilli())
+            candleSeries.closeUntil(closedBefore)
+        }
+    }
+
+    /**
+     * number of trades dropped by at least one interval because its candle was already closed
+     */
+    fun lateTickCount(): Long = lateTickCount
+
+    private inner class CandleSeries(
+        val currencyPair: CurrencyPair,
+        val exchangeVendor: ExchangeVendor
+    ) {
+        var zoneId: ZoneId = ZoneId.systemDefault()
+        var maxEventMillis: Long = Long.MIN_VALUE
+
+        // open candles of each interval keyed by openTime in epoch millis
+        val buckets: Array<TreeMap<Long, CandleBuilder>> = Array(intervals.size) { TreeMap<Long, CandleBuilder>() }
+
+        fun closedBefore(): Long = maxEventMillis - gracePeriod.toMillis()
+
+        fun closeUntil(closedBefore: Long): List<Candle> {
+            var closedCandles: MutableList<Candle>? = null
+            for (index in intervals.indices) {
+                val bucket = buckets[index]
+                while (bucket.isNotEmpty() && bucket.firstKey() + intervalMillis[index] <= closedBefore) {
+                    val builder = bucket.pollFirstEntry().value
+                    if (closedCandles == null) closedCandles = ArrayList()
+                    closedCandles.add(toCandle(index, builder, true))
+                }
+            }
+            return closedCandles ?: emptyList()
+        }
+
+        fun toCandle(index: Int, builder: CandleBuilder, closed: Boolean): Candle {
+            return Candle(
+                currencyPair,
+                exchangeVendor,
+                intervals[index],
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(builder.openMillis), zoneId),
+                builder.open,
+                builder.high,
+                builder.low,
+                builder.close,
+                builder.volume,
+                builder.quoteVolume,
+                builder.tradeCount,
+                closed
+            )
+        }
+    }
+
+    private class CandleBuilder(val openMillis: Long) {
+        lateinit var open: BigDecimal
+        lateinit var high: BigDecimal
+        lateinit var low: BigDecimal
+        lateinit var close: BigDecimal
+        var volume: BigDecimal = BigDecimal.ZERO
+        var quoteVolume: BigDecimal = BigDecimal.ZERO
+        var tradeCount: Int = 0
+
+        fun add(price: BigDecimal, quantity: BigDecimal) {
+            if (tradeCount == 0) {
+                open = price
+                high = price
+                low = price
+            } else {
+                if (price > high) high = price
+                if (price < low) low = price
+            }
+            close = price
+            volume += quantity
+            quoteVolume += price * quantity
+            tradeCount++
+        }
+    }
+}
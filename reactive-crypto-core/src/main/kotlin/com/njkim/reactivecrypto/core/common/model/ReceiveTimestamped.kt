@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.common.model
+
+import com.njkim.reactivecrypto.core.metrics.ReceiveClock
+import java.time.Instant
+import java.time.ZonedDateTime
+
+/**
+ * A market data event carrying the time the exchange reported and the time its frame arrived at the socket.
+ *
+ * Events default [receivedNanos] to [ReceiveClock.decodingNanos], which [com.njkim.reactivecrypto.core.websocket.SharedWebsocketConnection]
+ * sets while it decodes a frame, so only clients streaming over a shared connection (Binance, Bitmex, Huobi, Kraken, OKEx) stamp it.
+ * Events of the other clients keep 0.
+ * Both properties are immutable constructor properties, kept by copy and part of equals and hashCode.
+ */
+interface ReceiveTimestamped {
+    val eventTime: ZonedDateTime
+
+    /**
+     * false when the exchange sends no time for the event and [eventTime] is the local decode time,
+     * the exchange latency of such events is not recorded
+     */
+    val hasExchangeTime: Boolean
+        get() = true
+
+    /**
+     * [System.nanoTime] when the frame of the event was read from the socket, 0 when unknown
+     */
+    val receivedNanos: Long
+
+    fun receivedTime(): Instant? = if (receivedNanos == 0L) null else ReceiveClock.toInstant(receivedNanos)
+}
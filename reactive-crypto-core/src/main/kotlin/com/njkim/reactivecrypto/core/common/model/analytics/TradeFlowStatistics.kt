@@ -0,0 +1,40 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.common.model.analytics
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import java.math.BigDecimal
+import java.time.Duration
+import java.time.ZonedDateTime
+
+/**
+ * statistics of the trades in `(eventTime - window, eventTime]`
+ *
+ * @property vwap volume weighted average price, null when [volume] is zero
+ */
+data class TradeFlowStatistics(
+    val currencyPair: CurrencyPair,
+    val exchangeVendor: ExchangeVendor,
+    val window: Duration,
+    val eventTime: ZonedDateTime,
+    val vwap: BigDecimal?,
+    val volume: BigDecimal,
+    val buyVolume: BigDecimal,
+    val sellVolume: BigDecimal,
+    val tradeCount: Int
+)
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.common.model.candle
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import java.math.BigDecimal
+import java.time.Duration
+import java.time.ZonedDateTime
+
+/**
+ * OHLCV bar of the trades in `[openTime, openTime + interval)`
+ *
+ * @property quoteVolume sum of price * quantity
+ * @property closed no more trade is applied to this candle
+ */
+data class Candle(
+    val currencyPair: CurrencyPair,
+    val exchangeVendor: ExchangeVendor,
+    val interval: Duration,
+    val openTime: ZonedDateTime,
+    val open: BigDecimal,
+    val high: BigDecimal,
+    val low: BigDecimal,
+    val close: BigDecimal,
+    val volume: BigDecimal,
+    val quoteVolume: BigDecimal,
+    val tradeCount: Int,
+    val closed: Boolean
+)
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.common.model.number
+
+import java.math.BigDecimal
+
+/**
+ * fixed number of fraction digits used for the prices and quantities of one instrument
+ */
+data class InstrumentScale(
+    val priceScale: Int,
+    val quantityScale: Int
+) {
+    fun price(value: BigDecimal): ScaledDecimal = ScaledDecimal.valueOf(value, priceScale)
+
+    fun price(text: CharSequence): ScaledDecimal = ScaledDecimal.parse(text, priceScale)
+
+    fun quantity(value: BigDecimal): ScaledDecimal = ScaledDecimal.valueOf(value, quantityScale)
+
+    fun quantity(text: CharSequence): ScaledDecimal = ScaledDecimal.parse(text, quantityScale)
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.common.model.number
+
+import java.math.BigDecimal
+
+/**
+ * Exact decimal number stored as `mantissa * 10^-scale`.
+ *
+ * Opt-in alternative of [BigDecimal] for prices and quantities.
+ * Values sharing the same scale are compared and added with plain long arithmetic, so keep one scale per instrument
+ * (see [InstrumentScale]) on hot paths. Every operation is exact, an [ArithmeticException] is thrown
+ * when a result cannot be represented instead of rounding silently.
+ *
+ * Unlike [BigDecimal], [equals] is numeric: `1.10` equals `1.1`.
+ */
+class ScaledDecimal private constructor(
+    val mantissa: Long,
+    val scale: Int
+) : Comparable<ScaledDecimal> {
+
+    companion object {
+        const val MAX_SCALE = 18
+
+        private val POWERS_OF_TEN = LongArray(MAX_SCALE + 1).also {
+            it[0] = 1L
+            for (i in 1..MAX_SCALE) {
+                it[i] = it[i - 1] * 10
+            }
+        }
+
+        @JvmField
+        val ZERO = ScaledDecimal(0, 0)
+
+        @JvmStatic
+        fun of(mantissa: Long, scale: Int): ScaledDecimal {
+            checkScale(scale)
+            return ScaledDecimal(mantissa, scale)
+        }
+
+        /**
+         * @throws ArithmeticException [value] has more fraction digits than [scale] or overflows a long mantissa
+         */
+        @JvmStatic
+        fun valueOf(value: BigDecimal, scale: Int): ScaledDecimal {
+            checkScale(scale)
+            return ScaledDecimal(value.setScale(scale).unscaledValue().longValueExact(), scale)
+        }
+
+        /**
+         * keep the number of fraction digits of [value] ignoring trailing zeros
+         */
+        @JvmStatic
+        fun valueOf(value: BigDecimal): ScaledDecimal {
+            return valueOf(value, maxOf(value.stripTrailingZeros().scale(), 0))
+        }
+
+        /**
+         * parse a plain decimal string like `-0.00012300` without allocating a [BigDecimal]
+         *
+         * @param scale the number of fraction digits in [text] is used when null
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun parse(text: CharSequence, scale: Int? = null): ScaledDecimal {
+            return parse(text, 0, text.length, scale)
+        }
+
+        @JvmStatic
+        fun parse(chars: CharArray, offset: Int, length: Int, scale: Int?): ScaledDecimal {
+            return parse(CharArrayCharSequence(chars), offset, offset + length, scale)
+        }
+
+        private fun parse(text: CharSequence, start: Int, end: Int, scale: Int?): ScaledDecimal {
+            var index = start
+            val negative = index < end && text[index] == '-'
+            if (index < end && (text[index] == '-' || text[index] == '+')) {
+                index++
+            }
+            if (index == end) {
+                throw NumberFormatException("empty number : ${text.subSequence(start, end)}")
+            }
+
+            var mantissa = 0L
+            var fractionDigits = -1
+            var digits = 0
+            while (index < end) {
+                val c = text[index]
+                if (c in '0'..'9') {
+                    digits++
+                }
+                when {
+                    c in '0'..'9' && fractionDigits >= MAX_SCALE -> {
+                        // trailing zeros beyond the supported precision are ignored
+                        if (c != '0') {
+                            throw ArithmeticException("scale exceeds $MAX_SCALE : ${text.subSequence(start, end)}")
+                        }
+                    }
+                    c in '0'..'9' -> {
+                        mantissa = Math.addExact(Math.multiplyExact(mantissa, 10L), (c - '0').toLong())
+                        if (fractionDigits >= 0) fractionDigits++
+                    }
+                    c == '.' && fractionDigits < 0 -> fractionDigits = 0
+                    c == 'e' || c == 'E' -> {
+                        val exponentValue = BigDecimal(text.subSequence(start, end).toString())
+                        return if (scale == null) valueOf(exponentValue) else valueOf(exponentValue, scale)
+                    }
+                    else -> throw NumberFormatException("invalid number : ${text.subSequence(start, end)}")
+                }
+                index++
+            }
+            if (digits == 0) {
+                throw NumberFormatException("no digits : ${text.subSequence(start, end)}")
+            }
+
+            val parsed = ScaledDecimal(if (negative) -mantissa else mantissa, maxOf(fractionDigits, 0))
+            return if (scale == null) parsed else parsed.rescale(scale)
+        }
+
+        private fun checkScale(scale: Int) {
+            if (scale < 0 || scale > MAX_SCALE) {
+                throw ArithmeticException("scale must be in 0..$MAX_SCALE : $scale")
+            }
+        }
+
+        private fun scaleUp(mantissa: Long, diff: Int): Long {
+            return Math.multiplyExact(mantissa, POWERS_OF_TEN[diff])
+        }
+    }
+
+    val isZero: Boolean
+        get() = mantissa == 0L
+
+    fun signum(): Int = java.lang.Long.signum(mantissa)
+
+    /**
+     * @throws ArithmeticException when a non-zero digit would be dropped
+     */
+    fun rescale(newScale: Int): ScaledDecimal {
+        checkScale(newScale)
+        return when {
+            newScale == scale -> this
+            newScale > scale -> ScaledDecimal(scaleUp(mantissa, newScale - scale), newScale)
+            else -> {
+                val divisor = POWERS_OF_TEN[scale - newScale]
+                if (mantissa % divisor != 0L) {
+                    throw ArithmeticException("rounding necessary : $this to scale $newScale")
+                }
+                ScaledDecimal(mantissa / divisor, newScale)
+            }
+        }
+    }
+
+    operator fun plus(other: ScaledDecimal): ScaledDecimal {
+        if (scale == other.scale) {
+            return ScaledDecimal(Math.addExact(mantissa, other.mantissa), scale)
+        }
+        val targetScale = maxOf(scale, other.scale)
+        return ScaledDecimal(Math.addExact(rescale(targetScale).mantissa, other.rescale(targetScale).mantissa), targetScale)
+    }
+
+    operator fun minus(other: ScaledDecimal): ScaledDecimal {
+        return plus(-other)
+    }
+
+    operator fun unaryMinus(): ScaledDecimal {
+        return ScaledDecimal(Math.negateExact(mantissa), scale)
+    }
+
+    /**
+     * the scale of the result is the sum of both scales
+     */
+    operator fun times(other: ScaledDecimal): ScaledDecimal {
+        val targetScale = scale + other.scale
+        checkScale(targetScale)
+        return ScaledDecimal(Math.multiplyExact(mantissa, other.mantissa), targetScale)
+    }
+
+    override fun compareTo(other: ScaledDecimal): Int {
+        if (scale == other.scale) {
+            return mantissa.compareTo(other.mantissa)
+        }
+        return try {
+            val targetScale = maxOf(scale, other.scale)
+            scaleUp(mantissa, targetScale - scale).compareTo(scaleUp(other.mantissa, targetScale - other.scale))
+        } catch (e: ArithmeticException) {
+            toBigDecimal().compareTo(other.toBigDecimal())
+        }
+    }
+
+    fun toBigDecimal(): BigDecimal = BigDecimal.valueOf(mantissa, scale)
+
+    fun toDouble(): Double = mantissa.toDouble() / POWERS_OF_TEN[scale]
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is ScaledDecimal) return false
+        return compareTo(other) == 0
+    }
+
+    override fun hashCode(): Int {
+        var normalized = mantissa
+        var normalizedScale = scale
+        while (normalizedScale > 0 && normalized % 10 == 0L) {
+            normalized /= 10
+            normalizedScale--
+        }
+        return 31 * normalized.hashCode() + normalizedScale
+    }
+
+    override fun toString(): String = toBigDecimal().toPlainString()
+
+    private class CharArrayCharSequence(private val chars: CharArray) : CharSequence {
+        override val length: Int
+            get() = chars.size
+
+        override fun get(index: Int): Char = chars[index]
+
+        override fun subSequence(startIndex: Int, endIndex: Int): CharSequence =
+            String(chars, startIndex, endIndex - startIndex)
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.common.model.order
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import java.math.BigDecimal
+import java.time.ZonedDateTime
+
+/**
+ * order book of a currency pair merged from several exchanges.
+ * a price level quoted by several exchanges has one unit per exchange.
+ *
+ * @property bestBids best bid of each exchange
+ * @property bestAsks best ask of each exchange
+ */
+data class ConsolidatedOrderBook(
+    val currencyPair: CurrencyPair,
+    val eventTime: ZonedDateTime,
+    val bids: List<ConsolidatedOrderBookUnit>,
+    val asks: List<ConsolidatedOrderBookUnit>,
+    val bestBids: Map<ExchangeVendor, OrderBookUnit>,
+    val bestAsks: Map<ExchangeVendor, OrderBookUnit>
+)
+
+data class ConsolidatedOrderBookUnit(
+    val price: BigDecimal,
+    val quantity: BigDecimal,
+    val side: TradeSideType,
+    val exchangeVendor: ExchangeVendor
+)
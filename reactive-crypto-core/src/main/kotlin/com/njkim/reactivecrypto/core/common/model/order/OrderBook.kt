@@ -17,14 +17,18 @@
 package com.njkim.reactivecrypto.core.common.model.order
 
 import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.ReceiveTimestamped
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.metrics.ReceiveClock
 import java.time.ZonedDateTime
 
 data class OrderBook(
     val uniqueId: String,
     val currencyPair: CurrencyPair,
-    val eventTime: ZonedDateTime,
+    override val eventTime: ZonedDateTime,
     val exchangeVendor: ExchangeVendor,
     val bids: List<OrderBookUnit>,
-    val asks: List<OrderBookUnit>
-)
\ No newline at end of file
+    val asks: List<OrderBookUnit>,
+    override val receivedNanos: Long = ReceiveClock.decodingNanos(),
+    override val hasExchangeTime: Boolean = true
+) : ReceiveTimestamped
\ No newline at end of file
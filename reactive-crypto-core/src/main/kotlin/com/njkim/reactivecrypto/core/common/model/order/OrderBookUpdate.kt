@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.common.model.order
+
+import com.njkim.reactivecrypto.core.common.model.ReceiveTimestamped
+
+/**
+ * Change of a book maintained from an incremental depth stream, see
+ * [com.njkim.reactivecrypto.core.orderbook.IncrementalOrderBook.apply].
+ *
+ * @property orderBook every level of the book when [snapshot], otherwise only the levels changed by the event,
+ * a level whose quantity is zero is removed
+ * @property snapshot the levels replace the whole book, sent first and again after every resynchronization
+ */
+data class OrderBookUpdate(
+    val orderBook: OrderBook,
+    val snapshot: Boolean
+) : ReceiveTimestamped by orderBook
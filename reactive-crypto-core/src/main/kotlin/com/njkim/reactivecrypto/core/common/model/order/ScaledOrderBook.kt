@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.common.model.order
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.number.InstrumentScale
+import com.njkim.reactivecrypto.core.common.model.number.ScaledDecimal
+import java.time.ZonedDateTime
+
+/**
+ * [OrderBook] whose prices and quantities are [ScaledDecimal] of a single [InstrumentScale]
+ */
+data class ScaledOrderBook(
+    val uniqueId: String,
+    val currencyPair: CurrencyPair,
+    val eventTime: ZonedDateTime,
+    val exchangeVendor: ExchangeVendor,
+    val bids: List<ScaledOrderBookUnit>,
+    val asks: List<ScaledOrderBookUnit>
+) {
+    fun toOrderBook(): OrderBook {
+        return OrderBook(
+            uniqueId,
+            currencyPair,
+            eventTime,
+            exchangeVendor,
+            bids.map { it.toOrderBookUnit() },
+            asks.map { it.toOrderBookUnit() }
+        )
+    }
+}
+
+data class ScaledOrderBookUnit(
+    val price: ScaledDecimal,
+    val quantity: ScaledDecimal,
+    val side: TradeSideType,
+    val orderNumbers: Int? = null
+) {
+    fun toOrderBookUnit(): OrderBookUnit {
+        return OrderBookUnit(price.toBigDecimal(), quantity.toBigDecimal(), side, orderNumbers)
+    }
+}
+
+/**
+ * copy of an [OrderBook] decoded with [java.math.BigDecimal], no exchange decodes [ScaledOrderBook] directly yet
+ */
+fun OrderBook.toScaled(instrumentScale: InstrumentScale): ScaledOrderBook {
+    return ScaledOrderBook(
+        uniqueId,
+        currencyPair,
+        eventTime,
+        exchangeVendor,
+        bids.map { it.toScaled(instrumentScale) },
+        asks.map { it.toScaled(instrumentScale) }
+    )
+}
+
+fun OrderBookUnit.toScaled(instrumentScale: InstrumentScale): ScaledOrderBookUnit {
+    return ScaledOrderBookUnit(
+        instrumentScale.price(price),
+        instrumentScale.quantity(quantity),
+        side,
+        orderNumbers
+    )
+}
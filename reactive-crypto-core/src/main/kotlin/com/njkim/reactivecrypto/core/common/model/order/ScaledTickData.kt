@@ -0,0 +1,65 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.common.model.order
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.number.InstrumentScale
+import com.njkim.reactivecrypto.core.common.model.number.ScaledDecimal
+import java.time.ZonedDateTime
+
+/**
+ * [TickData] whose price and quantity are [ScaledDecimal] of a single [InstrumentScale]
+ *
+ * Binance decodes it straight from the frame, the other exchanges convert their [TickData] with [toScaled].
+ */
+data class ScaledTickData(
+    val uniqueId: String,
+    val eventTime: ZonedDateTime,
+    val price: ScaledDecimal,
+    val quantity: ScaledDecimal,
+    val currencyPair: CurrencyPair,
+    val exchangeVendor: ExchangeVendor,
+    val tradeSideType: TradeSideType
+) {
+    fun toTickData(): TickData {
+        return TickData(
+            uniqueId,
+            eventTime,
+            price.toBigDecimal(),
+            quantity.toBigDecimal(),
+            currencyPair,
+            exchangeVendor,
+            tradeSideType
+        )
+    }
+}
+
+/**
+ * copy of a [TickData] decoded with [java.math.BigDecimal], for exchanges without a scaled decoder
+ */
+fun TickData.toScaled(instrumentScale: InstrumentScale): ScaledTickData {
+    return ScaledTickData(
+        uniqueId,
+        eventTime,
+        instrumentScale.price(price),
+        instrumentScale.quantity(quantity),
+        currencyPair,
+        exchangeVendor,
+        tradeSideType
+    )
+}
@@ -17,16 +17,19 @@
 package com.njkim.reactivecrypto.core.common.model.order
 
 import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.ReceiveTimestamped
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.metrics.ReceiveClock
 import java.math.BigDecimal
 import java.time.ZonedDateTime
 
 data class TickData(
     val uniqueId: String,
-    val eventTime: ZonedDateTime,
+    override val eventTime: ZonedDateTime,
     val price: BigDecimal,
     var quantity: BigDecimal,
     val currencyPair: CurrencyPair,
     val exchangeVendor: ExchangeVendor,
-    val tradeSideType: TradeSideType
-)
+    val tradeSideType: TradeSideType,
+    override val receivedNanos: Long = ReceiveClock.decodingNanos()
+) : ReceiveTimestamped
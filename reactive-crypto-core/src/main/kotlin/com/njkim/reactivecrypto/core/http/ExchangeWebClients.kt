@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.http
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
+import org.springframework.http.client.reactive.ReactorClientHttpConnector
+import org.springframework.http.codec.json.Jackson2JsonDecoder
+import org.springframework.http.codec.json.Jackson2JsonEncoder
+import org.springframework.util.MimeTypeUtils
+import org.springframework.web.reactive.function.client.ExchangeStrategies
+import org.springframework.web.reactive.function.client.WebClient
+
+/**
+ * WebClient of the REST api of [exchangeVendor] on the shared connection pool, see [ReactiveCryptoHttpConfig].
+ * The builder is mutable, clone it before adding the authentication filter of an account.
+ */
+fun exchangeWebClientBuilder(exchangeVendor: ExchangeVendor, objectMapper: ObjectMapper, baseUrl: String): WebClient.Builder {
+    val strategies = ExchangeStrategies.builder()
+        .codecs { clientCodecConfigurer ->
+            clientCodecConfigurer.defaultCodecs()
+                .jackson2JsonEncoder(Jackson2JsonEncoder(objectMapper, MimeTypeUtils.APPLICATION_JSON))
+            clientCodecConfigurer.defaultCodecs()
+                .jackson2JsonDecoder(Jackson2JsonDecoder(objectMapper, MimeTypeUtils.APPLICATION_JSON))
+        }
+        .build()
+
+    return WebClient.builder()
+        .clientConnector(ReactorClientHttpConnector(ReactiveCryptoPlugins.networkConfig.restClient(exchangeVendor)))
+        .exchangeStrategies(strategies)
+        .baseUrl(baseUrl)
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.http
+
+import io.netty.channel.ChannelOption
+import reactor.netty.http.HttpProtocol
+import reactor.netty.http.client.HttpClient
+import reactor.netty.resources.ConnectionProvider
+import java.time.Duration
+
+/**
+ * Connection pool and request options of the REST clients, every account of every exchange shares the pool.
+ *
+ * @property maxConnections connections kept per remote host
+ * @property pendingAcquireTimeout how long a request waits for a connection when the pool is exhausted
+ * @property maxIdleTime idle connections are closed after this time, before the exchange drops them silently
+ * @property maxLifeTime connections are renewed after this time, so DNS changes of the exchange are followed
+ * @property evictInterval period of the background eviction of idle and expired connections
+ * @property http2 negotiate HTTP/2 with ALPN over TLS, HTTP/1.1 is used when the exchange doesn't support it
+ * @property wiretap log every request and response, including the signed headers
+ */
+data class ReactiveCryptoHttpConfig(
+    val maxConnections: Int = 64,
+    val pendingAcquireTimeout: Duration = Duration.ofSeconds(10),
+    val maxIdleTime: Duration = Duration.ofSeconds(30),
+    val maxLifeTime: Duration = Duration.ofMinutes(10),
+    val evictInterval: Duration = Duration.ofSeconds(15),
+    val connectTimeout: Duration = Duration.ofSeconds(5),
+    val responseTimeout: Duration = Duration.ofSeconds(10),
+    val keepAlive: Boolean = true,
+    val http2: Boolean = false,
+    val wiretap: Boolean = false
+) {
+    init {
+        require(maxConnections > 0) { "maxConnections must be positive : $maxConnections" }
+    }
+
+    companion object {
+        @JvmField
+        val DEFAULT = ReactiveCryptoHttpConfig()
+    }
+
+    fun newConnectionProvider(): ConnectionProvider {
+        return ConnectionProvider.builder("reactive-crypto-http")
+            .maxConnections(maxConnections)
+            .pendingAcquireTimeout(pendingAcquireTimeout)
+            .maxIdleTime(maxIdleTime)
+            .maxLifeTime(maxLifeTime)
+            .evictInBackground(evictInterval)
+            .build()
+    }
+
+    fun configure(httpClient: HttpClient): HttpClient {
+        val configured = httpClient
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout.toMillis().toInt())
+            .responseTimeout(responseTimeout)
+            .keepAlive(keepAlive)
+            .wiretap(wiretap)
+        return if (http2) configured.protocol(HttpProtocol.H2, HttpProtocol.HTTP11) else configured
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.journal
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import java.math.BigDecimal
+import java.math.BigInteger
+import java.nio.ByteBuffer
+import java.time.Instant
+import java.time.ZoneId
+import java.time.ZonedDateTime
+
+/**
+ * Binary layout of a journal record:
+ *
+ * ```
+ * [type: byte][payload length: int][event time in epoch nanos: long][payload]
+ * ```
+ *
+ * type 0 marks the end of the written part of a segment.
+ * strings are `[length: short][utf-8]`, decimals are `[scale: int][0][unscaled: long]` or `[scale: int][1][length: byte][unscaled bytes]`.
+ */
+internal object JournalCodec {
+    const val HEADER_SIZE = 1 + 4 + 8
+
+    const val END_OF_SEGMENT: Byte = 0
+    const val TICK_DATA: Byte = 1
+    const val ORDER_BOOK: Byte = 2
+    const val RAW_FRAME: Byte = 3
+
+    fun type(record: Any): Byte {
+        return when (record) {
+            is TickData -> TICK_DATA
+            is OrderBook -> ORDER_BOOK
+            is RawFrame -> RAW_FRAME
+            else -> throw IllegalArgumentException("unsupported journal record : ${record.javaClass}")
+        }
+    }
+
+    fun type(recordType: Class<*>): Byte {
+        return when (recordType) {
+            TickData::class.java -> TICK_DATA
+            OrderBook::class.java -> ORDER_BOOK
+            RawFrame::class.java -> RAW_FRAME
+            else -> throw IllegalArgumentException("unsupported journal record : $recordType")
+        }
+    }
+
+    fun eventTime(record: Any): ZonedDateTime {
+        return when (record) {
+            is TickData -> record.eventTime
+            is OrderBook -> record.eventTime
+            is RawFrame -> record.receivedTime
+            else -> throw IllegalArgumentException("unsupported journal record : ${record.javaClass}")
+        }
+    }
+
+    /**
+     * @throws java.nio.BufferOverflowException when [buffer] is too small
+     */
+    fun encodePayload(record: Any, buffer: ByteBuffer) {
+        when (record) {
+            is TickData -> {
+                putString(buffer, record.eventTime.zone.id)
+                putString(buffer, record.uniqueId)
+                putString(buffer, record.exchangeVendor.name)
+                putString(buffer, record.currencyPair.toString())
+                buffer.put(record.tradeSideType.ordinal.toByte())
+                putDecimal(buffer, record.price)
+                putDecimal(buffer, record.quantity)
+            }
+            is OrderBook -> {
+                putString(buffer, record.eventTime.zone.id)
+                putString(buffer, record.uniqueId)
+                putString(buffer, record.exchangeVendor.name)
+                putString(buffer, record.currencyPair.toString())
+                putUnits(buffer, record.bids)
+                putUnits(buffer, record.asks)
+            }
+            is RawFrame -> {
+                putString(buffer, record.receivedTime.zone.id)
+                putString(buffer, record.exchangeVendor.name)
+                buffer.putInt(record.payload.size)
+                buffer.put(record.payload)
+            }
+        }
+    }
+
+    fun decode(type: Byte, eventNanos: Long, buffer: ByteBuffer): Any {
+        val zoneId = ZoneId.of(getString(buffer))
+        val eventTime = ZonedDateTime.ofInstant(Instant.ofEpochSecond(0, eventNanos), zoneId)
+        return when (type) {
+            TICK_DATA -> {
+                val uniqueId = getString(buffer)
+                val exchangeVendor = ExchangeVendor.getInstance(getString(buffer))
+                val currencyPair = CurrencyPair.parse(getString(buffer))
+                val tradeSideType = TradeSideType.values()[buffer.get().toInt()]
+                TickData(uniqueId, eventTime, getDecimal(buffer), getDecimal(buffer), currencyPair, exchangeVendor, tradeSideType)
+            }
+            ORDER_BOOK -> {
+                val uniqueId = getString(buffer)
+                val exchangeVendor = ExchangeVendor.getInstance(getString(buffer))
+                val currencyPair = CurrencyPair.parse(getString(buffer))
+                val bids = getUnits(buffer, TradeSideType.BUY)
+                val asks = getUnits(buffer, TradeSideType.SELL)
+                OrderBook(uniqueId, currencyPair, eventTime, exchangeVendor, bids, asks)
+            }
+            RAW_FRAME -> {
+                val exchangeVendor = ExchangeVendor.getInstance(getString(buffer))
+                val payload = ByteArray(buffer.int)
+                buffer.get(payload)
+                RawFrame(exchangeVendor, eventTime, payload)
+            }
+            else -> throw IllegalStateException("unknown journal record type : $type")
+        }
+    }
+
+    fun epochNanos(time: ZonedDateTime): Long {
+        val instant = time.toInstant()
+        return Math.addExact(Math.multiplyExact(instant.epochSecond, 1_000_000_000L), instant.nano.toLong())
+    }
+
+    private fun putUnits(buffer: ByteBuffer, orderBookUnits: List<OrderBookUnit>) {
+        buffer.putInt(orderBookUnits.size)
+        orderBookUnits.forEach {
+            putDecimal(buffer, it.price)
+            putDecimal(buffer, it.quantity)
+            buffer.putInt(it.orderNumbers ?: -1)
+        }
+    }
+
+    private fun getUnits(buffer: ByteBuffer, side: TradeSideType): List<OrderBookUnit> {
+        val size = buffer.int
+        val orderBookUnits = ArrayList<OrderBookUnit>(size)
+        repeat(size) {
+            val price = getDecimal(buffer)
+            val quantity = getDecimal(buffer)
+            val orderNumbers = buffer.int
+            orderBookUnits.add(OrderBookUnit(price, quantity, side, if (orderNumbers < 0) null else orderNumbers))
+        }
+        return orderBookUnits
+    }
+
+    private fun putString(buffer: ByteBuffer, value: String) {
+        val bytes = value.toByteArray(Charsets.UTF_8)
+        buffer.putShort(bytes.size.toShort())
+        buffer.put(bytes)
+    }
+
+    private fun getString(buffer: ByteBuffer): String {
+        val bytes = ByteArray(buffer.short.toInt())
+        buffer.get(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    private fun putDecimal(buffer: ByteBuffer, value: BigDecimal) {
+        buffer.putInt(value.scale())
+        val unscaledValue = value.unscaledValue()
+        if (unscaledValue.bitLength() < 64) {
+            buffer.put(0)
+            buffer.putLong(unscaledValue.toLong())
+        } else {
+            val bytes = unscaledValue.toByteArray()
+            buffer.put(1)
+            buffer.put(bytes.size.toByte())
+            buffer.put(bytes)
+        }
+    }
+
+    private fun getDecimal(buffer: ByteBuffer): BigDecimal {
+        val scale = buffer.int
+        return if (buffer.get().toInt() == 0) {
+            BigDecimal.valueOf(buffer.long, scale)
+        } else {
+            val bytes = ByteArray(buffer.get().toInt() and 0xFF)
+            buffer.get(bytes)
+            BigDecimal(BigInteger(bytes), scale)
+        }
+    }
+}
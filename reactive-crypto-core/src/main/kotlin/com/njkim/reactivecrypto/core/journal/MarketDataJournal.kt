@@ -0,0 +1,215 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.journal
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import io.netty.buffer.ByteBuf
+import io.netty.buffer.ByteBufUtil
+import mu.KotlinLogging
+import java.io.Closeable
+import java.nio.BufferOverflowException
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.time.Duration
+import java.time.ZonedDateTime
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Append only binary journal of [com.njkim.reactivecrypto.core.common.model.order.TickData],
+ * [com.njkim.reactivecrypto.core.common.model.order.OrderBook] and [RawFrame].
+ *
+ * [append] only enqueues the record, so it is safe to call on the netty event loop.
+ * A dedicated writer thread encodes the records with [JournalCodec] into memory-mapped segment files
+ * `<name>-<sequence>.journal` of [segmentSize] bytes, and rolls to a new segment when a record doesn't fit.
+ * Each segment has an `<name>-<sequence>.index` file of `[event time in epoch nanos: long][position: int]` entries
+ * written at most once every [indexInterval] of event time, used by [MarketDataJournalReader] to seek by time.
+ *
+ * Records are dropped and counted in [droppedCount] when the writer can't keep up with [queueCapacity] pending records.
+ */
+class MarketDataJournal @JvmOverloads constructor(
+    private val directory: Path,
+    private val name: String = DEFAULT_NAME,
+    private val segmentSize: Int = DEFAULT_SEGMENT_SIZE,
+    private val indexInterval: Duration = Duration.ofSeconds(1),
+    queueCapacity: Int = 65536
+) : Closeable {
+    private val log = KotlinLogging.logger {}
+
+    private val queue: ArrayBlockingQueue<Any> = ArrayBlockingQueue(queueCapacity)
+
+    private val droppedCount = AtomicLong()
+    private val writtenCount = AtomicLong()
+
+    @Volatile
+    private var closed: Boolean = false
+
+    // accessed by the writer thread only
+    private var segmentSequence: Long
+    private var segment: MappedByteBuffer? = null
+    private var indexChannel: FileChannel? = null
+    private var lastIndexedNanos: Long = Long.MIN_VALUE
+    private var scratch: ByteBuffer = ByteBuffer.allocate(64 * 1024)
+    private val indexEntry: ByteBuffer = ByteBuffer.allocate(8 + 4)
+
+    private val writer: Thread
+
+    init {
+        require(segmentSize > JournalCodec.HEADER_SIZE + 1) { "segmentSize is too small : $segmentSize" }
+        Files.createDirectories(directory)
+        segmentSequence = (MarketDataJournalReader.segmentSequences(directory, name).max() ?: 0L) + 1
+
+        writer = Thread(this::drain, "$name-journal-writer")
+        writer.isDaemon = true
+        writer.start()
+    }
+
+    /**
+     * enqueue a [com.njkim.reactivecrypto.core.common.model.order.TickData],
+     * [com.njkim.reactivecrypto.core.common.model.order.OrderBook] or [RawFrame] without blocking
+     *
+     * @return false when the record is dropped because the queue is full or the journal is closed
+     */
+    fun append(record: Any): Boolean {
+        JournalCodec.type(record)
+        if (closed || !queue.offer(record)) {
+            droppedCount.incrementAndGet()
+            return false
+        }
+        return true
+    }
+
+    /**
+     * record a websocket frame, the readable bytes of [content] are copied so it can be released afterwards
+     */
+    fun appendFrame(exchangeVendor: ExchangeVendor, content: ByteBuf, receivedTime: ZonedDateTime = ZonedDateTime.now()): Boolean {
+        return append(RawFrame(exchangeVendor, receivedTime, ByteBufUtil.getBytes(content)))
+    }
+
+    fun droppedCount(): Long = droppedCount.get()
+
+    fun writtenCount(): Long = writtenCount.get()
+
+    /**
+     * write the pending records and flush the current segment
+     */
+    override fun close() {
+        closed = true
+        writer.join()
+    }
+
+    private fun drain() {
+        try {
+            while (!closed || queue.isNotEmpty()) {
+                val record = queue.poll(100, TimeUnit.MILLISECONDS) ?: continue
+                if (write(record)) {
+                    writtenCount.incrementAndGet()
+                }
+            }
+        } catch (e: Exception) {
+            log.error(e) { "journal writer of $name stopped" }
+            closed = true
+        } finally {
+            closeSegment()
+        }
+    }
+
+    private fun write(record: Any): Boolean {
+        val payloadLength = encode(record)
+        val recordLength = JournalCodec.HEADER_SIZE + payloadLength
+        if (recordLength >= segmentSize) {
+            log.warn { "record of $recordLength bytes exceeds segmentSize $segmentSize of $name journal" }
+            droppedCount.incrementAndGet()
+            return false
+        }
+
+        // keep one byte for the end of segment marker
+        var current = segment
+        if (current == null || current.remaining() < recordLength + 1) {
+            closeSegment()
+            current = openSegment()
+        }
+
+        val eventNanos = JournalCodec.epochNanos(JournalCodec.eventTime(record))
+        val position = current.position()
+        if (lastIndexedNanos == Long.MIN_VALUE || eventNanos - lastIndexedNanos >= indexInterval.toNanos()) {
+            indexEntry.clear()
+            indexEntry.putLong(eventNanos).putInt(position).flip()
+            indexChannel!!.write(indexEntry)
+            lastIndexedNanos = eventNanos
+        }
+
+        // the type is written last so that a reader never sees a partially written record
+        current.position(position + 1)
+        current.putInt(payloadLength)
+        current.putLong(eventNanos)
+        scratch.flip()
+        current.put(scratch)
+        current.put(position, JournalCodec.type(record))
+        return true
+    }
+
+    /**
+     * @return payload length written into [scratch]
+     */
+    private fun encode(record: Any): Int {
+        while (true) {
+            scratch.clear()
+            try {
+                JournalCodec.encodePayload(record, scratch)
+                return scratch.position()
+            } catch (e: BufferOverflowException) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2)
+            }
+        }
+    }
+
+    private fun openSegment(): MappedByteBuffer {
+        val sequence = segmentSequence++
+        val segmentPath = MarketDataJournalReader.segmentPath(directory, name, sequence)
+        val mapped = FileChannel.open(segmentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE).use {
+            it.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize.toLong())
+        }
+        indexChannel = FileChannel.open(
+            MarketDataJournalReader.indexPath(directory, name, sequence),
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE
+        )
+        lastIndexedNanos = Long.MIN_VALUE
+        segment = mapped
+        log.debug { "journal segment $segmentPath opened" }
+        return mapped
+    }
+
+    private fun closeSegment() {
+        // mapped files are preallocated and zero filled, so the end marker is already in place
+        segment?.force()
+        indexChannel?.close()
+        segment = null
+        indexChannel = null
+    }
+
+    companion object {
+        const val DEFAULT_NAME = "market-data"
+        const val DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024
+    }
+}
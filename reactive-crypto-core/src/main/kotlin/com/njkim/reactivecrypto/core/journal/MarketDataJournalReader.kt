@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.journal
+
+import reactor.core.publisher.Flux
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.time.ZonedDateTime
+
+/**
+ * Reads the segments written by [MarketDataJournal] in order.
+ *
+ * The time indexes are used to skip the segments and records older than the requested start time.
+ * The record being written in the active segment is never visible, reading stops at the last complete record.
+ */
+class MarketDataJournalReader @JvmOverloads constructor(
+    private val directory: Path,
+    private val name: String = MarketDataJournal.DEFAULT_NAME
+) {
+    /**
+     * @param from records whose event time is before [from] are skipped, every record when null
+     * @return [com.njkim.reactivecrypto.core.common.model.order.TickData],
+     * [com.njkim.reactivecrypto.core.common.model.order.OrderBook] and [RawFrame] in journal order
+     */
+    @JvmOverloads
+    fun read(from: ZonedDateTime? = null): Flux<Any> {
+        return Flux.defer { Flux.fromIterable(records(from?.let { JournalCodec.epochNanos(it) }, null).asIterable()) }
+    }
+
+    /**
+     * read only the records of [recordType], the other records are skipped without being decoded
+     */
+    @JvmOverloads
+    fun <T : Any> read(recordType: Class<T>, from: ZonedDateTime? = null): Flux<T> {
+        val type = JournalCodec.type(recordType)
+        return Flux.defer { Flux.fromIterable(records(from?.let { JournalCodec.epochNanos(it) }, type).asIterable()) }
+            .cast(recordType)
+    }
+
+    private fun records(fromNanos: Long?, recordType: Byte?): Sequence<Any> = sequence {
+        val sequences = segmentSequences(directory, name).sorted()
+        val indexes = sequences.map { readIndex(it) }
+
+        // the last segment starting at or before fromNanos may contain it
+        val first = if (fromNanos == null) 0 else maxOf(indexes.indexOfLast { it.isNotEmpty() && it[0].first <= fromNanos }, 0)
+        for (position in first until sequences.size) {
+            val segment = map(sequences[position]) ?: continue
+            if (fromNanos != null) {
+                segment.position(indexes[position].lastOrNull { it.first <= fromNanos }?.second ?: 0)
+            }
+
+            while (segment.remaining() >= JournalCodec.HEADER_SIZE) {
+                val type = segment.get(segment.position())
+                if (type == JournalCodec.END_OF_SEGMENT) {
+                    break
+                }
+                segment.position(segment.position() + 1)
+                val payloadLength = segment.int
+                val eventNanos = segment.long
+                val payloadEnd = segment.position() + payloadLength
+                if ((recordType == null || type == recordType) && (fromNanos == null || eventNanos >= fromNanos)) {
+                    yield(JournalCodec.decode(type, eventNanos, segment))
+                }
+                segment.position(payloadEnd)
+            }
+        }
+    }
+
+    private fun map(sequence: Long): ByteBuffer? {
+        val segmentPath = segmentPath(directory, name, sequence)
+        if (!Files.exists(segmentPath)) {
+            return null
+        }
+        return FileChannel.open(segmentPath, StandardOpenOption.READ).use {
+            it.map(FileChannel.MapMode.READ_ONLY, 0, it.size())
+        }
+    }
+
+    /**
+     * @return (event time in epoch nanos, position) entries of the segment
+     */
+    private fun readIndex(sequence: Long): List<Pair<Long, Int>> {
+        val indexPath = indexPath(directory, name, sequence)
+        if (!Files.exists(indexPath)) {
+            return emptyList()
+        }
+        val buffer = ByteBuffer.wrap(Files.readAllBytes(indexPath))
+        val entries = ArrayList<Pair<Long, Int>>(buffer.remaining() / INDEX_ENTRY_SIZE)
+        while (buffer.remaining() >= INDEX_ENTRY_SIZE) {
+            entries.add(buffer.long to buffer.int)
+        }
+        return entries
+    }
+
+    companion object {
+        private const val INDEX_ENTRY_SIZE = 8 + 4
+
+        internal fun segmentPath(directory: Path, name: String, sequence: Long): Path =
+            directory.resolve(String.format("%s-%08d.journal", name, sequence))
+
+        internal fun indexPath(directory: Path, name: String, sequence: Long): Path =
+            directory.resolve(String.format("%s-%08d.index", name, sequence))
+
+        internal fun segmentSequences(directory: Path, name: String): List<Long> {
+            if (!Files.isDirectory(directory)) {
+                return emptyList()
+            }
+            val pattern = Regex("${Regex.escape(name)}-(\\d+)\\.journal")
+            return Files.list(directory).use { paths ->
+                paths.iterator().asSequence()
+                    .mapNotNull { pattern.matchEntire(it.fileName.toString())?.groupValues?.get(1)?.toLong() }
+                    .toList()
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.json
+
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.module.kotlin.jacksonTypeRef
+import io.netty.buffer.ByteBuf
+import io.netty.buffer.ByteBufInputStream
+import io.netty.buffer.Unpooled
+import java.io.InputStream
+import java.nio.ByteBuffer
+
+/**
+ * Hand-written decoder which reads the tokens of a whole exchange message and builds core models directly,
+ * without binding an intermediate exchange model first.
+ *
+ * @see com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper.tickDataDecoder
+ * @see com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper.orderBookDecoder
+ */
+interface JsonMessageDecoder<T> {
+    /**
+     * @param parser positioned on the first token of the message
+     */
+    fun decode(parser: JsonParser): T
+}
+
+fun <T> ObjectMapper.decode(content: String, decoder: JsonMessageDecoder<T>): T {
+    return decode(factory.createParser(content), decoder)
+}
+
+fun <T> ObjectMapper.decode(content: ByteArray, offset: Int, length: Int, decoder: JsonMessageDecoder<T>): T {
+    return decode(factory.createParser(content, offset, length), decoder)
+}
+
+fun <T> ObjectMapper.decode(content: InputStream, decoder: JsonMessageDecoder<T>): T {
+    return decode(factory.createParser(content), decoder)
+}
+
+/**
+ * decode the readable bytes of [content] as UTF-8 json without copying them into a String.
+ * neither the reader index nor the reference count of [content] is modified, the caller still owns the buffer.
+ */
+fun <T> ObjectMapper.decode(content: ByteBuf, decoder: JsonMessageDecoder<T>): T {
+    return decode(createParser(content), decoder)
+}
+
+fun <T> ObjectMapper.decode(content: ByteBuffer, decoder: JsonMessageDecoder<T>): T {
+    if (content.hasArray()) {
+        return decode(content.array(), content.arrayOffset() + content.position(), content.remaining(), decoder)
+    }
+    return decode(ByteBufInputStream(Unpooled.wrappedBuffer(content)), decoder)
+}
+
+/**
+ * decoder which binds the whole message to [T] with this [ObjectMapper],
+ * for messages that have no hand-written [JsonMessageDecoder]
+ */
+inline fun <reified T> ObjectMapper.messageDecoder(): JsonMessageDecoder<T> {
+    val objectMapper = this
+    val typeReference = jacksonTypeRef<T>()
+    return object : JsonMessageDecoder<T> {
+        override fun decode(parser: JsonParser): T {
+            return objectMapper.readValue(parser, typeReference)
+        }
+    }
+}
+
+internal fun ObjectMapper.createParser(content: ByteBuf): JsonParser {
+    if (content.hasArray()) {
+        return factory.createParser(content.array(), content.arrayOffset() + content.readerIndex(), content.readableBytes())
+    }
+    return factory.createParser(ByteBufInputStream(content.duplicate()) as InputStream)
+}
+
+private fun <T> decode(parser: JsonParser, decoder: JsonMessageDecoder<T>): T {
+    return parser.use {
+        it.nextToken()
+        decoder.decode(it)
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.json
+
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.netty.buffer.ByteBuf
+import reactor.core.publisher.Flux
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Dispatch stage of a websocket stream.
+ *
+ * The type of each message is resolved by [typeResolver] from the leading header tokens only,
+ * then the whole message is decoded by the decoder routed to that type.
+ * Messages of a type without a route (subscription replies, heartbeats, ...) are dropped without parsing the payload.
+ * Every resolved type is counted, see [messageCounts].
+ *
+ * @property routes decoder of each message type
+ */
+class JsonMessageRouter<T>(
+    private val objectMapper: ObjectMapper,
+    private val typeResolver: JsonMessageTypeResolver,
+    private val routes: Map<String, JsonMessageDecoder<out T>>
+) {
+    companion object {
+        /**
+         * counter key of the messages whose type could not be resolved
+         */
+        const val UNKNOWN_TYPE = "unknown"
+    }
+
+    private val counters: MutableMap<String, LongAdder> = ConcurrentHashMap()
+
+    /**
+     * neither the reader index nor the reference count of [content] is modified
+     *
+     * @return null when no decoder is routed to the type of [content]
+     */
+    fun route(content: ByteBuf): T? {
+        return route(content) { _, message -> message }
+    }
+
+    /**
+     * @param handler called with the resolved type and the decoded message, when the type has a route
+     */
+    fun <R> route(content: ByteBuf, handler: (type: String, message: T) -> R): R? {
+        val type = objectMapper.createParser(content).use { resolveType(it.apply { nextToken() }) }
+        return routes[type]?.let { handler(type, objectMapper.decode(content, it)) }
+    }
+
+    fun route(content: String): T? {
+        val type = objectMapper.factory.createParser(content).use { resolveType(it.apply { nextToken() }) }
+        return routes[type]?.let { objectMapper.decode(content, it) }
+    }
+
+    /**
+     * @return number of received messages by type, including the dropped ones
+     */
+    fun messageCounts(): Map<String, Long> {
+        return counters.mapValues { it.value.sum() }
+    }
+
+    private fun resolveType(parser: JsonParser): String {
+        val type = typeResolver.resolve(parser) ?: UNKNOWN_TYPE
+        counters.computeIfAbsent(type) { LongAdder() }.increment()
+        return type
+    }
+}
+
+/**
+ * route every frame synchronously, before the inbound releases the frame buffer.
+ * frames without a route are dropped.
+ */
+fun <T> Flux<ByteBuf>.route(router: JsonMessageRouter<T>): Flux<T> {
+    return handle { frame, sink ->
+        router.route(frame)?.let { sink.next(it) }
+    }
+}
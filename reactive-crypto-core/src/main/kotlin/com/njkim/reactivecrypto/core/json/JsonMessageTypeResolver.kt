@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.json
+
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+
+/**
+ * Resolves the type of a message from its leading header tokens, so the message can be routed
+ * before the payload is parsed.
+ *
+ * @see JsonMessageRouter
+ */
+interface JsonMessageTypeResolver {
+    /**
+     * @param parser positioned on the first token of the message. the parser is closed after resolving,
+     * there is no need to read the message to its end.
+     * @return null when the message has no known type
+     */
+    fun resolve(parser: JsonParser): String?
+
+    companion object {
+        /**
+         * resolve the type from the first top level string field named one of [fieldNames].
+         * fields placed before the discriminator are skipped, so put the most common discriminator first.
+         *
+         * @param typeOf map the field value to a type, e.g. strip the currency pair out of a channel name
+         */
+        fun field(
+            vararg fieldNames: String,
+            typeOf: (fieldName: String, value: String) -> String = { _, value -> value }
+        ): JsonMessageTypeResolver {
+            return FieldTypeResolver(fieldNames.toSet(), typeOf)
+        }
+    }
+}
+
+private class FieldTypeResolver(
+    private val fieldNames: Set<String>,
+    private val typeOf: (fieldName: String, value: String) -> String
+) : JsonMessageTypeResolver {
+    override fun resolve(parser: JsonParser): String? {
+        if (parser.currentToken != JsonToken.START_OBJECT) {
+            return null
+        }
+
+        parser.forEachField { fieldName ->
+            if (fieldName in fieldNames && parser.currentToken == JsonToken.VALUE_STRING) {
+                return typeOf(fieldName, parser.text)
+            }
+            parser.skipChildren()
+        }
+        return null
+    }
+}
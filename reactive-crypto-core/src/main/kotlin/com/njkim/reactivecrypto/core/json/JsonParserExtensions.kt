@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.json
+
+import com.fasterxml.jackson.core.JsonParseException
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import com.njkim.reactivecrypto.core.common.model.number.ScaledDecimal
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import java.math.BigDecimal
+
+/**
+ * iterate the fields of the current object.
+ * [action] is called with the parser positioned on the field value, a container value must be read to its end token
+ * or skipped with [JsonParser.skipChildren].
+ */
+inline fun JsonParser.forEachField(action: (fieldName: String) -> Unit) {
+    expectToken(JsonToken.START_OBJECT)
+    while (nextToken() == JsonToken.FIELD_NAME) {
+        val fieldName = currentName
+        nextToken()
+        action(fieldName)
+    }
+}
+
+/**
+ * iterate the elements of the current array.
+ * [action] is called with the parser positioned on the element, a container element must be read to its end token
+ * or skipped with [JsonParser.skipChildren].
+ */
+inline fun JsonParser.forEachElement(action: () -> Unit) {
+    expectToken(JsonToken.START_ARRAY)
+    while (nextToken() != JsonToken.END_ARRAY) {
+        action()
+    }
+}
+
+/**
+ * read the current string or number token as [BigDecimal] without an intermediate String
+ */
+fun JsonParser.bigDecimalValue(): BigDecimal {
+    return when (currentToken) {
+        JsonToken.VALUE_STRING -> BigDecimal(textCharacters, textOffset, textLength)
+        JsonToken.VALUE_NUMBER_INT, JsonToken.VALUE_NUMBER_FLOAT -> decimalValue
+        else -> throw JsonParseException(this, "expected decimal value but $currentToken")
+    }
+}
+
+/**
+ * read the current string or number token as [ScaledDecimal] without an intermediate String or [BigDecimal]
+ *
+ * @param scale the number of fraction digits of the value is kept when null
+ */
+fun JsonParser.scaledDecimalValue(scale: Int? = null): ScaledDecimal {
+    return when (currentToken) {
+        JsonToken.VALUE_STRING, JsonToken.VALUE_NUMBER_INT, JsonToken.VALUE_NUMBER_FLOAT ->
+            ScaledDecimal.parse(textCharacters, textOffset, textLength, scale)
+        else -> throw JsonParseException(this, "expected decimal value but $currentToken")
+    }
+}
+
+/**
+ * read price levels of the form `[[price, quantity, orderNumbers?, ...], ...]`, extra elements are skipped
+ *
+ * @param withOrderNumbers read the third element of a level as [OrderBookUnit.orderNumbers]
+ */
+fun JsonParser.orderBookUnitsValue(side: TradeSideType, withOrderNumbers: Boolean = false): List<OrderBookUnit> {
+    val orderBookUnits = ArrayList<OrderBookUnit>()
+    forEachElement {
+        nextToken()
+        val price = bigDecimalValue()
+        nextToken()
+        val quantity = bigDecimalValue()
+        val orderNumbers = if (withOrderNumbers && nextToken() != JsonToken.END_ARRAY) valueAsInt else null
+        orderBookUnits.add(OrderBookUnit(price, quantity, side, orderNumbers))
+
+        if (currentToken != JsonToken.END_ARRAY) {
+            while (nextToken() != JsonToken.END_ARRAY) {
+                skipChildren()
+            }
+        }
+    }
+    return orderBookUnits
+}
+
+fun JsonParser.expectToken(token: JsonToken) {
+    if (currentToken != token) {
+        throw JsonParseException(this, "expected $token but $currentToken")
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.metrics
+
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Lock-free histogram of nanosecond durations in power of two buckets.
+ *
+ * Recording is a few [LongAdder] increments without allocation, cheap enough to stay enabled on the event loop.
+ * Percentiles are the upper bound of their bucket, so they are accurate within a factor of two.
+ */
+class LatencyHistogram {
+    // bucket i counts durations in [2^(i-1), 2^i) nanos, bucket 0 counts zero and negative durations
+    private val buckets = Array(BUCKET_COUNT) { LongAdder() }
+    private val totalNanos = LongAdder()
+    private val maxNanos = AtomicLong()
+
+    fun record(nanos: Long) {
+        val bucket = if (nanos <= 0) 0 else BUCKET_COUNT - java.lang.Long.numberOfLeadingZeros(nanos)
+        buckets[bucket].increment()
+        if (nanos > 0) {
+            totalNanos.add(nanos)
+            if (nanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(nanos, Math::max)
+            }
+        }
+    }
+
+    fun record(duration: Duration) = record(duration.toNanos())
+
+    fun snapshot(): Snapshot {
+        return Snapshot(LongArray(BUCKET_COUNT) { buckets[it].sum() }, totalNanos.sum(), maxNanos.get())
+    }
+
+    class Snapshot internal constructor(
+        private val counts: LongArray,
+        private val totalNanos: Long,
+        private val maxNanos: Long
+    ) {
+        val count: Long = counts.sum()
+
+        val max: Duration
+            get() = Duration.ofNanos(maxNanos)
+
+        val mean: Duration
+            get() = if (count == 0L) Duration.ZERO else Duration.ofNanos(totalNanos / count)
+
+        /**
+         * @param percentile in (0, 100]
+         */
+        fun percentile(percentile: Double): Duration {
+            require(percentile > 0 && percentile <= 100) { "percentile must be in (0, 100] : $percentile" }
+            if (count == 0L) {
+                return Duration.ZERO
+            }
+
+            val rank = Math.ceil(count * percentile / 100).toLong()
+            var cumulative = 0L
+            for (bucket in counts.indices) {
+                cumulative += counts[bucket]
+                if (cumulative >= rank) {
+                    return Duration.ofNanos(minOf(upperBound(bucket), maxNanos))
+                }
+            }
+            return max
+        }
+
+        operator fun plus(other: Snapshot): Snapshot {
+            return Snapshot(
+                LongArray(BUCKET_COUNT) { counts[it] + other.counts[it] },
+                totalNanos + other.totalNanos,
+                maxOf(maxNanos, other.maxNanos)
+            )
+        }
+
+        override fun toString(): String {
+            return "count=$count, mean=$mean, p50=${percentile(50.0)}, p99=${percentile(99.0)}, max=$max"
+        }
+
+        private fun upperBound(bucket: Int): Long = if (bucket >= BUCKET_COUNT - 1) Long.MAX_VALUE else (1L shl bucket) - 1
+    }
+
+    companion object {
+        private const val BUCKET_COUNT = 64
+
+        @JvmField
+        val EMPTY: Snapshot = LatencyHistogram().snapshot()
+    }
+}
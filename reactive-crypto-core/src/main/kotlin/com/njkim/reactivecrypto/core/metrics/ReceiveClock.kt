@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.metrics
+
+import java.time.Instant
+import java.time.ZonedDateTime
+import java.util.concurrent.TimeUnit
+
+/**
+ * Converts [System.nanoTime] receive timestamps to wall clock time.
+ *
+ * Receive timestamps are monotonic so receive to emit latencies are not affected by clock adjustments,
+ * the wall clock is anchored once to compare them with the event time of the exchange.
+ *
+ * While a frame is decoded [decodingNanos] returns the time it was received,
+ * events take it as the default of their receivedNanos so they are stamped when constructed instead of after.
+ */
+object ReceiveClock {
+    private val anchorEpochNanos: Long
+    private val anchorNanos: Long
+    internal val decodingFrame: ThreadLocal<LongArray> = ThreadLocal.withInitial { LongArray(1) }
+
+    init {
+        val now = Instant.now()
+        anchorNanos = System.nanoTime()
+        anchorEpochNanos = TimeUnit.SECONDS.toNanos(now.epochSecond) + now.nano
+    }
+
+    fun toEpochNanos(nanos: Long): Long = anchorEpochNanos + (nanos - anchorNanos)
+
+    fun toInstant(nanos: Long): Instant {
+        val epochNanos = toEpochNanos(nanos)
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND), Math.floorMod(epochNanos, NANOS_PER_SECOND))
+    }
+
+    /**
+     * @return nanos from [eventTime] until [receivedNanos], negative when the clock of the exchange is ahead
+     */
+    fun exchangeLatencyNanos(eventTime: ZonedDateTime, receivedNanos: Long): Long {
+        val eventEpochNanos = TimeUnit.SECONDS.toNanos(eventTime.toEpochSecond()) + eventTime.nano
+        return toEpochNanos(receivedNanos) - eventEpochNanos
+    }
+
+    /**
+     * @return [System.nanoTime] when the frame being decoded on this thread was received, 0 outside of [decoding]
+     */
+    fun decodingNanos(): Long = decodingFrame.get()[0]
+
+    /**
+     * run [decode] with [decodingNanos] returning [receivedNanos]
+     */
+    internal inline fun <T> decoding(receivedNanos: Long, decode: () -> T): T {
+        val frame = decodingFrame.get()
+        val previous = frame[0]
+        frame[0] = receivedNanos
+        try {
+            return decode()
+        } finally {
+            frame[0] = previous
+        }
+    }
+
+    private const val NANOS_PER_SECOND = 1_000_000_000L
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.netty
+
+import io.netty.buffer.ByteBuf
+
+/**
+ * @return index of the first occurrence of the ascii [text] between readerIndex and writerIndex, -1 if not found.
+ * the reader index is not modified.
+ */
+fun ByteBuf.indexOfAscii(text: String): Int {
+    val lastIndex = writerIndex() - text.length
+    var index = readerIndex()
+    while (index <= lastIndex) {
+        if (regionMatchesAscii(index, text)) {
+            return index
+        }
+        index++
+    }
+    return -1
+}
+
+fun ByteBuf.containsAscii(text: String): Boolean {
+    return indexOfAscii(text) >= 0
+}
+
+/**
+ * @return whether the readable bytes start with the ascii [text], the reader index is not modified.
+ */
+fun ByteBuf.startsWithAscii(text: String): Boolean {
+    return readableBytes() >= text.length && regionMatchesAscii(readerIndex(), text)
+}
+
+private fun ByteBuf.regionMatchesAscii(index: Int, text: String): Boolean {
+    for (i in text.indices) {
+        if (getByte(index + i) != text[i].toByte()) {
+            return false
+        }
+    }
+    return true
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.netty
+
+import io.netty.buffer.ByteBuf
+import io.netty.channel.ChannelHandlerContext
+import io.netty.handler.codec.ByteToMessageDecoder
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame
+
+/**
+ * server sent ping {"ping" : $epochMilli }
+ * client response pong {"pong" : $epochMilli }
+ *
+ * A frame is a ping only when it starts with [pingPrefix], "ping" in the payload of other frames is left alone.
+ * The pong is written by patching the last "ping" of the prefix in place and every other frame is passed on
+ * as a retained slice, so no frame is decoded to a String or copied.
+ *
+ * @param pingPrefix leading bytes of a ping, e.g. `{"action":"ping"` for `{"action":"ping","data":{"ts":$epochMilli}}`
+ */
+class PingPongHandler(private val pingPrefix: String = "{\"ping\"") : ByteToMessageDecoder() {
+    private val pingOffset = pingPrefix.lastIndexOf(PING)
+
+    init {
+        require(pingOffset >= 0) { "pingPrefix must contain $PING : $pingPrefix" }
+    }
+
+    override fun decode(ctx: ChannelHandlerContext, msg: ByteBuf, out: MutableList<Any>) {
+        if (msg.startsWithAscii(pingPrefix)) {
+            msg.setCharSequence(msg.readerIndex() + pingOffset, PONG, Charsets.US_ASCII)
+            ctx.channel().writeAndFlush(TextWebSocketFrame(msg.readRetainedSlice(msg.readableBytes())))
+        } else {
+            out.add(msg.readRetainedSlice(msg.readableBytes()))
+        }
+    }
+
+    companion object {
+        private const val PING = "ping"
+        private const val PONG = "pong"
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.netty
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.http.ReactiveCryptoHttpConfig
+import io.netty.channel.epoll.Epoll
+import reactor.core.Disposable
+import reactor.netty.http.HttpResources
+import reactor.netty.http.client.HttpClient
+import reactor.netty.resources.ConnectionProvider
+import reactor.netty.resources.LoopResources
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Event loops, connection pool and transport of every websocket and http client built by the library.
+ *
+ * The default shares the global reactor-netty resources, like `HttpClient.create()`.
+ * Hot venues can be isolated on their own event loops with [vendorLoopResources]:
+ *
+ * ```
+ * ExchangeClientFactory.configureNetwork(
+ *     ReactiveCryptoNetworkConfig()
+ *         .withVendorLoops(ExchangeVendor.BINANCE, ReactiveCryptoNetworkConfig.dedicatedLoops("binance", 2))
+ * )
+ * ```
+ *
+ * Clients read the configuration when they open a connection, so it must be set before the first client is used.
+ * The REST connection pool is owned by the configuration and released by [dispose],
+ * the loops and websocket connections passed in are owned by the caller.
+ *
+ * @property connectionProvider connections of the websockets
+ * @property preferNative use the native epoll (or kqueue) transport when it is available, NIO otherwise
+ * @property http connection pool and options of the REST clients
+ */
+class ReactiveCryptoNetworkConfig(
+    val loopResources: LoopResources = HttpResources.get(),
+    val connectionProvider: ConnectionProvider = HttpResources.get(),
+    val preferNative: Boolean = true,
+    val vendorLoopResources: Map<ExchangeVendor, LoopResources> = emptyMap(),
+    val http: ReactiveCryptoHttpConfig = ReactiveCryptoHttpConfig.DEFAULT
+) : Disposable {
+    // created on the first REST client, shared by every exchange and account
+    private val restConnectionProvider: Lazy<ConnectionProvider> = lazy { http.newConnectionProvider() }
+
+    // connections are pooled per client configuration, so every account of a vendor uses the same client
+    private val restClients: MutableMap<ExchangeVendor, HttpClient> = ConcurrentHashMap()
+
+    @Volatile
+    private var disposed: Boolean = false
+
+    companion object {
+        @JvmField
+        val DEFAULT = ReactiveCryptoNetworkConfig()
+
+        /**
+         * event loops of their own, disposed by the caller
+         *
+         * @param workerCount number of event loop threads
+         */
+        @JvmStatic
+        fun dedicatedLoops(name: String, workerCount: Int): LoopResources {
+            require(workerCount > 0) { "workerCount must be positive : $workerCount" }
+            return LoopResources.create("reactive-crypto-$name", workerCount, true)
+        }
+    }
+
+    fun loopResources(exchangeVendor: ExchangeVendor): LoopResources {
+        return vendorLoopResources[exchangeVendor] ?: loopResources
+    }
+
+    /**
+     * @return a new configuration with a REST connection pool of its own, nothing is shared with this one
+     */
+    fun withVendorLoops(exchangeVendor: ExchangeVendor, loopResources: LoopResources): ReactiveCryptoNetworkConfig {
+        return ReactiveCryptoNetworkConfig(
+            this.loopResources,
+            connectionProvider,
+            preferNative,
+            vendorLoopResources + (exchangeVendor to loopResources),
+            http
+        )
+    }
+
+    /**
+     * @return a client running on the event loops of [exchangeVendor], vendor specific options are set on it
+     */
+    fun httpClient(exchangeVendor: ExchangeVendor): HttpClient {
+        return HttpClient.create(connectionProvider)
+            .runOn(loopResources(exchangeVendor), preferNative)
+    }
+
+    /**
+     * @return a REST client running on the event loops of [exchangeVendor] with the pooled connections of [http]
+     */
+    fun restClient(exchangeVendor: ExchangeVendor): HttpClient {
+        check(!disposed) { "the network configuration is disposed" }
+        return restClients.computeIfAbsent(exchangeVendor) {
+            http.configure(
+                HttpClient.create(restConnectionProvider.value)
+                    .runOn(loopResources(exchangeVendor), preferNative)
+            )
+        }
+    }
+
+    /**
+     * close the REST connection pool, the REST clients created by this configuration can not be used afterwards
+     */
+    override fun dispose() {
+        disposed = true
+        restClients.clear()
+        if (restConnectionProvider.isInitialized()) {
+            restConnectionProvider.value.dispose()
+        }
+    }
+
+    override fun isDisposed(): Boolean = disposed
+
+    /**
+     * @return name of the transport used by the clients, for diagnostics
+     */
+    fun transport(): String {
+        return if (preferNative && Epoll.isAvailable()) "epoll" else "nio"
+    }
+}
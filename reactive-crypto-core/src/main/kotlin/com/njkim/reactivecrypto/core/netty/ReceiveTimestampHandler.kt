@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.netty
+
+import io.netty.channel.Channel
+import io.netty.channel.ChannelHandlerContext
+import io.netty.channel.ChannelInboundHandlerAdapter
+
+/**
+ * Stamps [System.nanoTime] when bytes are read from the socket, before TLS, decompression and frame decoding.
+ * A frame completed by a read carries the timestamp of that read.
+ *
+ * Must be the first handler of the pipeline, one instance per channel.
+ */
+class ReceiveTimestampHandler : ChannelInboundHandlerAdapter() {
+    /**
+     * [System.nanoTime] of the last read, accessed on the event loop of the channel only
+     */
+    var receivedNanos: Long = 0
+        private set
+
+    override fun channelRead(ctx: ChannelHandlerContext, msg: Any) {
+        receivedNanos = System.nanoTime()
+        ctx.fireChannelRead(msg)
+    }
+
+    companion object {
+        const val NAME = "reactive-crypto.receiveTimestamp"
+
+        fun install(channel: Channel) {
+            if (channel.pipeline().get(NAME) == null) {
+                channel.pipeline().addFirst(NAME, ReceiveTimestampHandler())
+            }
+        }
+
+        fun of(channel: Channel): ReceiveTimestampHandler? {
+            return channel.pipeline().get(NAME) as? ReceiveTimestampHandler
+        }
+    }
+}
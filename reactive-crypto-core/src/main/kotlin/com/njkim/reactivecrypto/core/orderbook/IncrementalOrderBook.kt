@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.orderbook
+
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUpdate
+import java.math.BigDecimal
+import java.util.Collections
+import java.util.TreeMap
+
+/**
+ * Sorted L2 order book of a single currency pair which is mutated in place.
+ *
+ * Price levels are kept in [TreeMap]s ordered by [BigDecimal.compareTo], so `1.10` and `1.1` are the same level
+ * and every upsert/delete costs O(log n) without rebuilding or re-sorting the book.
+ * [update] returns only the levels it changed, the book itself is read through the [bids] and [asks] views
+ * or copied with [toOrderBook] when a consumer needs an immutable book.
+ * Instances are not thread-safe, use one instance per pair inside a serialized pipeline.
+ */
+class IncrementalOrderBook {
+    private val bids: TreeMap<BigDecimal, OrderBookUnit> = TreeMap(Collections.reverseOrder())
+    private val asks: TreeMap<BigDecimal, OrderBookUnit> = TreeMap()
+
+    private val bidsView: Collection<OrderBookUnit> = Collections.unmodifiableCollection(bids.values)
+    private val asksView: Collection<OrderBookUnit> = Collections.unmodifiableCollection(asks.values)
+
+    // the last applied snapshot or delta, tags the books returned by toOrderBook
+    private var lastOrderBook: OrderBook? = null
+
+    private var snapshotApplied: Boolean = false
+
+    /**
+     * replace every price level with the given full snapshot
+     *
+     * @return immutable copy of the whole book tagged with the uniqueId and eventTime of [orderBook]
+     */
+    fun snapshot(orderBook: OrderBook): OrderBook {
+        bids.clear()
+        asks.clear()
+        snapshotApplied = true
+        update(orderBook)
+        return toOrderBook()!!
+    }
+
+    /**
+     * a delta applied before the first snapshot of a stream yields an inconsistent book,
+     * streams sending a snapshot on subscription should drop deltas until this is true
+     */
+    fun isSynchronized(): Boolean = snapshotApplied
+
+    /**
+     * apply the price levels of [orderBook] as a delta.
+     * a level whose quantity is zero or less is removed from the book.
+     *
+     * @return the levels whose quantity changed, a removed level with a zero quantity,
+     * tagged with the uniqueId and eventTime of [orderBook]
+     */
+    fun update(orderBook: OrderBook): OrderBook {
+        lastOrderBook = orderBook
+        val changedBids = orderBook.bids.mapNotNull { upsert(bids, it) }
+        val changedAsks = orderBook.asks.mapNotNull { upsert(asks, it) }
+        return orderBook.copy(bids = changedBids, asks = changedAsks)
+    }
+
+    /**
+     * apply an update of an incremental stream, a snapshot replaces the book and a delta updates it
+     *
+     * @return the whole book for a snapshot, otherwise the changed levels
+     */
+    fun apply(orderBookUpdate: OrderBookUpdate): OrderBook {
+        return if (orderBookUpdate.snapshot) snapshot(orderBookUpdate.orderBook) else update(orderBookUpdate.orderBook)
+    }
+
+    /**
+     * read-only view of the bid levels, best price first, which changes with the book
+     */
+    fun bids(): Collection<OrderBookUnit> = bidsView
+
+    /**
+     * read-only view of the ask levels, best price first, which changes with the book
+     */
+    fun asks(): Collection<OrderBookUnit> = asksView
+
+    fun bestBid(): OrderBookUnit? = bids.firstEntry()?.value
+
+    fun bestAsk(): OrderBookUnit? = asks.firstEntry()?.value
+
+    /**
+     * @return immutable copy of the best [depth] levels of each side tagged with the last applied snapshot or delta,
+     * null before the first one
+     */
+    fun toOrderBook(depth: Int = Int.MAX_VALUE): OrderBook? {
+        require(depth > 0) { "depth must be positive : $depth" }
+        val orderBook = lastOrderBook ?: return null
+        return orderBook.copy(bids = bids.values.take(depth), asks = asks.values.take(depth))
+    }
+
+    fun clear() {
+        bids.clear()
+        asks.clear()
+        lastOrderBook = null
+        snapshotApplied = false
+    }
+
+    /**
+     * @return the changed level, null when the book already had it
+     */
+    private fun upsert(side: TreeMap<BigDecimal, OrderBookUnit>, orderBookUnit: OrderBookUnit): OrderBookUnit? {
+        if (orderBookUnit.quantity <= BigDecimal.ZERO) {
+            val removed = side.remove(orderBookUnit.price) ?: return null
+            return removed.copy(quantity = BigDecimal.ZERO)
+        }
+
+        val previous = side.put(orderBookUnit.price, orderBookUnit)
+        return if (previous != null && previous.quantity.compareTo(orderBookUnit.quantity) == 0) null else orderBookUnit
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.orderbook
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.ConsolidatedOrderBook
+import com.njkim.reactivecrypto.core.common.model.order.ConsolidatedOrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import java.math.BigDecimal
+import java.time.ZonedDateTime
+import java.util.Collections
+import java.util.TreeMap
+
+/**
+ * Consolidated book of a currency pair over the order books of several exchanges.
+ *
+ * Each update of an exchange is merged against its previous book in one pass over both sorted level lists,
+ * only the changed levels are moved in the consolidated [TreeMap]s, so an update costs
+ * O(levels of the exchange + changed levels * log n) instead of re-sorting every book.
+ * Streams emit their levels best price first, levels out of order are sorted before the merge.
+ * A [ConsolidatedOrderBook] is built only when a changed level reaches the top [depth] price levels
+ * or the best price of the exchange changed.
+ * Instances are not thread-safe, use one instance per pair inside a serialized pipeline.
+ *
+ * @param depth number of consolidated price levels of each side published
+ */
+class OrderBookAggregator(
+    private val currencyPair: CurrencyPair,
+    private val depth: Int = 10
+) {
+    private val bids = ConsolidatedSide(TradeSideType.BUY, Collections.reverseOrder())
+    private val asks = ConsolidatedSide(TradeSideType.SELL, Comparator.naturalOrder())
+
+    private var eventTime: ZonedDateTime = ZonedDateTime.now()
+
+    init {
+        require(depth > 0) { "depth must be positive : $depth" }
+    }
+
+    /**
+     * replace the levels of [OrderBook.exchangeVendor] with [orderBook]
+     *
+     * @return the consolidated book, null when the top levels and best prices didn't change
+     */
+    fun update(orderBook: OrderBook): ConsolidatedOrderBook? {
+        require(orderBook.currencyPair == currencyPair) { "expected $currencyPair but ${orderBook.currencyPair}" }
+
+        val bidsChanged = bids.replace(orderBook.exchangeVendor, orderBook.bids, depth)
+        val asksChanged = asks.replace(orderBook.exchangeVendor, orderBook.asks, depth)
+        eventTime = orderBook.eventTime
+        return if (bidsChanged || asksChanged) current() else null
+    }
+
+    /**
+     * drop every level of [exchangeVendor], e.g. when its stream is disconnected
+     */
+    fun remove(exchangeVendor: ExchangeVendor): ConsolidatedOrderBook? {
+        val bidsChanged = bids.replace(exchangeVendor, emptyList(), depth)
+        val asksChanged = asks.replace(exchangeVendor, emptyList(), depth)
+        return if (bidsChanged || asksChanged) current() else null
+    }
+
+    fun current(): ConsolidatedOrderBook {
+        return ConsolidatedOrderBook(
+            currencyPair,
+            eventTime,
+            bids.top(depth),
+            asks.top(depth),
+            bids.bestOfVendors(),
+            asks.bestOfVendors()
+        )
+    }
+
+    private class ConsolidatedSide(
+        private val side: TradeSideType,
+        private val comparator: Comparator<BigDecimal>
+    ) {
+        private val levels: TreeMap<BigDecimal, MutableMap<ExchangeVendor, OrderBookUnit>> = TreeMap(comparator)
+        // levels of each exchange best price first, without empty levels
+        private val vendorLevels: MutableMap<ExchangeVendor, List<OrderBookUnit>> = LinkedHashMap()
+
+        /**
+         * @return whether a changed level is within the top [depth] levels
+         */
+        fun replace(exchangeVendor: ExchangeVendor, orderBookUnits: List<OrderBookUnit>, depth: Int): Boolean {
+            val boundary = boundaryPrice(depth)
+            val previous = vendorLevels[exchangeVendor] ?: emptyList()
+            val next = sortedLevels(orderBookUnits)
+
+            // the best price of each exchange is published even when it is outside of the top levels
+            var changed = !sameLevel(previous.firstOrNull(), next.firstOrNull())
+
+            var previousIndex = 0
+            var nextIndex = 0
+            while (previousIndex < previous.size || nextIndex < next.size) {
+                val previousLevel = previous.getOrNull(previousIndex)
+                val nextLevel = next.getOrNull(nextIndex)
+                val order = when {
+                    previousLevel == null -> 1
+                    nextLevel == null -> -1
+                    else -> comparator.compare(previousLevel.price, nextLevel.price)
+                }
+
+                when {
+                    // the level of the previous book is gone
+                    order < 0 -> {
+                        val vendors = levels[previousLevel!!.price]!!
+                        vendors.remove(exchangeVendor)
+                        if (vendors.isEmpty()) levels.remove(previousLevel.price)
+                        changed = changed || isWithin(previousLevel.price, boundary)
+                        previousIndex++
+                    }
+                    // a new level
+                    order > 0 -> {
+                        levels.getOrPut(nextLevel!!.price) { LinkedHashMap() }[exchangeVendor] = nextLevel
+                        changed = changed || isWithin(nextLevel.price, boundary)
+                        nextIndex++
+                    }
+                    else -> {
+                        if (previousLevel!!.quantity.compareTo(nextLevel!!.quantity) != 0) {
+                            levels.getValue(nextLevel.price)[exchangeVendor] = nextLevel
+                            changed = changed || isWithin(nextLevel.price, boundary)
+                        }
+                        previousIndex++
+                        nextIndex++
+                    }
+                }
+            }
+
+            if (next.isEmpty()) vendorLevels.remove(exchangeVendor) else vendorLevels[exchangeVendor] = next
+            return changed
+        }
+
+        fun top(depth: Int): List<ConsolidatedOrderBookUnit> {
+            val units = ArrayList<ConsolidatedOrderBookUnit>()
+            for (vendors in levels.values.take(depth)) {
+                vendors.forEach { (exchangeVendor, orderBookUnit) ->
+                    units.add(ConsolidatedOrderBookUnit(orderBookUnit.price, orderBookUnit.quantity, side, exchangeVendor))
+                }
+            }
+            return units
+        }
+
+        fun bestOfVendors(): Map<ExchangeVendor, OrderBookUnit> {
+            return vendorLevels.mapValues { it.value.first() }
+        }
+
+        /**
+         * levels with a quantity, best price first, the last level of a repeated price wins
+         */
+        private fun sortedLevels(orderBookUnits: List<OrderBookUnit>): List<OrderBookUnit> {
+            val sortedLevels = ArrayList<OrderBookUnit>(orderBookUnits.size)
+            var sorted = true
+            orderBookUnits.forEach { orderBookUnit ->
+                if (orderBookUnit.quantity <= BigDecimal.ZERO) {
+                    return@forEach
+                }
+                val order = sortedLevels.lastOrNull()?.let { comparator.compare(it.price, orderBookUnit.price) } ?: -1
+                if (order == 0) {
+                    sortedLevels[sortedLevels.size - 1] = orderBookUnit
+                } else {
+                    sorted = sorted && order < 0
+                    sortedLevels.add(orderBookUnit)
+                }
+            }
+            if (sorted) {
+                return sortedLevels
+            }
+
+            // stable, so the last level of a repeated price stays last
+            sortedLevels.sortWith(Comparator { left, right -> comparator.compare(left.price, right.price) })
+            val distinctLevels = ArrayList<OrderBookUnit>(sortedLevels.size)
+            sortedLevels.forEach { orderBookUnit ->
+                val last = distinctLevels.lastOrNull()
+                if (last != null && comparator.compare(last.price, orderBookUnit.price) == 0) {
+                    distinctLevels[distinctLevels.size - 1] = orderBookUnit
+                } else {
+                    distinctLevels.add(orderBookUnit)
+                }
+            }
+            return distinctLevels
+        }
+
+        /**
+         * price of the last published level, null while there are fewer levels than [depth]
+         */
+        private fun boundaryPrice(depth: Int): BigDecimal? {
+            if (levels.size < depth) {
+                return null
+            }
+            return levels.keys.elementAt(depth - 1)
+        }
+
+        private fun sameLevel(previous: OrderBookUnit?, current: OrderBookUnit?): Boolean {
+            if (previous == null || current == null) {
+                return previous == null && current == null
+            }
+            return previous.price.compareTo(current.price) == 0 && previous.quantity.compareTo(current.quantity) == 0
+        }
+
+        private fun isWithin(price: BigDecimal, boundary: BigDecimal?): Boolean {
+            return boundary == null || comparator.compare(price, boundary) <= 0
+        }
+    }
+}
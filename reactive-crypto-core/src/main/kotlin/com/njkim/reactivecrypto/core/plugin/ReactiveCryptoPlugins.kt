@@ -16,8 +16,24 @@
 
 package com.njkim.reactivecrypto.core.plugin
 
+import com.njkim.reactivecrypto.core.netty.ReactiveCryptoNetworkConfig
 import com.njkim.reactivecrypto.core.plugin.strategy.CustomClientFactory
+import com.njkim.reactivecrypto.core.scheduler.PartitionedScheduler
+import com.njkim.reactivecrypto.core.websocket.WebsocketConnectionManager
 
 object ReactiveCryptoPlugins {
     val customClientFactory = CustomClientFactory()
+    val websocketConnectionManager = WebsocketConnectionManager()
+
+    /**
+     * created on first use, clients which never process off the event loop start no worker
+     */
+    val partitionedScheduler: PartitionedScheduler by lazy { PartitionedScheduler() }
+
+    /**
+     * @see com.njkim.reactivecrypto.core.ExchangeClientFactory.configureNetwork
+     */
+    @Volatile
+    var networkConfig: ReactiveCryptoNetworkConfig = ReactiveCryptoNetworkConfig.DEFAULT
+        internal set
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.replay
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import com.njkim.reactivecrypto.core.journal.MarketDataJournalReader
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
+import com.njkim.reactivecrypto.core.websocket.ExchangePublicWebsocketClient
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import reactor.core.scheduler.Scheduler
+import reactor.core.scheduler.Schedulers
+import java.time.Duration
+import java.time.ZonedDateTime
+
+/**
+ * [ExchangePublicWebsocketClient] streaming the records of [exchangeVendor] from a journal written by
+ * [com.njkim.reactivecrypto.core.journal.MarketDataJournal], so live code can be backtested unchanged.
+ *
+ * Every subscription replays the journal from [from]. With a paced [speed] each record is emitted
+ * when `(eventTime - first eventTime) / multiplier` has elapsed since the subscription.
+ *
+ * ```
+ * ReplayPublicWebsocketClient.register(ExchangeVendor.BINANCE, MarketDataJournalReader(path), speed = ReplaySpeed(10.0))
+ * ExchangeClientFactory.publicWebsocket(ExchangeVendor.BINANCE).createTradeWebsocket(pairs)
+ * ```
+ */
+class ReplayPublicWebsocketClient @JvmOverloads constructor(
+    private val exchangeVendor: ExchangeVendor,
+    private val reader: MarketDataJournalReader,
+    private val from: ZonedDateTime? = null,
+    private val speed: ReplaySpeed = ReplaySpeed.AS_FAST_AS_POSSIBLE,
+    private val scheduler: Scheduler = Schedulers.parallel()
+) : ExchangePublicWebsocketClient {
+
+    override fun createTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<TickData> {
+        val currencyPairs = subscribeTargets.toSet()
+        return reader.read(TickData::class.java, from)
+            .filter { it.exchangeVendor == exchangeVendor && it.currencyPair in currencyPairs }
+            .let { paced(it) { tickData -> tickData.eventTime } }
+    }
+
+    override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
+        val currencyPairs = subscribeTargets.toSet()
+        return reader.read(OrderBook::class.java, from)
+            .filter { it.exchangeVendor == exchangeVendor && it.currencyPair in currencyPairs }
+            .let { paced(it) { orderBook -> orderBook.eventTime } }
+    }
+
+    /**
+     * start the replay at [from] instead of the beginning of the journal
+     */
+    fun seek(from: ZonedDateTime): ReplayPublicWebsocketClient {
+        return ReplayPublicWebsocketClient(exchangeVendor, reader, from, speed, scheduler)
+    }
+
+    fun withSpeed(speed: ReplaySpeed): ReplayPublicWebsocketClient {
+        return ReplayPublicWebsocketClient(exchangeVendor, reader, from, speed, scheduler)
+    }
+
+    private fun <T> paced(records: Flux<T>, eventTime: (T) -> ZonedDateTime): Flux<T> {
+        if (speed.isUnpaced()) {
+            return records
+        }
+
+        return Flux.defer {
+            val startNanos = System.nanoTime()
+            var firstEventTime: ZonedDateTime? = null
+
+            // records already due are passed through as scalars without scheduling a timer
+            records.concatMap { record ->
+                val recordTime = eventTime(record)
+                val first = firstEventTime ?: recordTime.also { firstEventTime = it }
+                val dueNanos = (Duration.between(first, recordTime).toNanos() / speed.multiplier).toLong()
+                val waitNanos = dueNanos - (System.nanoTime() - startNanos)
+                if (waitNanos <= 0) Mono.just(record) else Mono.delay(Duration.ofNanos(waitNanos), scheduler).thenReturn(record)
+            }
+        }
+    }
+
+    companion object {
+        /**
+         * make [com.njkim.reactivecrypto.core.ExchangeClientFactory.publicWebsocket] of [exchangeVendor] return a replay client
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun register(
+            exchangeVendor: ExchangeVendor,
+            reader: MarketDataJournalReader,
+            from: ZonedDateTime? = null,
+            speed: ReplaySpeed = ReplaySpeed.AS_FAST_AS_POSSIBLE
+        ) {
+            ReactiveCryptoPlugins.customClientFactory.addPublicWsCustomFactory(exchangeVendor) {
+                ReplayPublicWebsocketClient(exchangeVendor, reader, from, speed)
+            }
+        }
+    }
+}
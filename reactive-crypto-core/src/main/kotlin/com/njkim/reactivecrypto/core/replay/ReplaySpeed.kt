@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.replay
+
+/**
+ * pace of a replay relative to the recorded event times
+ *
+ * @property multiplier 2.0 replays twice as fast as recorded, [Double.POSITIVE_INFINITY] doesn't wait at all
+ */
+data class ReplaySpeed(val multiplier: Double) {
+    init {
+        require(multiplier > 0) { "multiplier must be positive : $multiplier" }
+    }
+
+    fun isUnpaced(): Boolean = multiplier == Double.POSITIVE_INFINITY
+
+    companion object {
+        @JvmField
+        val AS_FAST_AS_POSSIBLE = ReplaySpeed(Double.POSITIVE_INFINITY)
+
+        @JvmField
+        val REAL_TIME = ReplaySpeed(1.0)
+    }
+}
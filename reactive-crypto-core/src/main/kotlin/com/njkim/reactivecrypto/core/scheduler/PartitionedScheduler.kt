@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.scheduler
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import reactor.core.Disposable
+import reactor.core.scheduler.Scheduler
+import reactor.core.scheduler.Schedulers
+
+/**
+ * Fixed pool of single threaded workers for processing off the event loop.
+ *
+ * Each (vendor, currency pair) is hashed onto one worker, so the messages of a currency pair are processed
+ * in order on the same thread while the number of threads stays bounded whatever the number of pairs.
+ * Threads are daemon threads started on first use.
+ *
+ * ```
+ * flux.publishOn(ReactiveCryptoPlugins.partitionedScheduler.scheduler(ExchangeVendor.BITMAX, currencyPair))
+ * ```
+ *
+ * @see com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins.partitionedScheduler
+ */
+class PartitionedScheduler(
+    val partitionCount: Int = Runtime.getRuntime().availableProcessors(),
+    name: String = "reactive-crypto-partition"
+) : Disposable {
+    private val workers: Array<Scheduler>
+
+    init {
+        require(partitionCount > 0) { "partitionCount must be positive : $partitionCount" }
+        workers = Array(partitionCount) { Schedulers.newSingle("$name-$it", true) }
+    }
+
+    fun scheduler(exchangeVendor: ExchangeVendor, currencyPair: CurrencyPair): Scheduler {
+        return workers[partition(exchangeVendor, currencyPair)]
+    }
+
+    fun partition(exchangeVendor: ExchangeVendor, currencyPair: CurrencyPair): Int {
+        val hash = 31 * exchangeVendor.hashCode() + currencyPair.hashCode()
+        return Math.floorMod(hash xor (hash ushr 16), partitionCount)
+    }
+
+    override fun dispose() {
+        workers.forEach { it.dispose() }
+    }
+
+    override fun isDisposed(): Boolean = workers.all { it.isDisposed }
+}
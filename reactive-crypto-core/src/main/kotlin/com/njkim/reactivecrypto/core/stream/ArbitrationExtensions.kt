@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.stream
+
+import com.njkim.reactivecrypto.core.arbitration.FeedArbitrationMetrics
+import com.njkim.reactivecrypto.core.arbitration.OrderBookArbiter
+import com.njkim.reactivecrypto.core.arbitration.TickDataArbiter
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import reactor.core.publisher.Flux
+
+/**
+ * merge redundant trade feeds of the same exchange and currency pairs, emitting the first copy of each trade.
+ * each leg is filtered on its own thread before the merge, see [TickDataArbiter]
+ *
+ * @param legs independent connections, e.g. `(0..1).map { BinanceWebsocketClient(leg = it).createTradeWebsocket(pairs) }`.
+ * clients of the same leg share one socket, so their feeds are not redundant
+ */
+fun arbitrateTickData(
+    legs: List<Flux<TickData>>,
+    capacity: Int = 4096,
+    metrics: FeedArbitrationMetrics = FeedArbitrationMetrics(legs.size)
+): Flux<TickData> {
+    return Flux.defer {
+        val arbiter = TickDataArbiter(legs.size, capacity, metrics)
+        Flux.merge(legs.mapIndexed { leg, flux -> flux.filter { synchronized(arbiter) { arbiter.accept(leg, it) } } })
+    }
+}
+
+/**
+ * merge redundant order book feeds of the same exchange and currency pairs, emitting the first copy of each sequence.
+ * each leg is filtered on its own thread before the merge, see [OrderBookArbiter]
+ */
+fun arbitrateOrderBooks(
+    legs: List<Flux<OrderBook>>,
+    metrics: FeedArbitrationMetrics = FeedArbitrationMetrics(legs.size),
+    sequenceOf: (OrderBook) -> Long = OrderBookArbiter.Companion::numericSequence
+): Flux<OrderBook> {
+    return Flux.defer {
+        val arbiter = OrderBookArbiter(legs.size, sequenceOf = sequenceOf, metrics = metrics)
+        Flux.merge(legs.mapIndexed { leg, flux -> flux.filter { synchronized(arbiter) { arbiter.accept(leg, it) } } })
+    }
+}
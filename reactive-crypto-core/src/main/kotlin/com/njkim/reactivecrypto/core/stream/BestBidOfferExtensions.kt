@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.stream
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.BestBidOffer
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import reactor.core.publisher.Flux
+
+/**
+ * emit the [BestBidOffer] of a book only when the best price or quantity of a side changed
+ * since the last emitted one of the same (exchangeVendor, currencyPair).
+ * prices and quantities are compared numerically, `1.10` equals `1.1`.
+ */
+fun Flux<OrderBook>.bestBidOffers(): Flux<BestBidOffer> {
+    return Flux.defer {
+        val lastBestBidOffers: MutableMap<Pair<ExchangeVendor, CurrencyPair>, BestBidOffer> = HashMap()
+
+        handle<BestBidOffer> { orderBook, sink ->
+            val bestBid = orderBook.bids.firstOrNull()
+            val bestAsk = orderBook.asks.firstOrNull()
+            val key = orderBook.exchangeVendor to orderBook.currencyPair
+
+            val last = lastBestBidOffers[key]
+            if (last == null || !sameLevel(last.bestBid, bestBid) || !sameLevel(last.bestAsk, bestAsk)) {
+                val bestBidOffer = BestBidOffer(
+                    orderBook.uniqueId,
+                    orderBook.currencyPair,
+                    orderBook.eventTime,
+                    orderBook.exchangeVendor,
+                    bestBid,
+                    bestAsk
+                )
+                lastBestBidOffers[key] = bestBidOffer
+                sink.next(bestBidOffer)
+            }
+        }
+    }
+}
+
+private fun sameLevel(previous: OrderBookUnit?, current: OrderBookUnit?): Boolean {
+    if (previous == null || current == null) {
+        return previous == null && current == null
+    }
+    return previous.price.compareTo(current.price) == 0 && previous.quantity.compareTo(current.quantity) == 0
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.stream
+
+import com.njkim.reactivecrypto.core.candle.CandleAggregator
+import com.njkim.reactivecrypto.core.common.model.candle.Candle
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import reactor.core.publisher.Flux
+import java.time.Duration
+
+/**
+ * build candles of every interval in a single pass, see [CandleAggregator].
+ * an updated candle is emitted for each trade and interval, followed by a closed one once the candle ends.
+ */
+fun Flux<TickData>.candles(intervals: List<Duration>, gracePeriod: Duration = Duration.ZERO): Flux<Candle> {
+    return Flux.defer {
+        val candleAggregator = CandleAggregator(intervals, gracePeriod)
+        concatMapIterable { candleAggregator.update(it) }
+    }
+}
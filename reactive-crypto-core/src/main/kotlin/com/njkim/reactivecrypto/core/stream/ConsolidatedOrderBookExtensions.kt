@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.stream
+
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.ConsolidatedOrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.orderbook.OrderBookAggregator
+import reactor.core.publisher.Flux
+
+/**
+ * merge the order books of several exchanges into a [ConsolidatedOrderBook] per currencyPair.
+ * a consolidated book is emitted only when an update changed its top [depth] levels or the best price of an exchange.
+ *
+ * the source must be serialized, e.g. `Flux.merge(binanceDepth, upbitDepth).consolidate()`
+ */
+fun Flux<OrderBook>.consolidate(depth: Int = 10): Flux<ConsolidatedOrderBook> {
+    return Flux.defer {
+        val aggregators: MutableMap<CurrencyPair, OrderBookAggregator> = HashMap()
+
+        handle<ConsolidatedOrderBook> { orderBook, sink ->
+            val consolidatedOrderBook = aggregators
+                .getOrPut(orderBook.currencyPair) { OrderBookAggregator(orderBook.currencyPair, depth) }
+                .update(orderBook)
+            if (consolidatedOrderBook != null) {
+                sink.next(consolidatedOrderBook)
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.stream
+
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import org.reactivestreams.Subscription
+import reactor.core.CoreSubscriber
+import reactor.core.publisher.Flux
+import reactor.core.publisher.FluxOperator
+import reactor.core.publisher.Operators
+import reactor.util.context.Context
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * keep only the latest value of each key while the downstream is not requesting.
+ *
+ * The upstream is requested unbounded, so a slow subscriber never backpressures a socket.
+ * Values waiting for demand are held at most one per key and emitted in the order their key became pending,
+ * memory is bounded by the number of keys instead of the backlog.
+ *
+ * @param merger combines the pending value of a key with a newer one, the newer one replaces it by default.
+ * use it to merge deltas which must not be lost.
+ */
+fun <T, K> Flux<T>.conflateBy(
+    keySelector: (T) -> K,
+    merger: (pending: T, next: T) -> T = { _, next -> next }
+): Flux<T> {
+    return FluxConflate(this, keySelector, merger)
+}
+
+/**
+ * keep only the latest [OrderBook] of each (exchangeVendor, currencyPair) while the downstream is not requesting
+ */
+fun Flux<OrderBook>.conflateLatest(): Flux<OrderBook> {
+    return conflateBy({ it.exchangeVendor to it.currencyPair })
+}
+
+internal class FluxConflate<T, K>(
+    source: Flux<out T>,
+    private val keySelector: (T) -> K,
+    private val merger: (T, T) -> T
+) : FluxOperator<T, T>(source) {
+    override fun subscribe(actual: CoreSubscriber<in T>) {
+        source.subscribe(ConflateSubscriber(actual, keySelector, merger))
+    }
+
+    private class ConflateSubscriber<T, K>(
+        private val actual: CoreSubscriber<in T>,
+        private val keySelector: (T) -> K,
+        private val merger: (T, T) -> T
+    ) : CoreSubscriber<T>, Subscription {
+        // guarded by itself
+        private val pending: LinkedHashMap<K, T> = LinkedHashMap()
+
+        private val requested = AtomicLong()
+        private val wip = AtomicInteger()
+        private var upstream: Subscription? = null
+
+        @Volatile
+        private var done = false
+        private var error: Throwable? = null
+
+        @Volatile
+        private var cancelled = false
+
+        override fun currentContext(): Context = actual.currentContext()
+
+        override fun onSubscribe(s: Subscription) {
+            if (Operators.validate(upstream, s)) {
+                upstream = s
+                actual.onSubscribe(this)
+                s.request(Long.MAX_VALUE)
+            }
+        }
+
+        override fun onNext(t: T) {
+            if (done) {
+                Operators.onNextDropped(t, currentContext())
+                return
+            }
+
+            val key = keySelector(t)
+            synchronized(pending) {
+                val previous = pending[key]
+                pending[key] = if (previous == null) t else merger(previous, t)
+            }
+            drain()
+        }
+
+        override fun onError(t: Throwable) {
+            if (done) {
+                Operators.onErrorDropped(t, currentContext())
+                return
+            }
+            error = t
+            done = true
+            drain()
+        }
+
+        override fun onComplete() {
+            if (done) {
+                return
+            }
+            done = true
+            drain()
+        }
+
+        override fun request(n: Long) {
+            if (Operators.validate(n)) {
+                requested.getAndUpdate { Operators.addCap(it, n) }
+                drain()
+            }
+        }
+
+        override fun cancel() {
+            if (cancelled) {
+                return
+            }
+            cancelled = true
+            upstream?.cancel()
+            if (wip.getAndIncrement() == 0) {
+                synchronized(pending) { pending.clear() }
+            }
+        }
+
+        private fun drain() {
+            if (wip.getAndIncrement() != 0) {
+                return
+            }
+
+            var missed = 1
+            do {
+                while (true) {
+                    if (cancelled) {
+                        synchronized(pending) { pending.clear() }
+                        return
+                    }
+
+                    val terminated = done
+                    val value = if (requested.get() > 0) poll() else null
+                    if (value == null) {
+                        if (terminated && synchronized(pending) { pending.isEmpty() }) {
+                            val e = error
+                            if (e == null) actual.onComplete() else actual.onError(e)
+                            return
+                        }
+                        break
+                    }
+
+                    actual.onNext(value)
+                    if (requested.get() != Long.MAX_VALUE) {
+                        requested.decrementAndGet()
+                    }
+                }
+                missed = wip.addAndGet(-missed)
+            } while (missed != 0)
+        }
+
+        private fun poll(): T? {
+            synchronized(pending) {
+                val iterator = pending.values.iterator()
+                if (!iterator.hasNext()) {
+                    return null
+                }
+                val value = iterator.next()
+                iterator.remove()
+                return value
+            }
+        }
+    }
+}
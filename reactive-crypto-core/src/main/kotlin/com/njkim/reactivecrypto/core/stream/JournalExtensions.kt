@@ -0,0 +1,28 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.stream
+
+import com.njkim.reactivecrypto.core.journal.MarketDataJournal
+import reactor.core.publisher.Flux
+
+/**
+ * append every element to [journal] without blocking the emitting thread,
+ * e.g. `client.createTradeWebsocket(pairs).record(journal)`
+ */
+fun <T : Any> Flux<T>.record(journal: MarketDataJournal): Flux<T> {
+    return doOnNext { journal.append(it) }
+}
@@ -17,11 +17,36 @@
 package com.njkim.reactivecrypto.core.websocket
 
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.BestBidOffer
 import com.njkim.reactivecrypto.core.common.model.order.OrderBook
 import com.njkim.reactivecrypto.core.common.model.order.TickData
+import com.njkim.reactivecrypto.core.stream.bestBidOffers
 import reactor.core.publisher.Flux
 
 interface ExchangePublicWebsocketClient {
     fun createTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<TickData>
     fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook>
+
+    /**
+     * trade stream whose currency pairs can be changed while connected.
+     * clients without incremental subscription support reconnect on every change.
+     */
+    fun createTradeSubscription(subscribeTargets: List<CurrencyPair>): WebsocketSubscription<TickData> {
+        return ReconnectingWebsocketSubscription(subscribeTargets) { createTradeWebsocket(it) }
+    }
+
+    /**
+     * depth stream whose currency pairs can be changed while connected.
+     * clients without incremental subscription support reconnect on every change.
+     */
+    fun createDepthSubscription(subscribeTargets: List<CurrencyPair>): WebsocketSubscription<OrderBook> {
+        return ReconnectingWebsocketSubscription(subscribeTargets) { createDepthSnapshot(it) }
+    }
+
+    /**
+     * best bid and offer derived from the depth stream, emitted only when the best price or quantity of a side changed
+     */
+    fun createBestBidOfferStream(subscribeTargets: List<CurrencyPair>): Flux<BestBidOffer> {
+        return createDepthSnapshot(subscribeTargets).bestBidOffers()
+    }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.websocket
+
+import reactor.util.retry.Retry
+import reactor.util.retry.RetryBackoffSpec
+import java.time.Duration
+import java.util.concurrent.ThreadLocalRandom
+
+/**
+ * Exponential backoff between reconnect attempts of a websocket, from [minBackoff] up to [maxBackoff].
+ * Each backoff is randomized by [jitter] so the sockets of an exchange don't reconnect in lockstep.
+ *
+ * @property jitter factor of the backoff added or subtracted at random, in 0..1
+ * @property maxAttempts consecutive failed attempts before the stream is terminated
+ */
+data class ReconnectPolicy(
+    val minBackoff: Duration = Duration.ofMillis(500),
+    val maxBackoff: Duration = Duration.ofSeconds(30),
+    val jitter: Double = 0.5,
+    val maxAttempts: Long = Long.MAX_VALUE
+) {
+    init {
+        require(jitter in 0.0..1.0) { "jitter must be in 0..1 : $jitter" }
+        require(minBackoff <= maxBackoff) { "minBackoff must not exceed maxBackoff" }
+    }
+
+    companion object {
+        @JvmField
+        val DEFAULT = ReconnectPolicy()
+
+        @JvmField
+        val NONE = ReconnectPolicy(maxAttempts = 0)
+    }
+
+    /**
+     * @param attempt number of the consecutive attempt starting from 1
+     */
+    fun backoff(attempt: Long): Duration {
+        val exponent = minOf(attempt - 1, 30).toInt()
+        val baseMillis = minOf(minBackoff.toMillis() shl exponent, maxBackoff.toMillis())
+        val jitterMillis = (baseMillis * jitter * ThreadLocalRandom.current().nextDouble(-1.0, 1.0)).toLong()
+        return Duration.ofMillis((baseMillis + jitterMillis).coerceIn(minBackoff.toMillis(), maxBackoff.toMillis()))
+    }
+
+    /**
+     * the same policy for streams resubscribed with [reactor.core.publisher.Flux.retryWhen]
+     */
+    fun retry(): RetryBackoffSpec {
+        return Retry.backoff(maxAttempts, minBackoff)
+            .maxBackoff(maxBackoff)
+            .jitter(jitter)
+            .transientErrors(true)
+    }
+}
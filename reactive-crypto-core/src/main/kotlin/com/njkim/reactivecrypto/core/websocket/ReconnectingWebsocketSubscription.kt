@@ -0,0 +1,65 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.websocket
+
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Sinks
+
+/**
+ * [WebsocketSubscription] of a client without incremental subscription support.
+ * Every change of the currency pairs reconnects the stream created by [streamFactory] with the new pairs.
+ */
+class ReconnectingWebsocketSubscription<T>(
+    currencyPairs: List<CurrencyPair>,
+    private val streamFactory: (List<CurrencyPair>) -> Flux<T>
+) : WebsocketSubscription<T> {
+    private val lock = Any()
+
+    // guarded by lock
+    private val currencyPairs: MutableSet<CurrencyPair> = LinkedHashSet(currencyPairs)
+
+    private val targets: Sinks.Many<List<CurrencyPair>> = Sinks.many().replay().latest()
+
+    init {
+        targets.tryEmitNext(this.currencyPairs.toList())
+    }
+
+    override val flux: Flux<T> = targets.asFlux()
+        .switchMap { if (it.isEmpty()) Flux.empty() else streamFactory(it) }
+
+    override fun add(currencyPairs: List<CurrencyPair>) {
+        synchronized(lock) {
+            if (this.currencyPairs.addAll(currencyPairs)) {
+                targets.tryEmitNext(this.currencyPairs.toList())
+            }
+        }
+    }
+
+    override fun remove(currencyPairs: List<CurrencyPair>) {
+        synchronized(lock) {
+            if (this.currencyPairs.removeAll(currencyPairs)) {
+                targets.tryEmitNext(this.currencyPairs.toList())
+            }
+        }
+    }
+
+    override fun currencyPairs(): Set<CurrencyPair> {
+        synchronized(lock) {
+            return HashSet(currencyPairs)
+        }
+    }
+}
@@ -0,0 +1,589 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.websocket
+
+import com.njkim.reactivecrypto.core.common.model.ReceiveTimestamped
+import com.njkim.reactivecrypto.core.metrics.ReceiveClock
+import com.njkim.reactivecrypto.core.netty.ReceiveTimestampHandler
+import io.netty.buffer.ByteBuf
+import mu.KotlinLogging
+import reactor.core.Disposable
+import reactor.core.Exceptions
+import reactor.core.Scannable
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import reactor.core.publisher.Sinks
+import reactor.netty.http.client.HttpClient
+import reactor.netty.resources.LoopResources
+import reactor.util.concurrent.Queues
+import java.time.Duration
+
+/**
+ * decode a frame into the messages of a channel, null when the frame belongs to another channel
+ * and empty when a frame of the channel yields no message. the frame is released after the call returns.
+ */
+typealias FrameDecoder<T> = (frame: ByteBuf) -> Iterable<T>?
+
+/**
+ * Upstream websockets multiplexing the subscriptions of every stream of an endpoint.
+ *
+ * Topics are reference counted, a subscribe message is sent only when a topic is subscribed for the first time
+ * and an unsubscribe message when the last reference of the topic is released.
+ * Each frame is decoded once per channel and the decoded messages are shared by every subscriber of the channel,
+ * so subscribers receive the messages of all topics of the channel and filter their own.
+ * Every subscriber buffers up to [bufferSize] messages of its own, a subscriber falling further behind
+ * is terminated with an overflow error while the other subscribers of the channel keep streaming.
+ *
+ * Topics are sharded over as many sockets as needed to keep at most [maxTopicsPerSocket] topics on a socket.
+ * A socket is opened when its first topic is subscribed and closed when no topic is left on it.
+ * Every socket decodes its frames with its own decoders on the event loop the [LoopResources] of the http client
+ * register it on, the messages of all sockets are merged into the channel.
+ * No loop is assigned per socket: netty picks the next loop of the group in turn, but a colocated group
+ * (the reactor-netty default) keeps a socket opened from an event loop thread on that loop. A topic stays on its socket while it is subscribed,
+ * so the messages of a topic keep their order.
+ *
+ * When a socket is lost (closed by the exchange, heart beat failure, network error) it is reopened after
+ * the backoff of [reconnectPolicy] and its topics are subscribed again, subscribers keep their flux.
+ * Decoders are recreated for the new socket, so book decoders start from the snapshot of the new session.
+ * Subscribers are terminated only when [ReconnectPolicy.maxAttempts] consecutive attempts of a socket failed.
+ *
+ * Messages implementing [ReceiveTimestamped] are stamped with the time their frame was read from the socket,
+ * see [ReceiveTimestampHandler].
+ *
+ * @see WebsocketConnectionManager
+ * @see SharedWebsocketSubscription
+ */
+class SharedWebsocketConnection(
+    httpClient: HttpClient,
+    private val uri: String,
+    private val protocol: WebsocketSubscriptionProtocol,
+    private val reconnectPolicy: ReconnectPolicy = ReconnectPolicy.DEFAULT,
+    private val maxTopicsPerSocket: Int = Int.MAX_VALUE,
+    private val bufferSize: Int = Queues.SMALL_BUFFER_SIZE
+) {
+    private val log = KotlinLogging.logger {}
+
+    val metrics = WebsocketConnectionMetrics()
+
+    private val httpClient: HttpClient = httpClient.doOnConnected { ReceiveTimestampHandler.install(it.channel()) }
+
+    private val lock = Any()
+
+    // guarded by lock
+    private val topicReferences: MutableMap<String, Int> = HashMap()
+    private val topicSockets: MutableMap<String, Socket> = HashMap()
+    private val sockets: MutableList<Socket> = ArrayList()
+    private val channels: MutableMap<String, Channel<*>> = LinkedHashMap()
+    private var socketId: Long = 0
+    private var generation: Long = 0
+
+    init {
+        require(maxTopicsPerSocket > 0) { "maxTopicsPerSocket must be positive : $maxTopicsPerSocket" }
+    }
+
+    /**
+     * subscribe [topics] for as long as the returned flux is subscribed
+     *
+     * @param channelName subscribers of the same channel share the decoded messages
+     * @param frameDecoderFactory creates the decoder of the channel for each socket session,
+     * decoder state like an order book is dropped when the socket is closed
+     */
+    fun <T> subscribe(
+        channelName: String,
+        topics: List<String>,
+        frameDecoderFactory: () -> FrameDecoder<T>
+    ): Flux<T> {
+        require(topics.isNotEmpty()) { "topics must not be empty" }
+
+        return Flux.defer {
+            val lease = acquire(channelName, emptyList(), frameDecoderFactory)
+            // the topics are subscribed once the subscriber listens, the first messages of a new topic reach it
+            lease.flux()
+                .mergeWith(Mono.fromRunnable { addTopics(lease, topics) })
+                .doFinally { release(lease) }
+        }
+    }
+
+    /**
+     * @return topics subscribed on the upstream sockets
+     */
+    fun subscribedTopics(): Set<String> {
+        synchronized(lock) {
+            return HashSet(topicReferences.keys)
+        }
+    }
+
+    /**
+     * @return number of upstream sockets, including sockets waiting for a reconnect
+     */
+    fun socketCount(): Int {
+        synchronized(lock) {
+            return sockets.size
+        }
+    }
+
+    internal fun <T> acquire(
+        channelName: String,
+        topics: Collection<String>,
+        frameDecoderFactory: () -> FrameDecoder<T>
+    ): Lease<T> {
+        synchronized(lock) {
+            @Suppress("UNCHECKED_CAST")
+            val channel = channels[channelName]?.takeUnless { it.terminated } as Channel<T>?
+                ?: Channel(frameDecoderFactory, bufferSize, metrics.stream(channelName))
+                    .also { channel ->
+                        channels[channelName] = channel
+                        sockets.forEach { it.addChannel(channel) }
+                    }
+
+            val lease = Lease(channelName, channel, generation, metrics)
+            channel.addLease(lease)
+            addTopics(lease, topics)
+            return lease
+        }
+    }
+
+    internal fun addTopics(lease: Lease<*>, topics: Collection<String>) {
+        synchronized(lock) {
+            if (lease.generation != generation) {
+                return
+            }
+
+            val newTopics = topics.filter { lease.topics.add(it) }
+                .filter { topic ->
+                    val references = topicReferences[topic] ?: 0
+                    topicReferences[topic] = references + 1
+                    references == 0
+                }
+
+            newTopics.groupBy { topic -> assignSocket(topic) }
+                .forEach { (socket, socketTopics) -> socket.subscribe(socketTopics) }
+        }
+    }
+
+    internal fun removeTopics(lease: Lease<*>, topics: Collection<String>) {
+        synchronized(lock) {
+            if (lease.generation != generation) {
+                return
+            }
+
+            val unusedTopics = topics.filter { lease.topics.remove(it) }
+                .filter { topic ->
+                    val references = topicReferences[topic] ?: 0
+                    if (references <= 1) topicReferences.remove(topic) else topicReferences[topic] = references - 1
+                    references <= 1
+                }
+
+            unusedTopics.groupBy { topic -> topicSockets.remove(topic)!! }
+                .forEach { (socket, socketTopics) ->
+                    socket.unsubscribe(socketTopics)
+                    if (socket.topics.isEmpty()) {
+                        sockets.remove(socket)
+                    }
+                }
+        }
+    }
+
+    internal fun <T> release(lease: Lease<T>) {
+        synchronized(lock) {
+            if (lease.generation != generation) {
+                // the connection terminated after the lease was acquired
+                return
+            }
+
+            removeTopics(lease, lease.topics.toList())
+
+            lease.channel.removeLease(lease)
+            if (lease.channel.leases.isEmpty() && channels[lease.channelName] === lease.channel) {
+                channels.remove(lease.channelName)
+                sockets.forEach { it.removeChannel(lease.channel) }
+                lease.channel.detach()
+            }
+        }
+    }
+
+    // must hold lock
+    private fun assignSocket(topic: String): Socket {
+        val socket = sockets.firstOrNull { it.topics.size < maxTopicsPerSocket }
+            ?: Socket(++socketId).also { sockets.add(it) }
+        socket.topics.add(topic)
+        topicSockets[topic] = socket
+        return socket
+    }
+
+    /**
+     * a socket ran out of reconnect attempts, every subscriber is terminated with the same signal
+     */
+    private fun terminate(error: Throwable?) {
+        val terminatedChannels = synchronized(lock) {
+            val terminatedChannels = channels.values.toList()
+            sockets.forEach { it.close() }
+            sockets.clear()
+            topicReferences.clear()
+            topicSockets.clear()
+            terminatedChannels.forEach { it.detach() }
+            channels.clear()
+            generation++
+            terminatedChannels
+        }
+
+        if (error != null) {
+            log.error(error) { "$uri terminated" }
+        }
+        terminatedChannels.forEach { it.terminate(error) }
+    }
+
+    /**
+     * one upstream socket holding a shard of the topics
+     */
+    private inner class Socket(private val id: Long) {
+        // guarded by lock
+        val topics: MutableSet<String> = LinkedHashSet()
+        private var outbound: Sinks.Many<String>? = null
+        private var session: Disposable? = null
+        private var sessionId: Long = 0
+        private var reconnect: Disposable? = null
+        private var reconnectAttempts: Long = 0
+        // System.nanoTime() when the socket was lost, 0 while connected
+        private var disconnectedAt: Long = 0
+
+        // decoders of the current session, read on the event loop without locking
+        @Volatile
+        private var decoders: List<ChannelDecoder<*>> = emptyList()
+
+        // must hold lock
+        fun subscribe(newTopics: List<String>) {
+            when {
+                session != null -> protocol.subscribeMessages(newTopics).forEach { outbound?.tryEmitNext(it) }
+                // while waiting for a reconnect the new topics are subscribed with the others
+                reconnect == null -> connect()
+            }
+        }
+
+        // must hold lock
+        fun unsubscribe(unusedTopics: List<String>) {
+            topics.removeAll(unusedTopics)
+            if (topics.isEmpty()) {
+                log.debug { "close $uri#$id, no topic left" }
+                close()
+            } else {
+                protocol.unsubscribeMessages(unusedTopics).forEach { outbound?.tryEmitNext(it) }
+            }
+        }
+
+        // must hold lock
+        fun addChannel(channel: Channel<*>) {
+            if (session != null) {
+                decoders = decoders + ChannelDecoder(channel)
+            }
+        }
+
+        // must hold lock
+        fun removeChannel(channel: Channel<*>) {
+            decoders = decoders.filter { it.channel !== channel }
+        }
+
+        // must hold lock
+        fun close() {
+            closeSession()
+            reconnect?.dispose()
+            reconnect = null
+            reconnectAttempts = 0
+            disconnectedAt = 0
+        }
+
+        // must hold lock
+        private fun connect() {
+            log.debug { "connect $uri#$id" }
+            val currentSessionId = ++sessionId
+            val sessionOutbound = Sinks.many().unicast().onBackpressureBuffer<String>()
+            protocol.subscribeMessages(topics.toList()).forEach { sessionOutbound.tryEmitNext(it) }
+            decoders = channels.values.map { ChannelDecoder(it) }
+            outbound = sessionOutbound
+
+            session = httpClient.websocket()
+                .uri(uri)
+                .handle { inbound, outbound ->
+                    onHandshake(currentSessionId)
+                    var receiveTimestamp: ReceiveTimestampHandler? = null
+                    inbound.withConnection { receiveTimestamp = ReceiveTimestampHandler.of(it.channel()) }
+                    outbound.sendString(sessionOutbound.asFlux()).then()
+                        .and(
+                            inbound.receive().doOnNext { frame ->
+                                dispatch(frame, receiveTimestamp?.receivedNanos ?: System.nanoTime())
+                            }
+                        )
+                }
+                .subscribe(
+                    {},
+                    { onDisconnect(currentSessionId, it) },
+                    { onDisconnect(currentSessionId, null) }
+                )
+        }
+
+        // must hold lock
+        private fun closeSession() {
+            outbound?.tryEmitComplete()
+            outbound = null
+            session?.dispose()
+            session = null
+            decoders = emptyList()
+        }
+
+        private fun dispatch(frame: ByteBuf, receivedNanos: Long) {
+            metrics.recordFrame(frame.readableBytes())
+            decoders.forEach { it.onFrame(frame, receivedNanos) }
+        }
+
+        private fun onHandshake(handshakeSessionId: Long) {
+            synchronized(lock) {
+                if (handshakeSessionId != sessionId || session == null) {
+                    return
+                }
+                reconnectAttempts = 0
+                if (disconnectedAt != 0L) {
+                    val now = System.nanoTime()
+                    metrics.recordReconnect(Duration.ofNanos(now - disconnectedAt))
+                    disconnectedAt = 0
+                    channels.values.forEach { channel -> channel.leases.forEach { it.resyncStartedAt = now } }
+                    log.info { "$uri#$id reconnected" }
+                }
+            }
+        }
+
+        /**
+         * the socket closed by itself, reconnect or terminate the connection when no attempt is left
+         */
+        private fun onDisconnect(disconnectedSessionId: Long, error: Throwable?) {
+            synchronized(lock) {
+                if (disconnectedSessionId != sessionId || session == null) {
+                    return
+                }
+                closeSession()
+
+                if (reconnectAttempts < reconnectPolicy.maxAttempts) {
+                    val attempt = ++reconnectAttempts
+                    if (disconnectedAt == 0L) {
+                        disconnectedAt = System.nanoTime()
+                    }
+                    val backoff = reconnectPolicy.backoff(attempt)
+                    log.warn(error) { "$uri#$id disconnected, reconnect in ${backoff.toMillis()}ms (attempt $attempt)" }
+
+                    reconnect = Mono.delay(backoff).subscribe { reconnect() }
+                    return
+                }
+            }
+
+            terminate(error)
+        }
+
+        private fun reconnect() {
+            synchronized(lock) {
+                if (reconnect == null) {
+                    // closed while waiting
+                    return
+                }
+                reconnect = null
+                if (session == null && topics.isNotEmpty()) {
+                    connect()
+                }
+            }
+        }
+    }
+
+    /**
+     * the decoder of a channel for one socket session
+     */
+    private class ChannelDecoder<T>(val channel: Channel<T>) {
+        private val frameDecoder: FrameDecoder<T> = channel.newDecoder()
+
+        fun onFrame(frame: ByteBuf, receivedNanos: Long) {
+            val startedAt = System.nanoTime()
+            // frames of the other channels are not counted in the metrics of this one
+            val messages = ReceiveClock.decoding(receivedNanos) { frameDecoder(frame) } ?: return
+            val empty = messages is Collection<*> && messages.isEmpty()
+            channel.streamMetrics.recordDecode(System.nanoTime() - startedAt, empty)
+            channel.emit(messages, receivedNanos)
+        }
+    }
+
+    /**
+     * a subscriber of a channel holding its own set of topics
+     */
+    internal class Lease<T>(
+        val channelName: String,
+        val channel: Channel<T>,
+        val generation: Long,
+        private val metrics: WebsocketConnectionMetrics
+    ) {
+        // guarded by the connection lock
+        val topics: MutableSet<String> = LinkedHashSet()
+
+        // the only subscriber of the sink is the flux of the lease, emissions are serialized by the channel.
+        // unlike a unicast sink it terminates a subscriber without demand as soon as the buffer overflows
+        private val sink: Sinks.Many<T> = Sinks.many().multicast().onBackpressureBuffer(channel.bufferSize, false)
+
+        // System.nanoTime() of the reconnect handshake until the subscriber received every key again
+        @Volatile
+        var resyncStartedAt: Long = SYNCHRONIZED
+
+        // touched only by the subscriber of the lease
+        private var resyncingSince: Long = SYNCHRONIZED
+        private val resyncedKeys: MutableSet<Any> = HashSet()
+
+        private val demand = SubscriberDemand()
+
+        fun flux(): Flux<T> = sink.asFlux()
+            .doOnRequest { demand.onRequest(it) }
+            .doOnNext { demand.onDeliver() }
+
+        /**
+         * messages waiting for the demand of the subscriber
+         */
+        fun pending(): Int = sink.scan(Scannable.Attr.BUFFERED) ?: 0
+
+        /**
+         * messages requested by the subscriber and not delivered yet
+         */
+        fun demand(): Long = demand.outstanding()
+
+        /**
+         * @return false when the subscriber is too slow and was terminated
+         */
+        fun emit(message: T): Boolean {
+            val result = sink.tryEmitNext(message)
+            if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+                // losing deltas silently would corrupt the books of the subscriber, only this subscriber is terminated
+                sink.tryEmitError(Exceptions.failWithOverflow())
+                return false
+            }
+            return true
+        }
+
+        fun terminate(error: Throwable?) {
+            if (error == null) sink.tryEmitComplete() else sink.tryEmitError(error)
+        }
+
+        /**
+         * record the resync time once a message of each of [expectedKeys] was received after a reconnect
+         */
+        fun onMessage(key: Any, expectedKeys: Set<Any>) {
+            val startedAt = resyncStartedAt
+            if (startedAt == SYNCHRONIZED) {
+                return
+            }
+            if (startedAt != resyncingSince) {
+                resyncingSince = startedAt
+                resyncedKeys.clear()
+            }
+
+            resyncedKeys.add(key)
+            if (resyncedKeys.containsAll(expectedKeys)) {
+                metrics.recordResync(Duration.ofNanos(System.nanoTime() - startedAt))
+                resyncStartedAt = SYNCHRONIZED
+                resyncingSince = SYNCHRONIZED
+                resyncedKeys.clear()
+            }
+        }
+
+        companion object {
+            private const val SYNCHRONIZED = Long.MIN_VALUE
+        }
+    }
+
+    internal class Channel<T>(
+        private val frameDecoderFactory: () -> FrameDecoder<T>,
+        val bufferSize: Int,
+        val streamMetrics: WebsocketStreamMetrics
+    ) {
+        // guarded by the connection lock
+        val leases: MutableList<Lease<T>> = ArrayList()
+
+        // copy of leases read by the event loops
+        @Volatile
+        private var subscribers: List<Lease<T>> = emptyList()
+
+        // once terminated the channel emits nothing, new subscribers get a new channel
+        @Volatile
+        var terminated: Boolean = false
+            private set
+
+        private val demandProbe: () -> Long = { subscribers.map { it.demand() }.min() ?: Long.MAX_VALUE }
+
+        init {
+            streamMetrics.pendingProbe = { subscribers.map { it.pending() }.max() ?: 0 }
+            streamMetrics.addDemandProbe(demandProbe)
+        }
+
+        fun newDecoder(): FrameDecoder<T> = frameDecoderFactory()
+
+        // must hold the connection lock
+        fun addLease(lease: Lease<T>) {
+            leases.add(lease)
+            subscribers = ArrayList(leases)
+        }
+
+        // must hold the connection lock
+        fun removeLease(lease: Lease<T>) {
+            leases.remove(lease)
+            subscribers = ArrayList(leases)
+        }
+
+        /**
+         * called from the event loop of each socket, emissions are serialized on the channel
+         * while decoding runs on every event loop in parallel
+         */
+        fun emit(messages: Iterable<T>, receivedNanos: Long) {
+            messages.forEach { message ->
+                if (message is ReceiveTimestamped && message.hasExchangeTime) {
+                    streamMetrics.recordExchangeLatency(message.eventTime, receivedNanos)
+                }
+            }
+
+            synchronized(this) {
+                if (terminated) {
+                    return
+                }
+                streamMetrics.recordEmitLatency(System.nanoTime() - receivedNanos)
+                val currentSubscribers = subscribers
+                messages.forEach { message ->
+                    streamMetrics.recordEvent()
+                    currentSubscribers.forEach { lease ->
+                        if (!lease.emit(message)) {
+                            streamMetrics.recordOverflow()
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * the channel is no longer used by the connection, must hold the connection lock
+         */
+        fun detach() {
+            streamMetrics.pendingProbe = null
+            streamMetrics.removeDemandProbe(demandProbe)
+        }
+
+        fun terminate(error: Throwable?) {
+            synchronized(this) {
+                terminated = true
+                subscribers.forEach { it.terminate(error) }
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.websocket
+
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * [WebsocketSubscription] over a [SharedWebsocketConnection].
+ * Adding or removing a pair sends only the subscribe or unsubscribe message of that pair on the open socket,
+ * the socket and the book state of the other pairs are kept.
+ *
+ * @param topicOf exchange topic of a currency pair, e.g. `spot/depth:ETH-USDT`
+ * @param currencyPairOf currency pair of a decoded message, messages of other pairs of the channel are filtered out
+ */
+class SharedWebsocketSubscription<T>(
+    private val connection: SharedWebsocketConnection,
+    private val channelName: String,
+    private val topicOf: (CurrencyPair) -> String,
+    private val currencyPairOf: (T) -> CurrencyPair,
+    private val frameDecoderFactory: () -> FrameDecoder<T>,
+    currencyPairs: List<CurrencyPair>
+) : WebsocketSubscription<T> {
+    private val lock = Any()
+
+    // guarded by lock
+    private val currencyPairs: MutableSet<CurrencyPair> = LinkedHashSet(currencyPairs)
+
+    @Volatile
+    private var currencyPairSnapshot: Set<CurrencyPair> = HashSet(currencyPairs)
+
+    private val leases: MutableList<SharedWebsocketConnection.Lease<T>> = CopyOnWriteArrayList()
+
+    override val flux: Flux<T> = Flux.defer {
+        val lease = synchronized(lock) {
+            connection.acquire(channelName, emptyList(), frameDecoderFactory)
+                .also { leases.add(it) }
+        }
+        // the topics are subscribed once the subscriber listens, the first messages of a new pair reach it
+        lease.flux()
+            .mergeWith(Mono.fromRunnable { synchronized(lock) { connection.addTopics(lease, currencyPairs.map(topicOf)) } })
+            .filter { currencyPairOf(it) in currencyPairSnapshot }
+            .doOnNext { lease.onMessage(currencyPairOf(it), currencyPairSnapshot) }
+            .doFinally {
+                leases.remove(lease)
+                connection.release(lease)
+            }
+    }
+
+    override fun add(currencyPairs: List<CurrencyPair>) {
+        synchronized(lock) {
+            this.currencyPairs.addAll(currencyPairs)
+            currencyPairSnapshot = HashSet(this.currencyPairs)
+            val topics = currencyPairs.map(topicOf)
+            leases.forEach { connection.addTopics(it, topics) }
+        }
+    }
+
+    override fun remove(currencyPairs: List<CurrencyPair>) {
+        synchronized(lock) {
+            this.currencyPairs.removeAll(currencyPairs)
+            currencyPairSnapshot = HashSet(this.currencyPairs)
+            val topics = currencyPairs.map(topicOf)
+            leases.forEach { connection.removeTopics(it, topics) }
+        }
+    }
+
+    override fun currencyPairs(): Set<CurrencyPair> {
+        return currencyPairSnapshot
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.websocket
+
+import reactor.core.publisher.Operators
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Request of a subscriber not delivered yet, sampled as the demand of [WebsocketStreamMetrics].
+ * Deliveries are not counted once the subscriber requested an unbounded amount.
+ */
+internal class SubscriberDemand {
+    private val requested = AtomicLong()
+    private val delivered = AtomicLong()
+
+    fun onRequest(n: Long) {
+        requested.accumulateAndGet(n) { current, added -> Operators.addCap(current, added) }
+    }
+
+    fun onDeliver() {
+        if (requested.get() != Long.MAX_VALUE) {
+            delivered.incrementAndGet()
+        }
+    }
+
+    fun outstanding(): Long {
+        val currentRequested = requested.get()
+        return if (currentRequested == Long.MAX_VALUE) currentRequested else maxOf(0, currentRequested - delivered.get())
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.websocket
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Registry of the [SharedWebsocketConnection] of each (vendor, endpoint, leg),
+ * so every client instance of an exchange streams over the same upstream socket.
+ * Clients created with a different leg get their own socket to the same endpoint,
+ * which is what redundant feeds need to be independent of each other.
+ *
+ * @see com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins.websocketConnectionManager
+ */
+class WebsocketConnectionManager {
+    companion object {
+        const val DEFAULT_MAX_TOPICS_PER_SOCKET = 200
+
+        /**
+         * documented stream limits of a single socket
+         */
+        private val VENDOR_MAX_TOPICS_PER_SOCKET = mapOf(
+            ExchangeVendor.BINANCE to 1024
+        )
+    }
+
+    private val connections: MutableMap<ConnectionKey, SharedWebsocketConnection> = ConcurrentHashMap()
+
+    private val maxTopicsPerSocket: MutableMap<ExchangeVendor, Int> = ConcurrentHashMap(VENDOR_MAX_TOPICS_PER_SOCKET)
+
+    // metrics of the clients opening their own sockets, by endpoint
+    private val standaloneMetrics: MutableMap<ConnectionKey, WebsocketConnectionMetrics> = ConcurrentHashMap()
+
+    /**
+     * @param leg connections of different legs never share a socket
+     * @param connectionFactory called only when there is no connection for the key yet
+     */
+    fun connection(
+        exchangeVendor: ExchangeVendor,
+        uri: String,
+        leg: Int = 0,
+        connectionFactory: () -> SharedWebsocketConnection
+    ): SharedWebsocketConnection {
+        require(leg >= 0) { "leg must not be negative : $leg" }
+        return connections.computeIfAbsent(ConnectionKey(exchangeVendor, uri, leg)) { connectionFactory() }
+    }
+
+    /**
+     * @return true when no connection was created yet
+     */
+    fun isEmpty(): Boolean = connections.isEmpty()
+
+    /**
+     * topics of [exchangeVendor] are sharded over several sockets above this limit
+     */
+    fun maxTopicsPerSocket(exchangeVendor: ExchangeVendor): Int {
+        return maxTopicsPerSocket[exchangeVendor] ?: DEFAULT_MAX_TOPICS_PER_SOCKET
+    }
+
+    /**
+     * must be set before the first client of [exchangeVendor] is created,
+     * the limit is read when the connection of an endpoint is created
+     */
+    fun setMaxTopicsPerSocket(exchangeVendor: ExchangeVendor, maxTopics: Int) {
+        require(maxTopics > 0) { "maxTopics must be positive : $maxTopics" }
+        maxTopicsPerSocket[exchangeVendor] = maxTopics
+    }
+
+    /**
+     * metrics of [streamType] for a client which opens its own sockets to [uri] instead of a [SharedWebsocketConnection],
+     * reported by [metrics] with the connections of [exchangeVendor]
+     */
+    fun meter(exchangeVendor: ExchangeVendor, uri: String, streamType: String): WebsocketStreamMeter {
+        val connectionMetrics = standaloneMetrics.computeIfAbsent(ConnectionKey(exchangeVendor, uri)) {
+            WebsocketConnectionMetrics()
+        }
+        return WebsocketStreamMeter(connectionMetrics, connectionMetrics.stream(streamType))
+    }
+
+    /**
+     * traffic, decode, reconnect and resync metrics of every connection of [exchangeVendor]
+     */
+    fun metrics(exchangeVendor: ExchangeVendor): WebsocketConnectionMetrics.Snapshot {
+        val sharedMetrics = connections.filterKeys { it.exchangeVendor == exchangeVendor }
+            .values
+            .map { it.metrics }
+        val standaloneConnectionMetrics = standaloneMetrics.filterKeys { it.exchangeVendor == exchangeVendor }.values
+        return (sharedMetrics + standaloneConnectionMetrics)
+            .map { it.snapshot() }
+            .fold(WebsocketConnectionMetrics.Snapshot.EMPTY) { total, snapshot -> total + snapshot }
+    }
+
+    data class ConnectionKey(
+        val exchangeVendor: ExchangeVendor,
+        val uri: String,
+        val leg: Int = 0
+    )
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.websocket
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Traffic and recovery latency of a [SharedWebsocketConnection],
+ * or the traffic of the sockets a client opens to one endpoint, see [WebsocketStreamMeter].
+ *
+ * - frames, bytes: received by every socket of the connection
+ * - disconnect: from losing the socket until the handshake of the next socket succeeded
+ * - resync: from that handshake until a subscriber received a message of each of its currency pairs again
+ * - streams: decode stage of each stream type, see [WebsocketStreamMetrics]
+ *
+ * Every counter is a [LongAdder] updated without locking on the event loop, so the metrics are always enabled.
+ */
+class WebsocketConnectionMetrics {
+    private val frames = LongAdder()
+    private val bytes = LongAdder()
+
+    private val reconnects = LongAdder()
+    private val disconnectNanos = LongAdder()
+    private val maxDisconnectNanos = AtomicLong()
+    private val lastDisconnectNanos = AtomicLong()
+
+    private val resyncs = LongAdder()
+    private val resyncNanos = LongAdder()
+    private val maxResyncNanos = AtomicLong()
+    private val lastResyncNanos = AtomicLong()
+
+    private val streams: MutableMap<String, WebsocketStreamMetrics> = ConcurrentHashMap()
+
+    fun recordFrame(byteCount: Int) {
+        frames.increment()
+        bytes.add(byteCount.toLong())
+    }
+
+    /**
+     * metrics of [streamType] kept for the lifetime of the connection, even while the stream has no subscriber
+     */
+    fun stream(streamType: String): WebsocketStreamMetrics {
+        return streams.computeIfAbsent(streamType) { WebsocketStreamMetrics(it) }
+    }
+
+    fun recordReconnect(disconnectDuration: Duration) {
+        val nanos = disconnectDuration.toNanos()
+        reconnects.increment()
+        disconnectNanos.add(nanos)
+        maxDisconnectNanos.accumulateAndGet(nanos, Math::max)
+        lastDisconnectNanos.set(nanos)
+    }
+
+    fun recordResync(resyncDuration: Duration) {
+        val nanos = resyncDuration.toNanos()
+        resyncs.increment()
+        resyncNanos.add(nanos)
+        maxResyncNanos.accumulateAndGet(nanos, Math::max)
+        lastResyncNanos.set(nanos)
+    }
+
+    fun snapshot(): Snapshot {
+        return Snapshot(
+            reconnects.sum(),
+            Duration.ofNanos(disconnectNanos.sum()),
+            Duration.ofNanos(maxDisconnectNanos.get()),
+            Duration.ofNanos(lastDisconnectNanos.get()),
+            resyncs.sum(),
+            Duration.ofNanos(resyncNanos.sum()),
+            Duration.ofNanos(maxResyncNanos.get()),
+            Duration.ofNanos(lastResyncNanos.get()),
+            frames.sum(),
+            bytes.sum(),
+            streams.mapValues { it.value.snapshot() }
+        )
+    }
+
+    data class Snapshot(
+        val reconnects: Long,
+        val totalDisconnectDuration: Duration,
+        val maxDisconnectDuration: Duration,
+        val lastDisconnectDuration: Duration,
+        val resyncs: Long,
+        val totalResyncDuration: Duration,
+        val maxResyncDuration: Duration,
+        val lastResyncDuration: Duration,
+        val frames: Long = 0,
+        val bytes: Long = 0,
+        val streams: Map<String, WebsocketStreamMetrics.Snapshot> = emptyMap()
+    ) {
+        companion object {
+            @JvmField
+            val EMPTY = Snapshot(0, Duration.ZERO, Duration.ZERO, Duration.ZERO, 0, Duration.ZERO, Duration.ZERO, Duration.ZERO)
+        }
+
+        /**
+         * combine the metrics of the connections of a vendor, last durations are the longer one
+         */
+        operator fun plus(other: Snapshot): Snapshot {
+            return Snapshot(
+                reconnects + other.reconnects,
+                totalDisconnectDuration + other.totalDisconnectDuration,
+                maxOf(maxDisconnectDuration, other.maxDisconnectDuration),
+                maxOf(lastDisconnectDuration, other.lastDisconnectDuration),
+                resyncs + other.resyncs,
+                totalResyncDuration + other.totalResyncDuration,
+                maxOf(maxResyncDuration, other.maxResyncDuration),
+                maxOf(lastResyncDuration, other.lastResyncDuration),
+                frames + other.frames,
+                bytes + other.bytes,
+                (streams.keys + other.streams.keys).associateWith { streamType ->
+                    val stream = streams[streamType]
+                    val otherStream = other.streams[streamType]
+                    if (stream != null && otherStream != null) stream + otherStream else stream ?: otherStream!!
+                }
+            )
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.websocket
+
+import reactor.core.publisher.Flux
+import reactor.netty.ByteBufFlux
+
+/**
+ * Metrics of a stream of a client which opens its own socket per subscription instead of streaming over a
+ * [SharedWebsocketConnection], kept with the connections of its vendor, see [WebsocketConnectionManager.meter].
+ *
+ * Frames are counted by [metered] where the handler reads them and decoded by [decode],
+ * whose latency covers the same stage as the decoder of a shared connection.
+ * Such clients end the flux when the socket closes, no reconnect or resync is recorded.
+ */
+class WebsocketStreamMeter internal constructor(
+    val connectionMetrics: WebsocketConnectionMetrics,
+    val streamMetrics: WebsocketStreamMetrics
+)
+
+/**
+ * the received frames, each one counted with its size in the traffic of the connection
+ */
+fun ByteBufFlux.metered(meter: WebsocketStreamMeter): ByteBufFlux {
+    return ByteBufFlux.fromInbound(doOnNext { meter.connectionMetrics.recordFrame(it.readableBytes()) })
+}
+
+/**
+ * decode every frame synchronously with [decoder] as the decode stage of the stream,
+ * a frame decoded to null is dropped and counted as filtered.
+ * the request of each subscriber not delivered yet is sampled as the demand of the stream.
+ */
+fun <T, R : Any> Flux<T>.decode(meter: WebsocketStreamMeter, decoder: (T) -> R?): Flux<R> {
+    val streamMetrics = meter.streamMetrics
+    return Flux.defer {
+        val demand = SubscriberDemand()
+        val demandProbe: () -> Long = { demand.outstanding() }
+        streamMetrics.addDemandProbe(demandProbe)
+
+        this.handle<R> { frame, sink ->
+            val startedAt = System.nanoTime()
+            val message = decoder(frame)
+            streamMetrics.recordDecode(System.nanoTime() - startedAt, message == null)
+            if (message != null) {
+                streamMetrics.recordEvent()
+                sink.next(message)
+            }
+        }
+            .doOnRequest { demand.onRequest(it) }
+            .doOnNext { demand.onDeliver() }
+            .doFinally { streamMetrics.removeDemandProbe(demandProbe) }
+    }
+}
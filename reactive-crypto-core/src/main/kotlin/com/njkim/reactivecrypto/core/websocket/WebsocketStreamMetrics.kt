@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.websocket
+
+import com.njkim.reactivecrypto.core.metrics.LatencyHistogram
+import com.njkim.reactivecrypto.core.metrics.ReceiveClock
+import java.time.ZonedDateTime
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Decode stage of a stream type (channel) of a [SharedWebsocketConnection],
+ * or of the streams of a client opening its own sockets, see [WebsocketStreamMeter].
+ *
+ * - frames: frames of the stream, the decoder returns null for the frames of the other streams of the socket
+ * - filtered: frames of the stream decoded to nothing, e.g. a book delta dropped until the snapshot
+ * - events: messages emitted to the subscribers
+ * - overflows: subscribers terminated because they couldn't keep up
+ * - gaps: sequence gaps found by the decoder of the stream, each one resynchronizes a book
+ * - pending: messages buffered for the slowest subscriber when sampled, a growing value means the pipeline lags
+ * - demand: smallest request of a subscriber not delivered yet when sampled, [Long.MAX_VALUE] when every subscriber
+ *   requested an unbounded amount or none is subscribed, 0 means a subscriber stopped requesting
+ * - exchange latency: from the event time reported by the exchange until the frame was read from the socket,
+ *   includes the clock offset of the exchange
+ * - emit latency: from reading the frame until its messages were handed to the subscribers
+ */
+class WebsocketStreamMetrics internal constructor(val streamType: String) {
+    private val frames = LongAdder()
+    private val filtered = LongAdder()
+    private val events = LongAdder()
+    private val overflows = LongAdder()
+    private val gaps = LongAdder()
+    private val decodeLatency = LatencyHistogram()
+    private val exchangeLatency = LatencyHistogram()
+    private val emitLatency = LatencyHistogram()
+
+    // sampled on snapshot, set while the stream has subscribers
+    @Volatile
+    internal var pendingProbe: (() -> Int)? = null
+
+    // sampled on snapshot, one per channel or subscriber of the stream
+    private val demandProbes: MutableSet<() -> Long> = ConcurrentHashMap.newKeySet()
+
+    internal fun recordDecode(decodeNanos: Long, empty: Boolean) {
+        frames.increment()
+        decodeLatency.record(decodeNanos)
+        if (empty) {
+            filtered.increment()
+        }
+    }
+
+    internal fun recordExchangeLatency(eventTime: ZonedDateTime, receivedNanos: Long) {
+        exchangeLatency.record(ReceiveClock.exchangeLatencyNanos(eventTime, receivedNanos))
+    }
+
+    internal fun recordEmitLatency(nanos: Long) {
+        emitLatency.record(nanos)
+    }
+
+    internal fun recordEvent() {
+        events.increment()
+    }
+
+    internal fun recordOverflow() {
+        overflows.increment()
+    }
+
+    internal fun addDemandProbe(demandProbe: () -> Long) {
+        demandProbes.add(demandProbe)
+    }
+
+    internal fun removeDemandProbe(demandProbe: () -> Long) {
+        demandProbes.remove(demandProbe)
+    }
+
+    /**
+     * called by decoders keeping books from sequenced deltas
+     */
+    fun recordGap() {
+        gaps.increment()
+    }
+
+    fun snapshot(): Snapshot {
+        return Snapshot(
+            streamType,
+            frames.sum(),
+            filtered.sum(),
+            events.sum(),
+            overflows.sum(),
+            pendingProbe?.invoke() ?: 0,
+            decodeLatency.snapshot(),
+            exchangeLatency.snapshot(),
+            emitLatency.snapshot(),
+            gaps.sum(),
+            demandProbes.map { it() }.min() ?: Long.MAX_VALUE
+        )
+    }
+
+    data class Snapshot(
+        val streamType: String,
+        val frames: Long,
+        val filtered: Long,
+        val events: Long,
+        val overflows: Long,
+        val pending: Int,
+        val decodeLatency: LatencyHistogram.Snapshot,
+        val exchangeLatency: LatencyHistogram.Snapshot = LatencyHistogram.EMPTY,
+        val emitLatency: LatencyHistogram.Snapshot = LatencyHistogram.EMPTY,
+        val gaps: Long = 0,
+        val demand: Long = Long.MAX_VALUE
+    ) {
+        operator fun plus(other: Snapshot): Snapshot {
+            return Snapshot(
+                streamType,
+                frames + other.frames,
+                filtered + other.filtered,
+                events + other.events,
+                overflows + other.overflows,
+                pending + other.pending,
+                decodeLatency + other.decodeLatency,
+                exchangeLatency + other.exchangeLatency,
+                emitLatency + other.emitLatency,
+                gaps + other.gaps,
+                minOf(demand, other.demand)
+            )
+        }
+    }
+}
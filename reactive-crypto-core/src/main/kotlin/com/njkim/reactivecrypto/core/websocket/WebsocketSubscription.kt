@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.websocket
+
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import reactor.core.publisher.Flux
+
+/**
+ * Stream of an exchange whose currency pairs can be added and removed while the stream is connected.
+ *
+ * @see ExchangePublicWebsocketClient.createTradeSubscription
+ * @see ExchangePublicWebsocketClient.createDepthSubscription
+ */
+interface WebsocketSubscription<T> {
+    /**
+     * messages of the currently subscribed currency pairs
+     */
+    val flux: Flux<T>
+
+    fun add(currencyPairs: List<CurrencyPair>)
+
+    fun remove(currencyPairs: List<CurrencyPair>)
+
+    fun currencyPairs(): Set<CurrencyPair>
+}
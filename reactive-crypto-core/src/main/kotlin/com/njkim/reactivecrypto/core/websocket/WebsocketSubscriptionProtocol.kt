@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.websocket
+
+/**
+ * Builds the subscribe and unsubscribe messages of an exchange websocket for exchange specific topics,
+ * e.g. `spot/depth:ETH-USDT` for OKEx or `market.btcusdt.trade.detail` for Huobi.
+ */
+interface WebsocketSubscriptionProtocol {
+    /**
+     * @param topics never empty
+     */
+    fun subscribeMessages(topics: List<String>): List<String>
+
+    /**
+     * @param topics never empty
+     */
+    fun unsubscribeMessages(topics: List<String>): List<String>
+}
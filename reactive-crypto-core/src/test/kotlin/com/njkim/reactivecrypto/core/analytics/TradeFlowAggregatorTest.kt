@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.analytics
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import java.math.RoundingMode
+import java.time.Duration
+import java.time.ZoneOffset
+import java.time.ZonedDateTime
+
+class TradeFlowAggregatorTest {
+    private val baseTime = ZonedDateTime.of(2019, 6, 1, 0, 0, 0, 0, ZoneOffset.UTC)
+
+    @Test
+    fun `evict expired trades of each window`() {
+        // GIVEN
+        val tradeFlowAggregator = TradeFlowAggregator(listOf(Duration.ofSeconds(10), Duration.ofSeconds(1)))
+        tradeFlowAggregator.update(tickData(0, "100", "1", TradeSideType.BUY))
+        tradeFlowAggregator.update(tickData(500, "110", "1", TradeSideType.SELL))
+
+        // WHEN
+        val statistics = tradeFlowAggregator.update(tickData(1_200, "120", "2", TradeSideType.BUY))
+
+        // THEN
+        val (second, tenSeconds) = statistics
+        assertThat(second.window).isEqualTo(Duration.ofSeconds(1))
+        assertThat(second.tradeCount).isEqualTo(2)
+        assertThat(second.volume).isEqualByComparingTo("3")
+        assertThat(second.vwap!!.setScale(4, RoundingMode.HALF_UP)).isEqualByComparingTo("116.6667")
+        assertThat(tenSeconds.tradeCount).isEqualTo(3)
+        assertThat(tenSeconds.buyVolume).isEqualByComparingTo("3")
+        assertThat(tenSeconds.sellVolume).isEqualByComparingTo("1")
+        assertThat(tenSeconds.vwap).isEqualByComparingTo("112.5")
+    }
+
+    @Test
+    fun `keep running sums over ring buffer growth`() {
+        // GIVEN
+        val tradeFlowAggregator = TradeFlowAggregator(listOf(Duration.ofSeconds(1)))
+
+        // WHEN
+        val statistics = (0 until 1_000).map {
+            tradeFlowAggregator.update(tickData(it * 10L, "10", "1", TradeSideType.SELL)).single()
+        }
+
+        // THEN
+        assertThat(statistics.last().tradeCount).isEqualTo(100)
+        assertThat(statistics.last().volume).isEqualByComparingTo("100")
+        assertThat(statistics.last().vwap).isEqualByComparingTo("10")
+        assertThat(statistics.last().buyVolume).isEqualByComparingTo("0")
+    }
+
+    private fun tickData(offsetMillis: Long, price: String, quantity: String, tradeSideType: TradeSideType): TickData {
+        return TickData(
+            offsetMillis.toString(),
+            baseTime.plus(Duration.ofMillis(offsetMillis)),
+            price.toBigDecimal(),
+            quantity.toBigDecimal(),
+            CurrencyPair.parse("BTC", "USDT"),
+            ExchangeVendor.BINANCE,
+            tradeSideType
+        )
+    }
+}
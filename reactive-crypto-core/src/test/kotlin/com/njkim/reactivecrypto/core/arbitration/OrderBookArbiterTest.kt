@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.arbitration
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import java.time.Duration
+import java.time.ZonedDateTime
+
+class OrderBookArbiterTest {
+    private val btcUsdt = CurrencyPair.parse("BTC-USDT")
+
+    @Test
+    fun `emit each sequence from the leg delivering it first`() {
+        // GIVEN
+        val arbiter = OrderBookArbiter(2)
+
+        // WHEN
+        val accepted = listOf(
+            arbiter.accept(0, orderBook("10", 1_000)),
+            // two books decoded from one frame
+            arbiter.accept(0, orderBook("10", 1_000)),
+            arbiter.accept(1, orderBook("10", 1_300)),
+            arbiter.accept(1, orderBook("11", 2_000)),
+            arbiter.accept(0, orderBook("10", 2_100)),
+            arbiter.accept(0, orderBook("11", 2_200)),
+            arbiter.accept(0, orderBook("BTC-USDT1589", 3_000))
+        )
+
+        // THEN
+        assertThat(accepted).containsExactly(true, true, false, true, false, false, true)
+        val metrics = arbiter.metrics.snapshot()
+        assertThat(metrics.wins).containsExactly(1L, 1L)
+        assertThat(metrics.duplicates).isEqualTo(3)
+        assertThat(metrics.unsequenced).isEqualTo(1)
+        assertThat(metrics.advantages[0].max.toNanos()).isEqualTo(300)
+        assertThat(metrics.advantages[1].max.toNanos()).isEqualTo(200)
+    }
+
+    @Test
+    fun `accept a reset sequence once the feed went stale`() {
+        // GIVEN
+        val arbiter = OrderBookArbiter(2, staleAfter = Duration.ofSeconds(1))
+        arbiter.accept(0, orderBook("500", 1_000))
+
+        // WHEN
+        val beforeStale = arbiter.accept(1, orderBook("1", 1_000 + Duration.ofMillis(500).toNanos()))
+        val afterStale = arbiter.accept(1, orderBook("1", 1_000 + Duration.ofSeconds(2).toNanos()))
+
+        // THEN
+        assertThat(beforeStale).isFalse()
+        assertThat(afterStale).isTrue()
+        assertThat(arbiter.accept(0, orderBook("1", 1_000 + Duration.ofSeconds(2).toNanos()))).isFalse()
+    }
+
+    private fun orderBook(uniqueId: String, receivedNanos: Long): OrderBook {
+        return OrderBook(uniqueId, btcUsdt, ZonedDateTime.now(), ExchangeVendor.BINANCE, emptyList(), emptyList(), receivedNanos)
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.arbitration
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import java.math.BigDecimal
+import java.time.ZonedDateTime
+
+class TickDataArbiterTest {
+    private val btcUsdt = CurrencyPair.parse("BTC-USDT")
+    private val ethUsdt = CurrencyPair.parse("ETH-USDT")
+
+    @Test
+    fun `first copy of each trade wins`() {
+        // GIVEN
+        val arbiter = TickDataArbiter(2)
+
+        // WHEN
+        val accepted = listOf(
+            arbiter.accept(0, tickData("1", btcUsdt, 1_000)),
+            arbiter.accept(1, tickData("1", btcUsdt, 1_500)),
+            arbiter.accept(1, tickData("2", btcUsdt, 2_000)),
+            arbiter.accept(0, tickData("2", btcUsdt, 2_100)),
+            arbiter.accept(0, tickData("1", ethUsdt, 3_000))
+        )
+
+        // THEN
+        assertThat(accepted).containsExactly(true, false, true, false, true)
+        val metrics = arbiter.metrics.snapshot()
+        assertThat(metrics.wins).containsExactly(2L, 1L)
+        assertThat(metrics.duplicates).isEqualTo(2)
+        assertThat(metrics.winRate(0)).isEqualTo(2.0 / 3)
+        assertThat(metrics.advantages[0].max.toNanos()).isEqualTo(500)
+        assertThat(metrics.advantages[1].max.toNanos()).isEqualTo(100)
+    }
+
+    @Test
+    fun `remember a bounded number of trades`() {
+        // GIVEN
+        val arbiter = TickDataArbiter(2, capacity = 4)
+
+        // WHEN
+        (1..12).forEach { arbiter.accept(0, tickData("$it", btcUsdt, it.toLong())) }
+
+        // THEN
+        // the last two generations are remembered
+        assertThat(arbiter.accept(1, tickData("12", btcUsdt, 100))).isFalse()
+        assertThat(arbiter.accept(1, tickData("5", btcUsdt, 100))).isFalse()
+        assertThat(arbiter.accept(1, tickData("4", btcUsdt, 100))).isTrue()
+    }
+
+    private fun tickData(uniqueId: String, currencyPair: CurrencyPair, receivedNanos: Long): TickData {
+        return TickData(
+            uniqueId, ZonedDateTime.now(), BigDecimal.ONE, BigDecimal.ONE,
+            currencyPair, ExchangeVendor.BINANCE, TradeSideType.BUY, receivedNanos
+        )
+    }
+}
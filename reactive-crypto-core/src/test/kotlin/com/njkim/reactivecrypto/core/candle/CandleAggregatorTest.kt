@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.candle
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import java.time.Duration
+import java.time.ZoneOffset
+import java.time.ZonedDateTime
+
+class CandleAggregatorTest {
+    private val baseTime = ZonedDateTime.of(2019, 6, 1, 0, 0, 0, 0, ZoneOffset.UTC)
+
+    @Test
+    fun `build several intervals in a single pass`() {
+        // GIVEN
+        val candleAggregator = CandleAggregator(listOf(Duration.ofMinutes(1), Duration.ofSeconds(1)))
+        candleAggregator.update(tickData(100, "10", "1"))
+        candleAggregator.update(tickData(500, "12", "2"))
+
+        // WHEN
+        val candles = candleAggregator.update(tickData(1_200, "9", "1"))
+
+        // THEN
+        val closedSecond = candles.first()
+        assertThat(closedSecond.closed).isTrue()
+        assertThat(closedSecond.interval).isEqualTo(Duration.ofSeconds(1))
+        assertThat(closedSecond.openTime).isEqualTo(baseTime)
+        assertThat(listOf(closedSecond.open, closedSecond.high, closedSecond.low, closedSecond.close).map { it.toPlainString() })
+            .containsExactly("10", "12", "10", "12")
+        assertThat(closedSecond.quoteVolume).isEqualByComparingTo("34")
+
+        val minute = candles.single { it.interval == Duration.ofMinutes(1) }
+        assertThat(minute.closed).isFalse()
+        assertThat(minute.low).isEqualByComparingTo("9")
+        assertThat(minute.volume).isEqualByComparingTo("4")
+        assertThat(minute.tradeCount).isEqualTo(3)
+    }
+
+    @Test
+    fun `accept late trades within grace period`() {
+        // GIVEN
+        val candleAggregator = CandleAggregator(listOf(Duration.ofSeconds(1)), Duration.ofMillis(500))
+        candleAggregator.update(tickData(900, "10", "1"))
+        assertThat(candleAggregator.update(tickData(1_300, "11", "1")).map { it.closed }).containsExactly(false)
+
+        // WHEN
+        val lateCandles = candleAggregator.update(tickData(950, "8", "1"))
+        val closingCandles = candleAggregator.update(tickData(1_600, "11", "1"))
+        val droppedCandles = candleAggregator.update(tickData(990, "7", "1"))
+
+        // THEN
+        assertThat(lateCandles.single().low).isEqualByComparingTo("8")
+        assertThat(closingCandles.first().closed).isTrue()
+        assertThat(closingCandles.first().tradeCount).isEqualTo(2)
+        assertThat(droppedCandles).isEmpty()
+        assertThat(candleAggregator.lateTickCount()).isEqualTo(1)
+    }
+
+    private fun tickData(offsetMillis: Long, price: String, quantity: String): TickData {
+        return TickData(
+            offsetMillis.toString(),
+            baseTime.plus(Duration.ofMillis(offsetMillis)),
+            price.toBigDecimal(),
+            quantity.toBigDecimal(),
+            CurrencyPair.parse("BTC", "USDT"),
+            ExchangeVendor.BINANCE,
+            TradeSideType.BUY
+        )
+    }
+}
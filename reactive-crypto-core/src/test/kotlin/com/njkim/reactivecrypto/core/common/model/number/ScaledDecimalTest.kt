@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.common.model.number
+
+import com.fasterxml.jackson.module.kotlin.readValue
+import com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.Test
+import java.math.BigDecimal
+
+class ScaledDecimalTest {
+    @Test
+    fun `parse decimal string`() {
+        assertThat(ScaledDecimal.parse("0.00012300")).isEqualTo(ScaledDecimal.of(123, 6))
+        assertThat(ScaledDecimal.parse("0.00012300").scale).isEqualTo(8)
+        assertThat(ScaledDecimal.parse("-12.5").mantissa).isEqualTo(-125)
+        assertThat(ScaledDecimal.parse("7000", 2).mantissa).isEqualTo(700000)
+        assertThat(ScaledDecimal.parse("1.5E-7")).isEqualTo(ScaledDecimal.of(15, 8))
+        assertThat(ScaledDecimal.parse("1.10").toBigDecimal()).isEqualTo(BigDecimal("1.10"))
+
+        assertThatThrownBy { ScaledDecimal.parse("1.25", 1) }.isInstanceOf(ArithmeticException::class.java)
+        assertThatThrownBy { ScaledDecimal.parse("1.2a") }.isInstanceOf(NumberFormatException::class.java)
+        assertThatThrownBy { ScaledDecimal.parse(".") }.isInstanceOf(NumberFormatException::class.java)
+        assertThatThrownBy { ScaledDecimal.parse("-.") }.isInstanceOf(NumberFormatException::class.java)
+    }
+
+    @Test
+    fun `exact arithmetic and comparison`() {
+        val price = ScaledDecimal.parse("100.25")
+        val quantity = ScaledDecimal.parse("0.5")
+
+        assertThat(price + quantity).isEqualTo(ScaledDecimal.parse("100.75"))
+        assertThat(price - quantity).isEqualTo(ScaledDecimal.parse("99.75"))
+        assertThat(price * quantity).isEqualTo(ScaledDecimal.parse("50.125"))
+        assertThat(price).isGreaterThan(quantity)
+        assertThat(ScaledDecimal.parse("1.10")).isEqualByComparingTo(ScaledDecimal.parse("1.1"))
+        assertThat(ScaledDecimal.parse("1.10").hashCode()).isEqualTo(ScaledDecimal.parse("1.1").hashCode())
+
+        assertThatThrownBy { ScaledDecimal.of(Long.MAX_VALUE, 0) + ScaledDecimal.of(1, 0) }
+            .isInstanceOf(ArithmeticException::class.java)
+    }
+
+    @Test
+    fun `deserialize scaled decimal`() {
+        val objectMapper = object : ExchangeJsonObjectMapper {}.objectMapper()
+
+        val values = objectMapper.readValue<List<ScaledDecimal>>("""["0.01000000", 12.5, 3]""")
+
+        assertThat(values).containsExactly(
+            ScaledDecimal.parse("0.01"),
+            ScaledDecimal.parse("12.5"),
+            ScaledDecimal.of(3, 0)
+        )
+    }
+}
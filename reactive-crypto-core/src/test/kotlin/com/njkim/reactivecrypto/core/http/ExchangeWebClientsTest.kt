@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.http
+
+import com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.netty.ReactiveCryptoNetworkConfig
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import reactor.core.publisher.Mono
+import reactor.netty.DisposableServer
+import reactor.netty.http.server.HttpServer
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+
+class ExchangeWebClientsTest {
+    private val remotePorts = CopyOnWriteArrayList<Int>()
+    private lateinit var server: DisposableServer
+
+    @Before
+    fun setUp() {
+        server = HttpServer.create()
+            .port(0)
+            .route { routes ->
+                routes.get("/ping") { request, response ->
+                    remotePorts.add(request.remoteAddress()!!.port)
+                    response.header("Content-Type", "application/json")
+                        .sendString(Mono.just("{\"pong\":true}"))
+                }
+            }
+            .bindNow()
+        ReactiveCryptoPlugins.networkConfig = ReactiveCryptoNetworkConfig(http = ReactiveCryptoHttpConfig(maxConnections = 1))
+    }
+
+    @After
+    fun tearDown() {
+        ReactiveCryptoPlugins.networkConfig.dispose()
+        ReactiveCryptoPlugins.networkConfig = ReactiveCryptoNetworkConfig.DEFAULT
+        server.disposeNow()
+    }
+
+    @Test
+    fun `share pooled connections between the accounts of a vendor`() {
+        // GIVEN
+        val objectMapper = object : ExchangeJsonObjectMapper {}.objectMapper()
+        val baseUrl = "http://127.0.0.1:${server.port()}"
+        val firstAccount = exchangeWebClientBuilder(ExchangeVendor.BINANCE, objectMapper, baseUrl).build()
+        val secondAccount = exchangeWebClientBuilder(ExchangeVendor.BINANCE, objectMapper, baseUrl).build()
+
+        // WHEN
+        val responses = listOf(firstAccount, secondAccount, firstAccount).map { webClient ->
+            webClient.get()
+                .uri("/ping")
+                .retrieve()
+                .bodyToMono(Map::class.java)
+                .block(Duration.ofSeconds(5))
+        }
+
+        // THEN
+        assertThat(responses).allMatch { it == mapOf("pong" to true) }
+        assertThat(remotePorts).hasSize(3)
+        assertThat(remotePorts.distinct()).hasSize(1)
+    }
+}
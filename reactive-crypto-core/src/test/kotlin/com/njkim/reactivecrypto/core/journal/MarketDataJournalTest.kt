@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.journal
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import io.netty.buffer.Unpooled
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.time.ZoneId
+import java.time.ZonedDateTime
+
+class MarketDataJournalTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val baseTime = ZonedDateTime.of(2019, 6, 1, 0, 0, 0, 123_456_789, ZoneId.of("Asia/Seoul"))
+
+    @Test
+    fun `read back recorded market data`() {
+        // GIVEN
+        val directory = temporaryFolder.root.toPath()
+        val orderBook = OrderBook(
+            "book-1",
+            CurrencyPair.parse("BTC", "KRW"),
+            baseTime,
+            ExchangeVendor.UPBIT,
+            listOf(OrderBookUnit("9999.5".toBigDecimal(), "1.25".toBigDecimal(), TradeSideType.BUY, 3)),
+            listOf(OrderBookUnit("1E+4".toBigDecimal(), "123456789012345678901234.5".toBigDecimal(), TradeSideType.SELL))
+        )
+
+        // WHEN
+        MarketDataJournal(directory).use {
+            it.append(tickData(0))
+            it.append(orderBook)
+            it.appendFrame(ExchangeVendor.UPBIT, Unpooled.copiedBuffer("{}", Charsets.UTF_8), baseTime)
+        }
+        val records = MarketDataJournalReader(directory).read().collectList().block()!!
+
+        // THEN
+        assertThat(records).hasSize(3)
+        assertThat(records[0]).isEqualTo(tickData(0))
+        assertThat(records[1]).isEqualTo(orderBook)
+        assertThat((records[2] as RawFrame).payload).isEqualTo("{}".toByteArray())
+    }
+
+    @Test
+    fun `roll segments and seek by time`() {
+        // GIVEN
+        val directory = temporaryFolder.root.toPath()
+        val journal = MarketDataJournal(directory, segmentSize = 1024)
+
+        // WHEN
+        (0 until 100).forEach { journal.append(tickData(it.toLong())) }
+        journal.close()
+        val records = MarketDataJournalReader(directory).read(baseTime.plusSeconds(42)).collectList().block()!!
+
+        // THEN
+        assertThat(journal.writtenCount()).isEqualTo(100)
+        assertThat(directory.toFile().list()!!.count { it.endsWith(".journal") }).isGreaterThan(1)
+        assertThat(records.map { (it as TickData).uniqueId }).isEqualTo((42 until 100).map { it.toString() })
+    }
+
+    private fun tickData(offsetSeconds: Long): TickData {
+        return TickData(
+            offsetSeconds.toString(),
+            baseTime.plusSeconds(offsetSeconds),
+            "10000.25".toBigDecimal(),
+            "0.001".toBigDecimal(),
+            CurrencyPair.parse("BTC", "KRW"),
+            ExchangeVendor.UPBIT,
+            TradeSideType.SELL
+        )
+    }
+}
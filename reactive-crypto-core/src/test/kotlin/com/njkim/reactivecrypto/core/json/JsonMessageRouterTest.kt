@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.json
+
+import com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper
+import io.netty.buffer.Unpooled
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.entry
+import org.junit.Test
+
+class JsonMessageRouterTest {
+    private val objectMapper = object : ExchangeJsonObjectMapper {}.objectMapper()
+
+    @Test
+    fun `route message by header field`() {
+        // GIVEN
+        val router = JsonMessageRouter(
+            objectMapper,
+            JsonMessageTypeResolver.field("table", "event"),
+            mapOf("spot/depth" to objectMapper.messageDecoder<Map<String, Any>>())
+        )
+        val depth = """{"table":"spot/depth","action":"update","data":[{"instrument_id":"ETH-USDT"}]}"""
+        val trade = """{"data":[{"instrument_id":"ETH-USDT"}],"table":"spot/trade"}"""
+        val subscribe = """{"event":"subscribe","channel":"spot/depth:ETH-USDT"}"""
+        val depthBuffer = Unpooled.copiedBuffer(depth, Charsets.UTF_8)
+
+        // WHEN
+        val routedDepth = router.route(depthBuffer)
+        val routedTrade = router.route(trade)
+        val routedSubscribe = router.route(subscribe)
+        val routedUnknown = router.route("[1,2]")
+
+        // THEN
+        assertThat(routedDepth).containsEntry("action", "update")
+        assertThat(routedTrade).isNull()
+        assertThat(routedSubscribe).isNull()
+        assertThat(routedUnknown).isNull()
+        assertThat(depthBuffer.readerIndex()).isEqualTo(0)
+        assertThat(router.messageCounts()).containsOnly(
+            entry("spot/depth", 1L),
+            entry("spot/trade", 1L),
+            entry("subscribe", 1L),
+            entry(JsonMessageRouter.UNKNOWN_TYPE, 1L)
+        )
+        depthBuffer.release()
+    }
+
+    @Test
+    fun `map header value to message type`() {
+        // GIVEN
+        val resolver = JsonMessageTypeResolver.field("ch") { _, channel ->
+            channel.substringAfter('.').substringAfter('.')
+        }
+
+        // WHEN
+        val type = objectMapper.factory.createParser("""{"ch":"market.btcusdt.depth.step0","tick":{}}""").use {
+            it.nextToken()
+            resolver.resolve(it)
+        }
+
+        // THEN
+        assertThat(type).isEqualTo("depth.step0")
+    }
+}
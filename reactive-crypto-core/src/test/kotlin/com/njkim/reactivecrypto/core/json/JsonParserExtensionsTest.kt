@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.json
+
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import io.netty.buffer.Unpooled
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+
+class JsonParserExtensionsTest {
+    private val objectMapper = object : ExchangeJsonObjectMapper {}.objectMapper()
+
+    private val content = """{"skip":{"a":[1,2]},"bids":[["0.10","2","3","x"]],"asks":[[0.2,1.5]]}"""
+
+    @Test
+    fun `decode order book units with field iteration`() {
+        // GIVEN
+        val decoder = object : JsonMessageDecoder<List<OrderBookUnit>> {
+            override fun decode(parser: JsonParser): List<OrderBookUnit> {
+                val orderBookUnits = ArrayList<OrderBookUnit>()
+                parser.forEachField { fieldName ->
+                    when (fieldName) {
+                        "bids" -> orderBookUnits.addAll(parser.orderBookUnitsValue(TradeSideType.BUY, true))
+                        "asks" -> orderBookUnits.addAll(parser.orderBookUnitsValue(TradeSideType.SELL, true))
+                        else -> parser.skipChildren()
+                    }
+                }
+                assertThat(parser.currentToken).isEqualTo(JsonToken.END_OBJECT)
+                return orderBookUnits
+            }
+        }
+
+        // WHEN
+        val orderBookUnits = objectMapper.decode(content, decoder)
+
+        // THEN
+        assertThat(orderBookUnits).containsExactly(
+            OrderBookUnit("0.10".toBigDecimal(), "2".toBigDecimal(), TradeSideType.BUY, 3),
+            OrderBookUnit("0.2".toBigDecimal(), "1.5".toBigDecimal(), TradeSideType.SELL, null)
+        )
+    }
+
+    @Test
+    fun `decode direct byte buf without consuming it`() {
+        // GIVEN
+        val bytes = content.toByteArray()
+        val byteBuf = Unpooled.directBuffer(bytes.size).writeBytes(bytes)
+        val decoder = object : JsonMessageDecoder<Int> {
+            override fun decode(parser: JsonParser): Int {
+                var levels = 0
+                parser.forEachField { fieldName ->
+                    when (fieldName) {
+                        "bids", "asks" -> levels += parser.orderBookUnitsValue(TradeSideType.BUY).size
+                        else -> parser.skipChildren()
+                    }
+                }
+                return levels
+            }
+        }
+
+        // WHEN
+        val levels = objectMapper.decode(byteBuf, decoder)
+
+        // THEN
+        assertThat(levels).isEqualTo(2)
+        assertThat(byteBuf.readerIndex()).isEqualTo(0)
+        assertThat(byteBuf.refCnt()).isEqualTo(1)
+        byteBuf.release()
+    }
+}
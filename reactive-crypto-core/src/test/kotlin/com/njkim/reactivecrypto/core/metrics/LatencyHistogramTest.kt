@@ -0,0 +1,56 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.metrics
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import java.time.Duration
+
+class LatencyHistogramTest {
+    @Test
+    fun `percentiles are bounded by their power of two bucket`() {
+        // GIVEN
+        val histogram = LatencyHistogram()
+
+        // WHEN
+        (1..99).forEach { histogram.record(Duration.ofNanos(1000)) }
+        histogram.record(Duration.ofMillis(5))
+        val snapshot = histogram.snapshot()
+
+        // THEN
+        assertThat(snapshot.count).isEqualTo(100)
+        assertThat(snapshot.max).isEqualTo(Duration.ofMillis(5))
+        assertThat(snapshot.percentile(50.0).toNanos()).isBetween(1000, 2047)
+        assertThat(snapshot.percentile(99.0).toNanos()).isBetween(1000, 2047)
+        assertThat(snapshot.percentile(100.0)).isEqualTo(Duration.ofMillis(5))
+        assertThat(snapshot.mean.toNanos()).isEqualTo((99 * 1000 + 5_000_000) / 100L)
+    }
+
+    @Test
+    fun `combine snapshots`() {
+        // GIVEN
+        val first = LatencyHistogram().apply { record(10) }
+        val second = LatencyHistogram().apply { record(20) }
+
+        // WHEN
+        val snapshot = first.snapshot() + second.snapshot() + LatencyHistogram.EMPTY
+
+        // THEN
+        assertThat(snapshot.count).isEqualTo(2)
+        assertThat(snapshot.max).isEqualTo(Duration.ofNanos(20))
+        assertThat(LatencyHistogram.EMPTY.percentile(99.0)).isEqualTo(Duration.ZERO)
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.netty
+
+import io.netty.buffer.ByteBuf
+import io.netty.buffer.Unpooled
+import io.netty.channel.embedded.EmbeddedChannel
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+
+class PingPongHandlerTest {
+    @Test
+    fun `reply pong and pass other frames`() {
+        // GIVEN
+        val channel = EmbeddedChannel(PingPongHandler())
+
+        // WHEN
+        channel.writeInbound(Unpooled.copiedBuffer("{\"ping\": 1492420473027}", Charsets.UTF_8))
+        channel.writeInbound(Unpooled.copiedBuffer("{\"ch\":\"market.btcusdt.trade.detail\"}", Charsets.UTF_8))
+
+        // THEN
+        val pong = channel.readOutbound<TextWebSocketFrame>()
+        assertThat(pong.text()).isEqualTo("{\"pong\": 1492420473027}")
+        pong.release()
+
+        val frame = channel.readInbound<ByteBuf>()
+        assertThat(frame.toString(Charsets.UTF_8)).isEqualTo("{\"ch\":\"market.btcusdt.trade.detail\"}")
+        assertThat(frame.containsAscii("\"ch\"")).isTrue()
+        assertThat(frame.containsAscii("\"event\"")).isFalse()
+        frame.release()
+
+        assertThat(channel.readInbound<Any>()).isNull()
+        assertThat(channel.finish()).isFalse()
+    }
+
+    @Test
+    fun `pass frames containing ping after the leading key`() {
+        // GIVEN
+        val channel = EmbeddedChannel(PingPongHandler())
+        val trade = "{\"ch\":\"market.pingusdt.trade.detail\",\"tick\":{\"ping\":1}}"
+
+        // WHEN
+        channel.writeInbound(Unpooled.copiedBuffer(trade, Charsets.UTF_8))
+
+        // THEN
+        assertThat(channel.readOutbound<Any>()).isNull()
+        val frame = channel.readInbound<ByteBuf>()
+        assertThat(frame.toString(Charsets.UTF_8)).isEqualTo(trade)
+        frame.release()
+        assertThat(channel.finish()).isFalse()
+    }
+
+    @Test
+    fun `reply pong to a ping of the given prefix`() {
+        // GIVEN
+        val channel = EmbeddedChannel(PingPongHandler("{\"action\":\"ping\""))
+
+        // WHEN
+        channel.writeInbound(Unpooled.copiedBuffer("{\"action\":\"ping\",\"data\":{\"ts\":1575537778295}}", Charsets.UTF_8))
+        channel.writeInbound(Unpooled.copiedBuffer("{\"ping\": 1492420473027}", Charsets.UTF_8))
+
+        // THEN
+        val pong = channel.readOutbound<TextWebSocketFrame>()
+        assertThat(pong.text()).isEqualTo("{\"action\":\"pong\",\"data\":{\"ts\":1575537778295}}")
+        pong.release()
+        assertThat(channel.readOutbound<Any>()).isNull()
+
+        val frame = channel.readInbound<ByteBuf>()
+        assertThat(frame.toString(Charsets.UTF_8)).isEqualTo("{\"ping\": 1492420473027}")
+        frame.release()
+        assertThat(channel.finish()).isFalse()
+    }
+}
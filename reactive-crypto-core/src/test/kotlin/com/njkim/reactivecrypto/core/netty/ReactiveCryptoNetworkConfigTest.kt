@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.netty
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import reactor.core.publisher.Mono
+import reactor.netty.http.server.HttpServer
+import java.time.Duration
+
+class ReactiveCryptoNetworkConfigTest {
+    @Test
+    fun `run the connections of a vendor on its dedicated loops`() {
+        // GIVEN
+        val server = HttpServer.create()
+            .port(0)
+            .route { routes -> routes.get("/ping") { _, response -> response.sendString(Mono.just("pong")) } }
+            .bindNow()
+        val binanceLoops = ReactiveCryptoNetworkConfig.dedicatedLoops("binance", 1)
+        val config = ReactiveCryptoNetworkConfig().withVendorLoops(ExchangeVendor.BINANCE, binanceLoops)
+
+        // WHEN
+        val binanceThread = connectionThread(config, ExchangeVendor.BINANCE, server.port())
+        val upbitThread = connectionThread(config, ExchangeVendor.UPBIT, server.port())
+
+        // THEN
+        assertThat(binanceThread).startsWith("reactive-crypto-binance")
+        assertThat(upbitThread).doesNotStartWith("reactive-crypto-binance")
+
+        server.disposeNow()
+        binanceLoops.disposeLater().block(Duration.ofSeconds(5))
+    }
+
+    @Test
+    fun `release only the REST connection pool of the disposed configuration`() {
+        // GIVEN
+        val binanceLoops = ReactiveCryptoNetworkConfig.dedicatedLoops("binance", 1)
+        val config = ReactiveCryptoNetworkConfig()
+        val vendorConfig = config.withVendorLoops(ExchangeVendor.BINANCE, binanceLoops)
+        config.restClient(ExchangeVendor.BINANCE)
+        vendorConfig.restClient(ExchangeVendor.BINANCE)
+
+        // WHEN
+        config.dispose()
+
+        // THEN
+        assertThat(config.isDisposed).isTrue()
+        assertThat(vendorConfig.isDisposed).isFalse()
+        assertThat(vendorConfig.loopResources).isSameAs(config.loopResources)
+
+        vendorConfig.dispose()
+        binanceLoops.disposeLater().block(Duration.ofSeconds(5))
+    }
+
+    private fun connectionThread(config: ReactiveCryptoNetworkConfig, exchangeVendor: ExchangeVendor, port: Int): String {
+        return config.httpClient(exchangeVendor)
+            .get()
+            .uri("http://localhost:$port/ping")
+            .responseContent()
+            .aggregate()
+            .asString()
+            .map { Thread.currentThread().name }
+            .block(Duration.ofSeconds(5))!!
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.orderbook
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import java.time.ZonedDateTime
+
+class IncrementalOrderBookTest {
+    @Test
+    fun `merge delta into sorted book`() {
+        // GIVEN
+        val incrementalOrderBook = IncrementalOrderBook()
+        incrementalOrderBook.update(
+            orderBook(
+                "1",
+                bids = listOf(bid("100", "1"), bid("101", "2")),
+                asks = listOf(ask("103", "1"), ask("102", "2"))
+            )
+        )
+
+        // WHEN
+        incrementalOrderBook.update(
+            orderBook(
+                "2",
+                bids = listOf(bid("101.00", "0"), bid("99", "3")),
+                asks = listOf(ask("102.0", "5"), ask("101.5", "1"))
+            )
+        )
+        val orderBook = incrementalOrderBook.toOrderBook()!!
+
+        // THEN
+        assertThat(orderBook.uniqueId).isEqualTo("2")
+        assertThat(orderBook.bids.map { it.price.toPlainString() }).containsExactly("100", "99")
+        assertThat(orderBook.asks.map { it.price.toPlainString() }).containsExactly("101.5", "102.0", "103")
+        assertThat(orderBook.asks[1].quantity).isEqualByComparingTo("5")
+        assertThat(incrementalOrderBook.bestBid()!!.price).isEqualByComparingTo("100")
+        assertThat(incrementalOrderBook.bestAsk()!!.price).isEqualByComparingTo("101.5")
+    }
+
+    @Test
+    fun `snapshot replace previous levels`() {
+        // GIVEN
+        val incrementalOrderBook = IncrementalOrderBook()
+        incrementalOrderBook.update(
+            orderBook("1", bids = listOf(bid("100", "1")), asks = listOf(ask("101", "1")))
+        )
+        val first = incrementalOrderBook.toOrderBook()!!
+        assertThat(incrementalOrderBook.isSynchronized()).isFalse()
+
+        // WHEN
+        val orderBook = incrementalOrderBook.snapshot(
+            orderBook("2", bids = listOf(bid("90", "1")), asks = listOf(ask("91", "1"), ask("92", "0")))
+        )
+
+        // THEN
+        assertThat(orderBook.bids.map { it.price.toPlainString() }).containsExactly("90")
+        assertThat(orderBook.asks.map { it.price.toPlainString() }).containsExactly("91")
+        // previously emitted books are not mutated
+        assertThat(first.bids.map { it.price.toPlainString() }).containsExactly("100")
+        assertThat(incrementalOrderBook.toOrderBook()).isEqualTo(orderBook)
+        assertThat(incrementalOrderBook.isSynchronized()).isTrue()
+    }
+
+    @Test
+    fun `return only the changed levels of an update`() {
+        // GIVEN
+        val incrementalOrderBook = IncrementalOrderBook()
+        incrementalOrderBook.snapshot(
+            orderBook(
+                "1",
+                bids = listOf(bid("100", "1"), bid("99", "2")),
+                asks = listOf(ask("101", "1"), ask("102", "2"))
+            )
+        )
+
+        // WHEN
+        val changes = incrementalOrderBook.update(
+            orderBook(
+                "2",
+                bids = listOf(bid("100.0", "1"), bid("99", "0"), bid("98", "0")),
+                asks = listOf(ask("101", "3"))
+            )
+        )
+
+        // THEN
+        assertThat(changes.uniqueId).isEqualTo("2")
+        // an unchanged quantity and the removal of a missing level are not changes
+        assertThat(changes.bids).containsExactly(bid("99", "0"))
+        assertThat(changes.asks).containsExactly(ask("101", "3"))
+        assertThat(incrementalOrderBook.bids().map { it.price.toPlainString() }).containsExactly("100.0")
+        assertThat(incrementalOrderBook.toOrderBook(1)!!.asks.map { it.price.toPlainString() }).containsExactly("101")
+    }
+
+    @Test
+    fun `keep the receive time of the applied update`() {
+        // GIVEN
+        val incrementalOrderBook = IncrementalOrderBook()
+        incrementalOrderBook.snapshot(orderBook("1", bids = listOf(bid("100", "1")), asks = listOf(ask("101", "1"))))
+
+        // WHEN
+        val changes = incrementalOrderBook.update(
+            orderBook("2", bids = listOf(bid("100", "2")), asks = emptyList(), receivedNanos = 42, hasExchangeTime = false)
+        )
+
+        // THEN
+        assertThat(changes.receivedNanos).isEqualTo(42)
+        assertThat(changes.hasExchangeTime).isFalse()
+        assertThat(incrementalOrderBook.toOrderBook()!!.receivedNanos).isEqualTo(42)
+        assertThat(incrementalOrderBook.toOrderBook()!!.hasExchangeTime).isFalse()
+    }
+
+    private fun orderBook(
+        uniqueId: String,
+        bids: List<OrderBookUnit>,
+        asks: List<OrderBookUnit>,
+        receivedNanos: Long = 0,
+        hasExchangeTime: Boolean = true
+    ): OrderBook {
+        return OrderBook(
+            uniqueId,
+            CurrencyPair.parse("BTC", "USDT"),
+            ZonedDateTime.now(),
+            ExchangeVendor.BINANCE,
+            bids,
+            asks,
+            receivedNanos,
+            hasExchangeTime
+        )
+    }
+
+    private fun bid(price: String, quantity: String) =
+        OrderBookUnit(price.toBigDecimal(), quantity.toBigDecimal(), TradeSideType.BUY)
+
+    private fun ask(price: String, quantity: String) =
+        OrderBookUnit(price.toBigDecimal(), quantity.toBigDecimal(), TradeSideType.SELL)
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.orderbook
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import java.time.ZonedDateTime
+
+class OrderBookAggregatorTest {
+    private val currencyPair = CurrencyPair.parse("BTC", "USDT")
+
+    @Test
+    fun `consolidate levels of several exchanges`() {
+        // GIVEN
+        val aggregator = OrderBookAggregator(currencyPair, depth = 2)
+        aggregator.update(
+            orderBook(ExchangeVendor.BINANCE, bids = listOf(bid("100", "1"), bid("99", "1")), asks = listOf(ask("101", "1")))
+        )
+
+        // WHEN
+        val consolidatedOrderBook = aggregator.update(
+            orderBook(ExchangeVendor.OKEX, bids = listOf(bid("100.0", "2"), bid("98", "1")), asks = listOf(ask("100.5", "3")))
+        )!!
+
+        // THEN
+        assertThat(consolidatedOrderBook.bids.map { it.exchangeVendor to it.price.toPlainString() }).containsExactly(
+            ExchangeVendor.BINANCE to "100",
+            ExchangeVendor.OKEX to "100.0",
+            ExchangeVendor.BINANCE to "99"
+        )
+        assertThat(consolidatedOrderBook.asks.map { it.price.toPlainString() }).containsExactly("100.5", "101")
+        assertThat(consolidatedOrderBook.bestBids[ExchangeVendor.OKEX]!!.quantity).isEqualByComparingTo("2")
+        assertThat(consolidatedOrderBook.bestAsks[ExchangeVendor.BINANCE]!!.price).isEqualByComparingTo("101")
+    }
+
+    @Test
+    fun `publish only when top levels or best prices changed`() {
+        // GIVEN
+        val aggregator = OrderBookAggregator(currencyPair, depth = 1)
+        aggregator.update(
+            orderBook(ExchangeVendor.BINANCE, bids = listOf(bid("100", "1"), bid("99", "1")), asks = listOf(ask("101", "1")))
+        )
+        aggregator.update(orderBook(ExchangeVendor.OKEX, bids = listOf(bid("98", "1")), asks = listOf(ask("102", "1"))))
+
+        // WHEN
+        val deepChange = aggregator.update(
+            orderBook(ExchangeVendor.BINANCE, bids = listOf(bid("100", "1"), bid("99", "5")), asks = listOf(ask("101", "1")))
+        )
+        val sameBook = aggregator.update(orderBook(ExchangeVendor.OKEX, bids = listOf(bid("98.00", "1")), asks = listOf(ask("102", "1"))))
+        val venueBestChange = aggregator.update(orderBook(ExchangeVendor.OKEX, bids = listOf(bid("97", "1")), asks = listOf(ask("102", "1"))))
+        val removed = aggregator.remove(ExchangeVendor.BINANCE)
+
+        // THEN
+        assertThat(deepChange).isNull()
+        assertThat(sameBook).isNull()
+        assertThat(venueBestChange!!.bestBids[ExchangeVendor.OKEX]!!.price).isEqualByComparingTo("97")
+        assertThat(removed!!.bids.map { it.price.toPlainString() }).containsExactly("97")
+        assertThat(removed.bestBids).doesNotContainKey(ExchangeVendor.BINANCE)
+    }
+
+    @Test
+    fun `merge levels given out of order`() {
+        // GIVEN
+        val aggregator = OrderBookAggregator(currencyPair, depth = 3)
+        aggregator.update(
+            orderBook(ExchangeVendor.BINANCE, bids = listOf(bid("100", "1"), bid("99", "1"), bid("98", "1")), asks = emptyList())
+        )
+
+        // WHEN
+        val consolidatedOrderBook = aggregator.update(
+            orderBook(
+                ExchangeVendor.BINANCE,
+                bids = listOf(bid("97", "1"), bid("100", "1"), bid("98", "0"), bid("97", "4")),
+                asks = emptyList()
+            )
+        )!!
+
+        // THEN
+        assertThat(consolidatedOrderBook.bids.map { it.price.toPlainString() to it.quantity.toPlainString() }).containsExactly(
+            "100" to "1",
+            "97" to "4"
+        )
+        assertThat(consolidatedOrderBook.bestBids[ExchangeVendor.BINANCE]!!.price).isEqualByComparingTo("100")
+    }
+
+    private fun orderBook(exchangeVendor: ExchangeVendor, bids: List<OrderBookUnit>, asks: List<OrderBookUnit>): OrderBook {
+        return OrderBook(
+            "${exchangeVendor.name}-${System.nanoTime()}",
+            currencyPair,
+            ZonedDateTime.now(),
+            exchangeVendor,
+            bids,
+            asks
+        )
+    }
+
+    private fun bid(price: String, quantity: String) =
+        OrderBookUnit(price.toBigDecimal(), quantity.toBigDecimal(), TradeSideType.BUY)
+
+    private fun ask(price: String, quantity: String) =
+        OrderBookUnit(price.toBigDecimal(), quantity.toBigDecimal(), TradeSideType.SELL)
+}
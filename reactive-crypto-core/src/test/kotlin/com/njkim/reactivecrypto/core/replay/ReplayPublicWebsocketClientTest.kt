@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.replay
+
+import com.njkim.reactivecrypto.core.ExchangeClientFactory
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import com.njkim.reactivecrypto.core.journal.MarketDataJournal
+import com.njkim.reactivecrypto.core.journal.MarketDataJournalReader
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.time.Duration
+import java.time.ZoneOffset
+import java.time.ZonedDateTime
+
+class ReplayPublicWebsocketClientTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val baseTime = ZonedDateTime.of(2019, 6, 1, 0, 0, 0, 0, ZoneOffset.UTC)
+    private val replayVendor = ExchangeVendor("REPLAY-EXCHANGE")
+    private val btcUsdt = CurrencyPair.parse("BTC", "USDT")
+
+    @Test
+    fun `replay journal through the client factory`() {
+        // GIVEN
+        val directory = temporaryFolder.root.toPath()
+        MarketDataJournal(directory).use { journal ->
+            (0 until 10).forEach { journal.append(tickData(it * 100L, replayVendor, btcUsdt)) }
+            journal.append(tickData(1_000, ExchangeVendor.BINANCE, btcUsdt))
+            journal.append(tickData(1_000, replayVendor, CurrencyPair.parse("ETH", "USDT")))
+        }
+        ReplayPublicWebsocketClient.register(replayVendor, MarketDataJournalReader(directory), from = baseTime.plusNanos(500_000_000))
+
+        // WHEN
+        val tickData = ExchangeClientFactory.publicWebsocket(replayVendor)
+            .createTradeWebsocket(listOf(btcUsdt))
+            .collectList()
+            .block()!!
+
+        // THEN
+        assertThat(tickData.map { it.uniqueId }).containsExactly("500", "600", "700", "800", "900")
+    }
+
+    @Test
+    fun `pace replay with speed multiplier`() {
+        // GIVEN
+        val directory = temporaryFolder.root.toPath()
+        MarketDataJournal(directory).use { journal ->
+            journal.append(tickData(0, replayVendor, btcUsdt))
+            journal.append(tickData(2_000, replayVendor, btcUsdt))
+        }
+        val client = ReplayPublicWebsocketClient(replayVendor, MarketDataJournalReader(directory))
+            .withSpeed(ReplaySpeed(10.0))
+
+        // WHEN
+        val startNanos = System.nanoTime()
+        val count = client.createTradeWebsocket(listOf(btcUsdt)).count().block()
+        val elapsed = Duration.ofNanos(System.nanoTime() - startNanos)
+
+        // THEN
+        assertThat(count).isEqualTo(2)
+        assertThat(elapsed).isBetween(Duration.ofMillis(200), Duration.ofMillis(1_500))
+    }
+
+    private fun tickData(offsetMillis: Long, exchangeVendor: ExchangeVendor, currencyPair: CurrencyPair): TickData {
+        return TickData(
+            offsetMillis.toString(),
+            baseTime.plus(Duration.ofMillis(offsetMillis)),
+            "100".toBigDecimal(),
+            "1".toBigDecimal(),
+            currencyPair,
+            exchangeVendor,
+            TradeSideType.BUY
+        )
+    }
+}
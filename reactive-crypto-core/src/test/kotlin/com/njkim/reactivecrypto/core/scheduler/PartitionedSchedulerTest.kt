@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.scheduler
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import reactor.core.publisher.Flux
+import java.time.Duration
+
+class PartitionedSchedulerTest {
+    @Test
+    fun `process every pair in order on a bounded number of threads`() {
+        // GIVEN
+        val scheduler = PartitionedScheduler(partitionCount = 4, name = "test-partition")
+        val currencyPairs = (1..100).map { CurrencyPair.parse("C$it", "USDT") }
+
+        // WHEN
+        val messages = Flux.merge(
+            currencyPairs.map { currencyPair ->
+                Flux.range(1, 50)
+                    .publishOn(scheduler.scheduler(ExchangeVendor.BITMAX, currencyPair))
+                    .map { Triple(currencyPair, it, Thread.currentThread().name) }
+            }
+        )
+            .collectList()
+            .block(Duration.ofSeconds(10))!!
+
+        // THEN
+        assertThat(messages).hasSize(100 * 50)
+        assertThat(messages.map { it.third }.distinct()).hasSizeLessThanOrEqualTo(4).allMatch { it.startsWith("test-partition-") }
+        messages.groupBy { it.first }.values.forEach { pairMessages ->
+            assertThat(pairMessages.map { it.second }).isEqualTo((1..50).toList())
+            assertThat(pairMessages.map { it.third }.distinct()).hasSize(1)
+        }
+
+        scheduler.dispose()
+        assertThat(scheduler.isDisposed).isTrue()
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.stream
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import reactor.core.publisher.Flux
+import java.time.ZonedDateTime
+
+class BestBidOfferExtensionsTest {
+    @Test
+    fun `emit only when top of book changed`() {
+        // GIVEN
+        val orderBooks = Flux.just(
+            orderBook("1", bid("100", "1"), ask("101", "1")),
+            // deeper level changed only
+            orderBook("2", bid("100.0", "1"), ask("101", "1"), bid("99", "5")),
+            orderBook("3", bid("100", "2"), ask("101", "1")),
+            orderBook("4", bid("100", "2"), null)
+        )
+
+        // WHEN
+        val bestBidOffers = orderBooks.bestBidOffers()
+            .collectList()
+            .block()!!
+
+        // THEN
+        assertThat(bestBidOffers.map { it.uniqueId }).containsExactly("1", "3", "4")
+        assertThat(bestBidOffers[1].bestBid!!.quantity).isEqualByComparingTo("2")
+        assertThat(bestBidOffers[2].bestAsk).isNull()
+    }
+
+    private fun orderBook(uniqueId: String, bestBid: OrderBookUnit, bestAsk: OrderBookUnit?, vararg bids: OrderBookUnit): OrderBook {
+        return OrderBook(
+            uniqueId,
+            CurrencyPair.parse("BTC", "USDT"),
+            ZonedDateTime.now(),
+            ExchangeVendor.BINANCE,
+            listOf(bestBid) + bids,
+            listOfNotNull(bestAsk)
+        )
+    }
+
+    private fun bid(price: String, quantity: String) =
+        OrderBookUnit(price.toBigDecimal(), quantity.toBigDecimal(), TradeSideType.BUY)
+
+    private fun ask(price: String, quantity: String) =
+        OrderBookUnit(price.toBigDecimal(), quantity.toBigDecimal(), TradeSideType.SELL)
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.stream
+
+import org.junit.Test
+import reactor.core.publisher.Sinks
+import reactor.test.StepVerifier
+import java.time.Duration
+
+class FluxConflateTest {
+    @Test
+    fun `keep latest value per key while not requested`() {
+        // GIVEN
+        val sink = Sinks.many().unicast().onBackpressureBuffer<Pair<String, Int>>()
+        val conflated = sink.asFlux().conflateBy({ it.first })
+
+        // WHEN THEN
+        StepVerifier.create(conflated, 0)
+            .then {
+                sink.tryEmitNext("BTC" to 1)
+                sink.tryEmitNext("ETH" to 1)
+                sink.tryEmitNext("BTC" to 2)
+                sink.tryEmitNext("BTC" to 3)
+            }
+            .thenRequest(1)
+            .expectNext("BTC" to 3)
+            .then { sink.tryEmitNext("ETH" to 2) }
+            .thenRequest(2)
+            .expectNext("ETH" to 2)
+            .expectNoEvent(Duration.ofMillis(10))
+            .then {
+                sink.tryEmitNext("XRP" to 1)
+                sink.tryEmitComplete()
+            }
+            .expectNext("XRP" to 1)
+            .verifyComplete()
+    }
+
+    @Test
+    fun `merge pending values`() {
+        // GIVEN
+        val sink = Sinks.many().unicast().onBackpressureBuffer<Pair<String, Int>>()
+        val conflated = sink.asFlux().conflateBy({ it.first }) { pending, next -> next.first to pending.second + next.second }
+
+        // WHEN THEN
+        StepVerifier.create(conflated, 0)
+            .then {
+                sink.tryEmitNext("BTC" to 1)
+                sink.tryEmitNext("BTC" to 2)
+                sink.tryEmitComplete()
+            }
+            .thenRequest(1)
+            .expectNext("BTC" to 3)
+            .verifyComplete()
+    }
+}
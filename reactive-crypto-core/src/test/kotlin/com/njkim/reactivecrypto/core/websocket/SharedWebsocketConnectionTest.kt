@@ -0,0 +1,395 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.core.websocket
+
+import com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.TickData
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import com.njkim.reactivecrypto.core.json.JsonMessageRouter
+import com.njkim.reactivecrypto.core.json.JsonMessageTypeResolver
+import com.njkim.reactivecrypto.core.json.messageDecoder
+import io.netty.buffer.ByteBuf
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.reactivestreams.Subscription
+import reactor.core.Exceptions
+import reactor.core.publisher.BaseSubscriber
+import reactor.core.publisher.Flux
+import reactor.netty.DisposableServer
+import reactor.netty.http.client.HttpClient
+import reactor.netty.http.server.HttpServer
+import java.math.BigDecimal
+import java.time.Duration
+import java.time.ZonedDateTime
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+
+class SharedWebsocketConnectionTest {
+    private val objectMapper = object : ExchangeJsonObjectMapper {}.objectMapper()
+
+    private val router = JsonMessageRouter(
+        objectMapper,
+        JsonMessageTypeResolver.field("type"),
+        mapOf("data" to objectMapper.messageDecoder<Map<String, Any>>())
+    )
+
+    private val protocol = object : WebsocketSubscriptionProtocol {
+        override fun subscribeMessages(topics: List<String>): List<String> = topics.map { "sub:$it" }
+
+        override fun unsubscribeMessages(topics: List<String>): List<String> = topics.map { "unsub:$it" }
+    }
+
+    private val connections = AtomicInteger()
+    private val receivedMessages = CopyOnWriteArrayList<String>()
+    private lateinit var server: DisposableServer
+
+    /**
+     * reply 3 data frames of the topic for each subscribe message,
+     * the first socket is closed by the server after replying to [DROPPED_TOPIC]
+     */
+    @Before
+    fun setUp() {
+        server = HttpServer.create()
+            .port(0)
+            .route { routes ->
+                routes.ws("/ws") { inbound, outbound ->
+                    val connection = connections.incrementAndGet()
+                    outbound.sendString(
+                        inbound.receive().asString()
+                            .doOnNext { receivedMessages.add(it) }
+                            .takeUntil { connection == 1 && it == "sub:$DROPPED_TOPIC" }
+                            .filter { it.startsWith("sub:") }
+                            .flatMapIterable { message ->
+                                val topic = message.removePrefix("sub:")
+                                (1..3).map { """{"type":"data","topic":"$topic","n":$it}""" }
+                            }
+                    )
+                }
+            }
+            .bindNow()
+    }
+
+    @After
+    fun tearDown() {
+        server.disposeNow()
+    }
+
+    @Test
+    fun `share one socket and reference count topics`() {
+        // GIVEN
+        val connection = SharedWebsocketConnection(HttpClient.create(), "ws://localhost:${server.port()}/ws", protocol)
+        val firstMessages = CopyOnWriteArrayList<Map<String, Any>>()
+
+        // WHEN
+        val first = subscribe(connection, listOf("a"))
+            .subscribe { firstMessages.add(it) }
+        await { firstMessages.size == 3 }
+
+        val secondMessages = subscribe(connection, listOf("a", "b"))
+            .filter { it["topic"] == "b" }
+            .take(3)
+            .collectList()
+            .block(Duration.ofSeconds(5))
+
+        // THEN
+        assertThat(secondMessages).hasSize(3)
+        await { receivedMessages.size == 3 }
+        assertThat(receivedMessages).containsExactly("sub:a", "sub:b", "unsub:b")
+        assertThat(connections.get()).isEqualTo(1)
+        // decoded messages of the channel are shared by every subscriber
+        await { firstMessages.size == 6 }
+        assertThat(connection.subscribedTopics()).containsOnly("a")
+        val metrics = connection.metrics.snapshot()
+        assertThat(metrics.frames).isEqualTo(6)
+        assertThat(metrics.streams.getValue("data").frames).isEqualTo(6)
+        assertThat(metrics.streams.getValue("data").events).isEqualTo(6)
+        assertThat(metrics.streams.getValue("data").decodeLatency.count).isEqualTo(6)
+
+        first.dispose()
+        assertThat(connection.subscribedTopics()).isEmpty()
+    }
+
+    @Test
+    fun `reconnect after every subscriber left`() {
+        // GIVEN
+        val connection = SharedWebsocketConnection(HttpClient.create(), "ws://localhost:${server.port()}/ws", protocol)
+        val flux = subscribe(connection, listOf("a"))
+            .take(3)
+
+        // WHEN
+        val first = flux.collectList().block(Duration.ofSeconds(5))
+        val second = flux.collectList().block(Duration.ofSeconds(5))
+
+        // THEN
+        assertThat(first).hasSize(3)
+        assertThat(second).hasSize(3)
+        assertThat(connections.get()).isEqualTo(2)
+        assertThat(receivedMessages).containsExactly("sub:a", "sub:a")
+    }
+
+    @Test
+    fun `add and remove currency pairs on a live socket`() {
+        // GIVEN
+        val connection = SharedWebsocketConnection(HttpClient.create(), "ws://localhost:${server.port()}/ws", protocol)
+        val btcUsdt = CurrencyPair.parse("BTC", "USDT")
+        val ethUsdt = CurrencyPair.parse("ETH", "USDT")
+        val subscription = SharedWebsocketSubscription<Map<String, Any>>(
+            connection,
+            "data",
+            { it.toString() },
+            { CurrencyPair.parse(it["topic"] as String) },
+            { { frame -> router.route(frame)?.let { listOf(it) } } },
+            listOf(btcUsdt)
+        )
+        val messages = CopyOnWriteArrayList<Map<String, Any>>()
+
+        // WHEN
+        val disposable = subscription.flux.subscribe { messages.add(it) }
+        await { messages.size == 3 }
+        subscription.add(listOf(ethUsdt))
+        await { messages.size == 6 }
+        subscription.remove(listOf(btcUsdt))
+        await { receivedMessages.size == 3 }
+
+        // THEN
+        assertThat(receivedMessages).containsExactly("sub:BTC-USDT", "sub:ETH-USDT", "unsub:BTC-USDT")
+        assertThat(messages.map { it["topic"] }).containsOnly("BTC-USDT", "ETH-USDT")
+        assertThat(subscription.currencyPairs()).containsOnly(ethUsdt)
+        assertThat(connection.subscribedTopics()).containsOnly("ETH-USDT")
+        assertThat(connections.get()).isEqualTo(1)
+
+        disposable.dispose()
+        assertThat(connection.subscribedTopics()).isEmpty()
+    }
+
+    @Test
+    fun `reconnect and resubscribe when the server closed the socket`() {
+        // GIVEN
+        val connection = SharedWebsocketConnection(
+            HttpClient.create(),
+            "ws://localhost:${server.port()}/ws",
+            protocol,
+            ReconnectPolicy(minBackoff = Duration.ofMillis(10), maxBackoff = Duration.ofMillis(100))
+        )
+        val subscription = SharedWebsocketSubscription<Map<String, Any>>(
+            connection,
+            "data",
+            { it.toString() },
+            { CurrencyPair.parse(it["topic"] as String) },
+            { { frame -> router.route(frame)?.let { listOf(it) } } },
+            listOf(CurrencyPair.parse(DROPPED_TOPIC))
+        )
+
+        // WHEN
+        val messages = subscription.flux
+            .take(6)
+            .collectList()
+            .block(Duration.ofSeconds(5))
+
+        // THEN
+        assertThat(messages).hasSize(6)
+        assertThat(connections.get()).isEqualTo(2)
+        assertThat(receivedMessages).containsExactly("sub:$DROPPED_TOPIC", "sub:$DROPPED_TOPIC")
+        assertThat(connection.metrics.snapshot().reconnects).isEqualTo(1)
+        assertThat(connection.metrics.snapshot().resyncs).isEqualTo(1)
+    }
+
+    @Test
+    fun `shard topics over sockets and keep the order of each topic`() {
+        // GIVEN
+        val connection = SharedWebsocketConnection(
+            HttpClient.create(),
+            "ws://localhost:${server.port()}/ws",
+            protocol,
+            maxTopicsPerSocket = 2
+        )
+
+        // WHEN
+        val messages = subscribe(connection, listOf("a", "b", "c"))
+            .take(9)
+            .collectList()
+            .block(Duration.ofSeconds(5))!!
+
+        // THEN
+        assertThat(connections.get()).isEqualTo(2)
+        assertThat(receivedMessages).containsExactlyInAnyOrder("sub:a", "sub:b", "sub:c")
+        listOf("a", "b", "c").forEach { topic ->
+            assertThat(messages.filter { it["topic"] == topic }.map { it["n"] }).containsExactly(1, 2, 3)
+        }
+        assertThat(connection.socketCount()).isEqualTo(0)
+    }
+
+    @Test
+    fun `stamp the receive time of every tick`() {
+        // GIVEN
+        val connection = SharedWebsocketConnection(HttpClient.create(), "ws://localhost:${server.port()}/ws", protocol)
+        val eventTime = ZonedDateTime.now().minusSeconds(1)
+        val subscribedAt = System.nanoTime()
+
+        // WHEN
+        val ticks = connection.subscribe("tick", listOf("a")) {
+            { frame: ByteBuf ->
+                router.route(frame)?.let {
+                    listOf(
+                        TickData(
+                            "${it["n"]}", eventTime, BigDecimal.ONE, BigDecimal.ONE,
+                            CurrencyPair.parse("BTC-USDT"), ExchangeVendor.BINANCE, TradeSideType.BUY
+                        )
+                    )
+                }
+            }
+        }
+            .take(3)
+            .collectList()
+            .block(Duration.ofSeconds(5))!!
+
+        // THEN
+        assertThat(ticks).hasSize(3)
+        assertThat(ticks).allSatisfy { tick ->
+            assertThat(tick.receivedNanos).isGreaterThan(subscribedAt)
+            assertThat(tick.receivedTime()).isAfter(eventTime.toInstant())
+        }
+        val metrics = connection.metrics.snapshot().streams.getValue("tick")
+        assertThat(metrics.exchangeLatency.count).isEqualTo(3)
+        assertThat(metrics.exchangeLatency.percentile(50.0)).isGreaterThanOrEqualTo(Duration.ofMillis(500))
+        assertThat(metrics.emitLatency.count).isEqualTo(3)
+    }
+
+    @Test
+    fun `skip the exchange latency of books without an exchange time`() {
+        // GIVEN
+        val connection = SharedWebsocketConnection(HttpClient.create(), "ws://localhost:${server.port()}/ws", protocol)
+
+        // WHEN
+        val orderBooks = connection.subscribe("book", listOf("a")) {
+            { frame: ByteBuf ->
+                router.route(frame)?.let {
+                    listOf(
+                        OrderBook(
+                            "${it["n"]}", CurrencyPair.parse("BTC-USDT"), ZonedDateTime.now(), ExchangeVendor.BINANCE,
+                            emptyList(), emptyList(), hasExchangeTime = false
+                        )
+                    )
+                }
+            }
+        }
+            .take(3)
+            .collectList()
+            .block(Duration.ofSeconds(5))!!
+
+        // THEN
+        assertThat(orderBooks).allSatisfy { assertThat(it.receivedNanos).isNotZero() }
+        val metrics = connection.metrics.snapshot().streams.getValue("book")
+        assertThat(metrics.exchangeLatency.count).isZero()
+        assertThat(metrics.emitLatency.count).isEqualTo(3)
+    }
+
+    @Test
+    fun `count only the frames of each stream`() {
+        // GIVEN
+        val connection = SharedWebsocketConnection(HttpClient.create(), "ws://localhost:${server.port()}/ws", protocol)
+        val topicStream = { topic: String ->
+            connection.subscribe<Map<String, Any>>(topic, listOf(topic)) {
+                { frame -> router.route(frame)?.takeIf { it["topic"] == topic }?.let { listOf(it) } }
+            }
+        }
+
+        // WHEN
+        val messages = Flux.merge(topicStream("a").take(3), topicStream("b").take(3))
+            .collectList()
+            .block(Duration.ofSeconds(5))!!
+
+        // THEN
+        assertThat(messages).hasSize(6)
+        val metrics = connection.metrics.snapshot()
+        assertThat(metrics.frames).isEqualTo(6)
+        assertThat(metrics.streams.getValue("a").frames).isEqualTo(3)
+        assertThat(metrics.streams.getValue("b").frames).isEqualTo(3)
+        assertThat(metrics.streams.getValue("b").decodeLatency.count).isEqualTo(3)
+    }
+
+    @Test
+    fun `terminate only the subscriber that overflows its buffer`() {
+        // GIVEN
+        val connection = SharedWebsocketConnection(HttpClient.create(), "ws://localhost:${server.port()}/ws", protocol, bufferSize = 2)
+        val decoderFactory = { { _: ByteBuf -> emptyList<Int>() } }
+        val slow = connection.acquire("data", emptyList(), decoderFactory)
+        val fast = connection.acquire("data", emptyList(), decoderFactory)
+        val slowError = AtomicReference<Throwable>()
+        slow.flux().subscribe(object : BaseSubscriber<Int>() {
+            override fun hookOnSubscribe(subscription: Subscription) {
+                // no demand
+            }
+
+            override fun hookOnError(throwable: Throwable) {
+                slowError.set(throwable)
+            }
+        })
+        val fastMessages = CopyOnWriteArrayList<Int>()
+        val fastError = AtomicReference<Throwable>()
+        fast.flux().subscribe({ fastMessages.add(it) }, { fastError.set(it) })
+
+        // WHEN
+        fast.channel.emit((1..20).toList(), System.nanoTime())
+
+        // THEN
+        assertThat(Exceptions.isOverflow(slowError.get())).isTrue()
+        assertThat(slow.pending()).isZero()
+        assertThat(fastError.get()).isNull()
+        assertThat(fastMessages).containsExactlyElementsOf(1..20)
+        assertThat(connection.metrics.snapshot().streams.getValue("data").overflows).isEqualTo(1)
+    }
+
+    @Test
+    fun `recreate a terminated channel for new subscribers`() {
+        // GIVEN
+        val connection = SharedWebsocketConnection(HttpClient.create(), "ws://localhost:${server.port()}/ws", protocol)
+        val decoderFactory = { { _: ByteBuf -> emptyList<Int>() } }
+        val terminated = connection.acquire("data", emptyList(), decoderFactory)
+        terminated.channel.terminate(null)
+
+        // WHEN
+        val lease = connection.acquire("data", emptyList(), decoderFactory)
+
+        // THEN
+        assertThat(lease.channel).isNotSameAs(terminated.channel)
+        assertThat(terminated.flux().collectList().block(Duration.ofSeconds(5))).isEmpty()
+        connection.release(lease)
+        connection.release(terminated)
+    }
+
+    private fun subscribe(connection: SharedWebsocketConnection, topics: List<String>): Flux<Map<String, Any>> {
+        return connection.subscribe<Map<String, Any>>("data", topics) { { frame -> router.route(frame)?.let { listOf(it) } } }
+    }
+
+    private fun await(condition: () -> Boolean) {
+        val deadline = System.currentTimeMillis() + 5000
+        while (!condition()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline)
+            Thread.sleep(10)
+        }
+    }
+
+    companion object {
+        private const val DROPPED_TOPIC = "BTC-KRW"
+    }
+}
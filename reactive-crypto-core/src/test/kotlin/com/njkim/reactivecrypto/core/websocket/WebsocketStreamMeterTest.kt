@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.core.websocket
+
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import io.netty.buffer.Unpooled
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import org.reactivestreams.Subscription
+import reactor.core.publisher.BaseSubscriber
+import reactor.core.publisher.Flux
+import reactor.netty.ByteBufFlux
+import java.nio.charset.StandardCharsets
+
+class WebsocketStreamMeterTest {
+    private val websocketConnectionManager = WebsocketConnectionManager()
+
+    @Test
+    fun `record the frames and the decode stage of a client opening its own socket`() {
+        // GIVEN
+        val meter = websocketConnectionManager.meter(ExchangeVendor.BITSTAMP, "wss://ws.bitstamp.net", "trade")
+        val frames = listOf("1", "pong", "2", "3")
+        val decoded = mutableListOf<Int>()
+
+        // WHEN
+        frames(frames).metered(meter)
+            .asString()
+            .decode(meter) { it.toIntOrNull() }
+            .subscribe { decoded.add(it) }
+
+        // THEN
+        val metrics = websocketConnectionManager.metrics(ExchangeVendor.BITSTAMP)
+        val streamMetrics = metrics.streams.getValue("trade")
+        assertThat(decoded).containsExactly(1, 2, 3)
+        assertThat(metrics.frames).isEqualTo(4)
+        assertThat(metrics.bytes).isEqualTo(7)
+        assertThat(streamMetrics.frames).isEqualTo(4)
+        assertThat(streamMetrics.filtered).isEqualTo(1)
+        assertThat(streamMetrics.events).isEqualTo(3)
+        assertThat(websocketConnectionManager.metrics(ExchangeVendor.UPBIT).streams).isEmpty()
+    }
+
+    @Test
+    fun `sample the request of a subscriber not delivered yet as the demand`() {
+        // GIVEN
+        val meter = websocketConnectionManager.meter(ExchangeVendor.UPBIT, "wss://api.upbit.com/websocket/v1", "trade")
+        val subscriber = object : BaseSubscriber<String>() {
+            override fun hookOnSubscribe(subscription: Subscription) {
+                request(5)
+            }
+        }
+
+        // WHEN
+        Flux.never<String>().startWith("a", "b")
+            .decode(meter) { it }
+            .subscribe(subscriber)
+        val demand = meter.streamMetrics.snapshot().demand
+        subscriber.dispose()
+
+        // THEN
+        assertThat(demand).isEqualTo(3)
+        assertThat(meter.streamMetrics.snapshot().demand).isEqualTo(Long.MAX_VALUE)
+    }
+
+    private fun frames(frames: List<String>): ByteBufFlux {
+        return ByteBufFlux.fromInbound(Flux.fromIterable(frames).map { Unpooled.copiedBuffer(it, StandardCharsets.UTF_8) })
+    }
+}
@@ -26,14 +26,16 @@ import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
 import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
 import com.njkim.reactivecrypto.core.common.util.toEpochMilli
+import com.njkim.reactivecrypto.core.orderbook.IncrementalOrderBook
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
 import com.njkim.reactivecrypto.core.websocket.AbstractExchangeWebsocketClient
+import com.njkim.reactivecrypto.core.websocket.decode
+import com.njkim.reactivecrypto.core.websocket.metered
 import com.njkim.reactivecrypto.hubi.model.HubiDepthResponse
 import mu.KotlinLogging
 import reactor.core.publisher.Flux
 import reactor.kotlin.core.publisher.toFlux
-import reactor.netty.http.client.HttpClient
 import reactor.netty.http.client.WebsocketClientSpec
-import java.math.BigDecimal
 import java.time.ZonedDateTime
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicLong
@@ -50,7 +52,7 @@ class HubiWebsocketClient : AbstractExchangeWebsocketClient() {
     }
 
     override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
-        val currentOrderBookMap: MutableMap<CurrencyPair, OrderBook> = ConcurrentHashMap()
+        val currentOrderBookMap: MutableMap<CurrencyPair, IncrementalOrderBook> = ConcurrentHashMap()
 
         val subscribeRequests = subscribeTargets.asSequence()
             .map { "${it.baseCurrency.symbol}${it.quoteCurrency.symbol}".toUpperCase() }
@@ -59,17 +61,18 @@ class HubiWebsocketClient : AbstractExchangeWebsocketClient() {
             }
             .toFlux()
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.HUBI, baseUri, "depth")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.HUBI)
             .wiretap(log.isDebugEnabled)
             .websocket(WebsocketClientSpec.builder().maxFramePayloadLength(262144).build())
             .uri(baseUri)
             .handle { inbound, outbound ->
                 outbound.sendString(subscribeRequests)
                     .then()
-                    .thenMany(inbound.aggregateFrames().receive().asString())
+                    .thenMany(inbound.aggregateFrames().receive().metered(meter).asString())
             }
             .filter { it.contains(""""event":"/api/depth/depth"""") }
-            .map { objectMapper.readValue<HubiDepthResponse>(it) }
+            .decode(meter) { objectMapper.readValue<HubiDepthResponse>(it) }
             .map { messageFrame ->
                 val eventTime = ZonedDateTime.now()
                 OrderBook(
@@ -79,62 +82,13 @@ class HubiWebsocketClient : AbstractExchangeWebsocketClient() {
                     ExchangeVendor.HUBI,
                     messageFrame.buyDepth.map { OrderBookUnit(it.price, it.qty, TradeSideType.BUY, it.count) },
                     messageFrame.sellDepth.map { OrderBookUnit(it.price, it.qty, TradeSideType.SELL, it.count) }
-                        .sortedBy { it.price }
                 )
             }
             .map { orderBook ->
-                if (!currentOrderBookMap.containsKey(orderBook.currencyPair)) {
-                    val filteredOrderBook = orderBook.copy(
-                        bids = orderBook.bids.filter { it.quantity > BigDecimal.ZERO },
-                        asks = orderBook.asks.filter { it.quantity > BigDecimal.ZERO }
-                    )
-                    currentOrderBookMap[orderBook.currencyPair] = filteredOrderBook
-                    return@map filteredOrderBook
-                }
-
-                val prevOrderBook = currentOrderBookMap[orderBook.currencyPair]!!
-
-                val askMap: MutableMap<BigDecimal, OrderBookUnit> = prevOrderBook.asks
-                    .associateBy { it.price.stripTrailingZeros() }
-                    .toMutableMap()
-
-                orderBook.asks.forEach { updatedAsk ->
-                    askMap.compute(updatedAsk.price.stripTrailingZeros()) { _, oldValue ->
-                        when {
-                            updatedAsk.quantity <= BigDecimal.ZERO -> null
-                            oldValue == null -> updatedAsk
-                            else -> oldValue.copy(
-                                quantity = updatedAsk.quantity,
-                                orderNumbers = updatedAsk.orderNumbers
-                            )
-                        }
-                    }
-                }
-
-                val bidMap: MutableMap<BigDecimal, OrderBookUnit> = prevOrderBook.bids
-                    .associateBy { it.price.stripTrailingZeros() }
-                    .toMutableMap()
-
-                orderBook.bids.forEach { updatedBid ->
-                    bidMap.compute(updatedBid.price.stripTrailingZeros()) { _, oldValue ->
-                        when {
-                            updatedBid.quantity <= BigDecimal.ZERO -> null
-                            oldValue == null -> updatedBid
-                            else -> oldValue.copy(
-                                quantity = updatedBid.quantity,
-                                orderNumbers = updatedBid.orderNumbers
-                            )
-                        }
-                    }
-                }
-
-                val currentOrderBook = prevOrderBook.copy(
-                    eventTime = orderBook.eventTime,
-                    asks = askMap.values.sortedBy { orderBookUnit -> orderBookUnit.price },
-                    bids = bidMap.values.sortedByDescending { orderBookUnit -> orderBookUnit.price }
-                )
-                currentOrderBookMap[currentOrderBook.currencyPair] = currentOrderBook
-                currentOrderBook
+                val incrementalOrderBook = currentOrderBookMap
+                    .computeIfAbsent(orderBook.currencyPair) { IncrementalOrderBook() }
+                incrementalOrderBook.update(orderBook)
+                incrementalOrderBook.toOrderBook()!!
             }
             .doFinally { currentOrderBookMap.clear() } // cleanup memory limit orderBook when disconnected
     }
@@ -149,17 +103,18 @@ class HubiWebsocketClient : AbstractExchangeWebsocketClient() {
             }
             .toFlux()
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.HUBI, baseUri, "trade")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.HUBI)
             .wiretap(log.isDebugEnabled)
             .websocket(WebsocketClientSpec.builder().maxFramePayloadLength(262144).build())
             .uri(baseUri)
             .handle { inbound, outbound ->
                 outbound.sendString(subscribeRequests)
                     .then()
-                    .thenMany(inbound.aggregateFrames().receive().asString())
+                    .thenMany(inbound.aggregateFrames().receive().metered(meter).asString())
             }
             .filter { it.contains(""""event":"/api/depth/depth"""") }
-            .map { objectMapper.readValue<HubiDepthResponse>(it) }
+            .decode(meter) { objectMapper.readValue<HubiDepthResponse>(it) }
             .flatMapIterable {
                 it.trades
                     .takeWhile { hubiTickData ->
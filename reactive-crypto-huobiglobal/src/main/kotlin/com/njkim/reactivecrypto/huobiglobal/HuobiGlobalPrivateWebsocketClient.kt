@@ -18,6 +18,7 @@ package com.njkim.reactivecrypto.huobiglobal
 
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.module.kotlin.readValue
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.order.EventMessage
 import com.njkim.reactivecrypto.core.common.model.order.EventType
 import com.njkim.reactivecrypto.core.common.model.order.OrderEvent
@@ -25,21 +26,16 @@ import com.njkim.reactivecrypto.core.common.util.CryptUtil
 import com.njkim.reactivecrypto.core.common.util.toBase64String
 import com.njkim.reactivecrypto.core.common.util.toEpochMilli
 import com.njkim.reactivecrypto.core.netty.HeartBeatHandler
+import com.njkim.reactivecrypto.core.netty.PingPongHandler
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
 import com.njkim.reactivecrypto.core.websocket.ExchangePrivateWebsocketClient
+import com.njkim.reactivecrypto.core.websocket.decode
+import com.njkim.reactivecrypto.core.websocket.metered
 import com.njkim.reactivecrypto.huobiglobal.model.HuobiPrivateMessageFrameV2
 import com.njkim.reactivecrypto.huobiglobal.model.HuobiTradeEventV2
-import io.netty.buffer.ByteBuf
-import io.netty.buffer.ByteBufInputStream
-import io.netty.channel.ChannelHandlerContext
-import io.netty.handler.codec.ByteToMessageDecoder
-import io.netty.handler.codec.http.websocketx.TextWebSocketFrame
 import mu.KotlinLogging
-import org.apache.commons.codec.Charsets
-import org.apache.commons.lang3.StringUtils
-import org.springframework.util.StreamUtils
 import reactor.core.publisher.Flux
 import reactor.core.publisher.Mono
-import reactor.netty.http.client.HttpClient
 import java.net.URI
 import java.net.URLEncoder
 import java.time.ZoneOffset
@@ -61,10 +57,11 @@ open class HuobiGlobalPrivateWebsocketClient(
     override fun orderEvent(): Flux<EventMessage<OrderEvent>> {
         val subscribeRequest = """{"action": "sub","ch": "orders#*"}"""
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.HUOBI_GLOBAL, baseUri.toString(), "orders")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.HUOBI_GLOBAL)
             .wiretap(log.isDebugEnabled)
             .doOnConnected { connection ->
-                connection.addHandler("pingpoing", PingPongHandler())
+                connection.addHandler("pingpoing", PingPongHandler("{\"action\":\"ping\""))
                 connection.addHandler("hearthbeat",
                     HeartBeatHandler(
                         false,
@@ -78,7 +75,7 @@ open class HuobiGlobalPrivateWebsocketClient(
             .handle { inbound, outbound ->
                 outbound.sendString(Flux.just(signatureFunction(accessKey, secretKey)))
                     .then()
-                    .thenMany(inbound.receive().asString())
+                    .thenMany(inbound.receive().metered(meter).asString())
                     .flatMap<String> { response ->
                         when {
                             response.contains("invalid.auth.state") -> {
@@ -96,7 +93,7 @@ open class HuobiGlobalPrivateWebsocketClient(
                     }
             }
             .filter { it.contains(""""eventType":"trade"""") }
-            .map { objectMapper.readValue<HuobiPrivateMessageFrameV2<HuobiTradeEventV2>>(it) }
+            .decode(meter) { objectMapper.readValue<HuobiPrivateMessageFrameV2<HuobiTradeEventV2>>(it) }
             .map {
                 val data = it.data
                 val order = OrderEvent(
@@ -153,23 +150,4 @@ open class HuobiGlobalPrivateWebsocketClient(
             )
         )
     }
-
-    /**
-     * server sent ping {"ping" : $epochMilli }
-     * client response pong {"pong" : $epochMilli }
-     */
-    private inner class PingPongHandler : ByteToMessageDecoder() {
-        override fun decode(ctx: ChannelHandlerContext, msg: ByteBuf, out: MutableList<Any>) {
-            ByteBufInputStream(msg).use {
-                val response = StreamUtils.copyToString(it, Charsets.UTF_8)
-                if (StringUtils.contains(response, "ping")) {
-                    val replace = response.replace("ping", "pong")
-                    ctx.channel().writeAndFlush(TextWebSocketFrame(replace))
-                } else {
-                    val uncompressed = msg.alloc().buffer().writeBytes(response.toByteArray())
-                    out.add(uncompressed)
-                }
-            }
-        }
-    }
 }
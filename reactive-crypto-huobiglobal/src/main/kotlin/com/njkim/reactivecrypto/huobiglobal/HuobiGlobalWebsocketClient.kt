@@ -17,153 +17,142 @@
 package com.njkim.reactivecrypto.huobiglobal
 
 import com.fasterxml.jackson.databind.ObjectMapper
-import com.fasterxml.jackson.module.kotlin.readValue
 import com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper
 import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
 import com.njkim.reactivecrypto.core.common.model.order.OrderBook
 import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.core.common.util.toEpochMilli
+import com.njkim.reactivecrypto.core.json.JsonMessageDecoder
+import com.njkim.reactivecrypto.core.json.JsonMessageRouter
+import com.njkim.reactivecrypto.core.json.JsonMessageTypeResolver
 import com.njkim.reactivecrypto.core.netty.HeartBeatHandler
+import com.njkim.reactivecrypto.core.netty.PingPongHandler
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
 import com.njkim.reactivecrypto.core.websocket.AbstractExchangeWebsocketClient
-import com.njkim.reactivecrypto.huobiglobal.model.HuobiOrderBook
-import com.njkim.reactivecrypto.huobiglobal.model.HuobiSubscribeResponse
-import com.njkim.reactivecrypto.huobiglobal.model.HuobiTickDataWrapper
-import io.netty.buffer.ByteBuf
-import io.netty.buffer.ByteBufInputStream
-import io.netty.channel.ChannelHandlerContext
-import io.netty.handler.codec.ByteToMessageDecoder
+import com.njkim.reactivecrypto.core.websocket.SharedWebsocketConnection
+import com.njkim.reactivecrypto.core.websocket.SharedWebsocketSubscription
+import com.njkim.reactivecrypto.core.websocket.WebsocketSubscription
+import com.njkim.reactivecrypto.core.websocket.WebsocketSubscriptionProtocol
 import io.netty.handler.codec.compression.JdkZlibDecoder
 import io.netty.handler.codec.compression.ZlibWrapper
-import io.netty.handler.codec.http.websocketx.TextWebSocketFrame
 import mu.KotlinLogging
-import org.apache.commons.codec.Charsets
-import org.apache.commons.lang3.StringUtils
-import org.springframework.util.StreamUtils
 import reactor.core.publisher.Flux
-import reactor.netty.http.client.HttpClient
 import java.time.ZonedDateTime
 import java.util.concurrent.TimeUnit
-import kotlin.streams.toList
 
+/**
+ * @param leg clients of different legs stream over separate sockets of the same endpoint,
+ * see [com.njkim.reactivecrypto.core.stream.arbitrateTickData]
+ */
 @Suppress("IMPLICIT_CAST_TO_ANY")
 open class HuobiGlobalWebsocketClient(
-    private val baseUri: String = "wss://api.huobi.pro/ws"
+    private val baseUri: String = "wss://api.huobi.pro/ws",
+    private val exchangeVendor: ExchangeVendor = ExchangeVendor.HUOBI_GLOBAL,
+    private val leg: Int = 0
 ) : AbstractExchangeWebsocketClient() {
     private val log = KotlinLogging.logger {}
 
     private val objectMapper: ObjectMapper = createJsonObjectMapper().objectMapper()
 
+    private val tickDataDecoder: JsonMessageDecoder<List<TickData>> = createJsonObjectMapper().tickDataDecoder()!!
+
+    private val orderBookDecoder: JsonMessageDecoder<List<OrderBook>> = createJsonObjectMapper().orderBookDecoder()!!
+
+    /**
+     * market.$symbol.trade.detail -> trade.detail
+     */
+    private val messageTypeResolver = JsonMessageTypeResolver.field("ch") { _, channel ->
+        channel.substringAfter('.').substringAfter('.')
+    }
+
+    val tradeRouter = JsonMessageRouter(objectMapper, messageTypeResolver, mapOf(TRADE_CHANNEL to tickDataDecoder))
+
+    val depthRouter = JsonMessageRouter(objectMapper, messageTypeResolver, mapOf(DEPTH_CHANNEL to orderBookDecoder))
+
+    private val connection: SharedWebsocketConnection = ReactiveCryptoPlugins.websocketConnectionManager
+        .connection(exchangeVendor, baseUri, leg) {
+            SharedWebsocketConnection(
+                ReactiveCryptoPlugins.networkConfig.httpClient(exchangeVendor)
+                    .wiretap(log.isDebugEnabled)
+                    .doOnConnected { connection ->
+                        connection.addHandler(JdkZlibDecoder(ZlibWrapper.GZIP, true))
+                        connection.addHandler(PingPongHandler())
+                        connection.addHandler(
+                            "heartBeat",
+                            HeartBeatHandler(
+                                false,
+                                10500,
+                                TimeUnit.MILLISECONDS,
+                                1000
+                            ) { "{\"ping\": ${ZonedDateTime.now().toEpochMilli()}}" }
+                        )
+                    },
+                baseUri,
+                object : WebsocketSubscriptionProtocol {
+                    override fun subscribeMessages(topics: List<String>): List<String> {
+                        return topics.map { "{\"sub\": \"$it\",\"id\": \"$it\"}" }
+                    }
+
+                    override fun unsubscribeMessages(topics: List<String>): List<String> {
+                        return topics.map { "{\"unsub\": \"$it\",\"id\": \"$it\"}" }
+                    }
+                },
+                maxTopicsPerSocket = ReactiveCryptoPlugins.websocketConnectionManager.maxTopicsPerSocket(exchangeVendor)
+            )
+        }
+
     override fun createJsonObjectMapper(): ExchangeJsonObjectMapper {
         return HuobiJsonObjectMapper()
     }
 
     override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
-        val subscribeMessages = subscribeTargets.stream()
-            .map { "${it.baseCurrency.symbol.toLowerCase()}${it.quoteCurrency.symbol.toLowerCase()}" }
-            .map { "{\"sub\": \"market.$it.depth.step0\",\"id\": \"$it\"}" }
-            .toList()
-
-        return HttpClient.create()
-            .wiretap(log.isDebugEnabled)
-            .doOnConnected { connection ->
-                connection.addHandler(JdkZlibDecoder(ZlibWrapper.GZIP, true))
-                connection.addHandler(PingPongHandler())
-                connection.addHandler(
-                    "heartBeat",
-                    HeartBeatHandler(
-                        false,
-                        10500,
-                        TimeUnit.MILLISECONDS,
-                        1000
-                    ) { "{\"ping\": ${ZonedDateTime.now().toEpochMilli()}}" }
-                )
-            }
-            .websocket()
-            .uri(baseUri)
-            .handle { inbound, outbound ->
-                outbound.sendString(Flux.fromIterable<String>(subscribeMessages))
-                    .then()
-                    .thenMany(inbound.receive().asString())
-            }
-            .doOnNext { log.debug { it } }
-            .filter { it.contains("\"ch\"") }
-            .map { objectMapper.readValue<HuobiSubscribeResponse<HuobiOrderBook>>(it) }
-            .map {
-                OrderBook(
-                    "${it.currencyPair}${it.ts.toEpochMilli()}",
-                    it.currencyPair,
-                    ZonedDateTime.now(),
-                    ExchangeVendor.HUOBI_GLOBAL,
-                    it.tick.getBids(),
-                    it.tick.getAsks()
-                )
-            }
+        return createDepthSubscription(subscribeTargets).flux
     }
 
     override fun createTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<TickData> {
-        val subscribeMessages = subscribeTargets.stream()
-            .map { "${it.baseCurrency.symbol.toLowerCase()}${it.quoteCurrency.symbol.toLowerCase()}" }
-            .map { "{\"sub\": \"market.$it.trade.detail\",\"id\": \"$it\"}" }
-            .toList()
-
-        return HttpClient.create()
-            .wiretap(log.isDebugEnabled)
-            .doOnConnected { connection ->
-                connection.addHandler(JdkZlibDecoder(ZlibWrapper.GZIP, true))
-                connection.addHandler(PingPongHandler())
-                connection.addHandler(
-                    "heartBeat",
-                    HeartBeatHandler(
-                        false,
-                        10500,
-                        TimeUnit.MILLISECONDS,
-                        1000
-                    ) { "{\"ping\": ${ZonedDateTime.now().toEpochMilli()}}" }
-                )
-            }
-            .websocket()
-            .uri(baseUri)
-            .handle { inbound, outbound ->
-                outbound.sendString(Flux.fromIterable<String>(subscribeMessages))
-                    .then()
-                    .thenMany(inbound.receive().asString())
-            }
-            .filter { it.contains("\"ch\"") }
-            .map { objectMapper.readValue<HuobiSubscribeResponse<HuobiTickDataWrapper>>(it) }
-            .flatMapIterable {
-                it.tick.data
-                    .map { huobiKoreaTickData ->
-                        TickData(
-                            huobiKoreaTickData.id.toPlainString(),
-                            huobiKoreaTickData.ts,
-                            huobiKoreaTickData.price,
-                            huobiKoreaTickData.amount,
-                            it.currencyPair,
-                            ExchangeVendor.HUOBI_GLOBAL,
-                            huobiKoreaTickData.direction
-                        )
-                    }
-                    .toList()
-            }
+        return createTradeSubscription(subscribeTargets).flux
     }
 
-    /**
-     * server sent ping {"ping" : $epochMilli }
-     * client response pong {"pong" : $epochMilli }
-     */
-    private inner class PingPongHandler : ByteToMessageDecoder() {
-        override fun decode(ctx: ChannelHandlerContext, msg: ByteBuf, out: MutableList<Any>) {
-            ByteBufInputStream(msg).use {
-                val response = StreamUtils.copyToString(it, Charsets.UTF_8)
-                if (StringUtils.contains(response, "ping")) {
-                    val replace = response.replace("ping", "pong")
-                    ctx.channel().writeAndFlush(TextWebSocketFrame(replace))
-                } else {
-                    val uncompressed = msg.alloc().buffer().writeBytes(response.toByteArray())
-                    out.add(uncompressed)
-                }
-            }
+    override fun createDepthSubscription(subscribeTargets: List<CurrencyPair>): WebsocketSubscription<OrderBook> {
+        return SharedWebsocketSubscription<OrderBook>(
+            connection,
+            DEPTH_CHANNEL,
+            { "market.${symbol(it)}.$DEPTH_CHANNEL" },
+            { it.currencyPair },
+            { { frame -> depthRouter.route(frame)?.map { stampVendor(it) } } },
+            subscribeTargets
+        )
+    }
+
+    override fun createTradeSubscription(subscribeTargets: List<CurrencyPair>): WebsocketSubscription<TickData> {
+        return SharedWebsocketSubscription<TickData>(
+            connection,
+            TRADE_CHANNEL,
+            { "market.${symbol(it)}.$TRADE_CHANNEL" },
+            { it.currencyPair },
+            { { frame -> tradeRouter.route(frame)?.map { stampVendor(it) } } },
+            subscribeTargets
+        )
+    }
+
+    private fun symbol(currencyPair: CurrencyPair): String {
+        return "${currencyPair.baseCurrency.symbol.toLowerCase()}${currencyPair.quoteCurrency.symbol.toLowerCase()}"
+    }
+
+    private fun stampVendor(orderBook: OrderBook): OrderBook {
+        if (orderBook.exchangeVendor == exchangeVendor) {
+            return orderBook
         }
+        return orderBook.copy(exchangeVendor = exchangeVendor)
+    }
+
+    private fun stampVendor(tickData: TickData): TickData {
+        return if (tickData.exchangeVendor == exchangeVendor) tickData else tickData.copy(exchangeVendor = exchangeVendor)
+    }
+
+    companion object {
+        private const val TRADE_CHANNEL = "trade.detail"
+        private const val DEPTH_CHANNEL = "depth.step0"
     }
 }
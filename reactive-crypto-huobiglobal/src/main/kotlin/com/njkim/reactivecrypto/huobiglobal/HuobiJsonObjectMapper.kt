@@ -17,13 +17,24 @@
 package com.njkim.reactivecrypto.huobiglobal
 
 import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.TreeNode
 import com.fasterxml.jackson.databind.DeserializationContext
 import com.fasterxml.jackson.databind.JsonDeserializer
 import com.fasterxml.jackson.databind.module.SimpleModule
 import com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import com.njkim.reactivecrypto.core.json.JsonMessageDecoder
+import com.njkim.reactivecrypto.core.json.bigDecimalValue
+import com.njkim.reactivecrypto.core.json.forEachElement
+import com.njkim.reactivecrypto.core.json.forEachField
+import com.njkim.reactivecrypto.core.json.orderBookUnitsValue
 import com.njkim.reactivecrypto.huobiglobal.model.HuobiOrderStatusType
+import org.apache.commons.lang3.StringUtils
 import java.math.BigDecimal
 import java.time.Instant
 import java.time.ZoneId
@@ -85,4 +96,125 @@ class HuobiJsonObjectMapper : ExchangeJsonObjectMapper {
 
         simpleModule.addDeserializer(HuobiOrderStatusType::class.java, huobiOrderStatusTypeDeserializer)
     }
+
+    /**
+     * {"ch":"market.btcusdt.trade.detail","ts":1489474082831,"tick":{"id":14650745135,"ts":1533265950234,"data":[{"id":10055,"amount":0.0099,"price":401.23,"direction":"buy","ts":1533265950234}]}}
+     */
+    override fun tickDataDecoder(): JsonMessageDecoder<List<TickData>>? {
+        return object : JsonMessageDecoder<List<TickData>> {
+            override fun decode(parser: JsonParser): List<TickData> {
+                var currencyPair: CurrencyPair? = null
+                var tick: TreeNode? = null
+                val tickDataList = ArrayList<TickData>()
+
+                parser.forEachField { fieldName ->
+                    when (fieldName) {
+                        "ch" -> currencyPair = parseChannelCurrencyPair(parser.text)
+                        "tick" -> {
+                            val channelCurrencyPair = currencyPair
+                            if (channelCurrencyPair != null) {
+                                decodeTick(parser, channelCurrencyPair, tickDataList)
+                            } else {
+                                // "ch" is expected to precede "tick", buffer it otherwise
+                                tick = parser.readValueAsTree()
+                            }
+                        }
+                        else -> parser.skipChildren()
+                    }
+                }
+
+                tick?.traverse(parser.codec)?.use {
+                    it.nextToken()
+                    decodeTick(it, currencyPair!!, tickDataList)
+                }
+                return tickDataList
+            }
+
+            private fun decodeTick(parser: JsonParser, currencyPair: CurrencyPair, out: MutableList<TickData>) {
+                parser.forEachField { fieldName ->
+                    if (fieldName == "data") {
+                        parser.forEachElement { out.add(decodeTrade(parser, currencyPair)) }
+                    } else {
+                        parser.skipChildren()
+                    }
+                }
+            }
+
+            private fun decodeTrade(parser: JsonParser, currencyPair: CurrencyPair): TickData {
+                var id: BigDecimal? = null
+                var amount: BigDecimal? = null
+                var ts: ZonedDateTime? = null
+                var price: BigDecimal? = null
+                var direction: TradeSideType? = null
+
+                parser.forEachField { fieldName ->
+                    when (fieldName) {
+                        "id" -> id = parser.bigDecimalValue()
+                        "amount" -> amount = parser.bigDecimalValue()
+                        "ts" -> ts = Instant.ofEpochMilli(parser.longValue).atZone(ZoneId.systemDefault())
+                        "price" -> price = parser.bigDecimalValue()
+                        "direction" -> direction = TradeSideType.valueOf(StringUtils.substringBefore(parser.text, "-").toUpperCase())
+                        else -> parser.skipChildren()
+                    }
+                }
+
+                return TickData(
+                    id!!.toPlainString(),
+                    ts!!,
+                    price!!,
+                    amount!!,
+                    currencyPair,
+                    ExchangeVendor.HUOBI_GLOBAL,
+                    direction!!
+                )
+            }
+        }
+    }
+
+    /**
+     * {"ch":"market.btcusdt.depth.step0","ts":1489474082831,"tick":{"bids":[[9999.3900,0.0098]],"asks":[[10010.9800,0.0099]]}}
+     */
+    override fun orderBookDecoder(): JsonMessageDecoder<List<OrderBook>>? {
+        return object : JsonMessageDecoder<List<OrderBook>> {
+            override fun decode(parser: JsonParser): List<OrderBook> {
+                var currencyPair: CurrencyPair? = null
+                var ts = 0L
+                var bids: List<OrderBookUnit> = emptyList()
+                var asks: List<OrderBookUnit> = emptyList()
+
+                parser.forEachField { fieldName ->
+                    when (fieldName) {
+                        "ch" -> currencyPair = parseChannelCurrencyPair(parser.text)
+                        "ts" -> ts = parser.longValue
+                        "tick" -> parser.forEachField { tickFieldName ->
+                            when (tickFieldName) {
+                                "bids" -> bids = parser.orderBookUnitsValue(TradeSideType.BUY)
+                                "asks" -> asks = parser.orderBookUnitsValue(TradeSideType.SELL)
+                                else -> parser.skipChildren()
+                            }
+                        }
+                        else -> parser.skipChildren()
+                    }
+                }
+
+                return listOf(
+                    OrderBook(
+                        "${currencyPair!!}$ts",
+                        currencyPair!!,
+                        Instant.ofEpochMilli(ts).atZone(ZoneId.systemDefault()),
+                        ExchangeVendor.HUOBI_GLOBAL,
+                        bids,
+                        asks
+                    )
+                )
+            }
+        }
+    }
+
+    /**
+     * market.$symbol.trade.detail
+     */
+    private fun parseChannelCurrencyPair(channel: String): CurrencyPair {
+        return HuobiCommonUtil.parseCurrencyPair(StringUtils.substringBetween(channel, ".", "."))
+    }
 }
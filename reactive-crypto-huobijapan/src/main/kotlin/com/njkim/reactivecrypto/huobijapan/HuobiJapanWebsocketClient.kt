@@ -17,22 +17,9 @@
 package com.njkim.reactivecrypto.huobijapan
 
 import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
-import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
-import com.njkim.reactivecrypto.core.common.model.order.OrderBook
-import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.huobiglobal.HuobiGlobalWebsocketClient
-import reactor.core.publisher.Flux
 
 class HuobiJapanWebsocketClient : HuobiGlobalWebsocketClient(
-    baseUri = "wss://api-cloud.huobi.co.jp/ws"
-) {
-    override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
-        return super.createDepthSnapshot(subscribeTargets)
-            .map { it.copy(exchangeVendor = ExchangeVendor.HUOBI_JAPAN) }
-    }
-
-    override fun createTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<TickData> {
-        return super.createTradeWebsocket(subscribeTargets)
-            .map { it.copy(exchangeVendor = ExchangeVendor.HUOBI_JAPAN) }
-    }
-}
+    baseUri = "wss://api-cloud.huobi.co.jp/ws",
+    exchangeVendor = ExchangeVendor.HUOBI_JAPAN
+)
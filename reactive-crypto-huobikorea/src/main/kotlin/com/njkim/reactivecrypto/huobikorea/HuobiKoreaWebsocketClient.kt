@@ -17,22 +17,9 @@
 package com.njkim.reactivecrypto.huobikorea
 
 import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
-import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
-import com.njkim.reactivecrypto.core.common.model.order.OrderBook
-import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.huobiglobal.HuobiGlobalWebsocketClient
-import reactor.core.publisher.Flux
 
 class HuobiKoreaWebsocketClient : HuobiGlobalWebsocketClient(
-    baseUri = "wss://api-cloud.huobi.co.kr/ws"
-) {
-    override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
-        return super.createDepthSnapshot(subscribeTargets)
-            .map { it.copy(exchangeVendor = ExchangeVendor.HUOBI_KOREA) }
-    }
-
-    override fun createTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<TickData> {
-        return super.createTradeWebsocket(subscribeTargets)
-            .map { it.copy(exchangeVendor = ExchangeVendor.HUOBI_KOREA) }
-    }
-}
+    baseUri = "wss://api-cloud.huobi.co.kr/ws",
+    exchangeVendor = ExchangeVendor.HUOBI_KOREA
+)
@@ -18,15 +18,18 @@ package com.njkim.reactivecrypto.idax
 
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.module.kotlin.readValue
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
 import com.njkim.reactivecrypto.core.netty.HeartBeatHandler
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
+import com.njkim.reactivecrypto.core.websocket.decode
+import com.njkim.reactivecrypto.core.websocket.metered
 import com.njkim.reactivecrypto.idax.model.IdaxMessageFrame
 import com.njkim.reactivecrypto.idax.model.IdaxOrderBook
 import com.njkim.reactivecrypto.idax.model.IdaxTickData
 import mu.KotlinLogging
 import reactor.core.publisher.Flux
 import reactor.kotlin.core.publisher.toFlux
-import reactor.netty.http.client.HttpClient
 import java.util.concurrent.TimeUnit
 
 class IdaxRawWebsocketClient(
@@ -55,7 +58,8 @@ class IdaxRawWebsocketClient(
             .map { "{'event':'addChannel','channel':'idax_sub_${it}_trades'}" }
             .toFlux()
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.IDAX, baseUri, "trades")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.IDAX)
             .doOnConnected {
                 it.addHandlerFirst(
                     "heartBeat",
@@ -67,12 +71,12 @@ class IdaxRawWebsocketClient(
             .handle { inbound, outbound ->
                 outbound.sendString(subscribeStrings)
                     .then()
-                    .thenMany(inbound.receive().asString())
+                    .thenMany(inbound.receive().metered(meter).asString())
                     .filter { response ->
                         !response!!.contentEquals("{\"event\":\"pong\"}")
                     }
             }
-            .map { objectMapper.readValue<IdaxMessageFrame<List<IdaxTickData>>>(it) }
+            .decode(meter) { objectMapper.readValue<IdaxMessageFrame<List<IdaxTickData>>>(it) }
     }
 
     /**
@@ -89,7 +93,8 @@ class IdaxRawWebsocketClient(
             .map { "{'event':'addChannel','channel':'idax_sub_${it}_depth'}" }
             .toFlux()
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.IDAX, baseUri, "depth")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.IDAX)
             .doOnConnected {
                 it.addHandlerFirst(
                     "heartBeat",
@@ -101,12 +106,12 @@ class IdaxRawWebsocketClient(
             .handle { inbound, outbound ->
                 outbound.sendString(subscribeStrings)
                     .then()
-                    .thenMany(inbound.receive().asString())
+                    .thenMany(inbound.receive().metered(meter).asString())
                     .filter { response ->
                         !response!!.contentEquals("{\"event\":\"pong\"}")
                     }
             }
-            .map { objectMapper.readValue<IdaxMessageFrame<List<IdaxOrderBook>>>(it) }
+            .decode(meter) { objectMapper.readValue<IdaxMessageFrame<List<IdaxOrderBook>>>(it) }
     }
 
     /**
@@ -124,14 +129,15 @@ class IdaxRawWebsocketClient(
             .map { "{'event':'addChannel','channel':'idax_sub_${it}_depth_$depth'}" }
             .toFlux()
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.IDAX, baseUri, "depth_snapshot")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.IDAX)
             .websocket()
             .uri(baseUri)
             .handle { inbound, outbound ->
                 outbound.sendString(subscribeStrings)
                     .then()
-                    .thenMany(inbound.receive().asString())
+                    .thenMany(inbound.receive().metered(meter).asString())
             }
-            .map { objectMapper.readValue<IdaxMessageFrame<List<IdaxOrderBook>>>(it) }
+            .decode(meter) { objectMapper.readValue<IdaxMessageFrame<List<IdaxOrderBook>>>(it) }
     }
 }
@@ -19,13 +19,12 @@ package com.njkim.reactivecrypto.idax
 import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
 import com.njkim.reactivecrypto.core.common.model.order.OrderBook
-import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
 import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.core.common.util.toEpochMilli
+import com.njkim.reactivecrypto.core.orderbook.IncrementalOrderBook
 import com.njkim.reactivecrypto.core.websocket.ExchangePublicWebsocketClient
 import mu.KotlinLogging
 import reactor.core.publisher.Flux
-import java.math.BigDecimal
 import java.time.ZonedDateTime
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicInteger
@@ -58,7 +57,7 @@ class IdaxWebsocketClient : ExchangePublicWebsocketClient {
     }
 
     override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
-        val currentOrderBookMap: MutableMap<CurrencyPair, OrderBook> = ConcurrentHashMap()
+        val currentOrderBookMap: MutableMap<CurrencyPair, IncrementalOrderBook> = ConcurrentHashMap()
 
         return idaxRawWebsocketClient.createOrderBookChangeFlux(subscribeTargets)
             .flatMapIterable { idaxMessageFrame ->
@@ -75,56 +74,10 @@ class IdaxWebsocketClient : ExchangePublicWebsocketClient {
                 }
             }
             .map { orderBook ->
-                if (!currentOrderBookMap.containsKey(orderBook.currencyPair)) {
-                    currentOrderBookMap[orderBook.currencyPair] = orderBook
-                    return@map orderBook
-                }
-
-                val prevOrderBook = currentOrderBookMap[orderBook.currencyPair]!!
-
-                val askMap: MutableMap<BigDecimal, OrderBookUnit> = prevOrderBook.asks
-                    .map { Pair(it.price.stripTrailingZeros(), it) }
-                    .toMap()
-                    .toMutableMap()
-
-                orderBook.asks.forEach { updatedAsk ->
-                    askMap.compute(updatedAsk.price.stripTrailingZeros()) { _, oldValue ->
-                        when {
-                            updatedAsk.quantity <= BigDecimal.ZERO -> null
-                            oldValue == null -> updatedAsk
-                            else -> oldValue.copy(
-                                quantity = updatedAsk.quantity,
-                                orderNumbers = updatedAsk.orderNumbers
-                            )
-                        }
-                    }
-                }
-
-                val bidMap: MutableMap<BigDecimal, OrderBookUnit> = prevOrderBook.bids
-                    .map { Pair(it.price.stripTrailingZeros(), it) }
-                    .toMap()
-                    .toMutableMap()
-
-                orderBook.bids.forEach { updatedBid ->
-                    bidMap.compute(updatedBid.price.stripTrailingZeros()) { _, oldValue ->
-                        when {
-                            updatedBid.quantity <= BigDecimal.ZERO -> null
-                            oldValue == null -> updatedBid
-                            else -> oldValue.copy(
-                                quantity = updatedBid.quantity,
-                                orderNumbers = updatedBid.orderNumbers
-                            )
-                        }
-                    }
-                }
-
-                val currentOrderBook = prevOrderBook.copy(
-                    eventTime = orderBook.eventTime,
-                    asks = askMap.values.sortedBy { orderBookUnit -> orderBookUnit.price },
-                    bids = bidMap.values.sortedByDescending { orderBookUnit -> orderBookUnit.price }
-                )
-                currentOrderBookMap[currentOrderBook.currencyPair] = currentOrderBook
-                currentOrderBook
+                val incrementalOrderBook = currentOrderBookMap
+                    .computeIfAbsent(orderBook.currencyPair) { IncrementalOrderBook() }
+                incrementalOrderBook.update(orderBook)
+                incrementalOrderBook.toOrderBook()!!
             }
             .doFinally { currentOrderBookMap.clear() } // cleanup memory limit orderBook when disconnected
     }
@@ -17,20 +17,6 @@
 package com.njkim.reactivecrypto.korbotex
 
 import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
-import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
-import com.njkim.reactivecrypto.core.common.model.order.OrderBook
-import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.okex.OkexWebsocketClient
-import reactor.core.publisher.Flux
 
-class KorbotexWebsocketClient : OkexWebsocketClient("wss://okexcomreal.bafang.com:8443/ws/v3?brokerId=151") {
-    override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
-        return super.createDepthSnapshot(subscribeTargets)
-            .map { it.copy(exchangeVendor = ExchangeVendor.KORBOTEX) }
-    }
-
-    override fun createTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<TickData> {
-        return super.createTradeWebsocket(subscribeTargets)
-            .map { it.copy(exchangeVendor = ExchangeVendor.KORBOTEX) }
-    }
-}
+class KorbotexWebsocketClient : OkexWebsocketClient("wss://okexcomreal.bafang.com:8443/ws/v3?brokerId=151", ExchangeVendor.KORBOTEX)
@@ -18,6 +18,7 @@ package com.njkim.reactivecrypto.kraken
 
 import com.fasterxml.jackson.core.JsonParser
 import com.fasterxml.jackson.core.JsonProcessingException
+import com.fasterxml.jackson.core.JsonToken
 import com.fasterxml.jackson.databind.DeserializationContext
 import com.fasterxml.jackson.databind.JsonDeserializer
 import com.fasterxml.jackson.databind.JsonNode
@@ -25,8 +26,17 @@ import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.databind.module.SimpleModule
 import com.fasterxml.jackson.module.kotlin.convertValue
 import com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import com.njkim.reactivecrypto.core.json.JsonMessageDecoder
+import com.njkim.reactivecrypto.core.json.bigDecimalValue
+import com.njkim.reactivecrypto.core.json.expectToken
+import com.njkim.reactivecrypto.core.json.forEachElement
+import com.njkim.reactivecrypto.core.json.forEachField
 import com.njkim.reactivecrypto.kraken.model.KrakenOrderBook
 import com.njkim.reactivecrypto.kraken.model.KrakenOrderBookUnit
 import com.njkim.reactivecrypto.kraken.model.KrakenTickData
@@ -56,8 +66,7 @@ class KrakenJsonObjectMapper : ExchangeJsonObjectMapper {
         return object : JsonDeserializer<CurrencyPair>() {
             @Throws(IOException::class, JsonProcessingException::class)
             override fun deserialize(p: JsonParser, ctxt: DeserializationContext): CurrencyPair {
-                val splits = p.valueAsString.split("/")
-                return CurrencyPair.parse(splits[0], splits[1])
+                return parseCurrencyPair(p.valueAsString)
             }
         }
     }
@@ -75,12 +84,7 @@ class KrakenJsonObjectMapper : ExchangeJsonObjectMapper {
         return object : JsonDeserializer<TradeSideType>() {
             @Throws(IOException::class, JsonProcessingException::class)
             override fun deserialize(p: JsonParser, ctxt: DeserializationContext): TradeSideType {
-                val valueAsString = p.valueAsString
-                return when (valueAsString) {
-                    "b" -> TradeSideType.BUY
-                    "s" -> TradeSideType.SELL
-                    else -> throw IllegalArgumentException()
-                }
+                return parseTradeSideType(p.valueAsString)
             }
         }
     }
@@ -94,9 +98,7 @@ class KrakenJsonObjectMapper : ExchangeJsonObjectMapper {
                 val krakenTickData: List<KrakenTickData> = jsonNode.get(1).toList()
                     .map {
                         KrakenTickData(
-                            Instant.ofEpochMilli((it.get(2).asDouble() * 1000).toLong())
-                                .plusNanos((it.get(2).asDouble() * 1000000 % 1000).toLong())
-                                .atZone(ZoneId.systemDefault()),
+                            parseTime(it.get(2).asDouble()),
                             instance.convertValue(it.get(0).asText()),
                             instance.convertValue(it.get(1).asText()),
                             instance.convertValue(it.get(3).asText()),
@@ -139,9 +141,7 @@ class KrakenJsonObjectMapper : ExchangeJsonObjectMapper {
                         KrakenOrderBookUnit(
                             instance.convertValue(it.get(0).asText()),
                             instance.convertValue(it.get(1).asText()),
-                            Instant.ofEpochMilli((it.get(2).asDouble() * 1000).toLong())
-                                .plusNanos((it.get(2).asDouble() * 1000000 % 1000).toLong())
-                                .atZone(ZoneId.systemDefault())
+                            parseTime(it.get(2).asDouble())
                         )
                     }
             }
@@ -150,4 +150,144 @@ class KrakenJsonObjectMapper : ExchangeJsonObjectMapper {
         simpleModule.addDeserializer(KrakenTickDataWrapper::class.java, tickDataDeserializer)
         simpleModule.addDeserializer(KrakenOrderBook::class.java, orderBookDeserializer)
     }
-}
\ No newline at end of file
+
+    /**
+     * [channelID, [["5541.20000", "0.15850568", "1534614057.321597", "s", "l", ""]], "trade", "XBT/USD"]
+     */
+    override fun tickDataDecoder(): JsonMessageDecoder<List<TickData>>? {
+        return object : JsonMessageDecoder<List<TickData>> {
+            override fun decode(parser: JsonParser): List<TickData> {
+                val krakenTickDataList = ArrayList<KrakenTickData>()
+                var currencyPair: CurrencyPair? = null
+                var stringElementCount = 0
+
+                parser.forEachElement {
+                    when (parser.currentToken) {
+                        JsonToken.START_ARRAY -> parser.forEachElement { krakenTickDataList.add(decodeTrade(parser)) }
+                        // channelName, pair
+                        JsonToken.VALUE_STRING -> if (stringElementCount++ == 1) currencyPair = parseCurrencyPair(parser.text)
+                        else -> parser.skipChildren()
+                    }
+                }
+
+                return krakenTickDataList.map {
+                    TickData(
+                        "${it.time}", // FIXME time is not enough to use uniqueId
+                        it.time,
+                        it.price,
+                        it.volume,
+                        currencyPair!!,
+                        ExchangeVendor.KRAKEN,
+                        it.tradeSideType
+                    )
+                }
+            }
+
+            private fun decodeTrade(parser: JsonParser): KrakenTickData {
+                parser.expectToken(JsonToken.START_ARRAY)
+                parser.nextToken()
+                val price = parser.bigDecimalValue()
+                parser.nextToken()
+                val volume = parser.bigDecimalValue()
+                parser.nextToken()
+                val time = parseTime(parser.valueAsDouble)
+                parser.nextToken()
+                val tradeSideType = parseTradeSideType(parser.text)
+                parser.nextToken()
+                val orderType = parser.text
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    parser.skipChildren()
+                }
+                return KrakenTickData(time, price, volume, tradeSideType, orderType)
+            }
+        }
+    }
+
+    /**
+     * snapshot : [channelID, {"as":[["5541.30000","2.50700000","1534614248.123678"]],"bs":[...]}, "book-10", "XBT/USD"]
+     * update : [channelID, {"a":[["5541.30000","2.50700000","1534614248.456738"]]}, {"b":[...]}, "book-10", "XBT/USD"]
+     */
+    override fun orderBookDecoder(): JsonMessageDecoder<List<OrderBook>>? {
+        return object : JsonMessageDecoder<List<OrderBook>> {
+            override fun decode(parser: JsonParser): List<OrderBook> {
+                val bids = ArrayList<OrderBookUnit>()
+                val asks = ArrayList<OrderBookUnit>()
+                var currencyPair: CurrencyPair? = null
+                var stringElementCount = 0
+                var latestLevelTime = 0.0
+
+                parser.forEachElement {
+                    when (parser.currentToken) {
+                        JsonToken.START_OBJECT -> parser.forEachField { fieldName ->
+                            when (fieldName) {
+                                "as", "a" -> latestLevelTime = maxOf(latestLevelTime, decodeLevels(parser, TradeSideType.SELL, asks))
+                                "bs", "b" -> latestLevelTime = maxOf(latestLevelTime, decodeLevels(parser, TradeSideType.BUY, bids))
+                                else -> parser.skipChildren()
+                            }
+                        }
+                        // channelName, pair
+                        JsonToken.VALUE_STRING -> if (stringElementCount++ == 1) currencyPair = parseCurrencyPair(parser.text)
+                        else -> parser.skipChildren()
+                    }
+                }
+
+                val eventTime = if (latestLevelTime > 0) parseTime(latestLevelTime) else ZonedDateTime.now()
+                return listOf(
+                    OrderBook(
+                        "$eventTime",
+                        currencyPair!!,
+                        eventTime,
+                        ExchangeVendor.KRAKEN,
+                        bids,
+                        asks,
+                        hasExchangeTime = latestLevelTime > 0
+                    )
+                )
+            }
+
+            /**
+             * levels of the form `[price, volume, timestamp, updateType?]`
+             *
+             * @return the latest level timestamp in epoch seconds, the book has no other event time
+             */
+            private fun decodeLevels(parser: JsonParser, side: TradeSideType, orderBookUnits: MutableList<OrderBookUnit>): Double {
+                var latestLevelTime = 0.0
+                parser.forEachElement {
+                    parser.nextToken()
+                    val price = parser.bigDecimalValue()
+                    parser.nextToken()
+                    val volume = parser.bigDecimalValue()
+                    parser.nextToken()
+                    latestLevelTime = maxOf(latestLevelTime, parser.valueAsDouble)
+                    orderBookUnits.add(OrderBookUnit(price, volume, side))
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        parser.skipChildren()
+                    }
+                }
+                return latestLevelTime
+            }
+        }
+    }
+
+    private fun parseCurrencyPair(rawValue: String): CurrencyPair {
+        val splits = rawValue.split("/")
+        return CurrencyPair.parse(splits[0], splits[1])
+    }
+
+    private fun parseTradeSideType(rawValue: String): TradeSideType {
+        return when (rawValue) {
+            "b" -> TradeSideType.BUY
+            "s" -> TradeSideType.SELL
+            else -> throw IllegalArgumentException()
+        }
+    }
+
+    /**
+     * @param epochSecond seconds since epoch with microsecond fraction
+     */
+    private fun parseTime(epochSecond: Double): ZonedDateTime {
+        return Instant.ofEpochMilli((epochSecond * 1000).toLong())
+            .plusNanos((epochSecond * 1000000 % 1000).toLong())
+            .atZone(ZoneId.systemDefault())
+    }
+}
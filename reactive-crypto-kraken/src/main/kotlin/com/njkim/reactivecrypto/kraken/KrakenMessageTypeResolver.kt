@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.kraken
+
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import com.njkim.reactivecrypto.core.json.JsonMessageTypeResolver
+import com.njkim.reactivecrypto.core.json.forEachField
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * channel data is sent as an array `[channelID, payload..., channelName, pair]`,
+ * events (heartbeat, systemStatus, subscriptionStatus) as an object.
+ *
+ * The channel name of each channelID is taken from the subscriptionStatus events,
+ * so channel data is resolved from its leading channelID without reading the payload. (book-10 -> book)
+ * Data of a channelID without a status yet is resolved from the trailing channel name and its channelID is remembered.
+ * a book payload starting with `as` or `bs` is a snapshot and resolved as [snapshotType].
+ *
+ * channelIDs are assigned per socket, use one instance per socket session.
+ */
+internal class KrakenMessageTypeResolver(
+    private val bookChannel: String,
+    private val snapshotType: String
+) : JsonMessageTypeResolver {
+    private val channelNames: MutableMap<Long, String> = ConcurrentHashMap()
+
+    override fun resolve(parser: JsonParser): String? {
+        if (parser.currentToken != JsonToken.START_ARRAY) {
+            return resolveEvent(parser)
+        }
+        if (parser.nextToken() != JsonToken.VALUE_NUMBER_INT) {
+            return null
+        }
+
+        val channelID = parser.longValue
+        val channelName = channelNames[channelID] ?: return resolveTrailingChannelName(parser, channelID)
+        return if (channelName == bookChannel && isSnapshot(parser)) snapshotType else channelName
+    }
+
+    /**
+     * {"channelID":10001,"channelName":"book-10","event":"subscriptionStatus","pair":"XBT/EUR","status":"subscribed","subscription":{"depth":10,"name":"book"}}
+     */
+    private fun resolveEvent(parser: JsonParser): String? {
+        if (parser.currentToken != JsonToken.START_OBJECT) {
+            return null
+        }
+
+        var event: String? = null
+        var channelID: Long? = null
+        var channelName: String? = null
+        var status: String? = null
+        parser.forEachField { fieldName ->
+            when (fieldName) {
+                "event" -> event = parser.text
+                "channelID" -> channelID = parser.longValue
+                "channelName" -> channelName = parser.text
+                "status" -> status = parser.text
+                else -> parser.skipChildren()
+            }
+        }
+
+        if (event == SUBSCRIPTION_STATUS_EVENT && channelID != null) {
+            when (status) {
+                "subscribed" -> channelName?.let { channelNames[channelID!!] = it.substringBefore('-') }
+                "unsubscribed" -> channelNames.remove(channelID!!)
+            }
+        }
+        return event
+    }
+
+    private fun resolveTrailingChannelName(parser: JsonParser, channelID: Long): String? {
+        var snapshot = false
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            when (parser.currentToken) {
+                JsonToken.VALUE_STRING -> {
+                    val channelName = parser.text.substringBefore('-')
+                    channelNames[channelID] = channelName
+                    return if (snapshot && channelName == bookChannel) snapshotType else channelName
+                }
+                JsonToken.START_OBJECT -> {
+                    if (parser.nextToken() == JsonToken.FIELD_NAME && parser.currentName in SNAPSHOT_FIELDS) {
+                        snapshot = true
+                    }
+                    while (parser.currentToken == JsonToken.FIELD_NAME) {
+                        parser.nextToken()
+                        parser.skipChildren()
+                        parser.nextToken()
+                    }
+                }
+                else -> parser.skipChildren()
+            }
+        }
+        return null
+    }
+
+    private fun isSnapshot(parser: JsonParser): Boolean {
+        return parser.nextToken() == JsonToken.START_OBJECT &&
+            parser.nextToken() == JsonToken.FIELD_NAME &&
+            parser.currentName in SNAPSHOT_FIELDS
+    }
+
+    companion object {
+        private const val SUBSCRIPTION_STATUS_EVENT = "subscriptionStatus"
+        private val SNAPSHOT_FIELDS = setOf("as", "bs")
+    }
+}
@@ -17,24 +17,23 @@
 package com.njkim.reactivecrypto.kraken
 
 import com.fasterxml.jackson.databind.ObjectMapper
-import com.fasterxml.jackson.module.kotlin.readValue
 import com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper
 import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
 import com.njkim.reactivecrypto.core.common.model.order.OrderBook
-import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
 import com.njkim.reactivecrypto.core.common.model.order.TickData
-import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import com.njkim.reactivecrypto.core.json.JsonMessageDecoder
+import com.njkim.reactivecrypto.core.json.JsonMessageRouter
+import com.njkim.reactivecrypto.core.orderbook.IncrementalOrderBook
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
 import com.njkim.reactivecrypto.core.websocket.AbstractExchangeWebsocketClient
-import com.njkim.reactivecrypto.kraken.model.KrakenOrderBook
-import com.njkim.reactivecrypto.kraken.model.KrakenSubscriptionStatus
-import com.njkim.reactivecrypto.kraken.model.KrakenTickDataWrapper
+import com.njkim.reactivecrypto.core.websocket.FrameDecoder
+import com.njkim.reactivecrypto.core.websocket.SharedWebsocketConnection
+import com.njkim.reactivecrypto.core.websocket.SharedWebsocketSubscription
+import com.njkim.reactivecrypto.core.websocket.WebsocketSubscription
+import com.njkim.reactivecrypto.core.websocket.WebsocketSubscriptionProtocol
 import mu.KotlinLogging
 import reactor.core.publisher.Flux
-import reactor.netty.http.client.HttpClient
-import java.math.BigDecimal
-import java.time.ZonedDateTime
-import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Kraken Websockets Public API Version 0.1.1
@@ -44,165 +43,147 @@ import java.util.concurrent.ConcurrentHashMap
  * Format of each tradeable pair is A/B, where A and B are ISO 4217-A3 for standardized assets and popular unique symbol if not standardized.
  * Timestamps should not be considered unique and not be considered as aliases for transaction ids. Also, the granularity of timestamps is not representative of transaction rates.
  *
+ * @param leg clients of different legs stream over separate sockets of the same endpoint,
+ * see [com.njkim.reactivecrypto.core.stream.arbitrateTickData]
  */
-class KrakenWebsocketClient : AbstractExchangeWebsocketClient() {
+class KrakenWebsocketClient(
+    private val baseUri: String = "wss://ws.kraken.com",
+    private val leg: Int = 0
+) : AbstractExchangeWebsocketClient() {
     private val log = KotlinLogging.logger {}
 
-    private val baseUri = "wss://ws.kraken.com"
-
     private val objectMapper: ObjectMapper = createJsonObjectMapper().objectMapper()
 
+    private val tickDataDecoder: JsonMessageDecoder<List<TickData>> = createJsonObjectMapper().tickDataDecoder()!!
+
+    private val orderBookDecoder: JsonMessageDecoder<List<OrderBook>> = createJsonObjectMapper().orderBookDecoder()!!
+
+    /**
+     * topic is `$subscriptionName:$pair` e.g. `book:XBT/USD`
+     */
+    private val connection: SharedWebsocketConnection = ReactiveCryptoPlugins.websocketConnectionManager
+        .connection(ExchangeVendor.KRAKEN, baseUri, leg) {
+            SharedWebsocketConnection(
+                ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.KRAKEN).wiretap(log.isDebugEnabled),
+                baseUri,
+                object : WebsocketSubscriptionProtocol {
+                    override fun subscribeMessages(topics: List<String>): List<String> {
+                        return topics.groupBy({ it.substringBefore(':') }, { it.substringAfter(':') })
+                            .map { (subscriptionName, pairs) ->
+                                val subscribeSymbols = pairs.joinToString(",", "[", "]") { "\"$it\"" }
+                                "{" +
+                                        "\"event\": \"subscribe\"," +
+                                        "\"pair\": $subscribeSymbols," +
+                                        "\"subscription\": {\"name\":\"$subscriptionName\"}" +
+                                        "}"
+                            }
+                    }
+
+                    override fun unsubscribeMessages(topics: List<String>): List<String> {
+                        return topics.groupBy({ it.substringBefore(':') }, { it.substringAfter(':') })
+                            .map { (subscriptionName, pairs) ->
+                                val unsubscribeSymbols = pairs.joinToString(",", "[", "]") { "\"$it\"" }
+                                "{" +
+                                        "\"event\": \"unsubscribe\"," +
+                                        "\"pair\": $unsubscribeSymbols," +
+                                        "\"subscription\": {\"name\":\"$subscriptionName\"}" +
+                                        "}"
+                            }
+                    }
+                },
+                maxTopicsPerSocket = ReactiveCryptoPlugins.websocketConnectionManager.maxTopicsPerSocket(ExchangeVendor.KRAKEN)
+            )
+        }
+
     override fun createJsonObjectMapper(): ExchangeJsonObjectMapper {
         return KrakenJsonObjectMapper()
     }
 
     override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
-        val currentOrderBookMap: MutableMap<CurrencyPair, OrderBook> = ConcurrentHashMap()
-        val channelCurrencyPairMap: MutableMap<Int, CurrencyPair> = ConcurrentHashMap()
-
-        val subscribeSymbols = subscribeTargets
-            .map { "${it.baseCurrency.symbol}/${it.quoteCurrency.symbol}".toUpperCase() }
-            .map { "\"$it\"" }
-            .joinToString(",", "[", "]")
-
-        val subscribeMessage = "{" +
-                "\"event\": \"subscribe\"," +
-                "\"pair\": $subscribeSymbols," +
-                "\"subscription\": {\"name\":\"book\"}" +
-                "}"
-
-        return HttpClient.create()
-            .wiretap(log.isDebugEnabled)
-            .websocket()
-            .uri(baseUri)
-            .handle { inbound, outbound ->
-                outbound.sendString(Flux.just(subscribeMessage))
-                    .then()
-                    .thenMany(inbound.receive().asString())
-            }
-            .doOnNext {
-                if (it.contains("\"event\":\"subscriptionStatus")) {
-                    val subscribeStatus = objectMapper.readValue<KrakenSubscriptionStatus>(it)
-                    channelCurrencyPairMap.put(subscribeStatus.channelID, subscribeStatus.pair)
-                }
-            }
-            .filter { !it.contains("\"event\":\"") }
-            .map { objectMapper.readValue<KrakenOrderBook>(it) }
-            .map { krakenOrderBook ->
-                val now = ZonedDateTime.now()
-                OrderBook(
-                    "$now",
-                    channelCurrencyPairMap[krakenOrderBook.channelID]!!,
-                    now,
-                    ExchangeVendor.KRAKEN,
-                    krakenOrderBook.bids.map { OrderBookUnit(it.price, it.volume, TradeSideType.BUY, null) },
-                    krakenOrderBook.asks.map { OrderBookUnit(it.price, it.volume, TradeSideType.SELL, null) }
-                )
-            }
-            .map { orderBook ->
-                if (!currentOrderBookMap.containsKey(orderBook.currencyPair)) {
-                    currentOrderBookMap[orderBook.currencyPair] = orderBook
-                    return@map orderBook
-                }
+        return createDepthSubscription(subscribeTargets).flux
+            .doOnError { log.error(it.message, it) }
+    }
 
-                val prevOrderBook = currentOrderBookMap[orderBook.currencyPair]!!
-
-                val askMap: MutableMap<BigDecimal, OrderBookUnit> = prevOrderBook.asks
-                    .map { Pair(it.price.stripTrailingZeros(), it) }
-                    .toMap()
-                    .toMutableMap()
-
-                orderBook.asks.forEach { updatedAsk ->
-                    askMap.compute(updatedAsk.price.stripTrailingZeros()) { _, oldValue ->
-                        when {
-                            updatedAsk.quantity <= BigDecimal.ZERO -> null
-                            oldValue == null -> updatedAsk
-                            else -> oldValue.copy(
-                                quantity = updatedAsk.quantity,
-                                orderNumbers = updatedAsk.orderNumbers
-                            )
-                        }
-                    }
-                }
+    override fun createTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<TickData> {
+        return createTradeSubscription(subscribeTargets).flux
+            .doOnError { log.error(it.message, it) }
+    }
 
-                val bidMap: MutableMap<BigDecimal, OrderBookUnit> = prevOrderBook.bids
-                    .map { Pair(it.price.stripTrailingZeros(), it) }
-                    .toMap()
-                    .toMutableMap()
-
-                orderBook.bids.forEach { updatedBid ->
-                    bidMap.compute(updatedBid.price.stripTrailingZeros()) { _, oldValue ->
-                        when {
-                            updatedBid.quantity <= BigDecimal.ZERO -> null
-                            oldValue == null -> updatedBid
-                            else -> oldValue.copy(
-                                quantity = updatedBid.quantity,
-                                orderNumbers = updatedBid.orderNumbers
-                            )
+    override fun createDepthSubscription(subscribeTargets: List<CurrencyPair>): WebsocketSubscription<OrderBook> {
+        return SharedWebsocketSubscription(
+            connection,
+            BOOK_CHANNEL,
+            { topic(BOOK_CHANNEL, it) },
+            { it.currencyPair },
+            {
+                // book updates are merged once per connection, the books are dropped with the socket session
+                val currentOrderBookMap: MutableMap<CurrencyPair, IncrementalOrderBook> = HashMap()
+                val sessionRouter = newDepthRouter()
+                val frameDecoder: FrameDecoder<OrderBook> = { frame ->
+                    sessionRouter.route(frame) { type, orderBooks ->
+                        orderBooks.mapNotNull { orderBook ->
+                            val incrementalOrderBook = currentOrderBookMap
+                                .computeIfAbsent(orderBook.currencyPair) { IncrementalOrderBook() }
+                            when {
+                                type == BOOK_SNAPSHOT_TYPE -> incrementalOrderBook.snapshot(orderBook)
+                                // updates before the snapshot of this session are dropped until the book is resynced
+                                incrementalOrderBook.isSynchronized() -> {
+                                    incrementalOrderBook.update(orderBook)
+                                    // levels pushed out of the subscribed depth are not removed by the exchange
+                                    incrementalOrderBook.toOrderBook(BOOK_DEPTH)
+                                }
+                                else -> null
+                            }
                         }
                     }
                 }
+                frameDecoder
+            },
+            subscribeTargets
+        )
+    }
 
-                val currentOrderBook = prevOrderBook.copy(
-                    eventTime = orderBook.eventTime,
-                    asks = askMap.values.sortedBy { orderBookUnit -> orderBookUnit.price },
-                    bids = bidMap.values.sortedByDescending { orderBookUnit -> orderBookUnit.price }
-                )
-                currentOrderBookMap[currentOrderBook.currencyPair] = currentOrderBook
-                currentOrderBook
-            }
-            .doOnError { log.error(it.message, it) }
-            .doFinally {
-                // cleanup memory limit orderBook when disconnected
-                currentOrderBookMap.clear()
-                channelCurrencyPairMap.clear()
-            }
+    override fun createTradeSubscription(subscribeTargets: List<CurrencyPair>): WebsocketSubscription<TickData> {
+        return SharedWebsocketSubscription<TickData>(
+            connection,
+            TRADE_CHANNEL,
+            { topic(TRADE_CHANNEL, it) },
+            { it.currencyPair },
+            {
+                val sessionRouter = newTradeRouter()
+                val frameDecoder: FrameDecoder<TickData> = { frame -> sessionRouter.route(frame) }
+                frameDecoder
+            },
+            subscribeTargets
+        )
     }
 
-    override fun createTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<TickData> {
-        val channelCurrencyPairMap: MutableMap<Int, CurrencyPair> = ConcurrentHashMap()
-
-        val subscribeSymbols = subscribeTargets
-            .map { "${it.baseCurrency.symbol}/${it.quoteCurrency.symbol}".toUpperCase() }
-            .map { "\"$it\"" }
-            .joinToString(",", "[", "]")
-
-        val subscribeMessage = "{" +
-                "\"event\": \"subscribe\"," +
-                "\"pair\": $subscribeSymbols," +
-                "\"subscription\": {\"name\":\"trade\"}" +
-                "}"
-
-        return HttpClient.create()
-            .wiretap(log.isDebugEnabled)
-            .websocket()
-            .uri(baseUri)
-            .handle { inbound, outbound ->
-                outbound.sendString(Flux.just(subscribeMessage))
-                    .then()
-                    .thenMany(inbound.receive().asString())
-            }
-            .doOnNext {
-                if (it.contains("\"event\":\"subscriptionStatus")) {
-                    val subscribeStatus = objectMapper.readValue<KrakenSubscriptionStatus>(it)
-                    channelCurrencyPairMap.put(subscribeStatus.channelID, subscribeStatus.pair)
-                }
-            }
-            .filter { !it.contains("\"event\":\"") }
-            .map { objectMapper.readValue<KrakenTickDataWrapper>(it) }
-            .flatMapIterable {
-                it.data.map { krakenTickData ->
-                    TickData(
-                        "${krakenTickData.time}", // FIXME time is not enough to use uniqueId
-                        krakenTickData.time,
-                        krakenTickData.price,
-                        krakenTickData.volume,
-                        channelCurrencyPairMap[it.channelId]!!,
-                        ExchangeVendor.KRAKEN,
-                        krakenTickData.tradeSideType
-                    )
-                }
-            }
-            .doOnError { log.error(it.message, it) }
+    private fun newTradeRouter(): JsonMessageRouter<List<TickData>> {
+        return JsonMessageRouter(
+            objectMapper,
+            KrakenMessageTypeResolver(BOOK_CHANNEL, BOOK_SNAPSHOT_TYPE),
+            mapOf(TRADE_CHANNEL to tickDataDecoder)
+        )
+    }
+
+    private fun newDepthRouter(): JsonMessageRouter<List<OrderBook>> {
+        return JsonMessageRouter(
+            objectMapper,
+            KrakenMessageTypeResolver(BOOK_CHANNEL, BOOK_SNAPSHOT_TYPE),
+            mapOf(BOOK_CHANNEL to orderBookDecoder, BOOK_SNAPSHOT_TYPE to orderBookDecoder)
+        )
+    }
+
+    private fun topic(subscriptionName: String, currencyPair: CurrencyPair): String {
+        return "$subscriptionName:" + "${currencyPair.baseCurrency.symbol}/${currencyPair.quoteCurrency.symbol}".toUpperCase()
+    }
+
+    companion object {
+        private const val TRADE_CHANNEL = "trade"
+        private const val BOOK_CHANNEL = "book"
+        private const val BOOK_SNAPSHOT_TYPE = "book/snapshot"
+
+        // default depth of the book subscription
+        private const val BOOK_DEPTH = 10
     }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.okex
+
+import io.netty.buffer.ByteBuf
+import io.netty.buffer.ByteBufInputStream
+import io.netty.channel.ChannelHandlerContext
+import io.netty.handler.codec.ByteToMessageDecoder
+import org.apache.commons.compress.compressors.deflate64.Deflate64CompressorInputStream
+
+/**
+ * Inbound handler of the okex sockets, which send every frame deflated.
+ * Each frame is inflated straight into a pooled buffer, the bytes are never decoded to a String.
+ */
+class Deflat64Decoder : ByteToMessageDecoder() {
+    override fun decode(ctx: ChannelHandlerContext, msg: ByteBuf, out: MutableList<Any>) {
+        val uncompressed = msg.alloc().buffer(msg.readableBytes() * 4)
+        try {
+            Deflate64CompressorInputStream(ByteBufInputStream(msg)).use {
+                do {
+                    val read = uncompressed.writeBytes(it, INFLATE_CHUNK_SIZE)
+                } while (read >= 0)
+            }
+        } catch (e: Exception) {
+            uncompressed.release()
+            throw e
+        }
+        out.add(uncompressed)
+    }
+
+    companion object {
+        private const val INFLATE_CHUNK_SIZE = 8192
+    }
+}
@@ -21,8 +21,18 @@ import com.fasterxml.jackson.core.JsonProcessingException
 import com.fasterxml.jackson.databind.DeserializationContext
 import com.fasterxml.jackson.databind.JsonDeserializer
 import com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.order.OrderBook
+import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
+import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import com.njkim.reactivecrypto.core.common.util.toEpochMilli
+import com.njkim.reactivecrypto.core.json.JsonMessageDecoder
+import com.njkim.reactivecrypto.core.json.bigDecimalValue
+import com.njkim.reactivecrypto.core.json.forEachElement
+import com.njkim.reactivecrypto.core.json.forEachField
+import com.njkim.reactivecrypto.core.json.orderBookUnitsValue
 import java.io.IOException
 import java.math.BigDecimal
 import java.time.ZonedDateTime
@@ -50,11 +60,7 @@ class OkexJsonObjectMapper : ExchangeJsonObjectMapper {
         return object : JsonDeserializer<CurrencyPair>() {
             @Throws(IOException::class, JsonProcessingException::class)
             override fun deserialize(p: JsonParser, ctxt: DeserializationContext): CurrencyPair {
-                val split = p.valueAsString.split("-")
-                val targetCurrency = split[0]
-                val baseCurrency = split[1]
-
-                return CurrencyPair.parse(targetCurrency, baseCurrency)
+                return parseCurrencyPair(p.valueAsString)
             }
         }
     }
@@ -68,4 +74,106 @@ class OkexJsonObjectMapper : ExchangeJsonObjectMapper {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * {"table":"spot/trade","data":[{"instrument_id":"ETH-USDT","price":"162.12","side":"buy","size":"11.085","timestamp":"2019-05-06T06:51:24.389Z","trade_id":"1210447366"}]}
+     */
+    override fun tickDataDecoder(): JsonMessageDecoder<List<TickData>>? {
+        return object : JsonMessageDecoder<List<TickData>> {
+            override fun decode(parser: JsonParser): List<TickData> {
+                val tickDataList = ArrayList<TickData>()
+                parser.forEachField { fieldName ->
+                    if (fieldName == "data") {
+                        parser.forEachElement { tickDataList.add(decodeTrade(parser)) }
+                    } else {
+                        parser.skipChildren()
+                    }
+                }
+                return tickDataList
+            }
+
+            private fun decodeTrade(parser: JsonParser): TickData {
+                var instrumentId: CurrencyPair? = null
+                var price: BigDecimal? = null
+                var side: TradeSideType? = null
+                var size: BigDecimal? = null
+                var timestamp: ZonedDateTime? = null
+                var tradeId: String? = null
+
+                parser.forEachField { fieldName ->
+                    when (fieldName) {
+                        "instrument_id" -> instrumentId = parseCurrencyPair(parser.text)
+                        "price" -> price = parser.bigDecimalValue()
+                        "side" -> side = TradeSideType.valueOf(parser.text.toUpperCase())
+                        "size" -> size = parser.bigDecimalValue()
+                        "timestamp" -> timestamp = ZonedDateTime.parse(parser.text)
+                        "trade_id" -> tradeId = parser.text
+                        else -> parser.skipChildren()
+                    }
+                }
+
+                return TickData(
+                    tradeId!!,
+                    timestamp!!,
+                    price!!,
+                    size!!,
+                    instrumentId!!,
+                    ExchangeVendor.OKEX,
+                    side!!
+                )
+            }
+        }
+    }
+
+    /**
+     * {"table":"spot/depth","action":"update","data":[{"instrument_id":"ETH-USDT","asks":[["8.8","96.99999966","1"]],"bids":[["5","1.3","2"]],"timestamp":"2019-05-06T06:51:24.389Z","checksum":-1200119424}]}
+     */
+    override fun orderBookDecoder(): JsonMessageDecoder<List<OrderBook>>? {
+        return object : JsonMessageDecoder<List<OrderBook>> {
+            override fun decode(parser: JsonParser): List<OrderBook> {
+                val orderBooks = ArrayList<OrderBook>()
+                parser.forEachField { fieldName ->
+                    if (fieldName == "data") {
+                        parser.forEachElement { orderBooks.add(decodeOrderBook(parser)) }
+                    } else {
+                        parser.skipChildren()
+                    }
+                }
+                return orderBooks
+            }
+
+            private fun decodeOrderBook(parser: JsonParser): OrderBook {
+                var instrumentId: CurrencyPair? = null
+                var bids: List<OrderBookUnit> = emptyList()
+                var asks: List<OrderBookUnit> = emptyList()
+                var timestamp: ZonedDateTime? = null
+
+                parser.forEachField { fieldName ->
+                    when (fieldName) {
+                        "instrument_id" -> instrumentId = parseCurrencyPair(parser.text)
+                        "bids" -> bids = parser.orderBookUnitsValue(TradeSideType.BUY, true)
+                        "asks" -> asks = parser.orderBookUnitsValue(TradeSideType.SELL, true)
+                        "timestamp" -> timestamp = ZonedDateTime.parse(parser.text)
+                        else -> parser.skipChildren()
+                    }
+                }
+
+                val eventTime = timestamp ?: ZonedDateTime.now()
+                return OrderBook(
+                    "${instrumentId!!}${eventTime.toEpochMilli()}",
+                    instrumentId!!,
+                    eventTime,
+                    ExchangeVendor.OKEX,
+                    bids,
+                    asks,
+                    hasExchangeTime = timestamp != null
+                )
+            }
+        }
+    }
+
+    private fun parseCurrencyPair(rawValue: String): CurrencyPair {
+        val split = rawValue.split("-")
+        return CurrencyPair.parse(split[0], split[1])
+    }
+}
@@ -16,177 +16,167 @@
 
 package com.njkim.reactivecrypto.okex
 
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
 import com.fasterxml.jackson.databind.ObjectMapper
-import com.fasterxml.jackson.module.kotlin.readValue
 import com.njkim.reactivecrypto.core.ExchangeJsonObjectMapper
 import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
 import com.njkim.reactivecrypto.core.common.model.order.OrderBook
-import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
 import com.njkim.reactivecrypto.core.common.model.order.TickData
-import com.njkim.reactivecrypto.core.common.util.toEpochMilli
+import com.njkim.reactivecrypto.core.json.JsonMessageDecoder
+import com.njkim.reactivecrypto.core.json.JsonMessageRouter
+import com.njkim.reactivecrypto.core.json.JsonMessageTypeResolver
+import com.njkim.reactivecrypto.core.json.forEachField
+import com.njkim.reactivecrypto.core.orderbook.IncrementalOrderBook
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
 import com.njkim.reactivecrypto.core.websocket.AbstractExchangeWebsocketClient
-import com.njkim.reactivecrypto.okex.model.OkexOrderBookWrapper
-import com.njkim.reactivecrypto.okex.model.OkexTickDataWrapper
-import io.netty.buffer.ByteBuf
-import io.netty.buffer.ByteBufInputStream
-import io.netty.channel.ChannelHandlerContext
-import io.netty.handler.codec.ByteToMessageDecoder
+import com.njkim.reactivecrypto.core.websocket.FrameDecoder
+import com.njkim.reactivecrypto.core.websocket.SharedWebsocketConnection
+import com.njkim.reactivecrypto.core.websocket.SharedWebsocketSubscription
+import com.njkim.reactivecrypto.core.websocket.WebsocketSubscription
+import com.njkim.reactivecrypto.core.websocket.WebsocketSubscriptionProtocol
 import mu.KotlinLogging
-import org.apache.commons.compress.compressors.deflate64.Deflate64CompressorInputStream
-import org.springframework.util.StreamUtils
 import reactor.core.publisher.Flux
-import reactor.kotlin.core.publisher.toFlux
-import reactor.netty.http.client.HttpClient
-import java.math.BigDecimal
-import java.nio.charset.Charset
-import java.time.ZonedDateTime
-import java.util.concurrent.ConcurrentHashMap
-import kotlin.streams.toList
 
+/**
+ * @param leg clients of different legs stream over separate sockets of the same endpoint,
+ * see [com.njkim.reactivecrypto.core.stream.arbitrateTickData]
+ */
 open class OkexWebsocketClient(
-    private val baseUri: String = "wss://real.okex.com:8443/ws/v3"
+    private val baseUri: String = "wss://real.okex.com:8443/ws/v3",
+    private val exchangeVendor: ExchangeVendor = ExchangeVendor.OKEX,
+    private val leg: Int = 0
 ) : AbstractExchangeWebsocketClient() {
     private val log = KotlinLogging.logger {}
 
     private val objectMapper: ObjectMapper = createJsonObjectMapper().objectMapper()
 
-    override fun createJsonObjectMapper(): ExchangeJsonObjectMapper {
-        return OkexJsonObjectMapper()
-    }
+    private val tickDataDecoder: JsonMessageDecoder<List<TickData>> = createJsonObjectMapper().tickDataDecoder()!!
 
-    override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
-        val subscribeMessages = subscribeTargets.stream()
-            .map { "${it.baseCurrency.symbol}-${it.quoteCurrency.symbol}" }
-            .map { "{\"op\": \"subscribe\", \"args\": [\"spot/depth:$it\"]}" }
-            .toList()
-
-        val currentOrderBookMap: MutableMap<CurrencyPair, OrderBook> = ConcurrentHashMap()
-
-        return HttpClient.create()
-            .wiretap(log.isDebugEnabled)
-            .doOnConnected { connection -> connection.addHandler(Deflat64Decoder()) }
-            .websocket()
-            .uri(baseUri)
-            .handle { inbound, outbound ->
-                outbound.sendString(Flux.fromIterable<String>(subscribeMessages))
-                    .then()
-                    .thenMany(inbound.receive().asString())
+    private val orderBookDecoder: JsonMessageDecoder<List<OrderBook>> = createJsonObjectMapper().orderBookDecoder()!!
+
+    /**
+     * table of data messages, op of event messages.
+     * a depth message is typed by its action, so a partial snapshot replaces the book instead of being merged.
+     */
+    private val messageTypeResolver = object : JsonMessageTypeResolver {
+        override fun resolve(parser: JsonParser): String? {
+            if (parser.currentToken != JsonToken.START_OBJECT) {
+                return null
             }
-            .doOnNext { log.debug { it } }
-            .filter { it.contains("\"spot/depth\"") }
-            .map { objectMapper.readValue<OkexOrderBookWrapper>(it) }
-            .map { it.data }
-            .flatMapIterable {
-                it.map { okexTickData ->
-                    val now = ZonedDateTime.now()
-                    OrderBook(
-                        "${okexTickData.instrumentId}${now.toEpochMilli()}",
-                        okexTickData.instrumentId,
-                        now,
-                        ExchangeVendor.OKEX,
-                        okexTickData.getBids().toMutableList(),
-                        okexTickData.getAsks().toMutableList()
-                    )
+
+            parser.forEachField { fieldName ->
+                when (fieldName) {
+                    "event" -> return parser.text
+                    "table" -> if (parser.text != DEPTH_CHANNEL) return parser.text
+                    "action" -> return if (parser.text == "partial") DEPTH_PARTIAL_TYPE else DEPTH_CHANNEL
+                    else -> parser.skipChildren()
                 }
             }
-            .map { orderBook ->
-                if (!currentOrderBookMap.containsKey(orderBook.currencyPair)) {
-                    currentOrderBookMap[orderBook.currencyPair] = orderBook
-                    return@map orderBook
-                }
+            return null
+        }
+    }
 
-                val prevOrderBook = currentOrderBookMap[orderBook.currencyPair]!!
-
-                val askMap: MutableMap<BigDecimal, OrderBookUnit> = prevOrderBook.asks
-                    .map { Pair(it.price.stripTrailingZeros(), it) }
-                    .toMap()
-                    .toMutableMap()
-
-                orderBook.asks.forEach { updatedAsk ->
-                    askMap.compute(updatedAsk.price.stripTrailingZeros()) { _, oldValue ->
-                        when {
-                            updatedAsk.quantity <= BigDecimal.ZERO -> null
-                            oldValue == null -> updatedAsk
-                            else -> oldValue.copy(
-                                quantity = updatedAsk.quantity,
-                                orderNumbers = updatedAsk.orderNumbers
-                            )
-                        }
+    val tradeRouter = JsonMessageRouter(objectMapper, messageTypeResolver, mapOf(TRADE_CHANNEL to tickDataDecoder))
+
+    val depthRouter = JsonMessageRouter(
+        objectMapper,
+        messageTypeResolver,
+        mapOf(DEPTH_CHANNEL to orderBookDecoder, DEPTH_PARTIAL_TYPE to orderBookDecoder)
+    )
+
+    private val connection: SharedWebsocketConnection = ReactiveCryptoPlugins.websocketConnectionManager
+        .connection(exchangeVendor, baseUri, leg) {
+            SharedWebsocketConnection(
+                ReactiveCryptoPlugins.networkConfig.httpClient(exchangeVendor)
+                    .wiretap(log.isDebugEnabled)
+                    .doOnConnected { connection -> connection.addHandler(Deflat64Decoder()) },
+                baseUri,
+                object : WebsocketSubscriptionProtocol {
+                    override fun subscribeMessages(topics: List<String>): List<String> {
+                        val args = topics.joinToString(",") { "\"$it\"" }
+                        return listOf("{\"op\": \"subscribe\", \"args\": [$args]}")
                     }
-                }
 
-                val bidMap: MutableMap<BigDecimal, OrderBookUnit> = prevOrderBook.bids
-                    .map { Pair(it.price.stripTrailingZeros(), it) }
-                    .toMap()
-                    .toMutableMap()
-
-                orderBook.bids.forEach { updatedBid ->
-                    bidMap.compute(updatedBid.price.stripTrailingZeros()) { _, oldValue ->
-                        when {
-                            updatedBid.quantity <= BigDecimal.ZERO -> null
-                            oldValue == null -> updatedBid
-                            else -> oldValue.copy(
-                                quantity = updatedBid.quantity,
-                                orderNumbers = updatedBid.orderNumbers
-                            )
-                        }
+                    override fun unsubscribeMessages(topics: List<String>): List<String> {
+                        val args = topics.joinToString(",") { "\"$it\"" }
+                        return listOf("{\"op\": \"unsubscribe\", \"args\": [$args]}")
                     }
-                }
+                },
+                maxTopicsPerSocket = ReactiveCryptoPlugins.websocketConnectionManager.maxTopicsPerSocket(exchangeVendor)
+            )
+        }
 
-                val currentOrderBook = prevOrderBook.copy(
-                    eventTime = orderBook.eventTime,
-                    asks = askMap.values.sortedBy { orderBookUnit -> orderBookUnit.price },
-                    bids = bidMap.values.sortedByDescending { orderBookUnit -> orderBookUnit.price }
-                )
-                currentOrderBookMap[currentOrderBook.currencyPair] = currentOrderBook
-                currentOrderBook
-            }
-            .doFinally { currentOrderBookMap.clear() } // cleanup memory limit orderBook when disconnected
+    override fun createJsonObjectMapper(): ExchangeJsonObjectMapper {
+        return OkexJsonObjectMapper()
+    }
+
+    override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
+        return createDepthSubscription(subscribeTargets).flux
     }
 
     override fun createTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<TickData> {
-        val subscribeMessages = subscribeTargets.stream()
-            .map { "${it.baseCurrency.symbol}-${it.quoteCurrency.symbol}" }
-            .map { "{\"op\": \"subscribe\", \"args\": [\"spot/trade:$it\"]}" }
-            .toFlux()
-
-        return HttpClient.create()
-            .wiretap(log.isDebugEnabled)
-            .doOnConnected { connection -> connection.addHandler(Deflat64Decoder()) }
-            .websocket()
-            .uri(baseUri)
-            .handle { inbound, outbound ->
-                outbound.sendString(subscribeMessages)
-                    .then()
-                    .thenMany(inbound.receive().asString())
-            }
-            .filter { t -> t.contains("\"spot/trade\"") }
-            .map { objectMapper.readValue<OkexTickDataWrapper>(it) }
-            .map { it.data }
-            .flatMapIterable {
-                it.map { okexTickData ->
-                    TickData(
-                        okexTickData.tradeId,
-                        okexTickData.timestamp,
-                        okexTickData.price,
-                        okexTickData.size,
-                        okexTickData.instrumentId,
-                        ExchangeVendor.OKEX,
-                        okexTickData.side
-                    )
+        return createTradeSubscription(subscribeTargets).flux
+    }
+
+    override fun createDepthSubscription(subscribeTargets: List<CurrencyPair>): WebsocketSubscription<OrderBook> {
+        return SharedWebsocketSubscription(
+            connection,
+            DEPTH_CHANNEL,
+            { "$DEPTH_CHANNEL:${it.baseCurrency.symbol}-${it.quoteCurrency.symbol}" },
+            { it.currencyPair },
+            {
+                // depth deltas are merged once per connection, the books are dropped with the socket session
+                val currentOrderBookMap: MutableMap<CurrencyPair, IncrementalOrderBook> = HashMap()
+                val frameDecoder: FrameDecoder<OrderBook> = { frame ->
+                    depthRouter.route(frame) { type, orderBooks ->
+                        orderBooks.mapNotNull { orderBook ->
+                            val incrementalOrderBook = currentOrderBookMap
+                                .computeIfAbsent(orderBook.currencyPair) { IncrementalOrderBook() }
+                            when {
+                                type == DEPTH_PARTIAL_TYPE -> incrementalOrderBook.snapshot(orderBook)
+                                // deltas before the partial of this session are dropped until the book is resynced
+                                incrementalOrderBook.isSynchronized() -> {
+                                    incrementalOrderBook.update(orderBook)
+                                    incrementalOrderBook.toOrderBook()
+                                }
+                                else -> null
+                            }?.let { stampVendor(it) }
+                        }
+                    }
                 }
-            }
-            .doOnError { log.error(it.message, it) }
+                frameDecoder
+            },
+            subscribeTargets
+        )
     }
 
-    private inner class Deflat64Decoder : ByteToMessageDecoder() {
-        override fun decode(ctx: ChannelHandlerContext, msg: ByteBuf, out: MutableList<Any>) {
-            Deflate64CompressorInputStream(ByteBufInputStream(msg)).use {
-                val responseBody = StreamUtils.copyToString(it, Charset.forName("UTF-8"))
-                val uncompressed = msg.alloc().buffer().writeBytes(responseBody.toByteArray())
-                out.add(uncompressed)
-            }
+    override fun createTradeSubscription(subscribeTargets: List<CurrencyPair>): WebsocketSubscription<TickData> {
+        return SharedWebsocketSubscription<TickData>(
+            connection,
+            TRADE_CHANNEL,
+            { "$TRADE_CHANNEL:${it.baseCurrency.symbol}-${it.quoteCurrency.symbol}" },
+            { it.currencyPair },
+            { { frame -> tradeRouter.route(frame)?.map { stampVendor(it) } } },
+            subscribeTargets
+        )
+    }
+
+    private fun stampVendor(orderBook: OrderBook): OrderBook {
+        if (orderBook.exchangeVendor == exchangeVendor) {
+            return orderBook
         }
+        return orderBook.copy(exchangeVendor = exchangeVendor)
+    }
+
+    private fun stampVendor(tickData: TickData): TickData {
+        return if (tickData.exchangeVendor == exchangeVendor) tickData else tickData.copy(exchangeVendor = exchangeVendor)
+    }
+
+    companion object {
+        private const val TRADE_CHANNEL = "spot/trade"
+        private const val DEPTH_CHANNEL = "spot/depth"
+        private const val DEPTH_PARTIAL_TYPE = "spot/depth/partial"
     }
 }
@@ -1,13 +1,16 @@
 package com.njkim.reactivecrypto.poloniex
 
 import com.fasterxml.jackson.module.kotlin.readValue
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
 import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
+import com.njkim.reactivecrypto.core.websocket.decode
+import com.njkim.reactivecrypto.core.websocket.metered
 import com.njkim.reactivecrypto.poloniex.model.PoloniexEventType
 import com.njkim.reactivecrypto.poloniex.model.PoloniexMessageFrame
 import com.njkim.reactivecrypto.poloniex.model.PoloniexOrderBookSnapshotEvent
 import reactor.core.publisher.Flux
 import reactor.kotlin.core.publisher.toFlux
-import reactor.netty.http.client.HttpClient
 import reactor.netty.http.client.WebsocketClientSpec
 
 class PoloniexRawWebsocketClient {
@@ -30,17 +33,18 @@ class PoloniexRawWebsocketClient {
             .toFlux()
 
         // TODO heartbeat check
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.POLONIEX, baseUrl, "book")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.POLONIEX)
             .websocket(WebsocketClientSpec.builder().maxFramePayloadLength(655360).build())
             .uri(baseUrl)
             .handle { inbound, outbound ->
                 outbound.sendString(subscribeChannels)
                     .then()
-                    .thenMany(inbound.receive().asString())
+                    .thenMany(inbound.receive().metered(meter).asString())
             }
             .filter { !it.contains("{\"error\":\"") }
             .filter { it != "[1010]" } // ping message
-            .map { PoloniexJsonObjectMapper.instance.readValue<PoloniexMessageFrame>(it) }
+            .decode(meter) { PoloniexJsonObjectMapper.instance.readValue<PoloniexMessageFrame>(it) }
             // set currencyPair info for each channel
             .doOnNext { messageFrame ->
                 val orderBookSnapshotEvent = messageFrame.events
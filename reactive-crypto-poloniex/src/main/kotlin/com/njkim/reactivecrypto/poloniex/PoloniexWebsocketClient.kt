@@ -22,14 +22,13 @@ import com.njkim.reactivecrypto.core.common.model.order.OrderBook
 import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
 import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
-import com.njkim.reactivecrypto.core.common.util.toEpochMilli
+import com.njkim.reactivecrypto.core.orderbook.IncrementalOrderBook
 import com.njkim.reactivecrypto.core.websocket.ExchangePublicWebsocketClient
 import com.njkim.reactivecrypto.poloniex.model.PoloniexEventType
 import com.njkim.reactivecrypto.poloniex.model.PoloniexOrderBookSnapshotEvent
 import com.njkim.reactivecrypto.poloniex.model.PoloniexOrderBookUpdateEvent
 import com.njkim.reactivecrypto.poloniex.model.PoloniexTradeEvent
 import reactor.core.publisher.Flux
-import java.math.BigDecimal
 import java.time.ZonedDateTime
 import java.util.concurrent.ConcurrentHashMap
 
@@ -60,81 +59,54 @@ class PoloniexWebsocketClient : ExchangePublicWebsocketClient {
     }
 
     override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
-        val currentOrderBookMap: MutableMap<CurrencyPair, OrderBook> = ConcurrentHashMap()
+        val currentOrderBookMap: MutableMap<CurrencyPair, IncrementalOrderBook> = ConcurrentHashMap()
 
         return poloniexRawWebsocketClient
             .priceAggregatedBook(subscribeTargets)
-            .flatMapIterable { it.events }
-            .filter {
-                it.eventType == PoloniexEventType.ORDER_BOOK_SNAPSHOT ||
-                        it.eventType == PoloniexEventType.ORDER_BOOK_UPDATE
+            .flatMapIterable { frame -> frame.events.map { frame.sequenceNumber to it } }
+            .filter { (_, event) ->
+                event.eventType == PoloniexEventType.ORDER_BOOK_SNAPSHOT ||
+                        event.eventType == PoloniexEventType.ORDER_BOOK_UPDATE
             }
-            .map { event ->
+            .map { (sequenceNumber, event) ->
+                val now = ZonedDateTime.now()
+                val incrementalOrderBook =
+                    currentOrderBookMap.computeIfAbsent(event.currencyPair) { IncrementalOrderBook() }
+
                 if (event.eventType == PoloniexEventType.ORDER_BOOK_SNAPSHOT) {
-                    val now = ZonedDateTime.now()
                     val orderBookSnapshotEvent = event as PoloniexOrderBookSnapshotEvent
                     val orderBook = OrderBook(
-                        "${now.toEpochMilli()}",
+                        "$sequenceNumber",
                         event.currencyPair,
                         now,
                         ExchangeVendor.POLONIEX,
                         orderBookSnapshotEvent.bids,
                         orderBookSnapshotEvent.asks
                     )
-                    orderBook
+                    incrementalOrderBook.snapshot(orderBook)
                 } else {
-                    val now = ZonedDateTime.now()
                     val orderBookUpdateEvent = event as PoloniexOrderBookUpdateEvent
-                    val prevOrderBook = currentOrderBookMap[event.currencyPair]!!
-
-                    var bids = prevOrderBook.bids.toMutableList()
-                    var asks = prevOrderBook.asks.toMutableList()
-
-                    if (orderBookUpdateEvent.side == TradeSideType.BUY) {
-                        bids = applyOrderBookUpdate(bids, orderBookUpdateEvent)
-                    } else {
-                        asks = applyOrderBookUpdate(asks, orderBookUpdateEvent)
-                    }
+                    val updatedUnit = listOf(
+                        OrderBookUnit(
+                            orderBookUpdateEvent.price,
+                            orderBookUpdateEvent.quantity,
+                            orderBookUpdateEvent.side
+                        )
+                    )
 
-                    prevOrderBook.copy(
-                        uniqueId = "${now.toEpochMilli()}",
-                        eventTime = now,
-                        asks = asks,
-                        bids = bids
+                    incrementalOrderBook.update(
+                        OrderBook(
+                            "$sequenceNumber",
+                            event.currencyPair,
+                            now,
+                            ExchangeVendor.POLONIEX,
+                            if (orderBookUpdateEvent.side == TradeSideType.BUY) updatedUnit else emptyList(),
+                            if (orderBookUpdateEvent.side == TradeSideType.SELL) updatedUnit else emptyList()
+                        )
                     )
+                    incrementalOrderBook.toOrderBook()!!
                 }
             }
-            .doOnNext { currentOrderBookMap[it.currencyPair] = it }
             .doFinally { currentOrderBookMap.clear() }
     }
-
-    private fun applyOrderBookUpdate(
-        orderBookUnits: MutableList<OrderBookUnit>,
-        orderBookUpdateEvent: PoloniexOrderBookUpdateEvent
-    ): MutableList<OrderBookUnit> {
-        val updated: MutableList<OrderBookUnit>
-        var isNewPrice = true
-        updated = orderBookUnits
-            .map { orderBookUnit ->
-                if (orderBookUnit.price.compareTo(orderBookUpdateEvent.price) == 0) {
-                    isNewPrice = false
-                    orderBookUnit.copy(quantity = orderBookUpdateEvent.quantity)
-                } else {
-                    orderBookUnit
-                }
-            }
-            .filter { it.quantity > BigDecimal.ZERO }
-            .toMutableList()
-
-        if (isNewPrice) {
-            updated.add(
-                OrderBookUnit(
-                    orderBookUpdateEvent.price,
-                    orderBookUpdateEvent.quantity,
-                    orderBookUpdateEvent.side
-                )
-            )
-        }
-        return updated
-    }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.testsupport
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import java.net.URI
+
+/**
+ * combined stream protocol, streams of the `/stream?streams=a/b` url are subscribed on connect and
+ * `{"method": "SUBSCRIBE", "params": [...], "id": 1}` is answered by `{"result": null, "id": 1}`.
+ * topics are stream names e.g. `btcusdt@trade`, canned messages are `{"stream": ..., "data": ...}`
+ */
+class BinanceMockProtocol : MockExchangeProtocol() {
+    private val objectMapper = ObjectMapper()
+
+    override fun onConnect(session: MockExchangeSession, uri: URI) {
+        uri.query?.split('&')
+            ?.firstOrNull { it.startsWith("streams=") }
+            ?.substringAfter('=')
+            ?.split('/')
+            ?.forEach { session.subscribe(it) }
+    }
+
+    override fun onMessage(session: MockExchangeSession, message: String) {
+        val request = objectMapper.readTree(message)
+        val streams = request.path("params").map { it.asText() }
+        when (request.path("method").asText()) {
+            "SUBSCRIBE" -> streams.forEach { session.subscribe(it) }
+            "UNSUBSCRIBE" -> streams.forEach { session.unsubscribe(it) }
+            else -> return
+        }
+        session.send("{\"result\":null,\"id\":${request.path("id")}}")
+    }
+}
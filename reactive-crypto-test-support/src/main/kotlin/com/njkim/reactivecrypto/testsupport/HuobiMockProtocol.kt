@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.testsupport
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.netty.buffer.ByteBufAllocator
+import io.netty.buffer.ByteBufOutputStream
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame
+import io.netty.handler.codec.http.websocketx.WebSocketFrame
+import java.time.Duration
+import java.util.zip.GZIPOutputStream
+
+/**
+ * `{"sub": "market.btcusdt.trade.detail", "id": "1"}` is answered by `{"id": "1", "status": "ok", "subbed": ...}`,
+ * every message is sent as a gzip compressed binary frame and the server pings the client with `{"ping": <ts>}`.
+ * topics are channels e.g. `market.btcusdt.trade.detail`
+ */
+class HuobiMockProtocol @JvmOverloads constructor(
+    override val heartbeatInterval: Duration = Duration.ofSeconds(5)
+) : MockExchangeProtocol() {
+    private val objectMapper = ObjectMapper()
+
+    override fun onMessage(session: MockExchangeSession, message: String) {
+        val request = objectMapper.readTree(message)
+        val id = request.path("id").asText()
+        val ts = System.currentTimeMillis()
+        when {
+            request.has("sub") -> {
+                session.subscribe(request.path("sub").asText())
+                session.send("{\"id\":\"$id\",\"status\":\"ok\",\"subbed\":\"${request.path("sub").asText()}\",\"ts\":$ts}")
+            }
+            request.has("unsub") -> {
+                session.unsubscribe(request.path("unsub").asText())
+                session.send("{\"id\":\"$id\",\"status\":\"ok\",\"unsubbed\":\"${request.path("unsub").asText()}\",\"ts\":$ts}")
+            }
+            // heartbeat of the client
+            request.has("ping") -> session.send("{\"pong\":${request.path("ping")}}")
+        }
+    }
+
+    override fun encode(allocator: ByteBufAllocator, message: String): WebSocketFrame {
+        val compressed = allocator.buffer(message.length / 2 + 32)
+        GZIPOutputStream(ByteBufOutputStream(compressed)).use {
+            it.write(message.toByteArray(Charsets.UTF_8))
+        }
+        return BinaryWebSocketFrame(compressed)
+    }
+
+    override fun heartbeat(): String = "{\"ping\":${System.currentTimeMillis()}}"
+}
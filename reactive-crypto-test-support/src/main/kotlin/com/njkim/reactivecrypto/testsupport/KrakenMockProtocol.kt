@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.testsupport
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * `{"event": "subscribe", "pair": ["XBT/USD"], "subscription": {"name": "trade"}}` is answered by
+ * a subscriptionStatus event per pair carrying the channelID of the subscription.
+ * topics are `$subscriptionName:$pair` e.g. `trade:XBT/USD`, [CHANNEL_ID] in a canned message is replaced by its channelID
+ */
+class KrakenMockProtocol : MockExchangeProtocol() {
+    private val objectMapper = ObjectMapper()
+
+    private val channelIds: MutableMap<String, Int> = ConcurrentHashMap()
+
+    private val lastChannelId = AtomicInteger()
+
+    override fun onMessage(session: MockExchangeSession, message: String) {
+        val request = objectMapper.readTree(message)
+        val event = request.path("event").asText()
+        val subscriptionName = request.path("subscription").path("name").asText()
+        request.path("pair").map { it.asText() }.forEach { pair ->
+            val topic = "$subscriptionName:$pair"
+            val status = when (event) {
+                "subscribe" -> "subscribed".also { session.subscribe(topic) }
+                "unsubscribe" -> "unsubscribed".also { session.unsubscribe(topic) }
+                else -> return
+            }
+            session.send(
+                "{\"channelID\":${channelId(topic)},\"channelName\":\"$subscriptionName\",\"event\":\"subscriptionStatus\"," +
+                    "\"pair\":\"$pair\",\"status\":\"$status\",\"subscription\":{\"name\":\"$subscriptionName\"}}"
+            )
+        }
+    }
+
+    override fun render(topic: String, message: String): String {
+        return message.replace(CHANNEL_ID, channelId(topic).toString())
+    }
+
+    private fun channelId(topic: String): Int = channelIds.computeIfAbsent(topic) { lastChannelId.incrementAndGet() }
+
+    companion object {
+        const val CHANNEL_ID = "{{channelID}}"
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.testsupport
+
+import io.netty.buffer.ByteBufAllocator
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame
+import io.netty.handler.codec.http.websocketx.WebSocketFrame
+import java.net.URI
+import java.time.Duration
+
+/**
+ * subscribe protocol of an exchange spoken by [MockExchangeServer].
+ * implementations may keep state shared by every session, so use one instance per server.
+ */
+abstract class MockExchangeProtocol {
+    /**
+     * called once the websocket handshake of [session] is completed, e.g. to subscribe the streams of the url
+     */
+    open fun onConnect(session: MockExchangeSession, uri: URI) {
+    }
+
+    /**
+     * handle a text message sent by the client
+     */
+    abstract fun onMessage(session: MockExchangeSession, message: String)
+
+    /**
+     * replace the placeholders of a canned [message] of [topic], [MockExchangeServer.NOW] is replaced by the server
+     */
+    open fun render(topic: String, message: String): String = message
+
+    /**
+     * encode [message] into a frame, compressed exchanges send binary frames
+     */
+    open fun encode(allocator: ByteBufAllocator, message: String): WebSocketFrame {
+        return TextWebSocketFrame(allocator.buffer(message.length).apply { writeCharSequence(message, Charsets.UTF_8) })
+    }
+
+    /**
+     * message sent to every session each [heartbeatInterval], null when the exchange doesn't ping the client
+     */
+    open fun heartbeat(): String? = null
+
+    open val heartbeatInterval: Duration = Duration.ofSeconds(5)
+}
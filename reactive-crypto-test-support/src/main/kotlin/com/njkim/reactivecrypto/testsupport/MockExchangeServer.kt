@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.testsupport
+
+import io.netty.buffer.ByteBufAllocator
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame
+import mu.KotlinLogging
+import reactor.core.Disposable
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import reactor.core.scheduler.Scheduler
+import reactor.core.scheduler.Schedulers
+import reactor.netty.DisposableServer
+import reactor.netty.http.server.HttpServer
+import java.io.Closeable
+import java.net.URI
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Embedded websocket server speaking the subscribe protocol of an exchange, for offline client tests and load tests.
+ *
+ * Canned messages are complete exchange messages (e.g. recorded from the real exchange) sent to the sessions
+ * subscribed to their topic. [NOW] in a message is replaced by the current epoch millis when it is sent,
+ * so the latency of a client can be measured from the decoded event time.
+ *
+ * ```
+ * val server = MockExchangeServer(BinanceMockProtocol()).start()
+ * server.replay("btcusdt@trade", listOf(tradeMessage), ratePerSecond = 10_000)
+ * BinanceWebsocketClient(server.uri()).createTradeWebsocket(listOf(CurrencyPair.parse("BTC", "USDT")))
+ * ```
+ */
+class MockExchangeServer @JvmOverloads constructor(
+    private val protocol: MockExchangeProtocol,
+    private val port: Int = 0,
+    private val scheduler: Scheduler = Schedulers.parallel()
+) : Closeable {
+    private val log = KotlinLogging.logger {}
+
+    private val allocator: ByteBufAllocator = ByteBufAllocator.DEFAULT
+
+    private val sessions: MutableMap<Long, MockExchangeSession> = ConcurrentHashMap()
+
+    private val sessionId = AtomicLong()
+
+    private val sentCount = AtomicLong()
+
+    private var server: DisposableServer? = null
+
+    private var heartbeat: Disposable? = null
+
+    fun start(): MockExchangeServer {
+        server = HttpServer.create()
+            .host("localhost")
+            .port(port)
+            .handle { request, response ->
+                val uri = URI.create(request.uri())
+                response.sendWebsocket { inbound, outbound ->
+                    val session = MockExchangeSession(sessionId.incrementAndGet(), protocol, allocator, sentCount)
+                    sessions[session.id] = session
+                    protocol.onConnect(session, uri)
+
+                    val received = inbound.aggregateFrames()
+                        .receiveFrames()
+                        .ofType(TextWebSocketFrame::class.java)
+                        .doOnNext { protocol.onMessage(session, it.text()) }
+                        .doFinally {
+                            sessions.remove(session.id)
+                            session.close()
+                        }
+                        .then()
+
+                    Mono.`when`(outbound.sendObject(session.frames()).then(), received)
+                }
+            }
+            .bindNow()
+
+        heartbeat = protocol.heartbeat()?.let {
+            Flux.interval(protocol.heartbeatInterval, scheduler)
+                .subscribe { publishToAll(protocol.heartbeat()!!) }
+        }
+        log.info { "mock exchange server started on ${uri()}" }
+        return this
+    }
+
+    /**
+     * `ws://localhost:<port>`
+     */
+    fun uri(): String {
+        val disposableServer = server ?: throw IllegalStateException("server is not started")
+        return "ws://localhost:${disposableServer.port()}"
+    }
+
+    /**
+     * send [message] once to every session subscribed to [topic]
+     *
+     * @return number of sessions the message was sent to
+     */
+    fun publish(topic: String, message: String): Int {
+        val subscribers = sessions.values.filter { it.isSubscribed(topic) }
+        if (subscribers.isEmpty()) {
+            return 0
+        }
+
+        // encoded once and shared by every session
+        val frame = protocol.encode(allocator, protocol.render(topic, message.replace(NOW, System.currentTimeMillis().toString())))
+        try {
+            subscribers.forEach { it.send(frame.retainedDuplicate()) }
+        } finally {
+            frame.release()
+        }
+        return subscribers.size
+    }
+
+    /**
+     * send [messages] in a loop to the subscribers of [topic] at [ratePerSecond] until [count] messages are published
+     * or the returned [Disposable] is disposed.
+     * messages are sent in batches every millisecond, so rates above 1000/s don't need a timer per message.
+     */
+    @JvmOverloads
+    fun replay(topic: String, messages: List<String>, ratePerSecond: Long, count: Long = Long.MAX_VALUE): Disposable {
+        require(messages.isNotEmpty()) { "messages must not be empty" }
+        require(ratePerSecond > 0) { "ratePerSecond must be positive : $ratePerSecond" }
+
+        return Flux.defer {
+            val startNanos = System.nanoTime()
+            var published = 0L
+            Flux.interval(Duration.ofMillis(1), scheduler)
+                .doOnNext {
+                    val due = minOf(count, ((System.nanoTime() - startNanos) / 1_000_000.0 * ratePerSecond / 1000).toLong())
+                    while (published < due) {
+                        publish(topic, messages[(published % messages.size).toInt()])
+                        published++
+                    }
+                }
+                .takeUntil { published >= count }
+        }.subscribe()
+    }
+
+    /**
+     * frames sent to every session since the server started, including subscription replies and heartbeats
+     */
+    fun sentCount(): Long = sentCount.get()
+
+    fun sessionCount(): Int = sessions.size
+
+    fun subscribedTopics(): Set<String> = sessions.values.flatMap { it.subscribedTopics() }.toSet()
+
+    override fun close() {
+        heartbeat?.dispose()
+        // completing the sessions closes the websockets, so the server doesn't wait for the clients to leave
+        sessions.values.forEach { it.close() }
+        server?.disposeNow()
+    }
+
+    private fun publishToAll(message: String) {
+        sessions.values.forEach { it.send(message) }
+    }
+
+    companion object {
+        const val NOW = "{{now}}"
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.testsupport
+
+import io.netty.buffer.ByteBufAllocator
+import io.netty.handler.codec.http.websocketx.WebSocketFrame
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Sinks
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * a client connection of [MockExchangeServer]
+ */
+class MockExchangeSession internal constructor(
+    val id: Long,
+    private val protocol: MockExchangeProtocol,
+    private val allocator: ByteBufAllocator,
+    private val sentCount: AtomicLong
+) {
+    private val topics: MutableSet<String> = ConcurrentHashMap.newKeySet()
+
+    // frames are emitted from the event loop and from the replay timers
+    private val outbound: Sinks.Many<WebSocketFrame> = Sinks.many().unicast().onBackpressureBuffer()
+
+    fun subscribe(topic: String) {
+        topics.add(topic)
+    }
+
+    fun unsubscribe(topic: String) {
+        topics.remove(topic)
+    }
+
+    fun isSubscribed(topic: String): Boolean = topic in topics
+
+    fun subscribedTopics(): Set<String> = HashSet(topics)
+
+    /**
+     * encode and send a message to this session only, e.g. a subscription reply
+     */
+    fun send(message: String) {
+        send(protocol.encode(allocator, message))
+    }
+
+    internal fun send(frame: WebSocketFrame) {
+        val result = synchronized(outbound) { outbound.tryEmitNext(frame) }
+        if (result.isFailure) {
+            frame.release()
+        } else {
+            sentCount.incrementAndGet()
+        }
+    }
+
+    internal fun frames(): Flux<WebSocketFrame> = outbound.asFlux()
+
+    internal fun close() {
+        synchronized(outbound) { outbound.tryEmitComplete() }
+    }
+}
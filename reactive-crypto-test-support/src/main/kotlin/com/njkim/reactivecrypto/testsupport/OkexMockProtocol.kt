@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.njkim.reactivecrypto.testsupport
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.netty.buffer.ByteBufAllocator
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame
+import io.netty.handler.codec.http.websocketx.WebSocketFrame
+import java.util.zip.Deflater
+
+/**
+ * `{"op": "subscribe", "args": ["spot/trade:BTC-USDT"]}` is answered by an event per channel,
+ * every message is sent as a raw deflate compressed binary frame.
+ * topics are channels e.g. `spot/trade:BTC-USDT`
+ */
+class OkexMockProtocol : MockExchangeProtocol() {
+    private val objectMapper = ObjectMapper()
+
+    override fun onMessage(session: MockExchangeSession, message: String) {
+        if (message == "ping") {
+            session.send("pong")
+            return
+        }
+
+        val request = objectMapper.readTree(message)
+        val op = request.path("op").asText()
+        request.path("args").map { it.asText() }.forEach { channel ->
+            when (op) {
+                "subscribe" -> session.subscribe(channel)
+                "unsubscribe" -> session.unsubscribe(channel)
+                else -> return
+            }
+            session.send("{\"event\":\"$op\",\"channel\":\"$channel\"}")
+        }
+    }
+
+    override fun encode(allocator: ByteBufAllocator, message: String): WebSocketFrame {
+        val input = message.toByteArray(Charsets.UTF_8)
+        val deflater = Deflater(Deflater.DEFAULT_COMPRESSION, true)
+        try {
+            deflater.setInput(input)
+            deflater.finish()
+            val buffer = ByteArray(input.size + 64)
+            val compressed = allocator.buffer(input.size / 2 + 16)
+            while (!deflater.finished()) {
+                compressed.writeBytes(buffer, 0, deflater.deflate(buffer))
+            }
+            return BinaryWebSocketFrame(compressed)
+        } finally {
+            deflater.end()
+        }
+    }
+}
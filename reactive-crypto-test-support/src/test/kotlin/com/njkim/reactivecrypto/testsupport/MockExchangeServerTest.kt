@@ -0,0 +1,196 @@
+/*
+ * Copyright 2019 namjug-kim
+ *
+ * LINE Corporation licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.njkim.reactivecrypto.testsupport
+
+import com.njkim.reactivecrypto.binance.BinanceWebsocketClient
+import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
+import com.njkim.reactivecrypto.core.common.model.number.ScaledDecimal
+import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
+import com.njkim.reactivecrypto.core.stream.arbitrateTickData
+import com.njkim.reactivecrypto.huobiglobal.HuobiGlobalWebsocketClient
+import com.njkim.reactivecrypto.kraken.KrakenWebsocketClient
+import com.njkim.reactivecrypto.okex.OkexWebsocketClient
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import reactor.core.publisher.Flux
+import java.time.Duration
+
+class MockExchangeServerTest {
+    private val btcUsdt = CurrencyPair.parse("BTC", "USDT")
+
+    @Test
+    fun `replay binance trades at a fixed rate`() {
+        // given
+        val server = MockExchangeServer(BinanceMockProtocol()).start()
+        val tradeMessage = "{\"stream\":\"btcusdt@trade\",\"data\":{\"e\":\"trade\",\"E\":${MockExchangeServer.NOW}," +
+            "\"s\":\"BTCUSDT\",\"t\":1,\"p\":\"100.5\",\"q\":\"0.1\",\"b\":1,\"a\":2,\"T\":${MockExchangeServer.NOW},\"m\":true,\"M\":true}}"
+
+        server.use {
+            val replay = server.replay("btcusdt@trade", listOf(tradeMessage), ratePerSecond = 2_000)
+
+            // when
+            val tickData = BinanceWebsocketClient(server.uri())
+                .createTradeWebsocket(listOf(btcUsdt))
+                .take(200)
+                .collectList()
+                .block(Duration.ofSeconds(10))!!
+            replay.dispose()
+
+            // then
+            assertThat(tickData).hasSize(200)
+            assertThat(tickData).allMatch { it.currencyPair == btcUsdt && it.tradeSideType == TradeSideType.SELL }
+            assertThat(tickData.first().price).isEqualByComparingTo("100.5")
+        }
+    }
+
+    @Test
+    fun `replay binance trades as scaled decimals`() {
+        // given
+        val server = MockExchangeServer(BinanceMockProtocol()).start()
+        val tradeMessage = "{\"stream\":\"btcusdt@trade\",\"data\":{\"e\":\"trade\",\"E\":${MockExchangeServer.NOW}," +
+            "\"s\":\"BTCUSDT\",\"t\":3,\"p\":\"100.50\",\"q\":\"0.100\",\"b\":1,\"a\":2,\"T\":${MockExchangeServer.NOW},\"m\":false,\"M\":true}}"
+
+        server.use {
+            val replay = server.replay("btcusdt@trade", listOf(tradeMessage), ratePerSecond = 100)
+
+            // when
+            val tickData = BinanceWebsocketClient(server.uri())
+                .createScaledTradeWebsocket(listOf(btcUsdt))
+                .blockFirst(Duration.ofSeconds(10))!!
+            replay.dispose()
+
+            // then
+            assertThat(tickData.currencyPair).isEqualTo(btcUsdt)
+            assertThat(tickData.tradeSideType).isEqualTo(TradeSideType.BUY)
+            assertThat(tickData.price).isEqualTo(ScaledDecimal.of(10050, 2))
+            assertThat(tickData.quantity).isEqualTo(ScaledDecimal.of(100, 3))
+            // the fraction digits padded by the exchange are kept
+            assertThat(tickData.price.scale).isEqualTo(2)
+        }
+    }
+
+    @Test
+    fun `open one socket per binance leg`() {
+        // given
+        val server = MockExchangeServer(BinanceMockProtocol()).start()
+        val tradeMessage = "{\"stream\":\"btcusdt@trade\",\"data\":{\"e\":\"trade\",\"E\":${MockExchangeServer.NOW}," +
+            "\"s\":\"BTCUSDT\",\"t\":7,\"p\":\"100.5\",\"q\":\"0.1\",\"b\":1,\"a\":2,\"T\":${MockExchangeServer.NOW},\"m\":true,\"M\":true}}"
+
+        server.use {
+            val legs = (0..1).map { BinanceWebsocketClient(server.uri(), leg = it).createTradeWebsocket(listOf(btcUsdt)) }
+            val subscription = arbitrateTickData(legs).subscribe()
+
+            // when
+            val receivers = Flux.interval(Duration.ofMillis(10))
+                .map { server.publish("btcusdt@trade", tradeMessage) }
+                .filter { it == 2 }
+                .blockFirst(Duration.ofSeconds(10))
+
+            val sessionCount = server.sessionCount()
+            subscription.dispose()
+
+            // then
+            assertThat(receivers).isEqualTo(2)
+            assertThat(sessionCount).isEqualTo(2)
+        }
+    }
+
+    @Test
+    fun `replay kraken trades and books on the subscribed channel`() {
+        // given
+        val server = MockExchangeServer(KrakenMockProtocol()).start()
+        val xbtUsd = CurrencyPair.parse("XBT", "USD")
+        val tradeMessage = "[${KrakenMockProtocol.CHANNEL_ID},[[\"8541.20000\",\"0.01840000\",\"1559347200.120356\",\"b\",\"l\",\"\"]]," +
+            "\"trade\",\"XBT/USD\"]"
+        val bookMessage = "[${KrakenMockProtocol.CHANNEL_ID},{\"as\":[[\"8541.21000\",\"0.43\",\"1559347200.569557\"]]," +
+            "\"bs\":[[\"8541.19000\",\"4.2\",\"1559347200.795158\"]]},\"book-10\",\"XBT/USD\"]"
+
+        server.use {
+            val tradeReplay = server.replay("trade:XBT/USD", listOf(tradeMessage), ratePerSecond = 100)
+            val bookReplay = server.replay("book:XBT/USD", listOf(bookMessage), ratePerSecond = 100)
+            val client = KrakenWebsocketClient(server.uri())
+
+            // when
+            val result = client.createDepthSnapshot(listOf(xbtUsd)).take(3).collectList()
+                .zipWith(client.createTradeWebsocket(listOf(xbtUsd)).take(3).collectList())
+                .block(Duration.ofSeconds(10))!!
+            tradeReplay.dispose()
+            bookReplay.dispose()
+
+            // then
+            val orderBook = result.t1.first()
+            assertThat(orderBook.currencyPair).isEqualTo(xbtUsd)
+            assertThat(orderBook.asks.first().price).isEqualByComparingTo("8541.21")
+            assertThat(orderBook.bids.first().quantity).isEqualByComparingTo("4.2")
+            assertThat(orderBook.hasExchangeTime).isTrue()
+            assertThat(orderBook.eventTime.toEpochSecond()).isEqualTo(1559347200)
+            val tickData = result.t2.first()
+            assertThat(tickData.currencyPair).isEqualTo(xbtUsd)
+            assertThat(tickData.price).isEqualByComparingTo("8541.2")
+            assertThat(tickData.tradeSideType).isEqualTo(TradeSideType.BUY)
+        }
+    }
+
+    @Test
+    fun `send okex messages deflated`() {
+        // given
+        val server = MockExchangeServer(OkexMockProtocol()).start()
+        val tradeMessage = "{\"table\":\"spot/trade\",\"data\":[{\"instrument_id\":\"BTC-USDT\",\"price\":\"7000.1\",\"side\":\"buy\"," +
+            "\"size\":\"0.5\",\"timestamp\":\"2019-06-01T00:00:00.000Z\",\"trade_id\":\"1\"}]}"
+
+        server.use {
+            val replay = server.replay("spot/trade:BTC-USDT", listOf(tradeMessage), ratePerSecond = 100)
+
+            // when
+            val tickData = OkexWebsocketClient(server.uri())
+                .createTradeWebsocket(listOf(btcUsdt))
+                .blockFirst(Duration.ofSeconds(10))!!
+            replay.dispose()
+
+            // then
+            assertThat(tickData.price).isEqualByComparingTo("7000.1")
+            assertThat(tickData.quantity).isEqualByComparingTo("0.5")
+            // the subscription reply and at least one trade
+            assertThat(server.sentCount()).isGreaterThanOrEqualTo(2)
+        }
+    }
+
+    @Test
+    fun `send huobi messages gzipped between pings`() {
+        // given
+        val server = MockExchangeServer(HuobiMockProtocol(Duration.ofMillis(20))).start()
+        val tradeMessage = "{\"ch\":\"market.btcusdt.trade.detail\",\"ts\":${MockExchangeServer.NOW},\"tick\":{\"id\":1," +
+            "\"ts\":${MockExchangeServer.NOW},\"data\":[{\"id\":1,\"ts\":${MockExchangeServer.NOW},\"amount\":0.25," +
+            "\"price\":7000.5,\"direction\":\"buy\"}]}}"
+
+        server.use {
+            val replay = server.replay("market.btcusdt.trade.detail", listOf(tradeMessage), ratePerSecond = 100)
+
+            // when
+            val tickData = HuobiGlobalWebsocketClient(server.uri())
+                .createTradeWebsocket(listOf(btcUsdt))
+                .take(20)
+                .collectList()
+                .block(Duration.ofSeconds(10))!!
+            replay.dispose()
+
+            // then
+            assertThat(tickData).hasSize(20)
+            assertThat(tickData).allMatch { it.tradeSideType == TradeSideType.BUY }
+            assertThat(tickData.last().quantity).isEqualByComparingTo("0.25")
+        }
+    }
+}
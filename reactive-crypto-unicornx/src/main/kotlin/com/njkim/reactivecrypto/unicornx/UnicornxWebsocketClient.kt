@@ -17,20 +17,6 @@
 package com.njkim.reactivecrypto.unicornx
 
 import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
-import com.njkim.reactivecrypto.core.common.model.currency.CurrencyPair
-import com.njkim.reactivecrypto.core.common.model.order.OrderBook
-import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.okex.OkexWebsocketClient
-import reactor.core.publisher.Flux
 
-class UnicornxWebsocketClient : OkexWebsocketClient("wss://real.okex.com:8443/ws/v3?brokerId=185") {
-    override fun createDepthSnapshot(subscribeTargets: List<CurrencyPair>): Flux<OrderBook> {
-        return super.createDepthSnapshot(subscribeTargets)
-            .map { it.copy(exchangeVendor = ExchangeVendor.UNICORNX) }
-    }
-
-    override fun createTradeWebsocket(subscribeTargets: List<CurrencyPair>): Flux<TickData> {
-        return super.createTradeWebsocket(subscribeTargets)
-            .map { it.copy(exchangeVendor = ExchangeVendor.UNICORNX) }
-    }
-}
+class UnicornxWebsocketClient : OkexWebsocketClient("wss://real.okex.com:8443/ws/v3?brokerId=185", ExchangeVendor.UNICORNX)
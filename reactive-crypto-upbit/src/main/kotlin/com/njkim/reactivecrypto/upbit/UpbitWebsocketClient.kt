@@ -26,12 +26,14 @@ import com.njkim.reactivecrypto.core.common.model.order.OrderBookUnit
 import com.njkim.reactivecrypto.core.common.model.order.TickData
 import com.njkim.reactivecrypto.core.common.model.order.TradeSideType
 import com.njkim.reactivecrypto.core.common.util.toEpochMilli
+import com.njkim.reactivecrypto.core.plugin.ReactiveCryptoPlugins
 import com.njkim.reactivecrypto.core.websocket.AbstractExchangeWebsocketClient
+import com.njkim.reactivecrypto.core.websocket.decode
+import com.njkim.reactivecrypto.core.websocket.metered
 import com.njkim.reactivecrypto.upbit.model.UpbitOrderBook
 import com.njkim.reactivecrypto.upbit.model.UpbitTickData
 import io.netty.handler.codec.json.JsonObjectDecoder
 import reactor.core.publisher.Flux
-import reactor.netty.http.client.HttpClient
 import java.time.ZonedDateTime
 import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.atomic.AtomicLong
@@ -56,16 +58,17 @@ class UpbitWebsocketClient : AbstractExchangeWebsocketClient() {
             .map<String> { currencyPair -> "\"${currencyPair.quoteCurrency}-${currencyPair.baseCurrency}\"" }
             .collect(Collectors.joining(","))
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.UPBIT, baseUri, "trade")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.UPBIT)
             .doOnConnected { it.addHandlerLast(JsonObjectDecoder()) }
             .websocket()
             .uri(baseUri)
             .handle { inbound, outbound ->
                 outbound.sendString(Flux.just("[{\"ticket\":\"UNIQUE_TICKET\"},{\"type\":\"trade\",\"codes\":[$coinSymbols]}]"))
                     .then()
-                    .thenMany(inbound.receive().asString())
+                    .thenMany(inbound.receive().metered(meter).asString())
             }
-            .map { objectMapper.readValue<UpbitTickData>(it) }
+            .decode(meter) { objectMapper.readValue<UpbitTickData>(it) }
             .map {
                 TickData(
                     it.sequentialId.toString() + it.code,
@@ -85,15 +88,16 @@ class UpbitWebsocketClient : AbstractExchangeWebsocketClient() {
             .map<String> { currencyPair -> "\"${currencyPair.quoteCurrency}-${currencyPair.baseCurrency}\"" }
             .collect(Collectors.joining(","))
 
-        return HttpClient.create()
+        val meter = ReactiveCryptoPlugins.websocketConnectionManager.meter(ExchangeVendor.UPBIT, baseUri, "orderbook")
+        return ReactiveCryptoPlugins.networkConfig.httpClient(ExchangeVendor.UPBIT)
             .websocket()
             .uri(baseUri)
             .handle { inbound, outbound ->
                 outbound.sendString(Flux.just("[{\"ticket\":\"UNIQUE_TICKET\"},{\"type\":\"orderbook\",\"codes\":[$coinSymbols]}]"))
                     .then()
-                    .thenMany(inbound.receive().asString())
+                    .thenMany(inbound.receive().metered(meter).asString())
             }
-            .map { objectMapper.readValue<UpbitOrderBook>(it) }
+            .decode(meter) { objectMapper.readValue<UpbitOrderBook>(it) }
             .map {
                 OrderBook(
                     createOrderBookUniqueId(it.timestamp.toEpochMilli()),
@@ -16,14 +16,10 @@
 
 package com.njkim.reactivecrypto.upbit.http.raw
 
+import com.njkim.reactivecrypto.core.common.model.ExchangeVendor
+import com.njkim.reactivecrypto.core.http.exchangeWebClientBuilder
 import com.njkim.reactivecrypto.upbit.UpbitJsonObjectMapper
-import org.springframework.http.client.reactive.ReactorClientHttpConnector
-import org.springframework.http.codec.json.Jackson2JsonDecoder
-import org.springframework.http.codec.json.Jackson2JsonEncoder
-import org.springframework.util.MimeTypeUtils
-import org.springframework.web.reactive.function.client.ExchangeStrategies
 import org.springframework.web.reactive.function.client.WebClient
-import reactor.netty.http.client.HttpClient
 
 /**
  * @see [official document](https://docs.upbit.com/reference)
@@ -31,37 +27,11 @@ import reactor.netty.http.client.HttpClient
 class UpbitRawHttpClient(
     private val baseUrl: String = "https://api.upbit.com"
 ) {
-    fun private(apiKey: String, secretKey: String): UpbitRawPrivateHttpClient {
-        return UpbitRawPrivateHttpClient(apiKey, secretKey, createDefaultWebClientBuilder())
-    }
+    // connections are pooled by the shared http client
+    private val webClientBuilder: WebClient.Builder =
+        exchangeWebClientBuilder(ExchangeVendor.UPBIT, UpbitJsonObjectMapper().objectMapper(), baseUrl)
 
-    private fun createDefaultWebClientBuilder(): WebClient.Builder {
-        val strategies = ExchangeStrategies.builder()
-            .codecs { clientCodecConfigurer ->
-                clientCodecConfigurer.defaultCodecs()
-                    .jackson2JsonEncoder(
-                        Jackson2JsonEncoder(
-                            UpbitJsonObjectMapper().objectMapper(),
-                            MimeTypeUtils.APPLICATION_JSON
-                        )
-                    )
-                clientCodecConfigurer.defaultCodecs()
-                    .jackson2JsonDecoder(
-                        Jackson2JsonDecoder(
-                            UpbitJsonObjectMapper().objectMapper(),
-                            MimeTypeUtils.APPLICATION_JSON
-                        )
-                    )
-            }
-            .build()
-
-        return WebClient.builder()
-            .clientConnector(
-                ReactorClientHttpConnector(
-                    HttpClient.create().wiretap(true)
-                )
-            )
-            .exchangeStrategies(strategies)
-            .baseUrl(baseUrl)
+    fun private(apiKey: String, secretKey: String): UpbitRawPrivateHttpClient {
+        return UpbitRawPrivateHttpClient(apiKey, secretKey, webClientBuilder.clone())
     }
 }